@@ -0,0 +1,271 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Worklist of items and rules waiting to be solved. While an item is solving, every status or value
+ * it reads is recorded, so the item can be scheduled again when one of those inputs changes. Rules
+ * are found through the rule index instead. Solving stops when the agenda is empty, which is the
+ * same fixed point the sweep reaches by running every item until nothing changes.
+ */
+public class Agenda
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** Items waiting to be solved in first in first out order. */
+    private final ArrayDeque<GeoItem> queue = new ArrayDeque<> ();
+
+    /** Items currently in the queue, so each item is scheduled at most once. */
+    private final Set<GeoItem> queued = new HashSet<> ();
+
+    /** Rules waiting to be fired. Removed rules may remain here but are skipped. */
+    private final ArrayDeque<Rule> ruleQueue = new ArrayDeque<> ();
+
+    /** Rules scheduled to fire. */
+    private final Set<Rule> queuedRules = new HashSet<> ();
+
+    /** Rules that read each item. */
+    private final RuleIndex ruleIndex;
+
+    /** The item being solved now. Reads are recorded against this item. */
+    private GeoItem current = null;
+
+    /** The thread solving the current item. Reads from other threads, such as painting, are ignored. */
+    private Thread solver = null;
+
+    /** Number of item solve calls made by this agenda. */
+    private long solveCount = 0;
+
+    /** Number of rules fired by this agenda. */
+    private long fireCount = 0;
+
+    /** Worklist of items and rules waiting to be solved. */
+    public Agenda (RuleIndex ruleIndex)
+    {
+        this.ruleIndex = ruleIndex;
+    }
+
+    /** Schedule an item to be solved. */
+    public void add (GeoItem item)
+    {
+        if (queued.add (item))
+        {
+            queue.add (item);
+        }
+    }
+
+    /** Schedule many items to be solved. */
+    public void addAll (Collection<GeoItem> items)
+    {
+        for (final GeoItem item : items)
+        {
+            add (item);
+        }
+    }
+
+    /** Schedule a rule to be fired. */
+    public void add (Rule rule)
+    {
+        if (queuedRules.add (rule))
+        {
+            ruleQueue.add (rule);
+        }
+    }
+
+    /** Schedule an item, every item that read it while solving and every rule that reads it. */
+    public void addReaders (GeoItem item)
+    {
+        add (item);
+        for (final Rule rule : ruleIndex.getRules (item))
+        {
+            add (rule);
+        }
+        final Set<GeoItem> readers = item.getReaders ();
+        if (readers != null)
+        {
+            for (final GeoItem reader : readers)
+            {
+                add (reader);
+            }
+        }
+    }
+
+    /** Remove an item from the agenda and forget the dependencies it recorded. */
+    public void remove (GeoItem item)
+    {
+        if (queued.remove (item))
+        {
+            queue.remove (item);
+        }
+        item.clearReads ();
+    }
+
+    /** Remove a rule from the agenda. */
+    public void remove (Rule rule)
+    {
+        queuedRules.remove (rule);
+    }
+
+    /** Record that the current item read the status or value of another item. */
+    public void read (GeoItem item)
+    {
+        if (current != null && solver == Thread.currentThread ())
+        {
+            current.addRead (item);
+        }
+    }
+
+    /**
+     * Stop recording reads, for example while firing a rule whose dependencies are in the rule
+     * index. Other threads are not recording, so this does nothing for them.
+     *
+     * @return The item being solved, to be passed to resume.
+     */
+    public GeoItem suspend ()
+    {
+        if (solver != Thread.currentThread ())
+        {
+            return null;
+        }
+        final GeoItem result = current;
+        current = null;
+        return result;
+    }
+
+    /** Continue recording reads against an item returned by suspend. */
+    public void resume (GeoItem item)
+    {
+        if (solver == Thread.currentThread ())
+        {
+            current = item;
+        }
+    }
+
+    /** The item being solved now. */
+    public GeoItem getCurrent ()
+    {
+        return current;
+    }
+
+    /** Number of item solve calls made by this agenda. */
+    public long getSolveCount ()
+    {
+        return solveCount;
+    }
+
+    /** Number of rules fired by this agenda. */
+    public long getFireCount ()
+    {
+        return fireCount;
+    }
+
+    /** Are there any items or rules waiting to be solved. */
+    public boolean isEmpty ()
+    {
+        return queue.isEmpty () && queuedRules.isEmpty ();
+    }
+
+    /** Number of items waiting to be solved. */
+    public int size ()
+    {
+        return queue.size ();
+    }
+
+    /** Number of rules waiting to be fired. */
+    public int ruleCount ()
+    {
+        return queuedRules.size ();
+    }
+
+    /** Fire rules and solve items until nothing is waiting. Rules are cheaper so they go first. */
+    public void solve ()
+    {
+        if (current != null)
+        {
+            // Called from inside a solve method. The outer loop will finish the work.
+            return;
+        }
+        while (!ruleQueue.isEmpty () || !queue.isEmpty ())
+        {
+            if (!ruleQueue.isEmpty ())
+            {
+                final Rule rule = ruleQueue.poll ();
+                if (queuedRules.remove (rule))
+                {
+                    rule.fire ();
+                    fireCount++;
+                }
+                continue;
+            }
+            final GeoItem item = queue.poll ();
+            queued.remove (item);
+            // Dependencies are rediscovered on every run since branches may read different items
+            item.clearReads ();
+            current = item;
+            solver = Thread.currentThread ();
+            try
+            {
+                item.solve ();
+                solveCount++;
+            }
+            finally
+            {
+                current = null;
+            }
+        }
+        logger.debug ("Agenda empty after %d solve calls", solveCount);
+    }
+
+    /**
+     * Remove everything waiting, keeping the order it was scheduled in.
+     *
+     * @param items Receives the items waiting to be solved.
+     * @param rules Receives the rules waiting to be fired.
+     */
+    public void drain (List<GeoItem> items, List<Rule> rules)
+    {
+        for (final Rule rule : ruleQueue)
+        {
+            if (queuedRules.remove (rule))
+            {
+                rules.add (rule);
+            }
+        }
+        items.addAll (queue);
+        clear ();
+    }
+
+    /** Add the work done by another agenda to the counts of this one. */
+    public void addCounts (Agenda other)
+    {
+        solveCount += other.solveCount;
+        fireCount += other.fireCount;
+    }
+
+    /** Forget all scheduled items. */
+    public void clear ()
+    {
+        queue.clear ();
+        queued.clear ();
+        ruleQueue.clear ();
+        queuedRules.clear ();
+        current = null;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (queue.size ());
+        buffer.append (" ");
+        buffer.append (queuedRules.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,349 @@
+package com.chriseliot.geo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Solves saved drawings without the gui. Each file is loaded into its own plane and solved on a
+ * worker pool, and the status, value and optionally the derived formula of every variable is
+ * written as json lines or csv. A file that can't be loaded or solved is reported and the rest
+ * are still solved.
+ *
+ * <pre>
+ * BatchSolver [--threads n] [--format json|csv] [--formulas] [--output file] file-or-directory...
+ * </pre>
+ *
+ * Directories are searched for .xml, .xml.gz and .geo files. Results are written in the order the
+ * files are given, as each one finishes. A file that fails gets an error record in json, or a csv
+ * row with no name or status and the cause in the formula column.
+ */
+public class BatchSolver
+{
+    private static final Logger logger = LogManager.getFormatterLogger (BatchSolver.class);
+
+    /** How results are written. */
+    public enum Format
+    {
+        json, csv
+    }
+
+    /** Number of worker threads. */
+    private int threads = Runtime.getRuntime ().availableProcessors ();
+
+    /** How results are written. */
+    private Format format = Format.json;
+
+    /** Should the derived formula of each derived variable be solved. This uses Symja and is slow. */
+    private boolean formulas = false;
+
+    /** Number of files solved by the last run. */
+    private int solvedCount = 0;
+
+    /** Number of files that failed in the last run. */
+    private int failedCount = 0;
+
+    public static void main (String[] args) throws IOException, InterruptedException
+    {
+        final BatchSolver solver = new BatchSolver ();
+        final List<File> inputs = new ArrayList<> ();
+        File output = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            final String arg = args[i];
+            if (arg.equals ("--threads") && i + 1 < args.length)
+            {
+                solver.setThreads (Integer.parseInt (args[++i]));
+            }
+            else if (arg.equals ("--format") && i + 1 < args.length)
+            {
+                solver.setFormat (Format.valueOf (args[++i]));
+            }
+            else if (arg.equals ("--formulas"))
+            {
+                solver.setFormulas (true);
+            }
+            else if (arg.equals ("--output") && i + 1 < args.length)
+            {
+                output = new File (args[++i]);
+            }
+            else if (arg.startsWith ("--"))
+            {
+                usage ();
+            }
+            else
+            {
+                inputs.add (new File (arg));
+            }
+        }
+        if (inputs.isEmpty ())
+        {
+            usage ();
+        }
+        final List<File> files = findFiles (inputs);
+        try (Writer out = new BufferedWriter (output == null ? new OutputStreamWriter (System.out, StandardCharsets.UTF_8)
+                                                             : new OutputStreamWriter (new FileOutputStream (output), StandardCharsets.UTF_8)))
+        {
+            solver.run (files, out);
+        }
+        System.exit (solver.getFailedCount () == 0 ? 0 : 1);
+    }
+
+    private static void usage ()
+    {
+        System.err.println ("Usage: BatchSolver [--threads n] [--format json|csv] [--formulas] [--output file] file-or-directory...");
+        System.exit (2);
+    }
+
+    /** Number of worker threads. */
+    public int getThreads ()
+    {
+        return threads;
+    }
+
+    /** Number of worker threads. */
+    public void setThreads (int threads)
+    {
+        this.threads = Math.max (1, threads);
+    }
+
+    /** How results are written. */
+    public Format getFormat ()
+    {
+        return format;
+    }
+
+    /** How results are written. */
+    public void setFormat (Format format)
+    {
+        this.format = format;
+    }
+
+    /** Should the derived formula of each derived variable be solved. */
+    public boolean isFormulas ()
+    {
+        return formulas;
+    }
+
+    /** Should the derived formula of each derived variable be solved. */
+    public void setFormulas (boolean formulas)
+    {
+        this.formulas = formulas;
+    }
+
+    /** Number of files solved by the last run. */
+    public int getSolvedCount ()
+    {
+        return solvedCount;
+    }
+
+    /** Number of files that failed in the last run. */
+    public int getFailedCount ()
+    {
+        return failedCount;
+    }
+
+    /** Expand directories into the drawings they hold, in name order. */
+    public static List<File> findFiles (List<File> inputs)
+    {
+        final List<File> result = new ArrayList<> ();
+        for (final File input : inputs)
+        {
+            if (input.isDirectory ())
+            {
+                final File[] children = input.listFiles ();
+                if (children != null)
+                {
+                    Arrays.sort (children);
+                    for (final File child : children)
+                    {
+                        if (child.isDirectory () || isDrawing (child))
+                        {
+                            result.addAll (findFiles (Collections.singletonList (child)));
+                        }
+                    }
+                }
+            }
+            else
+            {
+                result.add (input);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDrawing (File file)
+    {
+        final String name = file.getName ();
+        return name.endsWith (".xml") || name.endsWith (".xml.gz") || name.endsWith (PlaneBinary.SUFFIX);
+    }
+
+    /**
+     * Solve the files on a worker pool and write the results.
+     *
+     * @return The number of files that failed.
+     */
+    public int run (List<File> files, Writer out) throws IOException, InterruptedException
+    {
+        final long start = System.nanoTime ();
+        solvedCount = 0;
+        failedCount = 0;
+        if (format == Format.csv)
+        {
+            out.write ("file,name,status,value,formula\n");
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool (threads);
+        try
+        {
+            final List<Future<String>> results = new ArrayList<> ();
+            for (final File file : files)
+            {
+                results.add (executor.submit ( () -> solve (file)));
+            }
+            for (int i = 0; i < files.size (); i++)
+            {
+                try
+                {
+                    out.write (results.get (i).get ());
+                    solvedCount++;
+                }
+                catch (final ExecutionException e)
+                {
+                    failedCount++;
+                    final Throwable cause = e.getCause ();
+                    logger.error ("Can't solve %s", files.get (i), cause);
+                    if (format == Format.json)
+                    {
+                        out.write ("{\"file\":" + quote (files.get (i).getPath ()) + ",\"error\":" + quote (String.valueOf (cause))
+                                   + "}\n");
+                    }
+                    else
+                    {
+                        // No name or status, with the cause in the formula column
+                        out.write (csv (files.get (i).getPath ()) + ",,,," + csv (String.valueOf (cause)) + "\n");
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow ();
+        }
+        out.flush ();
+        final double seconds = (System.nanoTime () - start) / 1e9;
+        logger.info ("Solved %d files, %d failed, in %.2f seconds, %.1f files/sec on %d threads", solvedCount, failedCount,
+                seconds, files.size () / seconds, threads);
+        return failedCount;
+    }
+
+    /** Load and solve one file in a plane of its own, and return its results. */
+    public String solve (File file) throws IOException
+    {
+        final GeoPlane plane = new GeoPlane ();
+        PlaneJournal.loadSnapshot (plane, file);
+        plane.solve ();
+        final StringBuilder buffer = new StringBuilder ();
+        for (final GeoItem item : plane.getItems ())
+        {
+            if (item instanceof NamedVariable)
+            {
+                write (buffer, file, (NamedVariable)item);
+            }
+        }
+        return buffer.toString ();
+    }
+
+    /** Write the result of one variable. */
+    private void write (StringBuilder buffer, File file, NamedVariable variable)
+    {
+        final Double value = variable.getDoubleValue ();
+        final String formula = formulas && variable.getStatus () == GeoStatus.derived ? variable.getDerivedFormula () : null;
+        if (format == Format.json)
+        {
+            buffer.append ("{\"file\":");
+            buffer.append (quote (file.getPath ()));
+            buffer.append (",\"name\":");
+            buffer.append (quote (variable.getName ()));
+            buffer.append (",\"status\":");
+            buffer.append (quote (variable.getStatus ().toString ()));
+            buffer.append (",\"value\":");
+            buffer.append (value == null || value.isNaN () || value.isInfinite () ? "null" : value.toString ());
+            if (formula != null)
+            {
+                buffer.append (",\"formula\":");
+                buffer.append (quote (formula));
+            }
+            buffer.append ("}\n");
+        }
+        else
+        {
+            buffer.append (csv (file.getPath ()));
+            buffer.append (',');
+            buffer.append (csv (variable.getName ()));
+            buffer.append (',');
+            buffer.append (variable.getStatus ());
+            buffer.append (',');
+            buffer.append (value == null ? "" : value.toString ());
+            buffer.append (',');
+            buffer.append (formula == null ? "" : csv (formula));
+            buffer.append ('\n');
+        }
+    }
+
+    /** Quote a string for json. */
+    static String quote (String value)
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ('"');
+        for (int i = 0; i < value.length (); i++)
+        {
+            final char c = value.charAt (i);
+            if (c == '"' || c == '\\')
+            {
+                buffer.append ('\\');
+                buffer.append (c);
+            }
+            else if (c == '\n')
+            {
+                buffer.append ("\\n");
+            }
+            else if (c < ' ')
+            {
+                buffer.append (String.format ("\\u%04x", (int)c));
+            }
+            else
+            {
+                buffer.append (c);
+            }
+        }
+        buffer.append ('"');
+        return buffer.toString ();
+    }
+
+    /** Quote a csv field if it needs it. */
+    static String csv (String value)
+    {
+        if (value.indexOf (',') < 0 && value.indexOf ('"') < 0 && value.indexOf ('\n') < 0)
+        {
+            return value;
+        }
+        return "\"" + value.replace ("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (format);
+        buffer.append (" ");
+        buffer.append (threads);
+        buffer.append (" threads>");
+        return buffer.toString ();
+    }
+}
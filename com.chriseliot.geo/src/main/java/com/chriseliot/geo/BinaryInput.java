@@ -0,0 +1,190 @@
+package com.chriseliot.geo;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads the binary form of a plane from a buffer, which is usually a file mapped into memory. This
+ * is the reverse of BinaryOutput.
+ */
+public class BinaryInput
+{
+    /** The bytes being read. */
+    private final ByteBuffer buffer;
+
+    /** The string table. */
+    private String[] strings = new String[0];
+
+    /** The items in the order they were read. */
+    private final List<GeoItem> items = new ArrayList<> ();
+
+    BinaryInput (ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    /** The items in the order they were read. */
+    List<GeoItem> getItems ()
+    {
+        return items;
+    }
+
+    public int readByte () throws IOException
+    {
+        try
+        {
+            return buffer.get () & 0xff;
+        }
+        catch (final BufferUnderflowException e)
+        {
+            throw new IOException ("Unexpected end of file", e);
+        }
+    }
+
+    public int readInt () throws IOException
+    {
+        try
+        {
+            return buffer.getInt ();
+        }
+        catch (final BufferUnderflowException e)
+        {
+            throw new IOException ("Unexpected end of file", e);
+        }
+    }
+
+    public long readLong () throws IOException
+    {
+        try
+        {
+            return buffer.getLong ();
+        }
+        catch (final BufferUnderflowException e)
+        {
+            throw new IOException ("Unexpected end of file", e);
+        }
+    }
+
+    /** Read a double from its raw IEEE bits. */
+    public double readDouble () throws IOException
+    {
+        try
+        {
+            return buffer.getDouble ();
+        }
+        catch (final BufferUnderflowException e)
+        {
+            throw new IOException ("Unexpected end of file", e);
+        }
+    }
+
+    /** Read a non negative int written in seven bit groups. */
+    public int readVarint () throws IOException
+    {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            final int b = readByte ();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException ("Bad varint at " + buffer.position ());
+    }
+
+    /** Read a string by its index in the string table. */
+    public String readString () throws IOException
+    {
+        final int index = readVarint ();
+        if (index == 0)
+        {
+            return null;
+        }
+        if (index > strings.length)
+        {
+            throw new IOException ("Bad string index " + index);
+        }
+        return strings[index - 1];
+    }
+
+    /** Read the string table. */
+    void readStrings () throws IOException
+    {
+        final int count = readVarint ();
+        strings = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            final int length = readVarint ();
+            if (length > buffer.remaining ())
+            {
+                throw new IOException ("Unexpected end of file");
+            }
+            final byte[] bytes = new byte[length];
+            buffer.get (bytes);
+            strings[i] = new String (bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Read the class name of the next item and check it matches the item that will read it. The
+     * items of a plane are made by the constructors, so the saved children should match the ones
+     * already there.
+     */
+    void expect (GeoItem item) throws IOException
+    {
+        final String type = readString ();
+        if (!item.getClass ().getSimpleName ().equals (type))
+        {
+            throw new IOException ("Expected " + type + " found " + item);
+        }
+    }
+
+    /** Number an item. This is called as each item starts to read itself. */
+    void addItem (GeoItem item)
+    {
+        items.add (item);
+    }
+
+    /**
+     * Read a reference to an item. Returns null for a null reference, or for an item later in the
+     * file which has not been read yet.
+     */
+    public GeoItem readItem () throws IOException
+    {
+        final int index = readVarint ();
+        if (index == 0 || index > items.size ())
+        {
+            return null;
+        }
+        return items.get (index - 1);
+    }
+
+    /** Read a reference to an item that must already have been read. */
+    public <T extends GeoItem> T readItem (Class<T> type) throws IOException
+    {
+        final GeoItem item = readItem ();
+        if (!type.isInstance (item))
+        {
+            throw new IOException ("Expected " + type.getSimpleName () + " found " + item);
+        }
+        return type.cast (item);
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (strings.length);
+        buffer.append (" strings ");
+        buffer.append (items.size ());
+        buffer.append (" items>");
+        return buffer.toString ();
+    }
+}
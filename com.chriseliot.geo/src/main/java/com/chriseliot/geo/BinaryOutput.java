@@ -0,0 +1,212 @@
+package com.chriseliot.geo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes the binary form of a plane. Strings are written as varint indexes into a string table and
+ * items as varint indexes into the order they were written, so each name is stored once.
+ *
+ * The items are written twice. The first pass has no channel and only collects the strings and
+ * numbers the items. Then the string table is written, and the second pass writes the items.
+ */
+public class BinaryOutput
+{
+    /** Size of the buffer between flushes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Bytes are collected here before they are written. */
+    private final ByteBuffer buffer = ByteBuffer.allocate (BUFFER_SIZE);
+
+    /** Where the bytes go, or null while collecting. */
+    private WritableByteChannel channel = null;
+
+    /** Index of each string, in the order first seen. */
+    private final Map<String, Integer> strings = new HashMap<> ();
+
+    /** The strings in index order. */
+    private final List<String> stringTable = new ArrayList<> ();
+
+    /** Index of each item, in the order written. */
+    private final Map<GeoItem, Integer> items = new IdentityHashMap<> ();
+
+    /** The items in index order. */
+    private final List<GeoItem> itemTable = new ArrayList<> ();
+
+    /** Number of bytes written to the channel. */
+    private long size = 0;
+
+    BinaryOutput ()
+    {
+    }
+
+    /** Start writing to a channel. Until this is called, nothing is written. */
+    void setChannel (WritableByteChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    /** The strings in index order. */
+    List<String> getStrings ()
+    {
+        return stringTable;
+    }
+
+    /** The items in the order they were written. */
+    List<GeoItem> getItems ()
+    {
+        return itemTable;
+    }
+
+    /** Number of bytes written to the channel. */
+    public long getSize ()
+    {
+        return size + buffer.position ();
+    }
+
+    /** Make room for some bytes, writing out the buffer if needed. */
+    private void reserve (int bytes) throws IOException
+    {
+        if (buffer.remaining () < bytes)
+        {
+            flush ();
+        }
+    }
+
+    /** Write out the buffer. */
+    void flush () throws IOException
+    {
+        buffer.flip ();
+        if (channel != null)
+        {
+            size += buffer.remaining ();
+            while (buffer.hasRemaining ())
+            {
+                channel.write (buffer);
+            }
+        }
+        buffer.clear ();
+    }
+
+    public void writeByte (int value) throws IOException
+    {
+        reserve (1);
+        buffer.put ((byte)value);
+    }
+
+    public void writeInt (int value) throws IOException
+    {
+        reserve (4);
+        buffer.putInt (value);
+    }
+
+    public void writeLong (long value) throws IOException
+    {
+        reserve (8);
+        buffer.putLong (value);
+    }
+
+    /** Write a double as its raw IEEE bits. */
+    public void writeDouble (double value) throws IOException
+    {
+        reserve (8);
+        buffer.putDouble (value);
+    }
+
+    /** Write a non negative int in seven bit groups, low group first. */
+    public void writeVarint (int value) throws IOException
+    {
+        reserve (5);
+        while ((value & ~0x7f) != 0)
+        {
+            buffer.put ((byte)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put ((byte)value);
+    }
+
+    /** Write a string as its index in the string table. Zero means null. */
+    public void writeString (String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeVarint (0);
+        }
+        else
+        {
+            Integer index = strings.get (value);
+            if (index == null)
+            {
+                index = stringTable.size ();
+                strings.put (value, index);
+                stringTable.add (value);
+            }
+            writeVarint (index + 1);
+        }
+    }
+
+    /** Write a string with its bytes, for the string table itself. */
+    void writeUtf (String value) throws IOException
+    {
+        final byte[] bytes = value.getBytes (StandardCharsets.UTF_8);
+        writeVarint (bytes.length);
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            reserve (1);
+            final int length = Math.min (buffer.remaining (), bytes.length - offset);
+            buffer.put (bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /** Number an item. This is called as each item starts to write itself. */
+    void addItem (GeoItem item)
+    {
+        if (!items.containsKey (item))
+        {
+            items.put (item, itemTable.size ());
+            itemTable.add (item);
+        }
+    }
+
+    /** Write a reference to an item as its index. Zero means null. */
+    public void writeItem (GeoItem item) throws IOException
+    {
+        if (item == null)
+        {
+            writeVarint (0);
+        }
+        else
+        {
+            final Integer index = items.get (item);
+            if (index == null && channel == null)
+            {
+                // Items later in the file are numbered by the end of the first pass
+                writeVarint (0);
+            }
+            else if (index == null)
+            {
+                throw new IOException ("Item " + item.getName () + " is not saved");
+            }
+            writeVarint (index + 1);
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (stringTable.size ());
+        buffer.append (" strings ");
+        buffer.append (itemTable.size ());
+        buffer.append (" items>");
+        return buffer.toString ();
+    }
+}
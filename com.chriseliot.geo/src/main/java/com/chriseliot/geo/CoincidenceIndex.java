@@ -0,0 +1,195 @@
+
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * Groups of named points at exactly the same position. Points are filed by their coordinates in a
+ * hash table, so the points coincident with a point are found directly. When a point joins a
+ * group, it is made equivalent to the points already there, and when it leaves the group those
+ * links are undone. This is done once per move, not on every solve.
+ *
+ * NamedPoint keeps the index up to date as it moves. The key a point was filed under is stored in
+ * the point, so it can be moved or removed even if its position object was changed in place.
+ *
+ * While the plane is in a batch points are only filed. Items being loaded start at the origin
+ * before their saved positions are restored, and linking them there would only be undone again.
+ * The groups are linked when the batch is done.
+ */
+public class CoincidenceIndex
+{
+    private static final List<NamedPoint> NONE = Collections.emptyList ();
+
+    /** Points at each position. */
+    private final Map<Point2D.Double, List<NamedPoint>> groups = new HashMap<> ();
+
+    /** Number of points in the index. */
+    private int size = 0;
+
+    /** Are points filed without linking them. */
+    private boolean deferLinks = false;
+
+    /** Add a point at its current position. */
+    public void add (NamedPoint p)
+    {
+        if (!p.coincident)
+        {
+            p.coincident = true;
+            p.group = null;
+            size++;
+            move (p);
+        }
+    }
+
+    /** Remove a point. */
+    public void remove (NamedPoint p)
+    {
+        if (p.coincident)
+        {
+            unfile (p);
+            p.coincident = false;
+            size--;
+        }
+    }
+
+    /**
+     * File a point under its new position. It is unlinked from the points it leaves and linked to
+     * the points already there.
+     */
+    public void move (NamedPoint p)
+    {
+        if (p.coincident)
+        {
+            final Point2D.Double key = key (p.getPosition ());
+            if (key == null ? p.group != null : !key.equals (p.group))
+            {
+                unfile (p);
+                p.unlink ();
+                p.group = key;
+                if (key != null)
+                {
+                    List<NamedPoint> group = groups.get (key);
+                    if (group == null)
+                    {
+                        group = new ArrayList<> (2);
+                        groups.put (key, group);
+                    }
+                    if (!deferLinks)
+                    {
+                        for (int i = 0; i < group.size (); i++)
+                        {
+                            p.link (group.get (i));
+                        }
+                    }
+                    group.add (p);
+                }
+            }
+        }
+    }
+
+    /** Are points filed without linking them. */
+    public boolean isDeferLinks ()
+    {
+        return deferLinks;
+    }
+
+    /**
+     * File points without linking them. When this is turned off, the points in each group are
+     * linked to each other.
+     */
+    public void setDeferLinks (boolean deferLinks)
+    {
+        if (this.deferLinks && !deferLinks)
+        {
+            for (final List<NamedPoint> group : groups.values ())
+            {
+                for (int i = 1; i < group.size (); i++)
+                {
+                    final NamedPoint p = group.get (i);
+                    for (int j = 0; j < i; j++)
+                    {
+                        p.link (group.get (j));
+                    }
+                }
+            }
+        }
+        this.deferLinks = deferLinks;
+    }
+
+    /** Remove a point from the group it is filed under. */
+    private void unfile (NamedPoint p)
+    {
+        if (p.group != null)
+        {
+            final List<NamedPoint> group = groups.get (p.group);
+            if (group != null)
+            {
+                group.remove (p);
+                if (group.isEmpty ())
+                {
+                    groups.remove (p.group);
+                }
+            }
+            p.group = null;
+        }
+    }
+
+    /** The key for a position. Negative zero is filed with zero since they compare equal. */
+    private static Point2D.Double key (Point2D.Double position)
+    {
+        if (position == null)
+        {
+            return null;
+        }
+        return new Point2D.Double (position.x + 0.0, position.y + 0.0);
+    }
+
+    /** Points at a position, in the order they arrived there. The result must not be modified. */
+    public List<NamedPoint> getGroup (Point2D.Double position)
+    {
+        final Point2D.Double key = key (position);
+        final List<NamedPoint> result = key == null ? null : groups.get (key);
+        return result == null ? NONE : result;
+    }
+
+    /** Points at the same position as a point, including the point. */
+    public List<NamedPoint> getGroup (NamedPoint p)
+    {
+        final List<NamedPoint> result = p.group == null ? null : groups.get (p.group);
+        return result == null ? NONE : result;
+    }
+
+    /** Number of points in the index. */
+    public int size ()
+    {
+        return size;
+    }
+
+    /** Number of distinct positions. */
+    public int groupCount ()
+    {
+        return groups.size ();
+    }
+
+    /** Forget all points. Points are not marked as removed, so only use this with the plane. */
+    public void clear ()
+    {
+        groups.clear ();
+        size = 0;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (size);
+        buffer.append (" ");
+        buffer.append (groups.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
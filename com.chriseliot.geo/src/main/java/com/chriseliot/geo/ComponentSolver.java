@@ -0,0 +1,299 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Solves the connected components of a plane in parallel. Two items are connected when one is the
+ * parent of the other, when they are terms of the same rule, when they are in the same equivalence
+ * class or when one read the other while solving. Lines, vertices and triangles are connected
+ * through their rules and coincident points through the classes of their coordinates, so
+ * components never share mutable state and can be solved on separate threads. Each component gets
+ * its own agenda, seeded with the waiting work in the order it was scheduled, so the result does
+ * not depend on thread timing.
+ */
+public class ComponentSolver
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** The plane being solved. */
+    private final GeoPlane plane;
+
+    /** Pool running the components. */
+    private ForkJoinPool pool = ForkJoinPool.commonPool ();
+
+    /** Less waiting work than this is solved on the calling thread without partitioning. */
+    private int threshold = 64;
+
+    /** Number of solves split into components. */
+    private long parallelCount = 0;
+
+    /** Number of components solved in parallel. */
+    private long componentCount = 0;
+
+    /** Solves the connected components of a plane in parallel. */
+    public ComponentSolver (GeoPlane plane)
+    {
+        this.plane = plane;
+    }
+
+    /** Pool running the components. */
+    public ForkJoinPool getPool ()
+    {
+        return pool;
+    }
+
+    /** Pool running the components. */
+    public void setPool (ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /** Less waiting work than this is solved on the calling thread without partitioning. */
+    public int getThreshold ()
+    {
+        return threshold;
+    }
+
+    /** Less waiting work than this is solved on the calling thread without partitioning. */
+    public void setThreshold (int threshold)
+    {
+        this.threshold = threshold;
+    }
+
+    /** Number of solves split into components. */
+    public long getParallelCount ()
+    {
+        return parallelCount;
+    }
+
+    /** Number of components solved in parallel. */
+    public long getComponentCount ()
+    {
+        return componentCount;
+    }
+
+    /**
+     * Find the connected components of the plane.
+     *
+     * @return The components in the order of their first item. Items in each component are in plane
+     *         order.
+     */
+    public List<List<GeoItem>> partition ()
+    {
+        final List<GeoItem> items = plane.getItems ();
+        final int[] component = label (items, indexItems (items));
+        final List<List<GeoItem>> result = new ArrayList<> ();
+        final Map<Integer, List<GeoItem>> byRoot = new HashMap<> ();
+        for (int i = 0; i < items.size (); i++)
+        {
+            List<GeoItem> members = byRoot.get (component[i]);
+            if (members == null)
+            {
+                members = new ArrayList<> ();
+                byRoot.put (component[i], members);
+                result.add (members);
+            }
+            members.add (items.get (i));
+        }
+        return result;
+    }
+
+    /**
+     * Solve the work waiting in an agenda. The work is split by component and the components are
+     * solved in parallel. The counts of the component agendas are added to the agenda afterwards.
+     */
+    public void solve (Agenda agenda)
+    {
+        if (agenda.size () + agenda.ruleCount () < threshold)
+        {
+            agenda.solve ();
+            return;
+        }
+        final List<GeoItem> items = plane.getItems ();
+        final Map<GeoItem, Integer> index = indexItems (items);
+        final int[] component = label (items, index);
+        final List<GeoItem> waitingItems = new ArrayList<> ();
+        final List<Rule> waitingRules = new ArrayList<> ();
+        agenda.drain (waitingItems, waitingRules);
+
+        // Distribute the work in scheduling order so each component sees it in the same order
+        final Map<Integer, Agenda> agendas = new LinkedHashMap<> ();
+        for (final Rule rule : waitingRules)
+        {
+            getAgenda (agendas, component, index, rule.getOwner ()).add (rule);
+        }
+        for (final GeoItem item : waitingItems)
+        {
+            getAgenda (agendas, component, index, item).add (item);
+        }
+        if (agendas.size () < 2)
+        {
+            // Nothing to run in parallel
+            for (final Rule rule : waitingRules)
+            {
+                agenda.add (rule);
+            }
+            agenda.addAll (waitingItems);
+            agenda.solve ();
+            return;
+        }
+        final List<Callable<Void>> tasks = new ArrayList<> ();
+        for (final Agenda a : agendas.values ())
+        {
+            tasks.add (() -> {
+                plane.solveComponent (a);
+                return null;
+            });
+        }
+        for (final Future<Void> future : pool.invokeAll (tasks))
+        {
+            join (future);
+        }
+        // Merge in component order so the counts do not depend on which finished first
+        for (final Agenda a : agendas.values ())
+        {
+            agenda.addCounts (a);
+        }
+        parallelCount++;
+        componentCount += agendas.size ();
+        logger.debug ("Solved %d components in parallel", agendas.size ());
+    }
+
+    private void join (Future<Void> future)
+    {
+        try
+        {
+            future.get ();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread ().interrupt ();
+            throw new IllegalStateException ("Interrupted while solving", e);
+        }
+        catch (final ExecutionException e)
+        {
+            final Throwable cause = e.getCause ();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException (cause);
+        }
+    }
+
+    /** Find or create the agenda for the component of an item. */
+    private Agenda getAgenda (Map<Integer, Agenda> agendas, int[] component, Map<GeoItem, Integer> index, GeoItem item)
+    {
+        final Integer i = index.get (item);
+        // Items not in the plane any more get a component of their own
+        final int key = i == null ? -1 - agendas.size () : component[i];
+        Agenda result = agendas.get (key);
+        if (result == null)
+        {
+            result = new Agenda (plane.getRuleIndex ());
+            agendas.put (key, result);
+        }
+        return result;
+    }
+
+    private Map<GeoItem, Integer> indexItems (List<GeoItem> items)
+    {
+        final Map<GeoItem, Integer> result = new IdentityHashMap<> ();
+        for (int i = 0; i < items.size (); i++)
+        {
+            result.put (items.get (i), i);
+        }
+        return result;
+    }
+
+    /**
+     * Label each item with the index of the root of its component.
+     *
+     * @return The component root of each item, by position in the plane.
+     */
+    private int[] label (List<GeoItem> items, Map<GeoItem, Integer> index)
+    {
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final int[] parent = new int[items.size ()];
+        for (int i = 0; i < parent.length; i++)
+        {
+            parent[i] = i;
+        }
+        for (int i = 0; i < parent.length; i++)
+        {
+            final GeoItem item = items.get (i);
+            union (parent, index, i, item.getParent ());
+            union (parent, index, i, classes.find (item));
+            for (final Rule rule : item.getRules ())
+            {
+                for (final GeoItem term : rule.getTerms ())
+                {
+                    union (parent, index, i, term);
+                }
+            }
+            final Set<GeoItem> readers = item.getReaders ();
+            if (readers != null)
+            {
+                for (final GeoItem reader : readers)
+                {
+                    union (parent, index, i, reader);
+                }
+            }
+        }
+        for (int i = 0; i < parent.length; i++)
+        {
+            parent[i] = find (parent, i);
+        }
+        return parent;
+    }
+
+    private void union (int[] parent, Map<GeoItem, Integer> index, int i, GeoItem other)
+    {
+        if (other != null)
+        {
+            final Integer j = index.get (other);
+            if (j != null)
+            {
+                final int a = find (parent, i);
+                final int b = find (parent, j);
+                if (a != b)
+                {
+                    // Keep the lowest index as root so labels follow plane order
+                    parent[Math.max (a, b)] = Math.min (a, b);
+                }
+            }
+        }
+    }
+
+    private int find (int[] parent, int i)
+    {
+        while (parent[i] != i)
+        {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (parallelCount);
+        buffer.append (" ");
+        buffer.append (componentCount);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,28 @@
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Notified of the edits made to a plane, before each edit is done. Only edits made by the user are
+ * reported. The vertices, triangles and derived statuses that follow from them are not.
+ */
+public interface EditListener
+{
+    /**
+     * An item was added to the plane. This is called from the item constructor, before the fields
+     * of a subclass are set, so the item should not be examined until later.
+     */
+    void itemAdded (GeoItem item);
+
+    /** An item is about to be removed from the plane. This is also called for the items removed with it. */
+    void itemRemoved (GeoItem item);
+
+    /** The points at one position are about to be dragged to another. */
+    void dragged (Point2D.Double from, Point2D.Double to);
+
+    /** An item is about to be given a new name. */
+    void itemRenamed (GeoItem item, String name);
+
+    /** The user is about to set the status of an item. */
+    void statusGiven (GeoItem item, GeoStatus status);
+}
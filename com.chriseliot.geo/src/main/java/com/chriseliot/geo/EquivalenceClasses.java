@@ -0,0 +1,379 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classes of items that always have the same value, like the coordinates of coincident points.
+ * The classes are a union find forest, so joining two classes and finding the class of an item take
+ * nearly constant time. When a member of a class becomes determined, every other member is derived
+ * from it directly, so a class of n items needs n - 1 derivations instead of rules between every
+ * pair, and no derivation chain is longer than one step.
+ *
+ * GeoItem.setStatus reports status changes here. When the member a class was derived from is
+ * retracted, the class is derived again from another determined member on the next solve.
+ *
+ * A class is split by taking one member out with unlink, which rebuilds the class from the members
+ * that remain. The structure is only changed between solves, so threads of the parallel solver can
+ * each propagate the classes of their own component.
+ */
+public class EquivalenceClasses
+{
+    private static final List<GeoItem> NONE = Collections.emptyList ();
+
+    /** One class, kept by its root. */
+    private static final class Group
+    {
+        /** Reason recorded for derivations within the class. */
+        private final String reason;
+
+        /** Items of the class still in the plane. */
+        private final List<GeoItem> members = new ArrayList<> (4);
+
+        /**
+         * Every item joined to the class, including removed ones. Used to balance the forest and to
+         * take it apart.
+         */
+        private final List<GeoItem> nodes = new ArrayList<> (4);
+
+        /** The member the others were derived from. */
+        private GeoItem source;
+
+        /** Set while deriving members, so their status changes are ignored. */
+        private boolean propagating = false;
+
+        Group (String reason)
+        {
+            this.reason = reason;
+        }
+    }
+
+    /** Parent of each item that is not a root. */
+    private final Map<GeoItem, GeoItem> parent = new IdentityHashMap<> ();
+
+    /** Class of each root. */
+    private final Map<GeoItem, Group> groups = new IdentityHashMap<> ();
+
+    /** Roots of the classes that lost their source. */
+    private final Set<GeoItem> pending = Collections.newSetFromMap (new IdentityHashMap<> ());
+
+    /** Number of derivations made. */
+    private final AtomicLong propagateCount = new AtomicLong ();
+
+    /**
+     * Put two items in the same class. The members are derived from a determined member on the
+     * next solve.
+     *
+     * @param reason Reason recorded for the derivations.
+     */
+    public void union (String reason, GeoItem a, GeoItem b)
+    {
+        final GeoItem ra = compress (a);
+        final GeoItem rb = compress (b);
+        if (ra != rb)
+        {
+            final Group ga = group (reason, ra);
+            final Group gb = group (reason, rb);
+            // Hang the smaller tree under the larger one
+            final boolean swap = ga.nodes.size () < gb.nodes.size ();
+            final GeoItem root = swap ? rb : ra;
+            final GeoItem child = swap ? ra : rb;
+            final Group keep = swap ? gb : ga;
+            final Group gone = swap ? ga : gb;
+            parent.put (child, root);
+            groups.remove (child);
+            keep.members.addAll (gone.members);
+            keep.nodes.addAll (gone.nodes);
+            if (keep.source == null)
+            {
+                keep.source = gone.source;
+            }
+            synchronized (pending)
+            {
+                pending.remove (child);
+                pending.add (root);
+            }
+        }
+    }
+
+    /** The class of a root, created if the root is not in a class yet. */
+    private Group group (String reason, GeoItem root)
+    {
+        Group result = groups.get (root);
+        if (result == null)
+        {
+            result = new Group (reason);
+            result.members.add (root);
+            result.nodes.add (root);
+            groups.put (root, result);
+        }
+        return result;
+    }
+
+    /** Find the root of an item and point every item on the way straight at it. */
+    private GeoItem compress (GeoItem item)
+    {
+        final GeoItem root = find (item);
+        while (item != root)
+        {
+            final GeoItem next = parent.put (item, root);
+            item = next;
+        }
+        return root;
+    }
+
+    /** The root of the class of an item, which is the item itself if it is not in a class. */
+    public GeoItem find (GeoItem item)
+    {
+        GeoItem next = parent.get (item);
+        while (next != null)
+        {
+            item = next;
+            next = parent.get (item);
+        }
+        return item;
+    }
+
+    /** Are two items in the same class. */
+    public boolean isEquivalent (GeoItem a, GeoItem b)
+    {
+        return a == b || find (a) == find (b);
+    }
+
+    /** Members of the class of an item. The result must not be modified. */
+    public List<GeoItem> getMembers (GeoItem item)
+    {
+        final Group group = groups.get (find (item));
+        return group == null ? NONE : group.members;
+    }
+
+    /** The member the class of an item was derived from, or null. */
+    public GeoItem getSource (GeoItem item)
+    {
+        final Group group = groups.get (find (item));
+        return group == null ? null : group.source;
+    }
+
+    /** Derive the rest of the class of an item that just became determined. */
+    void determined (GeoItem item)
+    {
+        final Group group = groups.get (find (item));
+        if (group != null && !group.propagating)
+        {
+            final GeoItem source = group.source;
+            if (source == null || source == item || !source.isDetermined ())
+            {
+                group.source = item;
+            }
+            propagate (group);
+        }
+    }
+
+    /**
+     * Note that an item stopped being determined. It is derived again from its class on the next
+     * solve, and if it was the source the class is derived from another determined member.
+     */
+    void undetermined (GeoItem item)
+    {
+        final GeoItem root = find (item);
+        final Group group = groups.get (root);
+        if (group != null && !group.propagating)
+        {
+            if (group.source == item)
+            {
+                group.source = null;
+            }
+            synchronized (pending)
+            {
+                pending.add (root);
+            }
+        }
+    }
+
+    /** Derive the classes that changed since the last solve from one of their determined members. */
+    public void flush ()
+    {
+        while (true)
+        {
+            final GeoItem root;
+            synchronized (pending)
+            {
+                final Iterator<GeoItem> i = pending.iterator ();
+                if (!i.hasNext ())
+                {
+                    return;
+                }
+                root = i.next ();
+                i.remove ();
+            }
+            final Group group = groups.get (root);
+            if (group != null && !group.propagating)
+            {
+                if (group.source == null || !group.source.isDetermined ())
+                {
+                    group.source = null;
+                    for (final GeoItem m : group.members)
+                    {
+                        if (m.isDetermined ())
+                        {
+                            group.source = m;
+                            break;
+                        }
+                    }
+                }
+                propagate (group);
+            }
+        }
+    }
+
+    /** Derive every undetermined member of a class from its source. */
+    private void propagate (Group group)
+    {
+        final GeoItem source = group.source;
+        if (source != null)
+        {
+            group.propagating = true;
+            try
+            {
+                final List<GeoItem> members = group.members;
+                for (int i = 0; i < members.size (); i++)
+                {
+                    final GeoItem m = members.get (i);
+                    if (m != source && !m.isDetermined ())
+                    {
+                        m.setFormula (group.reason, "%s == %s", m, source);
+                        propagateCount.incrementAndGet ();
+                    }
+                }
+            }
+            finally
+            {
+                group.propagating = false;
+            }
+        }
+    }
+
+    /** Take an item out of its class. The rest of the class stays together. */
+    public void remove (GeoItem item)
+    {
+        final GeoItem root = find (item);
+        final Group group = groups.get (root);
+        if (group != null && group.members.remove (item))
+        {
+            if (group.source == item)
+            {
+                group.source = null;
+            }
+            if (group.members.isEmpty ())
+            {
+                groups.remove (root);
+                synchronized (pending)
+                {
+                    pending.remove (root);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take an item out of its class because it is no longer equivalent to the rest, like the
+     * coordinate of a point that moved away. The class is rebuilt from the members that remain,
+     * which are still equivalent to each other. Derivations recorded between the item and the rest
+     * are forgotten, so they are not used to restore anything later.
+     *
+     * @return The members whose support was such a derivation. The caller should retract them.
+     */
+    public List<GeoItem> unlink (GeoItem item)
+    {
+        final GeoItem root = find (item);
+        final Group group = groups.get (root);
+        if (group == null || !group.members.contains (item))
+        {
+            return NONE;
+        }
+        for (final GeoItem node : group.nodes)
+        {
+            parent.remove (node);
+        }
+        groups.remove (root);
+        synchronized (pending)
+        {
+            pending.remove (root);
+        }
+        final List<GeoItem> result = new ArrayList<> ();
+        for (final GeoItem m : group.members)
+        {
+            final Inference support = m.getSupport ();
+            if (support != null && crosses (group.reason, support, item))
+            {
+                result.add (m);
+            }
+            m.getInferences ().removeIf (inference -> crosses (group.reason, inference, item));
+        }
+        GeoItem first = null;
+        for (final GeoItem m : group.members)
+        {
+            if (m == item)
+            {
+                continue;
+            }
+            if (first == null)
+            {
+                first = m;
+            }
+            else
+            {
+                union (group.reason, first, m);
+            }
+        }
+        final Group rest = first == null ? null : groups.get (find (first));
+        if (rest != null && group.source != item)
+        {
+            rest.source = group.source;
+        }
+        return result;
+    }
+
+    /** Is an inference a derivation of a class between an item and another member. */
+    private boolean crosses (String reason, Inference inference, GeoItem item)
+    {
+        final GeoItem[] terms = inference.getTerms ();
+        return terms.length == 2 && (terms[0] == item) != (terms[1] == item) && reason.equals (inference.getReason ());
+    }
+
+    /** Number of classes. */
+    public int size ()
+    {
+        return groups.size ();
+    }
+
+    /** Number of members derived from the source of their class. */
+    public long getPropagateCount ()
+    {
+        return propagateCount.get ();
+    }
+
+    /** Forget all classes. */
+    public void clear ()
+    {
+        parent.clear ();
+        groups.clear ();
+        synchronized (pending)
+        {
+            pending.clear ();
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (groups.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,64 @@
+
+package com.chriseliot.geo;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.matheclipse.core.eval.ExprEvaluator;
+
+/**
+ * Reusable Symja evaluators. Creating an ExprEvaluator sets up a whole engine, so each thread keeps
+ * the evaluators it has used and the variable bindings are cleared when one is released. An
+ * evaluator must only be used by the thread that acquired it. Nested acquires on one thread get
+ * separate evaluators.
+ */
+public class EvaluatorPool
+{
+    /** Evaluators released by each thread, ready for reuse. */
+    private static final ThreadLocal<ArrayDeque<ExprEvaluator>> free = ThreadLocal.withInitial (ArrayDeque::new);
+
+    /** Number of evaluators created by all threads. */
+    private static final AtomicLong createCount = new AtomicLong ();
+
+    /** Number of acquire calls by all threads. */
+    private static final AtomicLong acquireCount = new AtomicLong ();
+
+    private EvaluatorPool ()
+    {
+    }
+
+    /**
+     * Get an evaluator with no variables defined. Pass it to release when done, usually in a finally
+     * block.
+     */
+    public static ExprEvaluator acquire ()
+    {
+        acquireCount.incrementAndGet ();
+        final ExprEvaluator result = free.get ().poll ();
+        if (result != null)
+        {
+            return result;
+        }
+        createCount.incrementAndGet ();
+        return new ExprEvaluator ();
+    }
+
+    /** Clear the variables of an evaluator and keep it for reuse by this thread. */
+    public static void release (ExprEvaluator eval)
+    {
+        eval.clearVariables ();
+        free.get ().push (eval);
+    }
+
+    /** Number of evaluators created by all threads. */
+    public static long getCreateCount ()
+    {
+        return createCount.get ();
+    }
+
+    /** Number of acquire calls by all threads. */
+    public static long getAcquireCount ()
+    {
+        return acquireCount.get ();
+    }
+}
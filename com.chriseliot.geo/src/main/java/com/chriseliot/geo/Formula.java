@@ -0,0 +1,17 @@
+
+package com.chriseliot.geo;
+
+/**
+ * A rule formula compiled to Java by the FormulaCompiler. Evaluating it does not use Symja.
+ */
+@FunctionalInterface
+public interface Formula
+{
+    /**
+     * Compute the value of the formula.
+     *
+     * @param args The values of the terms in template order. A variable has one value and a point
+     *            has its x and y values.
+     */
+    double evaluate (double[][] args);
+}
@@ -0,0 +1,429 @@
+
+package com.chriseliot.geo;
+
+import static java.lang.Math.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Compiles rule templates into Java lambdas, so numeric checks do not need a Symja engine. The
+ * templates use a small part of the Symja language:
+ *
+ * <ul>
+ * <li>numbers, %s terms and the operators + - * / ^ with parentheses</li>
+ * <li>sqrt, sin, cos, tan, ArcSin, ArcCos, ArcTan (one or two arguments) and Abs, in any case</li>
+ * <li>the constants Degree, Pi and E</li>
+ * <li>indexing a point term with [[1]] or [[2]]</li>
+ * <li>Block({name=expression, ...}, Return(expression))</li>
+ * </ul>
+ *
+ * Anything else, like a list result, is not compiled and the caller should fall back to Symja.
+ * Compiled formulas are cached by template and may be shared between threads.
+ */
+public class FormulaCompiler
+{
+    private static Logger logger = LogManager.getFormatterLogger (FormulaCompiler.class);
+
+    /** Marks a template that can't be compiled, since the cache can't hold null. */
+    private static final Formula UNSUPPORTED = args -> Double.NaN;
+
+    /** Compiled formulas by template. */
+    private static final Map<String, Formula> cache = new ConcurrentHashMap<> ();
+
+    /** The template being compiled. */
+    private final String template;
+
+    /** Position of the next character. */
+    private int pos = 0;
+
+    /** Number of %s terms seen so far. */
+    private int slot = 0;
+
+    /** Names bound by the enclosing Block expressions. */
+    private final Map<String, Formula> locals = new HashMap<> ();
+
+    private FormulaCompiler (String template)
+    {
+        this.template = template;
+    }
+
+    /**
+     * Compile the right hand side of a rule template.
+     *
+     * @param template A template like "%s == sqrt(%s^2 + %s^2)". The owner is term 0.
+     *
+     * @return The compiled formula, or null if the template uses anything this compiler does not
+     *         handle.
+     */
+    public static Formula compile (String template)
+    {
+        final Formula result = cache.computeIfAbsent (template, FormulaCompiler::compileTemplate);
+        return result == UNSUPPORTED ? null : result;
+    }
+
+    /** Forget all compiled formulas. */
+    public static void clearCache ()
+    {
+        cache.clear ();
+    }
+
+    private static Formula compileTemplate (String template)
+    {
+        try
+        {
+            final FormulaCompiler compiler = new FormulaCompiler (template);
+            return compiler.parseRule ();
+        }
+        catch (final IllegalArgumentException e)
+        {
+            logger.debug ("Using Symja for %s: %s", template, e.getMessage ());
+            return UNSUPPORTED;
+        }
+    }
+
+    /** rule := term '==' expression */
+    private Formula parseRule ()
+    {
+        skipSpace ();
+        if (!template.startsWith ("%s", pos))
+        {
+            throw error ("Rule must start with a term");
+        }
+        pos += 2;
+        slot++;
+        expect ("==");
+        final Formula result = parseExpression ();
+        skipSpace ();
+        if (pos < template.length ())
+        {
+            throw error ("Unexpected text");
+        }
+        return result;
+    }
+
+    /** expression := product (('+' | '-') product)* */
+    private Formula parseExpression ()
+    {
+        Formula result = parseProduct ();
+        while (true)
+        {
+            if (accept ('+'))
+            {
+                final Formula a = result;
+                final Formula b = parseProduct ();
+                result = args -> a.evaluate (args) + b.evaluate (args);
+            }
+            else if (accept ('-'))
+            {
+                final Formula a = result;
+                final Formula b = parseProduct ();
+                result = args -> a.evaluate (args) - b.evaluate (args);
+            }
+            else
+            {
+                return result;
+            }
+        }
+    }
+
+    /** product := unary (('*' | '/') unary)* */
+    private Formula parseProduct ()
+    {
+        Formula result = parseUnary ();
+        while (true)
+        {
+            if (accept ('*'))
+            {
+                final Formula a = result;
+                final Formula b = parseUnary ();
+                result = args -> a.evaluate (args) * b.evaluate (args);
+            }
+            else if (accept ('/'))
+            {
+                final Formula a = result;
+                final Formula b = parseUnary ();
+                result = args -> a.evaluate (args) / b.evaluate (args);
+            }
+            else
+            {
+                return result;
+            }
+        }
+    }
+
+    /** unary := '-' unary | power */
+    private Formula parseUnary ()
+    {
+        if (accept ('-'))
+        {
+            final Formula a = parseUnary ();
+            return args -> -a.evaluate (args);
+        }
+        return parsePower ();
+    }
+
+    /** power := postfix ('^' unary)?, right associative */
+    private Formula parsePower ()
+    {
+        final Formula a = parsePostfix ();
+        if (accept ('^'))
+        {
+            final Formula b = parseUnary ();
+            return args -> pow (a.evaluate (args), b.evaluate (args));
+        }
+        return a;
+    }
+
+    /** postfix := primary ('[[' integer ']]')? where primary is a point term */
+    private Formula parsePostfix ()
+    {
+        skipSpace ();
+        if (template.startsWith ("%s", pos))
+        {
+            pos += 2;
+            final int index = slot++;
+            skipSpace ();
+            if (template.startsWith ("[[", pos))
+            {
+                pos += 2;
+                final int component = parseInteger () - 1;
+                expect ("]]");
+                if (component < 0 || component > 1)
+                {
+                    throw error ("Bad point index");
+                }
+                return args -> args[index][component];
+            }
+            return args -> args[index][0];
+        }
+        return parsePrimary ();
+    }
+
+    /** primary := number | '(' expression ')' | name | name '(' arguments ')' */
+    private Formula parsePrimary ()
+    {
+        skipSpace ();
+        if (pos >= template.length ())
+        {
+            throw error ("Unexpected end");
+        }
+        final char ch = template.charAt (pos);
+        if (Character.isDigit (ch) || ch == '.')
+        {
+            final double value = parseNumber ();
+            return args -> value;
+        }
+        if (accept ('('))
+        {
+            final Formula result = parseExpression ();
+            expect (")");
+            return result;
+        }
+        if (Character.isLetter (ch) || ch == '$')
+        {
+            final String name = parseName ();
+            skipSpace ();
+            if (pos < template.length () && template.charAt (pos) == '(')
+            {
+                return parseCall (name);
+            }
+            return parseSymbol (name);
+        }
+        throw error ("Unexpected character");
+    }
+
+    /** A constant or a name bound by Block. */
+    private Formula parseSymbol (String name)
+    {
+        final Formula local = locals.get (name);
+        if (local != null)
+        {
+            return local;
+        }
+        switch (name.toLowerCase ())
+        {
+            case "degree":
+                return args -> PI / 180;
+            case "pi":
+                return args -> PI;
+            case "e":
+                return args -> E;
+            default:
+                throw error ("Unknown symbol " + name);
+        }
+    }
+
+    /** A function call. The opening parenthesis is next. */
+    private Formula parseCall (String name)
+    {
+        final String function = name.toLowerCase ();
+        if (function.equals ("block"))
+        {
+            return parseBlock ();
+        }
+        expect ("(");
+        final List<Formula> arguments = new ArrayList<> ();
+        arguments.add (parseExpression ());
+        while (accept (','))
+        {
+            arguments.add (parseExpression ());
+        }
+        expect (")");
+        final Formula a = arguments.get (0);
+        if (arguments.size () == 1)
+        {
+            switch (function)
+            {
+                case "sqrt":
+                    return args -> sqrt (a.evaluate (args));
+                case "sin":
+                    return args -> sin (a.evaluate (args));
+                case "cos":
+                    return args -> cos (a.evaluate (args));
+                case "tan":
+                    return args -> tan (a.evaluate (args));
+                case "arcsin":
+                    return args -> asin (a.evaluate (args));
+                case "arccos":
+                    return args -> acos (a.evaluate (args));
+                case "arctan":
+                    return args -> atan (a.evaluate (args));
+                case "abs":
+                    return args -> abs (a.evaluate (args));
+                default:
+                    break;
+            }
+        }
+        else if (arguments.size () == 2 && function.equals ("arctan"))
+        {
+            // Symja ArcTan(x, y) is the angle of the point (x, y)
+            final Formula b = arguments.get (1);
+            return args -> atan2 (b.evaluate (args), a.evaluate (args));
+        }
+        throw error ("Unknown function " + name + " of " + arguments.size () + " arguments");
+    }
+
+    /** Block({name=expression, ...}, Return(expression)). The local names are inlined. */
+    private Formula parseBlock ()
+    {
+        expect ("(");
+        expect ("{");
+        final Map<String, Formula> saved = new HashMap<> (locals);
+        // Initial values are evaluated outside the block
+        final Map<String, Formula> bindings = new HashMap<> ();
+        do
+        {
+            skipSpace ();
+            final String name = parseName ();
+            expect ("=");
+            bindings.put (name, parseExpression ());
+        }
+        while (accept (','));
+        expect ("}");
+        expect (",");
+        locals.putAll (bindings);
+        skipSpace ();
+        final String ret = parseName ();
+        if (!ret.equals ("Return"))
+        {
+            throw error ("Block must return a value");
+        }
+        expect ("(");
+        final Formula result = parseExpression ();
+        expect (")");
+        expect (")");
+        locals.clear ();
+        locals.putAll (saved);
+        return result;
+    }
+
+    private String parseName ()
+    {
+        final int start = pos;
+        while (pos < template.length ())
+        {
+            final char ch = template.charAt (pos);
+            if (!Character.isLetterOrDigit (ch) && ch != '$')
+            {
+                break;
+            }
+            pos++;
+        }
+        if (start == pos)
+        {
+            throw error ("Name expected");
+        }
+        return template.substring (start, pos);
+    }
+
+    private double parseNumber ()
+    {
+        final int start = pos;
+        while (pos < template.length () && (Character.isDigit (template.charAt (pos)) || template.charAt (pos) == '.'))
+        {
+            pos++;
+        }
+        try
+        {
+            return Double.parseDouble (template.substring (start, pos));
+        }
+        catch (final NumberFormatException e)
+        {
+            throw error ("Bad number");
+        }
+    }
+
+    private int parseInteger ()
+    {
+        skipSpace ();
+        final int start = pos;
+        while (pos < template.length () && Character.isDigit (template.charAt (pos)))
+        {
+            pos++;
+        }
+        if (start == pos)
+        {
+            throw error ("Integer expected");
+        }
+        return Integer.parseInt (template.substring (start, pos));
+    }
+
+    private void skipSpace ()
+    {
+        while (pos < template.length () && Character.isWhitespace (template.charAt (pos)))
+        {
+            pos++;
+        }
+    }
+
+    /** Skip a character if it is next. */
+    private boolean accept (char ch)
+    {
+        skipSpace ();
+        if (pos < template.length () && template.charAt (pos) == ch)
+        {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Skip text that must be next. */
+    private void expect (String text)
+    {
+        skipSpace ();
+        if (!template.startsWith (text, pos))
+        {
+            throw error ("Expected " + text);
+        }
+        pos += text.length ();
+    }
+
+    private IllegalArgumentException error (String message)
+    {
+        return new IllegalArgumentException (String.format ("%s at %d in %s", message, pos, template));
+    }
+}
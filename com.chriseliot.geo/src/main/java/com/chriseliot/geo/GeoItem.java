@@ -3,9 +3,12 @@ package com.chriseliot.geo;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.function.*;
+
+import javax.xml.stream.*;
 
 import org.apache.logging.log4j.*;
 import org.matheclipse.core.eval.ExprEvaluator;
@@ -25,15 +28,15 @@ public class GeoItem
     /** Separator between parts of a name. */
     public static char SEP = '$';
 
-    /** Support for generating unique names. */
-    private static Namer namer = new Namer ();
-
     /** The geometry plane. */
     private final GeoPlane plane;
 
     /** Display name. */
     private String name;
 
+    /** Number of this item in its plane. Unlike the name it never changes. */
+    private final int id;
+
     /** Parent item of this item. */
     private final GeoItem parent;
 
@@ -63,12 +66,28 @@ public class GeoItem
      */
     private final List<Inference> inferences = new ArrayList<> ();
 
+    /** Inference rules declared by this item, in the order they are fired. */
+    private final List<Rule> rules = new ArrayList<> ();
+
+    /** Items whose status or value was read the last time this item was solved. */
+    private Set<GeoItem> reads = null;
+
+    /** Items that read this item the last time they were solved. */
+    private Set<GeoItem> readers = null;
+
+    /** The inference justifying the derived status of this item, or null. */
+    private Inference support = null;
+
+    /** Derived items whose support uses this item as a term. */
+    private Set<GeoItem> dependents = null;
+
     /** Make a toplevel item (with no parent). */
     public GeoItem (GeoPlane plane, String nameRoot, Color color)
     {
         this.plane = plane;
         parent = null;
-        name = namer.getname (nameRoot);
+        id = plane.getNamer ().nextId ();
+        name = plane.getNamer ().getname (nameRoot);
         this.color = color;
         plane.addItem (this);
         addCategory ("detail");
@@ -80,6 +99,7 @@ public class GeoItem
         plane = parent.getPlane ();
         this.parent = parent;
         this.parent.addChild (this);
+        id = plane.getNamer ().nextId ();
         this.name = name;
         this.color = color;
         plane.addItem (this);
@@ -92,6 +112,12 @@ public class GeoItem
         return plane;
     }
 
+    /** Number of this item in its plane. Unlike the name it never changes. */
+    public int getId ()
+    {
+        return id;
+    }
+
     /** Display name. */
     public String getName ()
     {
@@ -101,7 +127,11 @@ public class GeoItem
     /** Display name. */
     public void setName (String name)
     {
-        this.name = name;
+        if (!name.equals (this.name))
+        {
+            this.name = name;
+            plane.getRuleIndex ().renamed (this);
+        }
     }
 
     public static List<String> getNames (Collection<GeoItem> items)
@@ -217,6 +247,10 @@ public class GeoItem
     /** Return the current status of this item. */
     public GeoStatus getStatus ()
     {
+        if (plane.isRecording ())
+        {
+            plane.read (this);
+        }
         return status;
     }
 
@@ -225,15 +259,35 @@ public class GeoItem
     {
         if (this.status != status)
         {
+            final boolean determined = status.isDetermined ();
+            final boolean changed = determined != this.status.isDetermined ();
             this.status = status;
             this.reason = reason;
-            plane.setDirty ();
+            if (status != GeoStatus.derived)
+            {
+                setSupport (null);
+            }
+            if (changed)
+            {
+                plane.getRuleIndex ().update (this, determined);
+            }
+            plane.setDirty (this);
+            if (changed && !determined)
+            {
+                plane.getTruthMaintenance ().retract (this);
+                plane.getEquivalenceClasses ().undetermined (this);
+            }
+            else if (changed)
+            {
+                plane.getEquivalenceClasses ().determined (this);
+            }
         }
     }
 
     /** Set the current status of this item. */
     public void setGivenStatus (GeoStatus status)
     {
+        plane.fireStatusGiven (this, status);
         setStatus (status, "given");
         plane.solve ();
         plane.fireChangeListeners (this);
@@ -248,18 +302,127 @@ public class GeoItem
     /** Is this value known. */
     public boolean isDetermined ()
     {
+        if (plane.isRecording ())
+        {
+            plane.read (this);
+        }
         return status.isDetermined ();
     }
 
+    /** Is this value known, without recording a read. Rules track their terms themselves. */
+    boolean peekDetermined ()
+    {
+        return status.isDetermined ();
+    }
+
+    /** Record that this item read another item while solving. */
+    void addRead (GeoItem item)
+    {
+        if (reads == null)
+        {
+            reads = new HashSet<> ();
+        }
+        if (reads.add (item))
+        {
+            if (item.readers == null)
+            {
+                item.readers = new HashSet<> ();
+            }
+            item.readers.add (this);
+        }
+    }
+
+    /** Items read the last time this item was solved. */
+    Set<GeoItem> getReads ()
+    {
+        return reads;
+    }
+
+    /** Items that read this item the last time they were solved. */
+    Set<GeoItem> getReaders ()
+    {
+        return readers;
+    }
+
+    /** Forget the items read by the last solve of this item. */
+    void clearReads ()
+    {
+        if (reads != null)
+        {
+            for (final GeoItem item : reads)
+            {
+                item.readers.remove (this);
+            }
+            reads.clear ();
+        }
+    }
+
     /** The reason this item was given this status. */
     public String getReason ()
     {
         return reason;
     }
 
-    /** Represents one derivation step. */
+    /** All inferences recorded for this item, including ones that no longer apply. */
+    public List<Inference> getInferences ()
+    {
+        return inferences;
+    }
+
+    /** The inference justifying the derived status of this item, or null. */
+    public Inference getSupport ()
+    {
+        return support;
+    }
+
+    /**
+     * Record the inference justifying the derived status of this item. The item is registered as a
+     * dependent of the terms of the inference so it can be retracted when one of them is.
+     */
+    void setSupport (Inference inference)
+    {
+        if (support != inference)
+        {
+            if (support != null)
+            {
+                final GeoItem[] terms = support.getTerms ();
+                for (int i = 1; i < terms.length; i++)
+                {
+                    if (terms[i].dependents != null)
+                    {
+                        terms[i].dependents.remove (this);
+                    }
+                }
+            }
+            support = inference;
+            if (inference != null)
+            {
+                final GeoItem[] terms = inference.getTerms ();
+                for (int i = 1; i < terms.length; i++)
+                {
+                    if (terms[i].dependents == null)
+                    {
+                        terms[i].dependents = new HashSet<> ();
+                    }
+                    terms[i].dependents.add (this);
+                }
+            }
+        }
+    }
+
+    /** Derived items whose support uses this item, or null. */
+    Set<GeoItem> getDependents ()
+    {
+        return dependents;
+    }
+
+    /** Represents one derivation step. The support is preferred since it is well founded. */
     public Inference getInference ()
     {
+        if (support != null)
+        {
+            return support;
+        }
         for (final Inference inference : inferences)
         {
             if (inference.isDetermined ())
@@ -282,20 +445,81 @@ public class GeoItem
     {
         final GeoItem[] terms = new GeoItem[variables.length];
         System.arraycopy (variables, 0, terms, 0, variables.length);
-        Inference.verifyInference (reason, formulaExpression, terms);
         final GeoItem owner = terms[0];
-        if (!owner.isDetermined ())
+        boolean ready = !owner.isDetermined ();
+        for (int i = 1; ready && i < terms.length; i++)
         {
-            for (int i = 1; i < terms.length; i++)
-            {
-                if (!terms[i].isDetermined ())
-                {
-                    // Can't make this inference at this time.
-                    return;
-                }
-            }
-            inferences.add (new Inference (this, reason, formulaExpression, terms));
+            // Can't make this inference unless all terms are known.
+            ready = terms[i].isDetermined ();
+        }
+        plane.getVerificationPolicy ().verify (reason, formulaExpression, terms, ready);
+        if (ready)
+        {
+            final Inference inference = new Inference (this, reason, formulaExpression, terms);
+            inferences.add (inference);
             setStatus (GeoStatus.derived, reason);
+            setSupport (inference);
+        }
+    }
+
+    /**
+     * Record a derivation by a rule whose terms are ready. This is called by Rule.fire, which has
+     * already checked the owner and terms.
+     */
+    void derive (Rule rule)
+    {
+        plane.getVerificationPolicy ().verify (rule.getReason (), rule.getFormula (), rule.getTerms (), true);
+        final Inference inference = new Inference (this, rule);
+        inferences.add (inference);
+        setStatus (GeoStatus.derived, rule.getReason ());
+        setSupport (inference);
+    }
+
+    /**
+     * Declare an inference rule. The rule is registered with the plane so the items it reads know
+     * about it. The rule is fired by the solve method of this item.
+     *
+     * @param reason A string giving the reason for this derivation.
+     * @param formulaExpression A Java format template to create the derivation formula.
+     * @param variables Variables to substitute into the template. The first is the owner.
+     *
+     * @return The new rule.
+     */
+    public Rule addRule (String reason, String formulaExpression, GeoItem... variables)
+    {
+        return addRule (null, reason, formulaExpression, variables);
+    }
+
+    /**
+     * Declare an inference rule that only applies when a numeric condition holds.
+     *
+     * @param guard Condition on the values of the variables, may be null.
+     * @param reason A string giving the reason for this derivation.
+     * @param formulaExpression A Java format template to create the derivation formula.
+     * @param variables Variables to substitute into the template. The first is the owner.
+     *
+     * @return The new rule.
+     */
+    public Rule addRule (BooleanSupplier guard, String reason, String formulaExpression, GeoItem... variables)
+    {
+        final Rule rule = new Rule (this, guard, reason, formulaExpression, variables);
+        rules.add (rule);
+        plane.addRule (rule);
+        return rule;
+    }
+
+    /** Inference rules declared by this item, in the order they are fired. */
+    public List<Rule> getRules ()
+    {
+        return rules;
+    }
+
+    /** Fire all rules declared by this item. */
+    public void fireRules ()
+    {
+        for (int i = 0; i < rules.size (); i++)
+        {
+            rules.get (i).fire ();
         }
     }
 
@@ -329,12 +553,19 @@ public class GeoItem
         builder.append ("}");
         builder.append (")");
         logger.info ("Symbolic %s: %s", getName (), builder.toString ());
-        final ExprEvaluator eval = new ExprEvaluator ();
-        final IExpr expr = eval.parse (builder.toString ());
-        logger.info ("Expression: %s", expr);
-        final IExpr value = eval.eval (expr);
-        logger.info ("Value: %s", value);
-        return value.toString ();
+        final ExprEvaluator eval = EvaluatorPool.acquire ();
+        try
+        {
+            final IExpr expr = eval.parse (builder.toString ());
+            logger.info ("Expression: %s", expr);
+            final IExpr value = eval.eval (expr);
+            logger.info ("Value: %s", value);
+            return value.toString ();
+        }
+        finally
+        {
+            EvaluatorPool.release (eval);
+        }
     }
 
     /**
@@ -471,8 +702,9 @@ public class GeoItem
     /**
      * Define the value of this item for math eclipse. This should be overridden.
      *
-     * @param eval The symbolic math context. Use the defineVariable method to define a boolean,
-     *            double or IExpr binding the name of this item to some value.
+     * @param eval The symbolic math context, usually from the EvaluatorPool. Use the defineVariable
+     *            method to define a boolean, double or IExpr binding the name of this item to some
+     *            value.
      */
     public void defineVariable (ExprEvaluator eval)
     {
@@ -618,6 +850,44 @@ public class GeoItem
         }
     }
 
+    /**
+     * Write this item to a stream in the same form as getElement, without building a document.
+     *
+     * @param out The stream, positioned inside the parent element.
+     * @param scratch An element used to collect the attributes of each item before writing them.
+     * @param depth Nesting depth used to indent the element.
+     */
+    public void writeElement (XMLStreamWriter out, Element scratch, int depth) throws XMLStreamException
+    {
+        xu.clearAttributes (scratch);
+        getAttributes (scratch);
+        xu.indent (out, depth);
+        if (children.isEmpty ())
+        {
+            out.writeEmptyElement (getClass ().getSimpleName ());
+            xu.writeAttributes (out, scratch);
+        }
+        else
+        {
+            out.writeStartElement (getClass ().getSimpleName ());
+            xu.writeAttributes (out, scratch);
+            for (final GeoItem child : children)
+            {
+                child.writeElement (out, scratch, depth + 1);
+            }
+            xu.indent (out, depth);
+            out.writeEndElement ();
+        }
+        for (final Inference inference : inferences)
+        {
+            xu.clearAttributes (scratch);
+            inference.getAttributes (scratch);
+            xu.indent (out, depth);
+            out.writeEmptyElement (Inference.class.getSimpleName ());
+            xu.writeAttributes (out, scratch);
+        }
+    }
+
     /** Convert to an element for saving to a file. */
     public void getAttributes (Element element)
     {
@@ -636,8 +906,19 @@ public class GeoItem
         color = new Color (xu.getInteger (element, "color", 0));
         isSelected = xu.getBoolean (element, "selected", false);
         isOpen = xu.getBoolean (element, "open", false);
-        status = GeoStatus.valueOf (xu.get (element, "status", "unknown"));
-        reason = xu.get (element, "reason", null);
+        restoreStatus (GeoStatus.valueOf (xu.get (element, "status", "unknown")), xu.get (element, "reason", null));
+    }
+
+    /** Restore the saved status without solving. */
+    void restoreStatus (GeoStatus status, String reason)
+    {
+        final boolean determined = this.status.isDetermined ();
+        this.status = status;
+        if (determined != status.isDetermined ())
+        {
+            plane.getRuleIndex ().update (this, status.isDetermined ());
+        }
+        this.reason = reason;
     }
 
     /** Find an item in the plane and restore it from the xml. */
@@ -650,7 +931,7 @@ public class GeoItem
         }
         else
         {
-            final Element child = xu.getNthChild (parentXml, "name", name, 0);
+            final Element child = xu.getChild (parentXml, "name", name);
             if (child == null)
             {
                 logger.warn ("Can't locate xml name=%s in %s", name, xu.getXMLString (parentXml));
@@ -662,6 +943,73 @@ public class GeoItem
         }
     }
 
+    /**
+     * Write this item and its children in the binary form. The class name is written by the
+     * caller. Children are written in order, since the constructors make the same children when
+     * the file is read.
+     */
+    void writeBinary (BinaryOutput out) throws IOException
+    {
+        out.addItem (this);
+        writeFields (out);
+        out.writeVarint (children.size ());
+        for (final GeoItem child : children)
+        {
+            out.writeString (child.getClass ().getSimpleName ());
+            child.writeBinary (out);
+        }
+    }
+
+    /** Write the fields of this item. Subclasses that save more should call the super method. */
+    void writeFields (BinaryOutput out) throws IOException
+    {
+        out.writeString (name);
+        out.writeInt (color.getRGB ());
+        out.writeByte ((isSelected ? 1 : 0) | (isOpen ? 2 : 0));
+        out.writeByte (status.ordinal ());
+        out.writeString (reason);
+    }
+
+    /** Restore this item and its children from the binary form. The class name is already read. */
+    void readBinary (BinaryInput in) throws IOException
+    {
+        in.addItem (this);
+        readFields (in);
+        final int count = in.readVarint ();
+        if (count != children.size ())
+        {
+            throw new IOException ("Expected " + children.size () + " children of " + name + " found " + count);
+        }
+        for (final GeoItem child : children)
+        {
+            in.expect (child);
+            child.readBinary (in);
+        }
+    }
+
+    /** Restore the fields written by writeFields. */
+    void readFields (BinaryInput in) throws IOException
+    {
+        setName (in.readString ());
+        color = new Color (in.readInt ());
+        final int flags = in.readByte ();
+        isSelected = (flags & 1) != 0;
+        isOpen = (flags & 2) != 0;
+        final int ordinal = in.readByte ();
+        final GeoStatus[] values = GeoStatus.values ();
+        if (ordinal >= values.length)
+        {
+            throw new IOException ("Bad status " + ordinal + " for " + name);
+        }
+        restoreStatus (values[ordinal], in.readString ());
+    }
+
+    /** Add an inference read from a file. */
+    void restoreInference (Inference inference)
+    {
+        inferences.add (inference);
+    }
+
     @Override
     public String toString ()
     {
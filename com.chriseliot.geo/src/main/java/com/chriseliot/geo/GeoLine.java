@@ -48,6 +48,27 @@ public class GeoLine extends GeoItem
 
     private final List<GeoVertex> vertices = new ArrayList<> ();
 
+    /** Set while this line is in the line index of the plane. */
+    boolean indexed = false;
+
+    /** Set while this line is filed under the cells below. */
+    boolean filed = false;
+
+    /** Range of line index cells this line is filed under. */
+    int cellX0, cellX1, cellY0, cellY1;
+
+    /** Insertion number in the line index. */
+    int serial;
+
+    /** Number of the last line index query that looked at this line. */
+    int query;
+
+    /**
+     * Set when a possible triangle with this line as a side was rejected because its corners were
+     * in a line. Moving the line may turn it into a triangle even if no vertex appears.
+     */
+    boolean collinear = false;
+
     public GeoLine (GeoPlane plane, Color color, Point2D.Double from, Point2D.Double to)
     {
         super (plane, "l", color);
@@ -61,6 +82,8 @@ public class GeoLine extends GeoItem
         dx = new NamedVariable (midpoint, color, name + SEP + "dx");
         dy = new NamedVariable (midpoint, color, name + SEP + "dy");
         length = new NamedVariable (midpoint, color, name + SEP + "length");
+        addRules ();
+        plane.getLineIndex ().add (this);
         recalculate ();
         addCategory ("simple");
         addCategory ("standard");
@@ -129,26 +152,29 @@ public class GeoLine extends GeoItem
         dx.setDoubleValue (b.x - a.x);
         dy.setDoubleValue (b.y - a.y);
         length.setDoubleValue (calculateLength ());
-        // Lots of extra work here to avoid ConcurrentModificationException
-        for (final GeoVertex v : new ArrayList<> (vertices))
-        {
-            // This needs to iterate over a copy of the vertices list because the vertex might
-            // delete itself and cause a ConcurrentModificationException
-            v.recalculate ();
-        }
         midpoint.recalculate ();
-        // Now look for newly created vertices
         final GeoPlane plane = getPlane ();
-        final List<GeoItem> items = new ArrayList<> ();
-        items.addAll (plane.getItems ());
-        for (final GeoItem item : items)
+        // While dragging, the vertices run after every line that moved
+        plane.getRecalcScheduler ().schedule (vertices);
+        // Now look for newly created vertices. Bulk loads defer this to GeoPlane.findVertices.
+        final LineIndex lineIndex = plane.getLineIndex ();
+        lineIndex.move (this);
+        if (!plane.isDeferVertices ())
         {
-            if (item != this)
+            final List<GeoLine> crossings = new ArrayList<> ();
+            lineIndex.crossings (this, crossings);
+            boolean created = false;
+            for (final GeoLine l : crossings)
+            {
+                created |= addVertex (l) != null;
+            }
+            // Vertices that moved or disappeared took their triangles with them, so only new
+            // vertices and collinear corners can make new triangles.
+            if (created || collinear)
             {
-                findVertices (item);
+                plane.findTriangles (this);
             }
         }
-        plane.findTriangles ();
     }
 
     /**
@@ -161,25 +187,36 @@ public class GeoLine extends GeoItem
     {
         if (i instanceof GeoLine)
         {
-            final GeoLine l = (GeoLine)i;
-            if (!hasVertex (l))
+            addVertex ((GeoLine)i);
+        }
+    }
+
+    /**
+     * Create a vertex where this line crosses another line.
+     *
+     * @return The new vertex, or null if the lines do not cross or already have a vertex.
+     */
+    private GeoVertex addVertex (GeoLine l)
+    {
+        if (!hasVertex (l))
+        {
+            if (intersects (l))
             {
-                if (intersects (l))
+                final Point2D.Double position = intersection (l);
+                if (position == null)
+                {
+                    logger.warn ("Suppressing bad vertex %s X %s", this, l);
+                }
+                else
                 {
-                    final Point2D.Double position = intersection (l);
-                    if (position == null)
-                    {
-                        logger.warn ("Suppressing bad vertex %s X %s", this, l);
-                    }
-                    else
-                    {
-                        final GeoVertex v = new GeoVertex (getPlane (), Color.blue, this, l, position);
-                        vertices.add (v);
-                        l.vertices.add (v);
-                    }
+                    final GeoVertex v = new GeoVertex (getPlane (), Color.blue, this, l, position);
+                    vertices.add (v);
+                    l.vertices.add (v);
+                    return v;
                 }
             }
         }
+        return null;
     }
 
     /** Does this line have a vertex connection to the other line. */
@@ -240,15 +277,22 @@ public class GeoLine extends GeoItem
         }
     }
 
-    private boolean intersects (GeoLine l)
+    /**
+     * Do the line segments touch or cross. Line2D says any two zero length segments intersect, so
+     * the bounding boxes are checked first.
+     */
+    boolean intersects (GeoLine l)
     {
-        final Line2D.Double l1 = getLine2D ();
-        final Line2D.Double l2 = l.getLine2D ();
-        if (l1.intersectsLine (l2))
+        final Point2D.Double a = from.getPosition ();
+        final Point2D.Double b = to.getPosition ();
+        final Point2D.Double la = l.from.getPosition ();
+        final Point2D.Double lb = l.to.getPosition ();
+        if (max (a.x, b.x) < min (la.x, lb.x) || max (la.x, lb.x) < min (a.x, b.x) || max (a.y, b.y) < min (la.y, lb.y)
+            || max (la.y, lb.y) < min (a.y, b.y))
         {
-            return true;
+            return false;
         }
-        return false;
+        return Line2D.linesIntersect (a.x, a.y, b.x, b.y, la.x, la.y, lb.x, lb.y);
     }
 
     public Point2D.Double intersection (double x1, double y1, double x2, double y2)
@@ -418,7 +462,7 @@ public class GeoLine extends GeoItem
         final Point2D.Double b = to.getPosition ();
         to.setPosition (b.x + dx, b.y + dy);
 
-        recalculate ();
+        getPlane ().getRecalcScheduler ().schedule (this);
     }
 
     @Override
@@ -444,69 +488,69 @@ public class GeoLine extends GeoItem
                 to.setStatus (GeoStatus.derived, "line determined");
             }
         }
+        fireRules ();
+    }
+
+    /** Declare the inference rules relating the parts of this line. */
+    private void addRules ()
+    {
         // Determine dx
-        dx.setFormula ("dx from endpoints", "%s == %s - %s", dx, to.getX (), from.getX ());
-        dx.setFormula ("midpoint x of line", "%s == (%s - %s) * 2", dx, midpoint.getX (), from.getX ());
-        dx.setFormula ("midpoint x of line", "%s == (%s - %s) * 2", dx, to.getX (), midpoint.getX ());
-        dx.setFormula ("dx from angle of line", "%s == %s * cos((90 -  %s) * Degree)", dx, length, angle);
+        addRule ("dx from endpoints", "%s == %s - %s", dx, to.getX (), from.getX ());
+        addRule ("midpoint x of line", "%s == (%s - %s) * 2", dx, midpoint.getX (), from.getX ());
+        addRule ("midpoint x of line", "%s == (%s - %s) * 2", dx, to.getX (), midpoint.getX ());
+        addRule ("dx from angle of line", "%s == %s * cos((90 -  %s) * Degree)", dx, length, angle);
 
         // Could be + or -
-        // dx.setFormula ("solve l^2 = dx^2+dy^2", "%s == sqrt(%s ^ 2 - %s ^2)", dx, length, dy);
+        // addRule ("solve l^2 = dx^2+dy^2", "%s == sqrt(%s ^ 2 - %s ^2)", dx, length, dy);
 
         // Determine dy
-        dy.setFormula ("dy from endpoints", "%s == %s - %s", dy, to.getY (), from.getY ());
-        dy.setFormula ("midpoint y of line", "%s == (%s - %s) * 2", dy, midpoint.getY (), from.getY ());
-        dy.setFormula ("midpoint y of line", "%s == (%s - %s) * 2", dy, to.getY (), midpoint.getY ());
-        dy.setFormula ("dy from angle of line", "%s == %s * sin((90 - %s) * Degree)", dy, length, angle);
+        addRule ("dy from endpoints", "%s == %s - %s", dy, to.getY (), from.getY ());
+        addRule ("midpoint y of line", "%s == (%s - %s) * 2", dy, midpoint.getY (), from.getY ());
+        addRule ("midpoint y of line", "%s == (%s - %s) * 2", dy, to.getY (), midpoint.getY ());
+        addRule ("dy from angle of line", "%s == %s * sin((90 - %s) * Degree)", dy, length, angle);
 
         // Could be + or -
-        // dy.setFormula ("solve l^2 = dx^2+dy^2", "%s == sqrt(%s ^ 2 - %s ^2)", dy, length, dx);
+        // addRule ("solve l^2 = dx^2+dy^2", "%s == sqrt(%s ^ 2 - %s ^2)", dy, length, dx);
 
         // Determine to.x
-        to.getX ().setFormula ("endpoint and dx", "%s == %s + %s", to.getX (), from.getX (), dx);
+        addRule ("endpoint and dx", "%s == %s + %s", to.getX (), from.getX (), dx);
 
         // Determine to.y
-        to.getY ().setFormula ("to y from dy of line", "%s == %s + %s", to.getY (), from.getY (), dy);
+        addRule ("to y from dy of line", "%s == %s + %s", to.getY (), from.getY (), dy);
 
         // Determine from.x
-        from.getX ().setFormula ("from x from dx of line", "%s == %s - %s", from.getX (), to.getX (), dx);
+        addRule ("from x from dx of line", "%s == %s - %s", from.getX (), to.getX (), dx);
 
         // Determine from.y
-        from.getY ().setFormula ("from y from dy of line", "%s == %s - %s", from.getY (), to.getY (), dy);
+        addRule ("from y from dy of line", "%s == %s - %s", from.getY (), to.getY (), dy);
 
         // Determine midpoint.x
-        midpoint.getX ().setFormula ("midpoint = (Ax + Bx) / 2)", "%s == (%s + %s) / 2", midpoint.getX (), from.getX (),
-                to.getX ());
-        midpoint.getX ().setFormula ("midpoint = Ax + (dx / 2)", "%s == %s + (%s / 2)", midpoint.getX (), from.getX (), dx);
+        addRule ("midpoint = (Ax + Bx) / 2)", "%s == (%s + %s) / 2", midpoint.getX (), from.getX (), to.getX ());
+        addRule ("midpoint = Ax + (dx / 2)", "%s == %s + (%s / 2)", midpoint.getX (), from.getX (), dx);
 
-        midpoint.getX ().setFormula ("midpoint = Bx - (dx / 2)", "%s == %s - (%s / 2)", midpoint.getX (), to.getX (), dx);
+        addRule ("midpoint = Bx - (dx / 2)", "%s == %s - (%s / 2)", midpoint.getX (), to.getX (), dx);
 
         // Determine midpoint.y
-        midpoint.getY ().setFormula ("midpoint = (Ay + By) / 2)", "%s == (%s + %s) / 2", midpoint.getY (), from.getY (),
-                to.getY ());
-        midpoint.getY ().setFormula ("midpoint = Ay + (dy / 2)", "%s == %s + (%s / 2)", midpoint.getY (), from.getY (), dy);
+        addRule ("midpoint = (Ay + By) / 2)", "%s == (%s + %s) / 2", midpoint.getY (), from.getY (), to.getY ());
+        addRule ("midpoint = Ay + (dy / 2)", "%s == %s + (%s / 2)", midpoint.getY (), from.getY (), dy);
 
-        midpoint.getY ().setFormula ("midpoint = By - (dy / 2)", "%s == %s - (%s / 2)", midpoint.getY (), to.getY (), dy);
+        addRule ("midpoint = By - (dy / 2)", "%s == %s - (%s / 2)", midpoint.getY (), to.getY (), dy);
 
         // Determine length
-        length.setFormula ("length = sqrt(dx^2 + dy^2)", "%s == sqrt(%s^2 + %s^2)", length, dx, dy);
+        addRule ("length = sqrt(dx^2 + dy^2)", "%s == sqrt(%s^2 + %s^2)", length, dx, dy);
 
-        if (sin (toRadians (angle.getDoubleValue ())) > 0.0001)
-        {
-            // dx = l*sin(theta) so l = dx / sin(theta)
-            length.setFormula ("length = dx / sin(theta)", "%s == %s / sin(%s * Degree)", length, dx, angle);
+        // dx = l*sin(theta) so l = dx / sin(theta)
+        addRule (() -> sin (toRadians (angle.getDoubleValue ())) > 0.0001, "length = dx / sin(theta)",
+                "%s == %s / sin(%s * Degree)", length, dx, angle);
 
-        }
-        if (cos (toRadians (angle.getDoubleValue ())) > 0.0001)
-        {
-            // dy = l*cos(theta) so l = dy / cos(theta)
-            length.setFormula ("length = dy / cos(theta)", "%s == %s / cos(%s * Degree)", length, dy, angle);
-        }
+        // dy = l*cos(theta) so l = dy / cos(theta)
+        addRule (() -> cos (toRadians (angle.getDoubleValue ())) > 0.0001, "length = dy / cos(theta)",
+                "%s == %s / cos(%s * Degree)", length, dy, angle);
 
         // This appears to be the opposite of the numeric version
         // See ::recalculate and ::axisYangle
         // Possible dx and dy are reversed in some cases instead
-        angle.setFormula ("angle = atan2 (dy, dx) / Degree", "%s == arctan(%s, %s) / Degree", angle, dy, dx);
+        addRule ("angle = atan2 (dy, dx) / Degree", "%s == arctan(%s, %s) / Degree", angle, dy, dx);
     }
 
     @Override
@@ -556,9 +600,9 @@ public class GeoLine extends GeoItem
     public void marshall (Element element)
     {
         super.marshall (element);
-        from.marshall (xu.getNthChild (element, "name", xu.get (element, "from", null), 0));
-        to.marshall (xu.getNthChild (element, "name", xu.get (element, "to", null), 0));
-        final Element midpointXml = xu.getNthChild (element, "name", xu.get (element, "midpoint", null), 0);
+        from.marshall (xu.getChild (element, "name", xu.get (element, "from", null)));
+        to.marshall (xu.getChild (element, "name", xu.get (element, "to", null)));
+        final Element midpointXml = xu.getChild (element, "name", xu.get (element, "midpoint", null));
         midpoint.marshall (midpointXml);
         // These items are children of the midpoint but we restore them here
         marshallReference (midpointXml, xu.get (element, "dx", null));
@@ -33,6 +33,21 @@ public class GeoOval extends GeoItem
         center.addCategory ("standard");
     }
 
+    public NamedPoint getFrom ()
+    {
+        return from;
+    }
+
+    public NamedPoint getTo ()
+    {
+        return to;
+    }
+
+    public NamedPoint getCenter ()
+    {
+        return center;
+    }
+
     /** Recalculate values derived from screen positions after a something moves. */
     @Override
     public void recalculate ()
@@ -88,9 +103,9 @@ public class GeoOval extends GeoItem
     public void marshall (Element element)
     {
         super.marshall (element);
-        from.marshall (xu.getNthChild (element, "name", xu.get (element, "from", null), 0));
-        to.marshall (xu.getNthChild (element, "name", xu.get (element, "to", null), 0));
-        center.marshall (xu.getNthChild (element, "name", xu.get (element, "center", null), 0));
+        from.marshall (xu.getChild (element, "name", xu.get (element, "from", null)));
+        to.marshall (xu.getChild (element, "name", xu.get (element, "to", null)));
+        center.marshall (xu.getChild (element, "name", xu.get (element, "center", null)));
     }
 
     @Override
@@ -7,7 +7,6 @@ import java.awt.*;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.List;
-import java.util.Map.Entry;
 
 import javax.swing.event.*;
 
@@ -24,16 +23,91 @@ public class GeoPlane
 {
     private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
 
-    /** All geometry items. */
-    private final List<GeoItem> items = new ArrayList<> ();
+    /** All geometry items and the names they are bound under. */
+    private final ItemStore store = new ItemStore ();
 
-    /** Variables defined. */
-    private final Map<String, GeoItem> bindings = new HashMap<> ();
+    /** Names the items of this plane. */
+    private final Namer namer = new Namer ();
 
     private final List<ChangeListener> changeListeners = new ArrayList<> ();
 
+    /** Told about each edit made by the user. */
+    private final List<EditListener> editListeners = new ArrayList<> ();
+
+    /**
+     * Depth of edits in progress. Only the outermost edit is reported, not the vertices a drag
+     * removes and finds again.
+     */
+    private int editDepth = 0;
+
     /** Set when any status changes to indicate that deduction should continue. */
-    private boolean dirty = false;
+    private volatile boolean dirty = false;
+
+    /** Strategy used to solve the plane. */
+    private SolveEngine solveEngine = SolveEngine.agenda;
+
+    /** Rules that read each item. */
+    private final RuleIndex ruleIndex = new RuleIndex ();
+
+    /** Items waiting to be solved by the agenda engine. */
+    private final Agenda agenda = new Agenda (ruleIndex);
+
+    /** Splits the agenda into components for the parallel engine. */
+    private final ComponentSolver componentSolver = new ComponentSolver (this);
+
+    /** Agenda of the component being solved by each worker thread of the parallel engine. */
+    private final ThreadLocal<Agenda> componentAgenda = new ThreadLocal<> ();
+
+    /** Set while components are being solved, so other times don't need the thread local. */
+    private volatile boolean solvingComponents = false;
+
+    /** Set while the agenda engines solve, so reads made at other times are not recorded. */
+    private volatile boolean recording = false;
+
+    /** When inferences are checked numerically. */
+    private final VerificationPolicy verificationPolicy = new VerificationPolicy ();
+
+    /** Retracts the consequences of items that stop being determined. */
+    private final TruthMaintenance truthMaintenance = new TruthMaintenance (ruleIndex);
+
+    /** Are new lines waiting for findVertices instead of looking for their own vertices. */
+    private boolean deferVertices = false;
+
+    /** Number of open batches. */
+    private int batchDepth = 0;
+
+    /** The deferVertices setting before the outermost batch began. */
+    private boolean batchDeferVertices = false;
+
+    /** Should the outermost batch find vertices when it is done. */
+    private boolean batchFindVertices = true;
+
+    /** Was solve called while a batch was open. */
+    private boolean batchSolve = false;
+
+    /** Were change listeners called while a batch was open. */
+    private boolean batchChanged = false;
+
+    /** Grid over the positions of the named points. */
+    private final PointIndex pointIndex = new PointIndex ();
+
+    /** Recalculates moved items once each, in dependency order. */
+    private final RecalcScheduler recalcScheduler = new RecalcScheduler (this);
+
+    /** Grid over the bounding boxes of the lines. */
+    private final LineIndex lineIndex = new LineIndex ();
+
+    /** Named points grouped by their exact position. */
+    private final CoincidenceIndex coincidenceIndex = new CoincidenceIndex ();
+
+    /** Items that always have the same value, like the coordinates of coincident points. */
+    private final EquivalenceClasses equivalenceClasses = new EquivalenceClasses ();
+
+    /** Vertices filed by the lines they join. */
+    private final VertexGraph vertexGraph = new VertexGraph ();
+
+    /** Triangles keyed by their corners. */
+    private final TriangleRegistry triangleRegistry = new TriangleRegistry ();
 
     /** Labels that have been painted. */
     private Labels labels = new Labels ();
@@ -47,62 +121,79 @@ public class GeoPlane
     {
     }
 
-    /** All geometry items. */
+    /** All geometry items. The list is a live view and can't be modified. */
     public List<GeoItem> getItems ()
     {
-        return items;
+        return store.getItems ();
+    }
+
+    /** Names the items of this plane. */
+    public Namer getNamer ()
+    {
+        return namer;
     }
 
-    /** Variables defined. */
+    /** All geometry items and the names they are bound under. */
+    public ItemStore getItemStore ()
+    {
+        return store;
+    }
+
+    /** Variables defined. The map is a live view and can't be modified. */
     public Map<String, GeoItem> getBindings ()
     {
-        return bindings;
+        return store.getBindings ();
     }
 
     /** Lookup a value by name. */
     public GeoItem get (String name)
     {
-        return bindings.get (name);
+        return store.get (name);
     }
 
-    /**
-     * All geometry vertices.
-     */
+    /** Lookup an item by id. */
+    public GeoItem get (int id)
+    {
+        return store.get (id);
+    }
+
+    /** All geometry vertices. The list is a live view and can't be modified. */
     public List<GeoVertex> getVertices ()
     {
-        final List<GeoVertex> result = new ArrayList<> ();
-        for (final GeoItem item : items)
-        {
-            if (item instanceof GeoVertex)
-            {
-                result.add ((GeoVertex)item);
-            }
-        }
-        return result;
+        return store.getVertices ();
     }
 
-    /**
-     * All toplevel items.
-     */
+    /** All geometry lines. The list is a live view and can't be modified. */
+    public List<GeoLine> getLines ()
+    {
+        return store.getLines ();
+    }
+
+    /** All geometry triangles. The list is a live view and can't be modified. */
+    public List<GeoTriangle> getTriangles ()
+    {
+        return store.getTriangles ();
+    }
+
+    /** All toplevel items. The list is a live view and can't be modified. */
     public List<GeoItem> getRoots ()
     {
-        final List<GeoItem> result = new ArrayList<> ();
-        for (final GeoItem item : items)
-        {
-            if (item.getParent () == null)
-            {
-                result.add (item);
-            }
-        }
-        return result;
+        return store.getRoots ();
     }
 
     /** Clear the geometry plane. */
     public void clear ()
     {
-        Namer.reset ();
-        items.clear ();
-        bindings.clear ();
+        namer.clear ();
+        store.clear ();
+        ruleIndex.clear ();
+        agenda.clear ();
+        pointIndex.clear ();
+        lineIndex.clear ();
+        coincidenceIndex.clear ();
+        equivalenceClasses.clear ();
+        vertexGraph.clear ();
+        triangleRegistry.clear ();
     }
 
     /**
@@ -113,17 +204,19 @@ public class GeoPlane
      */
     public void addItem (GeoItem item)
     {
-        if (!items.contains (item))
+        if (store.add (item))
         {
-            items.add (item);
+            if (editDepth == 0)
+            {
+                for (final EditListener listener : editListeners)
+                {
+                    listener.itemAdded (item);
+                }
+            }
+            schedule (item);
             fireChangeListeners (item);
         }
-        if (bindings.containsValue (item))
-        {
-            final String key = getBindingKey (item);
-            bindings.remove (key);
-        }
-        bindings.put (item.getName (), item);
+        store.bind (item.getName (), item);
     }
 
     /** Add many items all at once. */
@@ -138,7 +231,7 @@ public class GeoPlane
     /** Determine if this plane contains the named item. */
     public boolean contains (GeoItem item)
     {
-        return items.contains (item);
+        return store.contains (item);
     }
 
     /**
@@ -147,11 +240,71 @@ public class GeoPlane
      */
     public void remove (GeoItem item)
     {
-        items.remove (item);
-        final String key = getBindingKey (item);
-        if (key != null)
+        if (store.contains (item))
+        {
+            if (editDepth == 0)
+            {
+                for (final EditListener listener : editListeners)
+                {
+                    listener.itemRemoved (item);
+                }
+            }
+        }
+        store.remove (item);
+        agenda.remove (item);
+        item.setSupport (null);
+        equivalenceClasses.remove (item);
+        if (item instanceof NamedPoint)
+        {
+            pointIndex.remove ((NamedPoint)item);
+            coincidenceIndex.remove ((NamedPoint)item);
+        }
+        else if (item instanceof GeoLine)
+        {
+            lineIndex.remove ((GeoLine)item);
+        }
+        else if (item instanceof GeoVertex)
+        {
+            vertexGraph.remove ((GeoVertex)item);
+        }
+        else if (item instanceof GeoTriangle)
+        {
+            triangleRegistry.remove ((GeoTriangle)item);
+        }
+        for (final Rule rule : ruleIndex.removeAll (item))
+        {
+            agenda.remove (rule);
+        }
+    }
+
+    /** Change the name of an item and the key used to find it. */
+    public void rename (GeoItem item, String name)
+    {
+        if (editDepth == 0)
+        {
+            for (final EditListener listener : editListeners)
+            {
+                listener.itemRenamed (item, name);
+            }
+        }
+        store.unbind (item);
+        item.setName (name);
+        store.bind (name, item);
+    }
+
+    /** Rules that read each item. */
+    public RuleIndex getRuleIndex ()
+    {
+        return ruleIndex;
+    }
+
+    /** Register a rule declared by an item. */
+    public void addRule (Rule rule)
+    {
+        ruleIndex.add (rule);
+        if (solveEngine != SolveEngine.sweep)
         {
-            bindings.remove (key);
+            getAgenda ().add (rule);
         }
     }
 
@@ -164,20 +317,13 @@ public class GeoPlane
      */
     public String getBindingKey (GeoItem item)
     {
-        for (final Entry<String, GeoItem> entry : bindings.entrySet ())
-        {
-            if (entry.getValue () == item)
-            {
-                return entry.getKey ();
-            }
-        }
-        return null;
+        return store.getKey (item);
     }
 
     /** Make all items deselected. */
     public void deselectAll ()
     {
-        for (final GeoItem item : items)
+        for (final GeoItem item : store.getItems ())
         {
             item.setSelected (false);
         }
@@ -196,11 +342,12 @@ public class GeoPlane
 
     /**
      * Search all items and reset items with derived status to unknown. Then re-apply known status
-     * to known items to derive consequences again.
+     * to known items to derive consequences again. This is not needed after making an item unknown,
+     * since truth maintenance already retracts the consequences that depended on it.
      */
     public void resetDerived ()
     {
-        for (final GeoItem item : items)
+        for (final GeoItem item : store.getItems ())
         {
             if (item.getStatus () == GeoStatus.derived)
             {
@@ -212,6 +359,92 @@ public class GeoPlane
         fireChangeListeners (this);
     }
 
+    /**
+     * Are new lines waiting for findVertices instead of looking for their own vertices. This is
+     * set while loading many lines at once.
+     */
+    public boolean isDeferVertices ()
+    {
+        return deferVertices;
+    }
+
+    /**
+     * Stop new or moved lines from looking for their own vertices. Call findVertices when done if
+     * the loaded lines did not bring their vertices with them.
+     */
+    public void setDeferVertices (boolean deferVertices)
+    {
+        this.deferVertices = deferVertices;
+    }
+
+    /**
+     * Begin a group of changes. Vertex search, solving and change listeners wait until the batch
+     * is closed. Batches may be nested, and the work is done when the outermost one is closed.
+     */
+    public PlaneBatch beginBatch ()
+    {
+        if (batchDepth++ == 0)
+        {
+            batchDeferVertices = deferVertices;
+            batchFindVertices = true;
+            batchSolve = false;
+            batchChanged = false;
+            deferVertices = true;
+            coincidenceIndex.setDeferLinks (true);
+        }
+        return new PlaneBatch (this);
+    }
+
+    /** Is a batch open. */
+    public boolean isBatch ()
+    {
+        return batchDepth > 0;
+    }
+
+    /** Should the outermost batch find vertices when it is done. */
+    void setBatchFindVertices (boolean findVertices)
+    {
+        batchFindVertices = findVertices;
+    }
+
+    /** Close a batch. When the outermost batch closes, do the work it held back. */
+    void endBatch ()
+    {
+        if (batchDepth == 1)
+        {
+            // Items made by the sweep are still part of the batch
+            deferVertices = batchDeferVertices;
+            coincidenceIndex.setDeferLinks (false);
+            if (batchFindVertices && !deferVertices)
+            {
+                findVertices ();
+            }
+            batchDepth = 0;
+            if (batchSolve)
+            {
+                solve ();
+            }
+            if (batchChanged)
+            {
+                fireChangeListeners (this);
+            }
+        }
+        else if (batchDepth > 1)
+        {
+            batchDepth--;
+        }
+    }
+
+    /** Create the vertices of all crossing lines in one sweep, then look for triangles. */
+    public void findVertices ()
+    {
+        for (final GeoLine[] pair : SegmentSweep.crossings (getLines ()))
+        {
+            pair[0].findVertices (pair[1]);
+        }
+        findTriangles ();
+    }
+
     /**
      * Look for triangles in the data. The line segments involved should be made into first class
      * lines, so they can have derived values added. This should be done in the gui too, so their
@@ -219,88 +452,75 @@ public class GeoPlane
      */
     public void findTriangles ()
     {
-        final List<GeoVertex> vertices = getVertices ();
-        final int count = vertices.size ();
-        for (int i1 = 0; i1 < count; i1++)
+        final List<GeoVertex[]> triangles = new ArrayList<> ();
+        vertexGraph.getTriangles (triangles);
+        addTriangles (triangles);
+    }
+
+    /** Look for triangles with a line as one side, after the line is created or moved. */
+    public void findTriangles (GeoLine line)
+    {
+        line.collinear = false;
+        final List<GeoVertex[]> triangles = new ArrayList<> ();
+        vertexGraph.getTriangles (line, triangles);
+        addTriangles (triangles);
+    }
+
+    /** Create the triangles that are not collinear and not already known. */
+    private void addTriangles (List<GeoVertex[]> triangles)
+    {
+        for (final GeoVertex[] corners : triangles)
         {
-            final GeoVertex v1 = vertices.get (i1);
-            for (int i2 = i1 + 1; i2 < count; i2++)
+            final GeoVertex v1 = corners[0];
+            final GeoVertex v2 = corners[1];
+            final GeoVertex v3 = corners[2];
+            if (isTriangle (v1, v2, v3))
             {
-                final GeoVertex v2 = vertices.get (i2);
-                for (int i3 = i2 + 1; i3 < count; i3++)
+                if (!hasTriangle (v1, v2, v3))
                 {
-                    final GeoVertex v3 = vertices.get (i3);
-                    // final double area = triangleArea (v1, v2, v3);
-                    // logger.info ("Considering %.3f area T %s %s %s", area, v1.getName (),
-                    // v2.getName (), v3.getName ());
-                    if (isTriangle (v1, v2, v3))
-                    {
-                        if (!hasTriangle (v1, v2, v3))
-                        {
-                            logger.debug ("Found triangle %s %s %s", v1, v2, v3);
-                            final GeoTriangle t = new GeoTriangle (this, Color.red, v1, v2, v3);
-                            addItem (t);
-                        }
-                    }
+                    logger.debug ("Found triangle %s %s %s", v1, v2, v3);
+                    final GeoTriangle t = new GeoTriangle (this, Color.red, v1, v2, v3);
+                    addItem (t);
                 }
             }
+            else
+            {
+                // The corners are joined by lines but are in a line now
+                markCollinear (v1.connector (v2));
+                markCollinear (v2.connector (v3));
+                markCollinear (v3.connector (v1));
+            }
+        }
+    }
+
+    private static void markCollinear (GeoLine line)
+    {
+        if (line != null)
+        {
+            line.collinear = true;
         }
     }
 
     /**
-     * Determine if the three given vertices define a known triangle. This must use the hasVertex
-     * method because the triangle will re-arrange the vertices in a preferred order.
+     * Determine if the three given vertices define a known triangle. The triangle re-arranges the
+     * vertices in a preferred order, so they may be given in any order.
      *
      * @return true if the triangle is known, false otherwise.
      */
     public boolean hasTriangle (GeoVertex v1, GeoVertex v2, GeoVertex v3)
     {
-        for (final GeoItem item : items)
-        {
-            if (item instanceof GeoTriangle)
-            {
-                final GeoTriangle t = (GeoTriangle)item;
-                if (t.hasVertex (v1))
-                {
-                    if (t.hasVertex (v2))
-                    {
-                        if (t.hasVertex (v3))
-                        {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return triangleRegistry.contains (v1, v2, v3);
     }
 
     /**
-     * Determine if the three given vertices define a known triangle. This must use the hasVertex
-     * method because the triangle will re-arrange the vertices in a preferred order.
+     * Determine if the three given vertices define a known triangle. The triangle re-arranges the
+     * vertices in a preferred order, so they may be given in any order.
      *
      * @return The triangle defined by the vertices if there is one , null otherwise.
      */
     public GeoTriangle getTriangle (GeoVertex v1, GeoVertex v2, GeoVertex v3)
     {
-        for (final GeoItem item : items)
-        {
-            if (item instanceof GeoTriangle)
-            {
-                final GeoTriangle t = (GeoTriangle)item;
-                if (t.hasVertex (v1))
-                {
-                    if (t.hasVertex (v2))
-                    {
-                        if (t.hasVertex (v3))
-                        {
-                            return t;
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return triangleRegistry.get (v1, v2, v3);
     }
 
     /**
@@ -348,11 +568,14 @@ public class GeoPlane
      */
     public GeoVertex getVertex (Point2D.Double position)
     {
-        for (final GeoItem item : items)
+        final List<NamedPoint> points = new ArrayList<> (2);
+        pointIndex.at (position, points);
+        for (final NamedPoint p : points)
         {
-            if (item instanceof GeoVertex)
+            final GeoItem parent = p.getParent ();
+            if (parent instanceof GeoVertex)
             {
-                final GeoVertex v = (GeoVertex)item;
+                final GeoVertex v = (GeoVertex)parent;
                 if (v.at (position))
                 {
                     return v;
@@ -372,13 +595,8 @@ public class GeoPlane
      */
     public Point2D.Double getSnapPoint (Point p, double limit2)
     {
-        Point2D.Double result = null;
-        for (final GeoItem item : items)
-        {
-            final List<Point2D.Double> snaps = item.getSnapPoints ();
-            result = getClosest (p, result, snaps, limit2);
-        }
-        return result;
+        final NamedPoint result = pointIndex.nearest (p.x, p.y, limit2, GeoPlane::isPart);
+        return result == null ? null : result.getPosition ();
     }
 
     /**
@@ -391,13 +609,20 @@ public class GeoPlane
      */
     public Point2D.Double getSnapPoint (Point2D.Double p, double limit2)
     {
-        Point2D.Double result = null;
-        for (final GeoItem item : items)
-        {
-            final List<Point2D.Double> snaps = item.getSnapPoints ();
-            result = getClosest (p, result, snaps, limit2);
-        }
-        return result;
+        final NamedPoint result = pointIndex.nearest (p.x, p.y, limit2, GeoPlane::isPart);
+        return result == null ? null : result.getPosition ();
+    }
+
+    /** Is a point part of another item. Only parts are snapped to or clicked. */
+    private static boolean isPart (NamedPoint p)
+    {
+        return p.getParent () != null;
+    }
+
+    /** Is a point the position of a vertex. */
+    private static boolean isVertexPart (NamedPoint p)
+    {
+        return p.getParent () instanceof GeoVertex;
     }
 
     /**
@@ -410,39 +635,48 @@ public class GeoPlane
     public List<NamedPoint> getDragPoints (Point2D.Double p)
     {
         final List<NamedPoint> result = new ArrayList<> ();
-        for (final GeoItem item : items)
-        {
-            if (item instanceof NamedPoint)
-            {
-                final NamedPoint s = (NamedPoint)item;
-                if (s.at (p) && s.isDraggable ())
-                {
-                    result.add (s);
-                }
-            }
-        }
+        pointIndex.at (p, result);
+        result.removeIf (s -> !s.isDraggable ());
         return result;
     }
 
     public void drag (Point2D.Double from, Point2D.Double to)
     {
+        if (editDepth == 0)
+        {
+            for (final EditListener listener : editListeners)
+            {
+                listener.dragged (from, to);
+            }
+        }
         final List<NamedPoint> dragged = getDragPoints (from);
         logger.info ("Drag %d items from %s to %s", dragged.size (), from, to);
-        for (final NamedPoint p : dragged)
+        // Each item affected by the drag is recalculated once, after all the points moved
+        editDepth++;
+        recalcScheduler.begin ();
+        try
         {
-            /*
-             * Need to find the associated shape and move the whole object. For a line, this means
-             * moving the midpoint. For a rectangle it means moving the connected sides. For a
-             * circle it means adjusting the radius and diameter.
-             *
-             * This needs to also adjust the x, y of the point
-             */
-            logger.info ("Drag %s to %s", p, to);
-            p.drag (to);
+            for (final NamedPoint p : dragged)
+            {
+                /*
+                 * Need to find the associated shape and move the whole object. For a line, this
+                 * means moving the midpoint. For a rectangle it means moving the connected sides.
+                 * For a circle it means adjusting the radius and diameter.
+                 *
+                 * This needs to also adjust the x, y of the point
+                 */
+                logger.info ("Drag %s to %s", p, to);
+                p.drag (to);
+            }
+            for (final NamedPoint p : dragged)
+            {
+                recalcScheduler.schedule (p.getParent ());
+            }
         }
-        for (final NamedPoint p : dragged)
+        finally
         {
-            p.getParent ().recalculate ();
+            recalcScheduler.end ();
+            editDepth--;
         }
         fireChangeListeners ();
     }
@@ -459,83 +693,14 @@ public class GeoPlane
      */
     public NamedPoint getClickObject (Point2D.Double target, double limit2)
     {
-        NamedPoint result = null;
-        double distance = limit2;
-        for (final GeoItem item : items)
-        {
-            for (final GeoItem child : item.getChildren ())
-            {
-                if (child instanceof NamedPoint)
-                {
-                    final NamedPoint part = (NamedPoint)child;
-                    final double d = part.distance2 (target);
-                    if (d < distance)
-                    {
-                        result = part;
-                        distance = d;
-                    }
-                    // Pick a vertex in preference to other things
-                    else if (d == distance && item instanceof GeoVertex)
-                    {
-                        result = part;
-                        distance = d;
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Search a list of points to find the closest point.
-     *
-     * @param target The position we want to be close to.
-     * @param defaultValue The value if no better point is found in the points.
-     * @param points The points to search.
-     * @param limit2 Square of the maximum distance allowed.
-     *
-     * @return The defaultValue or best point found. The return value will never be null if a
-     *         defaultValue is supplied.
-     */
-    private Point2D.Double getClosest (Point target, Point2D.Double defaultValue, List<Point2D.Double> points, double limit2)
-    {
-        Point2D.Double result = defaultValue;
-        double distance = defaultValue == null ? limit2 : distance2 (target, defaultValue);
-        for (final Point2D.Double s : points)
-        {
-            final double d = distance2 (target, s);
-            if (d < distance)
-            {
-                result = s;
-                distance = d;
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Search a list of points to find the closest point.
-     *
-     * @param target The position we want to be close to.
-     * @param defaultValue The value if no better point is found in the points.
-     * @param points The points to search.
-     * @param limit2 Square of the maximum distance allowed.
-     *
-     * @return The defaultValue or best point found. The return value will never be null if a
-     *         defaultValue is supplied.
-     */
-    private Point2D.Double getClosest (Point2D.Double target, Point2D.Double defaultValue, List<Point2D.Double> points,
-            double limit2)
-    {
-        Point2D.Double result = defaultValue;
-        double distance = defaultValue == null ? limit2 : distance2 (target, defaultValue);
-        for (final Point2D.Double s : points)
+        final NamedPoint result = pointIndex.nearest (target.x, target.y, limit2, GeoPlane::isPart);
+        if (result != null && !isVertexPart (result))
         {
-            final double d = distance2 (target, s);
-            if (d < distance)
+            // Pick a vertex in preference to other things
+            final NamedPoint vertex = pointIndex.nearest (target.x, target.y, limit2, GeoPlane::isVertexPart);
+            if (vertex != null && vertex.distance2 (target) <= result.distance2 (target))
             {
-                result = s;
-                distance = d;
+                return vertex;
             }
         }
         return result;
@@ -609,9 +774,36 @@ public class GeoPlane
         changeListeners.remove (listener);
     }
 
+    /** Listen for edits made by the user. */
+    public void addEditListener (EditListener listener)
+    {
+        editListeners.add (listener);
+    }
+
+    public void removeEditListener (EditListener listener)
+    {
+        editListeners.remove (listener);
+    }
+
+    /** Tell the edit listeners the user is setting the status of an item. */
+    void fireStatusGiven (GeoItem item, GeoStatus status)
+    {
+        if (editDepth == 0)
+        {
+            for (final EditListener listener : editListeners)
+            {
+                listener.statusGiven (item, status);
+            }
+        }
+    }
+
     public void fireChangeListeners (Object source)
     {
-        if (!changeListeners.isEmpty ())
+        if (batchDepth > 0)
+        {
+            batchChanged = true;
+        }
+        else if (!changeListeners.isEmpty ())
         {
             final ChangeEvent e = new ChangeEvent (source);
             for (final ChangeListener listener : changeListeners)
@@ -632,20 +824,257 @@ public class GeoPlane
         return dirty;
     }
 
-    /** Set when any status changes to indicate that deduction should continue. */
+    /**
+     * Set when any status changes to indicate that deduction should continue. Without a changed
+     * item to start from, the agenda engine has to consider every item again.
+     */
     public void setDirty ()
     {
         dirty = true;
+        if (solveEngine != SolveEngine.sweep)
+        {
+            getAgenda ().addAll (store.getItems ());
+        }
+    }
+
+    /** Set when the status of an item changes. Items that read the status are solved again. */
+    public void setDirty (GeoItem item)
+    {
+        dirty = true;
+        if (solveEngine != SolveEngine.sweep)
+        {
+            getAgenda ().addReaders (item);
+        }
+    }
+
+    /** Schedule an item to be solved again by the agenda engine. */
+    public void schedule (GeoItem item)
+    {
+        if (solveEngine != SolveEngine.sweep)
+        {
+            getAgenda ().add (item);
+        }
+    }
+
+    /** Schedule the items that read the value of an item to be solved again. */
+    public void scheduleReaders (GeoItem item)
+    {
+        if (solveEngine != SolveEngine.sweep)
+        {
+            getAgenda ().addReaders (item);
+        }
+    }
+
+    /**
+     * Are the agenda engines solving. Accessors only record reads while this is set, so painting
+     * and other callers outside a solve just return the value.
+     */
+    public boolean isRecording ()
+    {
+        return recording;
+    }
+
+    /** Record that the item being solved on this thread read the status or value of another item. */
+    public void read (GeoItem item)
+    {
+        getAgenda ().read (item);
+    }
+
+    /** Strategy used to solve the plane. */
+    public SolveEngine getSolveEngine ()
+    {
+        return solveEngine;
+    }
+
+    /**
+     * Strategy used to solve the plane. Dependencies are not recorded by the sweep engine, so
+     * switching to the agenda engine schedules every item once.
+     */
+    public void setSolveEngine (SolveEngine solveEngine)
+    {
+        if (this.solveEngine != solveEngine)
+        {
+            this.solveEngine = solveEngine;
+            agenda.clear ();
+            if (solveEngine != SolveEngine.sweep)
+            {
+                agenda.addAll (store.getItems ());
+            }
+        }
+    }
+
+    /** Grid over the positions of the named points. */
+    public PointIndex getPointIndex ()
+    {
+        return pointIndex;
+    }
+
+    /** Recalculates moved items once each, in dependency order. */
+    public RecalcScheduler getRecalcScheduler ()
+    {
+        return recalcScheduler;
+    }
+
+    /** Grid over the bounding boxes of the lines. */
+    public LineIndex getLineIndex ()
+    {
+        return lineIndex;
+    }
+
+    /** Named points grouped by their exact position. */
+    public CoincidenceIndex getCoincidenceIndex ()
+    {
+        return coincidenceIndex;
     }
 
+    /** Items that always have the same value, like the coordinates of coincident points. */
+    public EquivalenceClasses getEquivalenceClasses ()
+    {
+        return equivalenceClasses;
+    }
+
+    /** Vertices filed by the lines they join. */
+    public VertexGraph getVertexGraph ()
+    {
+        return vertexGraph;
+    }
+
+    /** Triangles keyed by their corners. */
+    public TriangleRegistry getTriangleRegistry ()
+    {
+        return triangleRegistry;
+    }
+
+    /** Retracts the consequences of items that stop being determined. */
+    public TruthMaintenance getTruthMaintenance ()
+    {
+        return truthMaintenance;
+    }
+
+    /** When inferences are checked numerically. */
+    public VerificationPolicy getVerificationPolicy ()
+    {
+        return verificationPolicy;
+    }
+
+    /**
+     * Items waiting to be solved by the agenda engine. On a worker thread of the parallel engine
+     * this is the agenda of the component being solved.
+     */
+    public Agenda getAgenda ()
+    {
+        if (solvingComponents)
+        {
+            final Agenda result = componentAgenda.get ();
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return agenda;
+    }
+
+    /** Splits the agenda into components for the parallel engine. */
+    public ComponentSolver getComponentSolver ()
+    {
+        return componentSolver;
+    }
+
+    /** Solve one component on the current thread. Called by the component solver. */
+    void solveComponent (Agenda component)
+    {
+        final Agenda saved = componentAgenda.get ();
+        componentAgenda.set (component);
+        try
+        {
+            component.solve ();
+        }
+        finally
+        {
+            if (saved == null)
+            {
+                componentAgenda.remove ();
+            }
+            else
+            {
+                componentAgenda.set (saved);
+            }
+        }
+    }
+
+    /**
+     * Derive everything that follows from the current status of all items. Both engines reach the
+     * same fixed point. The agenda engine only runs items affected by changes since the last solve.
+     * The parallel engine does the same work split into connected components. Equivalence classes
+     * joined or retracted since the last solve are derived first. While a batch is open, solving
+     * waits until it is closed.
+     */
     public void solve ()
     {
-        while (dirty)
+        if (batchDepth > 0)
         {
+            batchSolve = true;
+            return;
+        }
+        if (solveEngine == SolveEngine.sweep)
+        {
+            equivalenceClasses.flush ();
+            while (dirty)
+            {
+                dirty = false;
+                for (final GeoItem item : store.getItems ())
+                {
+                    item.solve ();
+                }
+            }
+        }
+        else
+        {
+            final boolean wasRecording = recording;
+            recording = true;
+            try
+            {
+                solveAgenda ();
+            }
+            finally
+            {
+                recording = wasRecording;
+            }
+        }
+    }
+
+    /** Solve with the agenda or parallel engine. */
+    private void solveAgenda ()
+    {
+        final Agenda active = getAgenda ();
+        if (active == agenda)
+        {
+            equivalenceClasses.flush ();
+        }
+        if (active != agenda)
+        {
+            // Called while solving a component. The component loop will finish the work.
+            active.solve ();
+        }
+        else if (solveEngine == SolveEngine.parallel && agenda.getCurrent () == null)
+        {
+            solvingComponents = true;
+            try
+            {
+                componentSolver.solve (agenda);
+            }
+            finally
+            {
+                solvingComponents = false;
+            }
             dirty = false;
-            for (final GeoItem item : items)
+        }
+        else
+        {
+            agenda.solve ();
+            if (agenda.getCurrent () == null)
             {
-                item.solve ();
+                dirty = false;
             }
         }
     }
@@ -654,7 +1083,7 @@ public class GeoPlane
     public void paintItems (Graphics g, Set<String> categories)
     {
         final Labels labels = new Labels ();
-        for (final GeoItem item : items)
+        for (final GeoItem item : store.getItems ())
         {
             if (item.among (categories))
             {
@@ -678,7 +1107,7 @@ public class GeoPlane
         buffer.append ("#<");
         buffer.append (getClass ().getSimpleName ());
         buffer.append (" ");
-        buffer.append (items.size ());
+        buffer.append (store.size ());
         buffer.append (">");
         return buffer.toString ();
     }
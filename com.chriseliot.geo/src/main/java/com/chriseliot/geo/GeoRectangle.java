@@ -135,13 +135,13 @@ public class GeoRectangle extends GeoItem
     public void marshall (Element element)
     {
         super.marshall (element);
-        tl.marshall (xu.getNthChild (element, "name", xu.get (element, "tl", null), 0));
-        tr.marshall (xu.getNthChild (element, "name", xu.get (element, "tr", null), 0));
-        bl.marshall (xu.getNthChild (element, "name", xu.get (element, "bl", null), 0));
-        br.marshall (xu.getNthChild (element, "name", xu.get (element, "br", null), 0));
-        center.marshall (xu.getNthChild (element, "name", xu.get (element, "center", null), 0));
-        width.marshall (xu.getNthChild (element, "name", xu.get (element, "width", null), 0));
-        height.marshall (xu.getNthChild (element, "name", xu.get (element, "height", null), 0));
+        tl.marshall (xu.getChild (element, "name", xu.get (element, "tl", null)));
+        tr.marshall (xu.getChild (element, "name", xu.get (element, "tr", null)));
+        bl.marshall (xu.getChild (element, "name", xu.get (element, "bl", null)));
+        br.marshall (xu.getChild (element, "name", xu.get (element, "br", null)));
+        center.marshall (xu.getChild (element, "name", xu.get (element, "center", null)));
+        width.marshall (xu.getChild (element, "name", xu.get (element, "width", null)));
+        height.marshall (xu.getChild (element, "name", xu.get (element, "height", null)));
         from.x = tl.getPosition ().x;
         from.y = tl.getPosition ().y;
         to.x = br.getPosition ().x;
@@ -85,6 +85,7 @@ public class GeoTriangle extends GeoItem
         v1.addTriangle (this);
         v2.addTriangle (this);
         v3.addTriangle (this);
+        plane.getTriangleRegistry ().add (this);
         final String name = getName ();
         // Compute length of sides opposite each vertex
         l1 = new CentroidVariable (this, color, name + SEP + "l1", v2.distance (v3));
@@ -108,6 +109,7 @@ public class GeoTriangle extends GeoItem
         angle3.setLocation (v3.getVertex ());
 
         centroid = new NamedPoint (this, true, color, name + SEP + "C", centroid (), SwingConstants.SOUTH_WEST);
+        addRules ();
         addCategory ("simple");
         addCategory ("standard");
         l1.addCategory ("standard");
@@ -521,10 +523,6 @@ public class GeoTriangle extends GeoItem
         l3.setDoubleValue (v1.distance (v2));
         centroid.setPosition (centroid ());
 
-        l1.setDoubleValue (v2.distance (v3));
-        l2.setDoubleValue (v3.distance (v1));
-        l3.setDoubleValue (v1.distance (v2));
-
         // Angle opposite vertex 1 is angle between side l3 and l2.
         angle1.setDoubleValue (theta (l3.getDoubleValue (), l2.getDoubleValue (), l1.getDoubleValue ()));
         // Angle opposite vertex 2 is angle between side l1 and l3.
@@ -576,6 +574,13 @@ public class GeoTriangle extends GeoItem
      */
     @Override
     public void solve ()
+    {
+        fireRules ();
+        determineTriangleStatus ();
+    }
+
+    /** Declare the inference rules of this triangle, in the order they are fired. */
+    private void addRules ()
     {
         // If a vertex angle is known, the corresponding triangle angle is known
         vertexFromAngle (angle1, v1);
@@ -603,8 +608,6 @@ public class GeoTriangle extends GeoItem
         // If two angles are known the third is derived from 180 = a + b + c.
 
         locateCentroid ();
-
-        determineTriangleStatus ();
     }
 
     /**
@@ -616,52 +619,57 @@ public class GeoTriangle extends GeoItem
         final NamedPoint av = a.getVertex ();
         final NamedPoint bv = b.getVertex ();
 
-        l.setFormula ("triangle vertices", "%s == sqrt((%s - %s) ^ 2 + (%s - %s) ^ 2)", l, bv.getX (), av.getX (), bv.getY (),
+        addRule ("triangle vertices", "%s == sqrt((%s - %s) ^ 2 + (%s - %s) ^ 2)", l, bv.getX (), av.getX (), bv.getY (),
                 av.getY ());
-        logger.debug ("Length %s derived from vertices %s, %s", l.getName (), a.getName (), b.getName ());
     }
 
     private void deriveThirdAngle ()
     {
-        angle1.setFormula ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle1, angle2, angle3);
-        angle2.setFormula ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle2, angle3, angle1);
-        angle3.setFormula ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle3, angle2, angle1);
+        addRule ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle1, angle2, angle3);
+        addRule ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle2, angle3, angle1);
+        addRule ("triangle angles sum 180", "%s == 180 - (%s + %s)", angle3, angle2, angle1);
     }
 
     /** Compute a triangle angle from a vertex angle. */
     private void angleFromVertex (TriangleAngleVariable angle, GeoVertex v)
     {
-        // Value is the correct angle
-        final double angleValue = angle.getDoubleValue ();
-        final String angleName = angle.getName ();
         // Vertex angle may be a reflection
         final NamedVariable vertexAngle = v.getAngle ();
+        addRule (() -> angleCase (angle, vertexAngle) == 1, "Angle from vertex", "%s == %s", angle, vertexAngle);
+        addRule (() -> angleCase (angle, vertexAngle) == 2, "Angle from -vertex", "%s == -%s", angle, vertexAngle);
+        addRule (() -> angleCase (angle, vertexAngle) == 3, "Angle from 180-vertex", "%s == 180-%s", angle, vertexAngle);
+        addRule (() -> angleCase (angle, vertexAngle) == 4, "Angle from vertex+180", "%s == %s+180", angle, vertexAngle);
+    }
+
+    /**
+     * Determine how a triangle angle relates to a vertex angle, using the numerical values.
+     *
+     * @return 1 if equal, 2 if negated, 3 if supplementary, 4 if offset by 180 and 0 otherwise.
+     */
+    private int angleCase (NamedVariable angle, NamedVariable vertexAngle)
+    {
+        // Value is the correct angle
+        final double angleValue = angle.getDoubleValue ();
         final double vertexValue = vertexAngle.getDoubleValue ();
-        final String vertexName = vertexAngle.getName ();
         if (abs (vertexValue - angleValue) < epsilon)
         {
-            angle.setFormula ("Angle from vertex", "%s == %s", angle, vertexAngle);
-            logger.debug ("Angle %s == vertex %s", angleName, vertexName);
+            return 1;
         }
         else if (vertexValue < 0 && abs (angleValue + vertexValue) < epsilon)
         {
-            angle.setFormula ("Angle from -vertex", "%s == -%s", angle, vertexAngle);
-            logger.debug ("Angle %s == -vertex %s", angleName, vertexName);
+            return 2;
         }
         else if (vertexValue >= 0 && abs (180 - angleValue - vertexValue) < epsilon)
         {
-            angle.setFormula ("Angle from 180-vertex", "%s == 180-%s", angle, vertexAngle);
-            logger.debug ("Angle %s == 180-vertex %s", angleName, vertexName);
+            return 3;
         }
         else if (vertexValue < 0 && abs (180 - angleValue + vertexValue) < epsilon)
         {
-            angle.setFormula ("Angle from vertex+180", "%s == %s+180", angle, vertexAngle);
-            logger.debug ("Angle %s == vertex %s + 180", angleName, vertexName);
-        }
-        else
-        {
-            logger.warn ("Angle %s %.2f does not match vertex %s %.2f", angleName, angleValue, vertexName, vertexValue);
+            return 4;
         }
+        logger.debug ("Angle %s %.2f does not match vertex %s %.2f", angle.getName (), angleValue, vertexAngle.getName (),
+                vertexValue);
+        return 0;
     }
 
     /**
@@ -673,37 +681,43 @@ public class GeoTriangle extends GeoItem
      */
     private void vertexFromAngle (TriangleAngleVariable angle, GeoVertex v)
     {
-        // Value is the correct angle
-        final double angleValue = angle.getDoubleValue ();
-        final String angleName = angle.getName ();
         // Vertex angle may be a reflection
         final NamedVariable vertexAngle = v.getAngle ();
+        addRule (() -> vertexCase (angle, vertexAngle) == 1, "Vertex from angle", "%s == %s", vertexAngle, angle);
+        addRule (() -> vertexCase (angle, vertexAngle) == 2, "Vertex from -angle", "%s == -%s", vertexAngle, angle);
+        addRule (() -> vertexCase (angle, vertexAngle) == 3, "Vertex from 180-angle", "%s == 180-%s", vertexAngle, angle);
+        addRule (() -> vertexCase (angle, vertexAngle) == 4, "Vertex from angle-180", "%s == %s-180", vertexAngle, angle);
+    }
+
+    /**
+     * Determine how a vertex angle relates to a triangle angle, using the numerical values.
+     *
+     * @return 1 if equal, 2 if negated, 3 if supplementary, 4 if offset by 180 and 0 otherwise.
+     */
+    private int vertexCase (NamedVariable angle, NamedVariable vertexAngle)
+    {
+        // Value is the correct angle
+        final double angleValue = angle.getDoubleValue ();
         final double vertexValue = vertexAngle.getDoubleValue ();
-        final String vertexName = vertexAngle.getName ();
         if (vertexValue == angleValue)
         {
-            vertexAngle.setFormula ("Vertex from angle", "%s == %s", vertexAngle, angle);
-            logger.debug ("Vertex %s == angle %s", vertexName, angleName);
+            return 1;
         }
         else if (vertexValue < 0 && vertexValue == -angleValue)
         {
-            vertexAngle.setFormula ("Vertex from -angle", "%s == -%s", vertexAngle, angle);
-            logger.debug ("Vertex %s == -angle %s", vertexName, angleName);
+            return 2;
         }
         else if (vertexValue >= 0 && vertexValue == 180 - angleValue)
         {
-            vertexAngle.setFormula ("Vertex from 180-angle", "%s == 180-%s", vertexAngle, angle);
-            logger.debug ("Vertex %s == 180-angle %s", vertexName, angleName);
+            return 3;
         }
         else if (vertexValue < 0 && vertexValue == angleValue - 180)
         {
-            vertexAngle.setFormula ("Vertex from angle-180", "%s == %s-180", vertexAngle, angle);
-            logger.debug ("Vertex %s == angle %s - 180", vertexName, angleName);
-        }
-        else
-        {
-            logger.warn ("Vertex %s %.2f does not match angle %s %.2f", vertexName, vertexValue, angleName, angleValue);
+            return 4;
         }
+        logger.debug ("Vertex %s %.2f does not match angle %s %.2f", vertexAngle.getName (), vertexValue, angle.getName (),
+                angleValue);
+        return 0;
     }
 
     /**
@@ -716,14 +730,11 @@ public class GeoTriangle extends GeoItem
      */
     private void lawOfCosines ()
     {
-        final int count = countSidesDetermined ();
-        if (count == 3)
-        {
-            // Determine all angles
-            deriveVertexByLawOfCosines (v1);
-            deriveVertexByLawOfCosines (v2);
-            deriveVertexByLawOfCosines (v3);
-        }
+        // Determine all angles. These rules need all three sides, so they only fire when
+        // countSidesDetermined () == 3.
+        deriveVertexByLawOfCosines (v1);
+        deriveVertexByLawOfCosines (v2);
+        deriveVertexByLawOfCosines (v3);
         applyLawOfCosines (v1);
         applyLawOfCosines (v2);
         applyLawOfCosines (v3);
@@ -746,11 +757,9 @@ public class GeoTriangle extends GeoItem
         final NamedVariable a = getLeg1 (v);
         final NamedVariable b = getLeg2 (v);
         final NamedVariable c = getOpposite (v);
-        theta.setFormula ("law of cosines",
+        addRule ("law of cosines",
                 "%s == Block({$a=%s, $b=%s, $c=%s}, Return(ArcCos(($a^2 + $b^2 - $c^2) / (2 * $a * $b)) / Degree))", theta, a, b,
                 c);
-
-        // logger.info ("Theta %s: %s", theta.getName (), theta.getFormula ());
     }
 
     /**
@@ -765,10 +774,9 @@ public class GeoTriangle extends GeoItem
 
         final NamedVariable a = getLeg1 (v);
         final NamedVariable b = getLeg2 (v);
-        c.setFormula ("law of cosines",
+        addRule ("law of cosines",
                 "%s == Block({$a=%s, $b=%s, $theta=%s}, Return(sqrt($a^2 + $b^2 - 2*$a*$b*cos($theta * Degree))))", c, a, b,
                 theta);
-        // logger.info ("Calculate %s", c.getName ());
     }
 
     /**
@@ -811,10 +819,9 @@ public class GeoTriangle extends GeoItem
      */
     private void applyLawOfSines (NamedVariable a, TriangleAngleVariable A, NamedVariable b, TriangleAngleVariable B)
     {
-        a.setFormula ("law of sines",
+        addRule ("law of sines",
                 "%s == Block({angleA=%s, sideB=%s, angleB=%s}, Return((sideB * Sin (angleA * Degree)) / Sin(angleB * Degree)))",
                 a, A, b, B);
-        logger.debug ("Calculate %s", a.getName ());
     }
 
     /** Location of centroid */
@@ -824,13 +831,13 @@ public class GeoTriangle extends GeoItem
         final NamedVariable x2 = v2.getVertex ().getX ();
         final NamedVariable x3 = v3.getVertex ().getX ();
 
-        centroid.getX ().setFormula ("centroid", "%s == (%s + %s + %s) / 3", centroid.getX (), x1, x2, x3);
+        addRule ("centroid", "%s == (%s + %s + %s) / 3", centroid.getX (), x1, x2, x3);
 
         final NamedVariable y1 = v1.getVertex ().getY ();
         final NamedVariable y2 = v2.getVertex ().getY ();
         final NamedVariable y3 = v3.getVertex ().getY ();
 
-        centroid.getY ().setFormula ("centroid", "%s == (%s + %s + %s) / 3", centroid.getY (), y1, y2, y3);
+        addRule ("centroid", "%s == (%s + %s + %s) / 3", centroid.getY (), y1, y2, y3);
     }
 
     /** Set status (but not formula) of sides and angles. */
@@ -1048,13 +1055,13 @@ public class GeoTriangle extends GeoItem
     public void marshall (Element element)
     {
         super.marshall (element);
-        l1.marshall (xu.getNthChild (element, "name", xu.get (element, "l1", null), 0));
-        l2.marshall (xu.getNthChild (element, "name", xu.get (element, "l2", null), 0));
-        l3.marshall (xu.getNthChild (element, "name", xu.get (element, "l3", null), 0));
-        angle1.marshall (xu.getNthChild (element, "name", xu.get (element, "angle1", null), 0));
-        angle2.marshall (xu.getNthChild (element, "name", xu.get (element, "angle2", null), 0));
-        angle3.marshall (xu.getNthChild (element, "name", xu.get (element, "angle3", null), 0));
-        centroid.marshall (xu.getNthChild (element, "name", xu.get (element, "centroid", null), 0));
+        l1.marshall (xu.getChild (element, "name", xu.get (element, "l1", null)));
+        l2.marshall (xu.getChild (element, "name", xu.get (element, "l2", null)));
+        l3.marshall (xu.getChild (element, "name", xu.get (element, "l3", null)));
+        angle1.marshall (xu.getChild (element, "name", xu.get (element, "angle1", null)));
+        angle2.marshall (xu.getChild (element, "name", xu.get (element, "angle2", null)));
+        angle3.marshall (xu.getChild (element, "name", xu.get (element, "angle3", null)));
+        centroid.marshall (xu.getChild (element, "name", xu.get (element, "centroid", null)));
     }
 
     @Override
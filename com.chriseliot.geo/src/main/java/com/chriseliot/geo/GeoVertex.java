@@ -5,6 +5,7 @@ import static java.lang.Math.*;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -62,12 +63,14 @@ public class GeoVertex extends GeoItem
         this.line1 = line1;
         this.line2 = line2;
         this.position = position;
+        plane.getVertexGraph ().add (this);
         final String name = getName ();
         vertex = new NamedPoint (this, true, color, name + SEP + "p", position, SwingConstants.SOUTH_WEST);
         plane.addItem (vertex);
         final double theta1 = line1.angle (line2);
         // Make the vertex point be the parent of the angle so the NamedVariable has a location.
         angle = new NamedVariable (vertex, color, name + SEP + "v", theta1);
+        addRule ("vertex angles *", "%s == %s - %s", angle, line1.getAngle (), line2.getAngle ());
         addCategory ("simple");
         addCategory ("standard");
         recalculate ();
@@ -260,10 +263,7 @@ public class GeoVertex extends GeoItem
             logger.debug ("Theta %s %.2f = %s %.2f - %s %.2f", getName (), theta, line1.getName (),
                     line1.getAngle ().getDoubleValue (), line2.getName (), line2.getAngle ().getDoubleValue ());
             angle.setDoubleValue (theta);
-            for (final GeoTriangle t : new ArrayList<> (triangles))
-            {
-                t.recalculate ();
-            }
+            getPlane ().getRecalcScheduler ().schedule (triangles);
         }
     }
 
@@ -288,7 +288,7 @@ public class GeoVertex extends GeoItem
     {
         logger.debug ("Solve %s = %s %.2f - %s %.2f", getName (), line1.getName (), line1.getAngle ().getDoubleValue (),
                 line2.getName (), line2.getAngle ().getDoubleValue ());
-        angle.setFormula ("vertex angles *", "%s == %s - %s", angle, line1.getAngle (), line2.getAngle ());
+        fireRules ();
         if (isDetermined ())
         {
             if (!vertex.isDetermined ())
@@ -356,11 +356,27 @@ public class GeoVertex extends GeoItem
         super.marshall (element);
         position.x = xu.getDouble (element, "x", 0.0);
         position.y = xu.getDouble (element, "y", 0.0);
-        final Element vertexXml = xu.getNthChild (element, "name", xu.get (element, "vertex", null), 0);
+        final Element vertexXml = xu.getChild (element, "name", xu.get (element, "vertex", null));
         vertex.marshall (vertexXml);
         marshallReference (vertexXml, xu.get (element, "angle", null));
     }
 
+    @Override
+    void writeFields (BinaryOutput out) throws IOException
+    {
+        super.writeFields (out);
+        out.writeDouble (position.x);
+        out.writeDouble (position.y);
+    }
+
+    @Override
+    void readFields (BinaryInput in) throws IOException
+    {
+        super.readFields (in);
+        position.x = in.readDouble ();
+        position.y = in.readDouble ();
+    }
+
     @Override
     public String toString ()
     {
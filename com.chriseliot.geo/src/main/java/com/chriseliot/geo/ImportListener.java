@@ -0,0 +1,20 @@
+package com.chriseliot.geo;
+
+/** Told how a segment import is going, so progress can be shown. */
+public interface ImportListener
+{
+    /**
+     * Called every so often while the segments are read.
+     *
+     * @param segments The number of segments read so far.
+     * @param position The number of characters read so far.
+     * @param total The length of the input, or -1 if it is not known.
+     */
+    void segmentsRead (int segments, long position, long total);
+
+    /** Called every so often while lines are made from the segments. */
+    void linesCreated (int lines, int total);
+
+    /** Called when all the lines are made and their vertices and triangles are being found. */
+    void findingVertices (int lines);
+}
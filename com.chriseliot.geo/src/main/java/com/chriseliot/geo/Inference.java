@@ -1,14 +1,11 @@
 
 package com.chriseliot.geo;
 
-import static java.lang.Math.abs;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.*;
 
 import org.apache.logging.log4j.*;
-import org.matheclipse.core.eval.ExprEvaluator;
-import org.matheclipse.core.interfaces.IExpr;
 import org.w3c.dom.Element;
 
 import com.chriseliot.util.*;
@@ -42,6 +39,9 @@ public class Inference
      */
     private GeoItem[] terms;
 
+    /** The compiled rule that made this inference, or null. */
+    private Rule rule = null;
+
     public Inference (GeoItem owner, String reason, String formula, GeoItem[] terms)
     {
         this.owner = owner;
@@ -51,42 +51,35 @@ public class Inference
         assertEquals (owner, terms[0]);
     }
 
+    /** Make an inference from a compiled rule. The rule terms are shared, not copied. */
+    public Inference (GeoItem owner, Rule rule)
+    {
+        this (owner, rule.getReason (), rule.getFormula (), rule.getTerms ());
+        this.rule = rule;
+    }
+
+    /** The compiled rule that made this inference, or null. */
+    public Rule getRule ()
+    {
+        return rule;
+    }
+
+    /**
+     * Check an inference numerically against the values on screen, ignoring any verification
+     * policy.
+     *
+     * @return false if the formula does not produce the value of the owner.
+     */
     public static boolean verifyInference (String reason, String formula, GeoItem[] terms)
     {
-        final GeoItem owner = terms[0];
-        if (owner instanceof NamedVariable)
+        final Verification verification = Verification.capture (reason, formula, terms);
+        if (verification != null)
         {
-            final NamedVariable variable = (NamedVariable)owner;
-            if (variable.getDoubleValue () != null)
+            final double actual = verification.evaluate ();
+            if (verification.isMismatch (actual))
             {
-                // Check the value
-                final String expression = getInstantiation (formula, terms);
-                assertNotNull (expression);
-                final ExprEvaluator eval = new ExprEvaluator ();
-                final IExpr expr = eval.parse (expression);
-                final IExpr rhs = expr.getAt (2);
-                final StringBuilder builder = new StringBuilder ();
-                builder.append (String.format ("'%s' Inference: %s; rhs: %s", reason, expr, rhs));
-                for (final GeoItem term : terms)
-                {
-                    builder.append ("; ");
-                    builder.append (term.getName ());
-                    builder.append (" = ");
-                    builder.append (term.getStringValue ());
-                }
-                logger.debug (builder.toString ());
-                for (final GeoItem term : terms)
-                {
-                    term.defineVariable (eval);
-                }
-                final double expected = ((NamedVariable)owner).getDoubleValue ();
-                final double actual = eval.evalf (rhs);
-                final double epsilon = 0.0001;
-                if (abs (actual - expected) > epsilon)
-                {
-                    logger.error ("Var %s expected %.2f != %.2f FAIL", owner.getName (), expected, actual);
-                }
-                return (expected - actual) < epsilon;
+                logger.error ("Var %s expected %.2f != %.2f FAIL", verification.getOwner (), verification.getExpected (), actual);
+                return false;
             }
         }
         return true;
@@ -158,6 +151,23 @@ public class Inference
         return false;
     }
 
+    /** Can this inference derive the owner: the owner is undetermined and all other terms are determined. */
+    public boolean isReady ()
+    {
+        if (terms[0].isDetermined ())
+        {
+            return false;
+        }
+        for (int i = 1; i < terms.length; i++)
+        {
+            if (!terms[i].isDetermined ())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public boolean isDetermined ()
     {
         for (final GeoItem term : terms)
@@ -175,6 +185,10 @@ public class Inference
      */
     public String getInstantiation ()
     {
+        if (rule != null)
+        {
+            return rule.getInstantiation ();
+        }
         final Object[] names = getTermNames ();
         return String.format (formula, names);
     }
@@ -190,11 +204,16 @@ public class Inference
         element.setAttribute ("reason", reason);
         element.setAttribute ("formula", formula);
         element.setAttribute ("terms", tu.join ("+", getTermNames ()));
+        if (owner.getSupport () == this)
+        {
+            element.setAttribute ("support", "true");
+        }
     }
 
     public void marshall (Element element)
     {
         final GeoPlane plane = owner.getPlane ();
+        rule = null;
         reason = xu.get (element, "reason", null);
         formula = xu.get (element, "formula", null);
 
@@ -0,0 +1,230 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+import com.chriseliot.util.IndexedSet;
+
+/**
+ * Items of a plane in the order they were added. Items are compared by identity, so adding,
+ * finding and removing an item take constant time. Lines, vertices, triangles and toplevel items
+ * are also kept in their own sets, and the lists returned for them are live views instead of
+ * copies.
+ *
+ * Items are also indexed by id, so finding an item by id is an array lookup.
+ *
+ * The bindings map names to items. The key of each item is kept too, so finding the name an item
+ * is bound under does not scan the bindings.
+ */
+public class ItemStore
+{
+    /** All items. */
+    private final IndexedSet<GeoItem> items = new IndexedSet<> ();
+
+    /** Items without a parent. */
+    private final IndexedSet<GeoItem> roots = new IndexedSet<> ();
+
+    /** All lines. */
+    private final IndexedSet<GeoLine> lines = new IndexedSet<> ();
+
+    /** All vertices. */
+    private final IndexedSet<GeoVertex> vertices = new IndexedSet<> ();
+
+    /** All triangles. */
+    private final IndexedSet<GeoTriangle> triangles = new IndexedSet<> ();
+
+    /** Items by id, with null for ids that were removed. */
+    private final List<GeoItem> byId = new ArrayList<> ();
+
+    /** Items by the name they are bound under. */
+    private final Map<String, GeoItem> bindings = new HashMap<> ();
+
+    /** Read only view of the bindings. */
+    private final Map<String, GeoItem> bindingView = Collections.unmodifiableMap (bindings);
+
+    /** The name each item is bound under. */
+    private final Map<GeoItem, String> keys = new IdentityHashMap<> ();
+
+    /**
+     * Add an item at the end.
+     *
+     * @return false if the item was already present.
+     */
+    public boolean add (GeoItem item)
+    {
+        if (!items.add (item))
+        {
+            return false;
+        }
+        final int id = item.getId ();
+        while (byId.size () <= id)
+        {
+            byId.add (null);
+        }
+        byId.set (id, item);
+        if (item.getParent () == null)
+        {
+            roots.add (item);
+        }
+        if (item instanceof GeoLine)
+        {
+            lines.add ((GeoLine)item);
+        }
+        else if (item instanceof GeoVertex)
+        {
+            vertices.add ((GeoVertex)item);
+        }
+        else if (item instanceof GeoTriangle)
+        {
+            triangles.add ((GeoTriangle)item);
+        }
+        return true;
+    }
+
+    /**
+     * Remove an item and its binding.
+     *
+     * @return false if the item was not present.
+     */
+    public boolean remove (GeoItem item)
+    {
+        unbind (item);
+        if (!items.remove (item))
+        {
+            return false;
+        }
+        final int id = item.getId ();
+        if (id < byId.size () && byId.get (id) == item)
+        {
+            byId.set (id, null);
+        }
+        roots.remove (item);
+        lines.remove (item);
+        vertices.remove (item);
+        triangles.remove (item);
+        return true;
+    }
+
+    /** Is an item present. */
+    public boolean contains (GeoItem item)
+    {
+        return items.contains (item);
+    }
+
+    /**
+     * Bind an item under a name. Any other name the item was bound under is forgotten, and so is any
+     * other item bound under the name.
+     */
+    public void bind (String name, GeoItem item)
+    {
+        unbind (item);
+        final GeoItem previous = bindings.put (name, item);
+        if (previous != null && previous != item)
+        {
+            keys.remove (previous);
+        }
+        keys.put (item, name);
+    }
+
+    /**
+     * Forget the binding of an item.
+     *
+     * @return The name the item was bound under, or null.
+     */
+    public String unbind (GeoItem item)
+    {
+        final String key = keys.remove (item);
+        if (key != null)
+        {
+            bindings.remove (key);
+        }
+        return key;
+    }
+
+    /** The item bound under a name. */
+    public GeoItem get (String name)
+    {
+        return bindings.get (name);
+    }
+
+    /** The item with an id, or null. */
+    public GeoItem get (int id)
+    {
+        return id >= 0 && id < byId.size () ? byId.get (id) : null;
+    }
+
+    /** The name an item is bound under, or null. */
+    public String getKey (GeoItem item)
+    {
+        return keys.get (item);
+    }
+
+    /** Read only view of the bindings. */
+    public Map<String, GeoItem> getBindings ()
+    {
+        return bindingView;
+    }
+
+    /** Live read only list of all items. */
+    public List<GeoItem> getItems ()
+    {
+        return items.asList ();
+    }
+
+    /** Live read only list of the items without a parent. */
+    public List<GeoItem> getRoots ()
+    {
+        return roots.asList ();
+    }
+
+    /** Live read only list of the lines. */
+    public List<GeoLine> getLines ()
+    {
+        return lines.asList ();
+    }
+
+    /** Live read only list of the vertices. */
+    public List<GeoVertex> getVertices ()
+    {
+        return vertices.asList ();
+    }
+
+    /** Live read only list of the triangles. */
+    public List<GeoTriangle> getTriangles ()
+    {
+        return triangles.asList ();
+    }
+
+    /** Number of items. */
+    public int size ()
+    {
+        return items.size ();
+    }
+
+    /** Forget all items and bindings. */
+    public void clear ()
+    {
+        items.clear ();
+        roots.clear ();
+        lines.clear ();
+        vertices.clear ();
+        triangles.clear ();
+        byId.clear ();
+        bindings.clear ();
+        keys.clear ();
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (items.size ());
+        buffer.append (" ");
+        buffer.append (bindings.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
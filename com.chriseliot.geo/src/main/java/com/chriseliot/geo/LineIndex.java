@@ -0,0 +1,252 @@
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * Uniform grid over the bounding boxes of the lines in a plane. Each line is filed under every cell
+ * its bounding box touches, so the lines that might cross a moved line are found by looking at the
+ * cells near it instead of every line. Long lines that would touch too many cells are kept in a
+ * separate list that every query checks.
+ *
+ * GeoLine keeps the index up to date when it is recalculated. The cells a line was filed under are
+ * stored in the line, so a line can be refiled after its end points were moved in place.
+ */
+public class LineIndex
+{
+    /** Default width and height of a cell in screen units. */
+    public static final double DEFAULT_CELL_SIZE = 64;
+
+    /** Lines touching more cells than this are not filed in the grid. */
+    private static final int MAX_CELLS = 64;
+
+    /** Width and height of a cell in screen units. */
+    private final double cellSize;
+
+    /** Lines touching each cell, keyed by packed cell coordinates. */
+    private final Map<Long, List<GeoLine>> cells = new HashMap<> ();
+
+    /** Lines too long to file in the grid. */
+    private final List<GeoLine> large = new ArrayList<> ();
+
+    /** Number of lines in the index. */
+    private int size = 0;
+
+    /** Next insertion number, used to report crossings in plane order. */
+    private int serial = 0;
+
+    /** Number of the current query, used to visit each line once. */
+    private int query = 0;
+
+    /** Grid over the bounding boxes of the lines in a plane. */
+    public LineIndex ()
+    {
+        this (DEFAULT_CELL_SIZE);
+    }
+
+    /** Grid over the bounding boxes of the lines in a plane. */
+    public LineIndex (double cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    /** Add a line at its current position. */
+    public void add (GeoLine line)
+    {
+        if (!line.indexed)
+        {
+            line.indexed = true;
+            line.filed = false;
+            line.serial = serial++;
+            size++;
+            move (line);
+        }
+    }
+
+    /** Remove a line. */
+    public void remove (GeoLine line)
+    {
+        if (line.indexed)
+        {
+            unfile (line);
+            line.indexed = false;
+            size--;
+        }
+    }
+
+    /** File a line under the cells of its new bounding box. */
+    public void move (GeoLine line)
+    {
+        if (line.indexed)
+        {
+            final Point2D.Double a = line.getFrom ().getPosition ();
+            final Point2D.Double b = line.getTo ().getPosition ();
+            if (a == null || b == null)
+            {
+                unfile (line);
+                return;
+            }
+            final int x0 = cell (Math.min (a.x, b.x));
+            final int x1 = cell (Math.max (a.x, b.x));
+            final int y0 = cell (Math.min (a.y, b.y));
+            final int y1 = cell (Math.max (a.y, b.y));
+            if (!line.filed || x0 != line.cellX0 || x1 != line.cellX1 || y0 != line.cellY0 || y1 != line.cellY1)
+            {
+                unfile (line);
+                line.cellX0 = x0;
+                line.cellX1 = x1;
+                line.cellY0 = y0;
+                line.cellY1 = y1;
+                line.filed = true;
+                if (isLarge (x0, x1, y0, y1))
+                {
+                    large.add (line);
+                }
+                else
+                {
+                    for (int x = x0; x <= x1; x++)
+                    {
+                        for (int y = y0; y <= y1; y++)
+                        {
+                            cells.computeIfAbsent (key (x, y), k -> new ArrayList<> (4)).add (line);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Remove a line from the cells it is filed under. */
+    private void unfile (GeoLine line)
+    {
+        if (line.filed)
+        {
+            line.filed = false;
+            if (isLarge (line.cellX0, line.cellX1, line.cellY0, line.cellY1))
+            {
+                large.remove (line);
+            }
+            else
+            {
+                for (int x = line.cellX0; x <= line.cellX1; x++)
+                {
+                    for (int y = line.cellY0; y <= line.cellY1; y++)
+                    {
+                        final Long key = key (x, y);
+                        final List<GeoLine> cell = cells.get (key);
+                        if (cell != null)
+                        {
+                            cell.remove (line);
+                            if (cell.isEmpty ())
+                            {
+                                cells.remove (key);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the lines crossing one line. The line should be filed at its current position.
+     *
+     * @param line The new or moved line.
+     * @param result Receives the crossing lines in the order they were added to the index.
+     */
+    public void crossings (GeoLine line, List<GeoLine> result)
+    {
+        if (line.filed)
+        {
+            final int start = result.size ();
+            final int q = ++query;
+            line.query = q;
+            if (isLarge (line.cellX0, line.cellX1, line.cellY0, line.cellY1))
+            {
+                // A long line might cross anything, so look at every cell
+                for (final List<GeoLine> cell : cells.values ())
+                {
+                    check (line, q, cell, result);
+                }
+            }
+            else
+            {
+                for (int x = line.cellX0; x <= line.cellX1; x++)
+                {
+                    for (int y = line.cellY0; y <= line.cellY1; y++)
+                    {
+                        final List<GeoLine> cell = cells.get (key (x, y));
+                        if (cell != null)
+                        {
+                            check (line, q, cell, result);
+                        }
+                    }
+                }
+            }
+            check (line, q, large, result);
+            result.subList (start, result.size ()).sort ( (a, b) -> Integer.compare (a.serial, b.serial));
+        }
+    }
+
+    /** Add the lines of a cell that cross a line and were not seen by this query yet. */
+    private static void check (GeoLine line, int q, List<GeoLine> cell, List<GeoLine> result)
+    {
+        for (int i = 0; i < cell.size (); i++)
+        {
+            final GeoLine l = cell.get (i);
+            if (l.query != q)
+            {
+                l.query = q;
+                if (line.intersects (l))
+                {
+                    result.add (l);
+                }
+            }
+        }
+    }
+
+    private static boolean isLarge (int x0, int x1, int y0, int y1)
+    {
+        return ((double)x1 - x0 + 1) * ((double)y1 - y0 + 1) > MAX_CELLS;
+    }
+
+    /** The cell containing a coordinate. */
+    private int cell (double v)
+    {
+        return (int)Math.floor (v / cellSize);
+    }
+
+    /** Pack cell coordinates into one key. */
+    private static Long key (int x, int y)
+    {
+        return (long)x << 32 | y & 0xFFFFFFFFL;
+    }
+
+    /** Number of lines in the index. */
+    public int size ()
+    {
+        return size;
+    }
+
+    /** Forget all lines. Lines are not marked as removed, so only use this with the plane. */
+    public void clear ()
+    {
+        cells.clear ();
+        large.clear ();
+        size = 0;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (size);
+        buffer.append (" ");
+        buffer.append (cells.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -5,7 +5,8 @@ import static java.lang.Math.round;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
 import java.util.function.Consumer;
 
 import org.matheclipse.core.eval.ExprEvaluator;
@@ -31,12 +32,30 @@ public class NamedPoint extends GeoItem
 
     private Point2D.Double position;
 
+    /** Coincident points whose coordinates are equivalent to those of this point. */
+    private final Set<NamedPoint> equivalents = new HashSet<> ();
+
     /** The x coordinate. */
     private final NamedVariable x;
 
     /** The y coordinate. */
     private final NamedVariable y;
 
+    /** Set while this point is in the point index of the plane. */
+    boolean indexed = false;
+
+    /** Packed coordinates of the point index cell this point is filed under. */
+    long cell;
+
+    /** Insertion number in the point index. */
+    int serial;
+
+    /** Set while this point is in the coincidence index of the plane. */
+    boolean coincident = false;
+
+    /** Position this point is filed under in the coincidence index. */
+    Point2D.Double group;
+
     /**
      * Construct a named point.
      *
@@ -55,6 +74,9 @@ public class NamedPoint extends GeoItem
         this.position = position;
         x = new NamedVariable (this, color, name + SEP + "x", position.x);
         y = new NamedVariable (this, color, name + SEP + "y", position.y);
+        addRules ();
+        getPlane ().getPointIndex ().add (this);
+        getPlane ().getCoincidenceIndex ().add (this);
     }
 
     /**
@@ -76,6 +98,24 @@ public class NamedPoint extends GeoItem
         this.anchor = anchor;
         this.x = new NamedVariable (this, color, name + SEP + "x", x);
         this.y = new NamedVariable (this, color, name + SEP + "y", y);
+        addRules ();
+        getPlane ().getPointIndex ().add (this);
+        getPlane ().getCoincidenceIndex ().add (this);
+    }
+
+    /** Declare the inference rules relating this point to its coordinates. */
+    private void addRules ()
+    {
+        addRule ("aggregate", "%s == {%s, %s}", this, x, y);
+
+        // This inference isn't really true.
+        // x.setFormula ("known point", "%s == " + x.getDoubleValue (), x, this);
+        // y.setFormula ("known point", "%s == " + y.getDoubleValue (), y, this);
+
+        // New code
+        // Element this[[0]] is the function (list).
+        addRule ("known point", "%s == %s[[1]]", x, this);
+        addRule ("known point", "%s == %s[[2]]", y, this);
     }
 
     /** Can the user drag this point with the mouse. */
@@ -92,11 +132,27 @@ public class NamedPoint extends GeoItem
     public void setPosition (Point2D.Double position)
     {
         this.position = position;
+        moved ();
     }
 
     public void setPosition (double x, double y)
     {
         position = new Point2D.Double (x, y);
+        moved ();
+    }
+
+    /**
+     * File the point under its new position. The coincidence index makes it equivalent to any
+     * points already there, and no longer equivalent to the ones it left.
+     */
+    private void moved ()
+    {
+        if (x != null)
+        {
+            final GeoPlane plane = getPlane ();
+            plane.getPointIndex ().move (this);
+            plane.getCoincidenceIndex ().move (this);
+        }
     }
 
     /** The x coordinate. */
@@ -115,6 +171,7 @@ public class NamedPoint extends GeoItem
     public void drag (Point2D.Double d)
     {
         position = d;
+        moved ();
         recalculate ();
     }
 
@@ -166,6 +223,11 @@ public class NamedPoint extends GeoItem
         return distance2 (getPosition (), p.getPosition ());
     }
 
+    public double distance2 (double qx, double qy)
+    {
+        return distance2 (getPosition (), qx, qy);
+    }
+
     private double distance2 (Point2D.Double p, Point2D.Double q)
     {
         final double dx = q.x - p.x;
@@ -223,25 +285,72 @@ public class NamedPoint extends GeoItem
     @Override
     public void solve ()
     {
-        setFormula ("aggregate", "%s == {%s, %s}", this, x, y);
+        fireRules ();
+    }
 
-        // This inference isn't really true.
-        // x.setFormula ("known point", "%s == " + x.getDoubleValue (), x, this);
-        // y.setFormula ("known point", "%s == " + y.getDoubleValue (), y, this);
+    /**
+     * If two points are at the same screen position, make them equivalent. Their coordinates are
+     * derived from each other right away.
+     */
+    public void equivalent (NamedPoint p)
+    {
+        link (p);
+        getPlane ().getEquivalenceClasses ().flush ();
+    }
 
-        // New code
-        // Element this[[0]] is the function (list).
-        x.setFormula ("known point", "%s == %s[[1]]", x, this);
-        y.setFormula ("known point", "%s == %s[[2]]", y, this);
+    /**
+     * Put the coordinates of two points in the same equivalence classes, unless they are already.
+     * The coordinates are derived from each other by the next solve.
+     */
+    void link (NamedPoint p)
+    {
+        if (equivalents.add (p))
+        {
+            p.equivalents.add (this);
+            final EquivalenceClasses classes = getPlane ().getEquivalenceClasses ();
+            classes.union ("equivalent point x", x, p.x);
+            classes.union ("equivalent point y", y, p.y);
+        }
     }
 
-    /** If two points are at the same screen position, make them equivalent. */
-    public void equivalent (NamedPoint p)
+    /**
+     * Forget the points this point was made equivalent to, after it moved away from them. Its
+     * coordinates are taken out of their classes, and anything derived across the old links is
+     * retracted.
+     */
+    void unlink ()
     {
-        x.setFormula ("equivalent point x", "%s == %s", x, p.x);
-        y.setFormula ("equivalent point y", "%s == %s", y, p.y);
-        p.x.setFormula ("equivalent point x", "%s == %s", p.x, x);
-        p.y.setFormula ("equivalent point y", "%s == %s", p.y, y);
+        if (!equivalents.isEmpty ())
+        {
+            for (final NamedPoint p : equivalents)
+            {
+                p.equivalents.remove (this);
+            }
+            equivalents.clear ();
+            final GeoPlane plane = getPlane ();
+            final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+            final TruthMaintenance truthMaintenance = plane.getTruthMaintenance ();
+            truthMaintenance.retractAll (classes.unlink (x));
+            truthMaintenance.retractAll (classes.unlink (y));
+        }
+    }
+
+    /** Points this point is equivalent to. */
+    public Set<NamedPoint> getEquivalents ()
+    {
+        return equivalents;
+    }
+
+    /** Remove this point and forget the points it was equivalent to. */
+    @Override
+    public void remove ()
+    {
+        for (final NamedPoint p : equivalents)
+        {
+            p.equivalents.remove (this);
+        }
+        equivalents.clear ();
+        super.remove ();
     }
 
     /**
@@ -293,10 +402,20 @@ public class NamedPoint extends GeoItem
     public void marshall (Element element)
     {
         super.marshall (element);
-        x.marshall (xu.getNthChild (element, "name", xu.get (element, "x", null), 0));
-        y.marshall (xu.getNthChild (element, "name", xu.get (element, "y", null), 0));
+        x.marshall (xu.getChild (element, "name", xu.get (element, "x", null)));
+        y.marshall (xu.getChild (element, "name", xu.get (element, "y", null)));
+        position.x = x.getDoubleValue ();
+        position.y = y.getDoubleValue ();
+        moved ();
+    }
+
+    @Override
+    void readBinary (BinaryInput in) throws IOException
+    {
+        super.readBinary (in);
         position.x = x.getDoubleValue ();
         position.y = y.getDoubleValue ();
+        moved ();
     }
 
     @Override
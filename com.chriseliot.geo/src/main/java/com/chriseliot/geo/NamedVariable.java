@@ -3,7 +3,8 @@ package com.chriseliot.geo;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.*;
@@ -67,6 +68,10 @@ public class NamedVariable extends GeoItem
      */
     public Double getDoubleValue ()
     {
+        if (getPlane ().isRecording ())
+        {
+            getPlane ().read (this);
+        }
         return value;
     }
 
@@ -77,7 +82,11 @@ public class NamedVariable extends GeoItem
      */
     public void setDoubleValue (Double value)
     {
-        this.value = value;
+        if (!Objects.equals (this.value, value))
+        {
+            this.value = value;
+            getPlane ().scheduleReaders (this);
+        }
     }
 
     /** Set the status to unknown. Reset the formula and terms to the correct default state. */
@@ -110,25 +119,13 @@ public class NamedVariable extends GeoItem
         return String.format ("%.4f", value);
     }
 
-    /** Derive consequential formulas around this variable. */
+    /**
+     * Derive consequential formulas around this variable. Coincident points are linked by the
+     * coincidence index of the plane as they move, so there is nothing to search for here.
+     */
     @Override
     public void solve ()
     {
-        if (getParent () instanceof NamedPoint)
-        {
-            final NamedPoint parent = (NamedPoint)getParent ();
-            for (final GeoItem item : getPlane ().getItems ())
-            {
-                if (item instanceof NamedPoint && item != parent)
-                {
-                    final NamedPoint p = (NamedPoint)item;
-                    if (parent.at (p))
-                    {
-                        parent.equivalent (p);
-                    }
-                }
-            }
-        }
         // This can't do anything, I think, because its action depends on this being !isDetermined
         // and isDetermined.
         // setFormula ("fixed value", "%s == " + getDoubleValue (), this, this);
@@ -239,9 +236,7 @@ public class NamedVariable extends GeoItem
         final GeoPlane plane = getPlane ();
         if (plane.get (name) == null)
         {
-            plane.remove (this);
-            setName (name);
-            plane.addItem (this);
+            plane.rename (this, name);
             plane.fireChangeListeners (this);
         }
     }
@@ -278,6 +273,30 @@ public class NamedVariable extends GeoItem
         }
     }
 
+    @Override
+    void writeFields (BinaryOutput out) throws IOException
+    {
+        super.writeFields (out);
+        out.writeByte (value == null ? 0 : 1);
+        if (value != null)
+        {
+            out.writeDouble (value);
+        }
+        out.writeItem (location);
+    }
+
+    @Override
+    void readFields (BinaryInput in) throws IOException
+    {
+        super.readFields (in);
+        value = in.readByte () == 0 ? null : in.readDouble ();
+        final GeoItem saved = in.readItem ();
+        if (location == null && saved instanceof NamedPoint)
+        {
+            location = (NamedPoint)saved;
+        }
+    }
+
     @Override
     public String toString ()
     {
@@ -0,0 +1,74 @@
+package com.chriseliot.geo;
+
+/**
+ * A group of changes to a plane that are finished together. While a batch is open, new lines do
+ * not look for their own vertices, solving waits and change listeners are not called. When the
+ * outermost batch is closed, the vertices and triangles of all lines are found in one sweep, the
+ * plane is solved once and the listeners are told once.
+ *
+ * Use it with try with resources:
+ *
+ * <pre>
+ * try (PlaneBatch batch = plane.beginBatch ())
+ * {
+ *     // add many items
+ * }
+ * </pre>
+ */
+public class PlaneBatch implements AutoCloseable
+{
+    /** The plane being changed. */
+    private final GeoPlane plane;
+
+    /** Set when the batch is closed, so closing twice does nothing. */
+    private boolean closed = false;
+
+    PlaneBatch (GeoPlane plane)
+    {
+        this.plane = plane;
+    }
+
+    /** The plane being changed. */
+    public GeoPlane getPlane ()
+    {
+        return plane;
+    }
+
+    /**
+     * Should the vertices of the lines be found when the batch is done. This is on by default. Turn
+     * it off when the added items bring their vertices and triangles with them, like a saved file.
+     */
+    public void setFindVertices (boolean findVertices)
+    {
+        plane.setBatchFindVertices (findVertices);
+    }
+
+    /** Is this batch still open. */
+    public boolean isOpen ()
+    {
+        return !closed;
+    }
+
+    /** Finish the batch. The deferred work is done when the outermost batch is closed. */
+    @Override
+    public void close ()
+    {
+        if (!closed)
+        {
+            closed = true;
+            plane.endBatch ();
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (closed ? "closed" : "open");
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
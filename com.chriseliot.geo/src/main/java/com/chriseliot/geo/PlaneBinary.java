@@ -0,0 +1,257 @@
+package com.chriseliot.geo;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Saves and loads a plane in a compact binary form. A file is read by mapping it into memory and
+ * restoring the items straight from the buffer, with no xml parsing.
+ *
+ * The file has these sections:
+ * <ul>
+ * <li>A header with the magic number, version and the solution hash.</li>
+ * <li>A string table holding each name, reason and formula once.</li>
+ * <li>The toplevel items. Each one has its class name and the items needed to construct it,
+ * followed by its fields and its children. Strings and items are varint indexes, numbers are raw
+ * doubles.</li>
+ * <li>The recorded inferences, as the owner, whether it supports the owner, reason, formula and
+ * terms.</li>
+ * </ul>
+ *
+ * A solved plane is not solved again when it is loaded if the solution hash still matches.
+ * Version 1 files have no hash and no support flags, and are always solved again.
+ */
+public class PlaneBinary
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** File name suffix for the binary form. */
+    public static final String SUFFIX = ".geo";
+
+    /** The characters GEOB. */
+    private static final int MAGIC = 0x47454f42;
+
+    private static final int VERSION = 2;
+
+    /** Save the plane to a file. */
+    public void save (GeoPlane plane, File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            save (plane, channel);
+        }
+    }
+
+    /** Save the plane to a stream. The stream is not closed. */
+    public void save (GeoPlane plane, OutputStream stream) throws IOException
+    {
+        save (plane, Channels.newChannel (stream));
+        stream.flush ();
+    }
+
+    /** Save the plane to a channel. The channel is not closed. */
+    public void save (GeoPlane plane, WritableByteChannel channel) throws IOException
+    {
+        final BinaryOutput out = new BinaryOutput ();
+        // The first pass only collects strings and numbers the items
+        writeSections (plane, out);
+        out.flush ();
+        out.setChannel (channel);
+        out.writeInt (MAGIC);
+        out.writeVarint (VERSION);
+        out.writeLong (SolutionCache.getHash (plane));
+        final List<String> strings = out.getStrings ();
+        out.writeVarint (strings.size ());
+        for (final String string : strings)
+        {
+            out.writeUtf (string);
+        }
+        writeSections (plane, out);
+        out.flush ();
+        logger.info ("Saved %d items in %d bytes", out.getItems ().size (), out.getSize ());
+    }
+
+    /** Write the items and inferences. */
+    private void writeSections (GeoPlane plane, BinaryOutput out) throws IOException
+    {
+        final List<GeoItem> roots = plane.getRoots ();
+        out.writeVarint (roots.size ());
+        for (final GeoItem item : roots)
+        {
+            out.writeString (item.getClass ().getSimpleName ());
+            if (item instanceof GeoVertex)
+            {
+                final GeoVertex vertex = (GeoVertex)item;
+                out.writeItem (vertex.getLine1 ());
+                out.writeItem (vertex.getLine2 ());
+            }
+            else if (item instanceof GeoTriangle)
+            {
+                final GeoTriangle triangle = (GeoTriangle)item;
+                out.writeItem (triangle.getV1 ());
+                out.writeItem (triangle.getV2 ());
+                out.writeItem (triangle.getV3 ());
+            }
+            item.writeBinary (out);
+        }
+        final List<GeoItem> items = out.getItems ();
+        int count = 0;
+        for (final GeoItem item : items)
+        {
+            count += item.getInferences ().size ();
+        }
+        out.writeVarint (count);
+        for (final GeoItem item : items)
+        {
+            for (final Inference inference : item.getInferences ())
+            {
+                out.writeItem (item);
+                out.writeByte (item.getSupport () == inference ? 1 : 0);
+                out.writeString (inference.getReason ());
+                out.writeString (inference.getFormula ());
+                final GeoItem[] terms = inference.getTerms ();
+                out.writeVarint (terms.length);
+                for (final GeoItem term : terms)
+                {
+                    out.writeItem (term);
+                }
+            }
+        }
+    }
+
+    /** Clear the plane and load it from a file. The file is mapped into memory. */
+    public void load (GeoPlane plane, File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+        {
+            final long size = channel.size ();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException ("File too large " + file);
+            }
+            load (plane, channel.map (FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /** Clear the plane and load it from a stream. The stream is not closed. */
+    public void load (GeoPlane plane, InputStream stream) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+        final byte[] block = new byte[1 << 16];
+        int length;
+        while ((length = stream.read (block)) > 0)
+        {
+            bytes.write (block, 0, length);
+        }
+        load (plane, ByteBuffer.wrap (bytes.toByteArray ()));
+    }
+
+    /** Clear the plane and load it from a buffer. */
+    public void load (GeoPlane plane, ByteBuffer buffer) throws IOException
+    {
+        final BinaryInput in = new BinaryInput (buffer);
+        if (in.readInt () != MAGIC)
+        {
+            throw new IOException ("Not a binary geometry file");
+        }
+        final int version = in.readVarint ();
+        if (version < 1 || version > VERSION)
+        {
+            throw new IOException ("Can't read version " + version);
+        }
+        final Long hash = version > 1 ? in.readLong () : null;
+        in.readStrings ();
+        plane.clear ();
+        try (PlaneBatch batch = plane.beginBatch ())
+        {
+            // The file lists the vertices and triangles, so lines don't need to look for them
+            batch.setFindVertices (false);
+            final int roots = in.readVarint ();
+            for (int i = 0; i < roots; i++)
+            {
+                readItem (plane, in);
+            }
+            final SolutionCache cache = new SolutionCache (plane);
+            final int count = in.readVarint ();
+            for (int i = 0; i < count; i++)
+            {
+                final GeoItem owner = in.readItem ();
+                final boolean support = version > 1 && in.readByte () != 0;
+                final String reason = in.readString ();
+                final String formula = in.readString ();
+                final GeoItem[] terms = new GeoItem[in.readVarint ()];
+                for (int j = 0; j < terms.length; j++)
+                {
+                    terms[j] = in.readItem ();
+                }
+                if (owner == null || terms.length == 0 || terms[0] != owner)
+                {
+                    throw new IOException ("Bad inference " + reason + " for " + owner);
+                }
+                cache.add (new Inference (owner, reason, formula, terms), support);
+            }
+            cache.restore (hash);
+        }
+        logger.info ("Plane %s", plane);
+    }
+
+    /** Construct one toplevel item and restore it. */
+    private void readItem (GeoPlane plane, BinaryInput in) throws IOException
+    {
+        final String type = in.readString ();
+        final Color color = Color.black;
+        final GeoItem item;
+        if ("GeoLine".equals (type))
+        {
+            item = new GeoLine (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
+        }
+        else if ("GeoVertex".equals (type))
+        {
+            final GeoLine line1 = in.readItem (GeoLine.class);
+            final GeoLine line2 = in.readItem (GeoLine.class);
+            item = new GeoVertex (plane, color, line1, line2, new Point2D.Double (0, 0));
+            plane.addItem (item);
+        }
+        else if ("GeoTriangle".equals (type))
+        {
+            final GeoVertex v1 = in.readItem (GeoVertex.class);
+            final GeoVertex v2 = in.readItem (GeoVertex.class);
+            final GeoVertex v3 = in.readItem (GeoVertex.class);
+            item = new GeoTriangle (plane, color, v1, v2, v3);
+        }
+        else if ("GeoRectangle".equals (type))
+        {
+            item = new GeoRectangle (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
+        }
+        else if ("GeoOval".equals (type))
+        {
+            item = new GeoOval (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
+        }
+        else
+        {
+            // Without a length the rest of the file can't be found
+            throw new IOException ("Can't read " + type + " item");
+        }
+        item.readBinary (in);
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (System.identityHashCode (this));
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,656 @@
+package com.chriseliot.geo;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.logging.log4j.*;
+
+import com.chriseliot.util.*;
+
+/**
+ * Records the edits made to a plane in a journal next to its saved file, so a drawing can be saved
+ * often without writing the whole plane each time. Each edit the user makes is encoded as a small
+ * record as it happens, and flush appends the new records to the journal. When the journal grows
+ * past a limit it is compacted: the plane is saved to the snapshot file and the journal starts
+ * again.
+ *
+ * Opening a drawing loads the snapshot and replays the journal over it, which recovers the edits
+ * made since the last full save if the program stopped without saving.
+ *
+ * Each record is framed as its length, the record and a CRC32 of the record. Replay stops at the
+ * first record that is truncated or damaged, which is what a crash in the middle of a write leaves.
+ * The first record holds a checksum of the snapshot the journal applies to, so a journal left
+ * behind by a compaction that did not finish is not applied twice, and the name sequences, so the
+ * replayed items get the same names as the ones that were recorded.
+ */
+public class PlaneJournal implements EditListener, Closeable
+{
+    private static final Logger logger = LogManager.getFormatterLogger (PlaneJournal.class);
+
+    /** Suffix added to the snapshot file name to name the journal. */
+    public static final String SUFFIX = ".journal";
+
+    /** Compact when the journal is larger than this. */
+    public static final long COMPACT_SIZE = 1 << 20;
+
+    /** The characters GEOJ. */
+    private static final int MAGIC = 0x47454f4a;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 0;
+    private static final int ADD_LINE = 1;
+    private static final int ADD_RECTANGLE = 2;
+    private static final int ADD_OVAL = 3;
+    private static final int REMOVE = 4;
+    private static final int DRAG = 5;
+    private static final int STATUS = 6;
+    private static final int RENAME = 7;
+
+    /** Writes the body of one record. */
+    private interface RecordWriter
+    {
+        void write (DataOutputStream out) throws IOException;
+    }
+
+    private final GeoPlane plane;
+
+    /** The full save of the plane. */
+    private final File snapshot;
+
+    /** The journal file. */
+    private final File file;
+
+    /** Appends to the journal file. */
+    private FileChannel channel = null;
+
+    /** Size of the journal file. */
+    private long size = 0;
+
+    /** Compact when the journal is larger than this. */
+    private long compactSize = COMPACT_SIZE;
+
+    /**
+     * Shapes added since the last record. An item is added before its constructor is done, so it is
+     * recorded when the next record is made.
+     */
+    private final List<GeoItem> added = new ArrayList<> ();
+
+    /** Framed records not yet written to the journal. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream ();
+
+    /** The record being made. */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream ();
+
+    private final DataOutputStream recordOut = new DataOutputStream (record);
+
+    private final CRC32 crc = new CRC32 ();
+
+    /** Number of records made since the journal was started. */
+    private int recordCount = 0;
+
+    private PlaneJournal (GeoPlane plane, File snapshot)
+    {
+        this.plane = plane;
+        this.snapshot = snapshot;
+        file = getJournalFile (snapshot);
+    }
+
+    /** The journal file that goes with a snapshot. */
+    public static File getJournalFile (File snapshot)
+    {
+        return new File (snapshot.getPath () + SUFFIX);
+    }
+
+    /**
+     * Start journaling a plane that has just been saved to a snapshot file. Any old journal is
+     * discarded.
+     */
+    public static PlaneJournal start (GeoPlane plane, File snapshot) throws IOException
+    {
+        final PlaneJournal result = new PlaneJournal (plane, snapshot);
+        result.begin (checksum (snapshot));
+        return result;
+    }
+
+    /**
+     * Load a plane from a snapshot file, replay the journal that goes with it, and start journaling
+     * the plane. If the journal had any edits, they are compacted into the snapshot first.
+     */
+    public static PlaneJournal open (GeoPlane plane, File snapshot) throws IOException
+    {
+        final long checksum = checksum (snapshot);
+        loadSnapshot (plane, snapshot);
+        final PlaneJournal result = new PlaneJournal (plane, snapshot);
+        final int count = result.replay (checksum);
+        if (count > 0)
+        {
+            result.compact ();
+        }
+        else
+        {
+            result.begin (checksum);
+        }
+        return result;
+    }
+
+    /** The journal file. */
+    public File getFile ()
+    {
+        return file;
+    }
+
+    /** The full save of the plane. */
+    public File getSnapshot ()
+    {
+        return snapshot;
+    }
+
+    /** Size of the journal file, not counting records that are not flushed. */
+    public long getSize ()
+    {
+        return size;
+    }
+
+    /** Compact when the journal is larger than this. */
+    public long getCompactSize ()
+    {
+        return compactSize;
+    }
+
+    /** Compact when the journal is larger than this. */
+    public void setCompactSize (long compactSize)
+    {
+        this.compactSize = compactSize;
+    }
+
+    /** Number of records made since the journal was started. */
+    public int getRecordCount ()
+    {
+        return recordCount;
+    }
+
+    /** Start a new journal for the snapshot and listen to the plane. */
+    private void begin (long checksum) throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close ();
+        }
+        added.clear ();
+        pending.reset ();
+        recordCount = 0;
+        channel = FileChannel.open (file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        size = 0;
+        final Map<String, Integer> counters = plane.getNamer ().getCounters ();
+        append (HEADER, out ->
+        {
+            out.writeInt (MAGIC);
+            out.writeByte (VERSION);
+            out.writeLong (checksum);
+            out.writeInt (counters.size ());
+            for (final Map.Entry<String, Integer> entry : counters.entrySet ())
+            {
+                out.writeUTF (entry.getKey ());
+                out.writeInt (entry.getValue ());
+            }
+        });
+        recordCount = 0;
+        write ();
+        plane.removeEditListener (this);
+        plane.addEditListener (this);
+    }
+
+    /**
+     * Append the records made since the last flush to the journal, and compact it if it is too
+     * large. The cost depends on the edits, not the size of the plane.
+     */
+    public void flush () throws IOException
+    {
+        writeAdded ();
+        write ();
+        if (size > compactSize)
+        {
+            compact ();
+        }
+    }
+
+    /** Write the pending records and force them to the disk. */
+    private void write () throws IOException
+    {
+        if (pending.size () > 0)
+        {
+            final ByteBuffer buffer = ByteBuffer.wrap (pending.toByteArray ());
+            while (buffer.hasRemaining ())
+            {
+                channel.write (buffer);
+            }
+            channel.force (false);
+            size += pending.size ();
+            pending.reset ();
+        }
+    }
+
+    /**
+     * Save the whole plane to the snapshot file and start a new journal. The snapshot is written to
+     * a temporary file and moved into place, so a crash leaves either the old or the new snapshot.
+     */
+    public void compact () throws IOException
+    {
+        final File temp = new File (snapshot.getParentFile (), "~" + snapshot.getName ());
+        saveSnapshot (plane, temp);
+        try
+        {
+            Files.move (temp.toPath (), snapshot.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final AtomicMoveNotSupportedException e)
+        {
+            Files.move (temp.toPath (), snapshot.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.info ("Compacted %d bytes of journal into %s", size + pending.size (), snapshot);
+        begin (checksum (snapshot));
+    }
+
+    /** Flush the journal and stop listening to the plane. The journal is kept for the next open. */
+    @Override
+    public void close () throws IOException
+    {
+        if (channel != null)
+        {
+            plane.removeEditListener (this);
+            writeAdded ();
+            write ();
+            channel.close ();
+            channel = null;
+        }
+    }
+
+    /**
+     * Stop listening to the plane and delete the journal, dropping the edits made since the
+     * snapshot was saved. Used when the user chooses not to save them.
+     */
+    public void discard () throws IOException
+    {
+        if (channel != null)
+        {
+            plane.removeEditListener (this);
+            channel.close ();
+            channel = null;
+        }
+        added.clear ();
+        pending.reset ();
+        Files.deleteIfExists (file.toPath ());
+        logger.info ("Discarded journal %s", file);
+    }
+
+    @Override
+    public void itemAdded (GeoItem item)
+    {
+        if (item.getParent () == null && (item instanceof GeoLine || item instanceof GeoRectangle || item instanceof GeoOval))
+        {
+            added.add (item);
+        }
+    }
+
+    @Override
+    public void itemRemoved (GeoItem item)
+    {
+        // Vertices are only removed along with their lines
+        if (item.getParent () == null && !(item instanceof GeoVertex))
+        {
+            append (REMOVE, out -> out.writeUTF (item.getName ()));
+        }
+    }
+
+    @Override
+    public void dragged (Point2D.Double from, Point2D.Double to)
+    {
+        append (DRAG, out ->
+        {
+            out.writeDouble (from.x);
+            out.writeDouble (from.y);
+            out.writeDouble (to.x);
+            out.writeDouble (to.y);
+        });
+    }
+
+    @Override
+    public void itemRenamed (GeoItem item, String name)
+    {
+        append (RENAME, out ->
+        {
+            out.writeUTF (item.getName ());
+            out.writeUTF (name);
+        });
+    }
+
+    @Override
+    public void statusGiven (GeoItem item, GeoStatus status)
+    {
+        append (STATUS, out ->
+        {
+            out.writeUTF (item.getName ());
+            out.writeByte (status.ordinal ());
+        });
+    }
+
+    /** Record the shapes added since the last record. */
+    private void writeAdded ()
+    {
+        for (final GeoItem item : added)
+        {
+            final Point2D.Double from;
+            final Point2D.Double to;
+            final int type;
+            if (item instanceof GeoLine)
+            {
+                type = ADD_LINE;
+                from = ((GeoLine)item).getFrom ().getPosition ();
+                to = ((GeoLine)item).getTo ().getPosition ();
+            }
+            else if (item instanceof GeoRectangle)
+            {
+                type = ADD_RECTANGLE;
+                from = ((GeoRectangle)item).getTopLeft ().getPosition ();
+                to = ((GeoRectangle)item).getBottomRight ().getPosition ();
+            }
+            else
+            {
+                type = ADD_OVAL;
+                from = ((GeoOval)item).getFrom ().getPosition ();
+                to = ((GeoOval)item).getTo ().getPosition ();
+            }
+            appendRecord (type, out ->
+            {
+                out.writeUTF (item.getName ());
+                out.writeInt (item.getColor ().getRGB ());
+                out.writeDouble (from.x);
+                out.writeDouble (from.y);
+                out.writeDouble (to.x);
+                out.writeDouble (to.y);
+            });
+        }
+        added.clear ();
+    }
+
+    /** Make a record, after the records of any shapes added before it. */
+    private void append (int type, RecordWriter writer)
+    {
+        writeAdded ();
+        appendRecord (type, writer);
+    }
+
+    /** Make a record and frame it with its length and CRC. */
+    private void appendRecord (int type, RecordWriter writer)
+    {
+        try
+        {
+            record.reset ();
+            recordOut.writeByte (type);
+            writer.write (recordOut);
+            recordOut.flush ();
+            final byte[] bytes = record.toByteArray ();
+            crc.reset ();
+            crc.update (bytes, 0, bytes.length);
+            final DataOutputStream out = new DataOutputStream (pending);
+            out.writeInt (bytes.length);
+            out.write (bytes);
+            out.writeInt ((int)crc.getValue ());
+            recordCount++;
+        }
+        catch (final IOException e)
+        {
+            // Only memory is written here
+            throw new UncheckedIOException (e);
+        }
+    }
+
+    /**
+     * Apply the journal to the plane just loaded from the snapshot.
+     *
+     * @return The number of records applied.
+     */
+    private int replay (long checksum) throws IOException
+    {
+        if (!file.exists ())
+        {
+            return 0;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap (Files.readAllBytes (file.toPath ()));
+        final ByteBuffer header = nextRecord (buffer);
+        if (header == null || header.get () != HEADER || header.remaining () < 17 || header.getInt () != MAGIC)
+        {
+            logger.warn ("Ignoring bad journal %s", file);
+            return 0;
+        }
+        final int version = header.get ();
+        if (version != VERSION)
+        {
+            logger.warn ("Ignoring journal %s version %d", file, version);
+            return 0;
+        }
+        if (header.getLong () != checksum)
+        {
+            // The edits are already in the snapshot
+            logger.info ("Journal %s does not belong to %s", file, snapshot);
+            return 0;
+        }
+        final Map<String, Integer> counters = new HashMap<> ();
+        final int count = header.getInt ();
+        for (int i = 0; i < count; i++)
+        {
+            final String root = readUTF (header);
+            counters.put (root, header.getInt ());
+        }
+        plane.getNamer ().setCounters (counters);
+        int result = 0;
+        ByteBuffer body;
+        while ((body = nextRecord (buffer)) != null)
+        {
+            apply (body);
+            result++;
+        }
+        if (buffer.hasRemaining ())
+        {
+            logger.warn ("Ignoring %d damaged bytes at the end of journal %s", buffer.remaining (), file);
+        }
+        logger.info ("Replayed %d journal records from %s", result, file);
+        return result;
+    }
+
+    /** The next record in the journal, or null if it is truncated or damaged. */
+    private ByteBuffer nextRecord (ByteBuffer buffer)
+    {
+        if (buffer.remaining () < 8)
+        {
+            return null;
+        }
+        final int start = buffer.position ();
+        final int length = buffer.getInt (start);
+        if (length <= 0 || length > buffer.remaining () - 8)
+        {
+            return null;
+        }
+        crc.reset ();
+        crc.update (buffer.array (), start + 4, length);
+        if ((int)crc.getValue () != buffer.getInt (start + 4 + length))
+        {
+            return null;
+        }
+        buffer.position (start + 8 + length);
+        return ByteBuffer.wrap (buffer.array (), start + 4, length).slice ();
+    }
+
+    /** Redo one edit. */
+    private void apply (ByteBuffer in)
+    {
+        final int type = in.get ();
+        switch (type)
+        {
+            case ADD_LINE:
+            case ADD_RECTANGLE:
+            case ADD_OVAL:
+            {
+                final String name = readUTF (in);
+                final Color color = new Color (in.getInt (), true);
+                final Point2D.Double from = new Point2D.Double (in.getDouble (), in.getDouble ());
+                final Point2D.Double to = new Point2D.Double (in.getDouble (), in.getDouble ());
+                final GeoItem item;
+                if (type == ADD_LINE)
+                {
+                    item = new GeoLine (plane, color, from, to);
+                }
+                else if (type == ADD_RECTANGLE)
+                {
+                    item = new GeoRectangle (plane, color, from, to);
+                }
+                else
+                {
+                    item = new GeoOval (plane, color, from, to);
+                }
+                if (!name.equals (item.getName ()))
+                {
+                    logger.warn ("Journal added %s but replay named it %s", name, item.getName ());
+                }
+                break;
+            }
+            case REMOVE:
+            {
+                final GeoItem item = plane.get (readUTF (in));
+                // Removing a line also removes its vertices, which are recorded too
+                if (item != null)
+                {
+                    item.remove ();
+                }
+                break;
+            }
+            case DRAG:
+            {
+                final Point2D.Double from = new Point2D.Double (in.getDouble (), in.getDouble ());
+                final Point2D.Double to = new Point2D.Double (in.getDouble (), in.getDouble ());
+                plane.drag (from, to);
+                break;
+            }
+            case STATUS:
+            {
+                final String name = readUTF (in);
+                final GeoItem item = plane.get (name);
+                final int status = in.get ();
+                if (item == null || status < 0 || status >= GeoStatus.values ().length)
+                {
+                    logger.warn ("Can't give %s status %d", name, status);
+                }
+                else
+                {
+                    item.setGivenStatus (GeoStatus.values ()[status]);
+                }
+                break;
+            }
+            case RENAME:
+            {
+                final String name = readUTF (in);
+                final GeoItem item = plane.get (name);
+                final String newName = readUTF (in);
+                if (item == null)
+                {
+                    logger.warn ("Can't rename %s to %s", name, newName);
+                }
+                else
+                {
+                    plane.rename (item, newName);
+                }
+                break;
+            }
+            default:
+                logger.warn ("Unknown journal record %d", type);
+        }
+    }
+
+    /** Read a string written by DataOutputStream.writeUTF. Names are plain text. */
+    private static String readUTF (ByteBuffer in)
+    {
+        final byte[] bytes = new byte[in.getShort () & 0xffff];
+        in.get (bytes);
+        return new String (bytes, StandardCharsets.UTF_8);
+    }
+
+    /** CRC32 of the bytes of a file. */
+    static long checksum (File file) throws IOException
+    {
+        final CRC32 result = new CRC32 ();
+        final ByteBuffer buffer = ByteBuffer.allocate (1 << 16);
+        try (FileChannel in = FileChannel.open (file.toPath (), StandardOpenOption.READ))
+        {
+            while (in.read (buffer) > 0)
+            {
+                result.update (buffer.array (), 0, buffer.position ());
+                buffer.clear ();
+            }
+        }
+        return result.getValue ();
+    }
+
+    /** Load a plane in the binary form if the file name ends with .geo, otherwise as xml. */
+    public static void loadSnapshot (GeoPlane plane, File file) throws IOException
+    {
+        if (new FileUtils ().hasExtension (file, PlaneBinary.SUFFIX))
+        {
+            new PlaneBinary ().load (plane, file);
+        }
+        else
+        {
+            try
+            {
+                new PlaneXml ().load (plane, file);
+            }
+            catch (final ParserConfigurationException e)
+            {
+                throw new IOException ("Can't read " + file, e);
+            }
+        }
+    }
+
+    /** Save a plane in the binary form if the file name ends with .geo, otherwise as xml. */
+    public static void saveSnapshot (GeoPlane plane, File file) throws IOException
+    {
+        if (new FileUtils ().hasExtension (file, PlaneBinary.SUFFIX))
+        {
+            new PlaneBinary ().save (plane, file);
+        }
+        else
+        {
+            try
+            {
+                new PlaneXml ().save (plane, file);
+            }
+            catch (final ParserConfigurationException e)
+            {
+                throw new IOException ("Can't write " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (file.getName ());
+        buffer.append (" ");
+        buffer.append (recordCount);
+        buffer.append (" records>");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,267 @@
+package com.chriseliot.geo;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.util.*;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.*;
+
+import org.apache.logging.log4j.*;
+import org.w3c.dom.*;
+
+import com.chriseliot.util.*;
+
+/**
+ * Saves and loads a plane as xml without building a document for the whole file. Saving streams
+ * each item to the file as it goes, and loading reads one toplevel element at a time into a small
+ * DOM tree, restores it and drops it, so memory is bounded by the largest item instead of the
+ * file. Files whose name ends with .gz are compressed.
+ *
+ * The xml is the same as GeoItem.getElement makes, so either form can be read. The geometry element
+ * also carries the solution hash, so a solved plane is not solved again when it is loaded.
+ */
+public class PlaneXml
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** Attribute of the geometry element holding the solution hash. */
+    public static final String SOLUTION = "solution";
+
+    private final XMLUtil xu = new XMLUtil ();
+
+    private final TextUtils tu = new TextUtils ();
+
+    /** Tag of an inference element. */
+    private static final String INFERENCE = Inference.class.getSimpleName ();
+
+    /** Save the plane to a file. */
+    public void save (GeoPlane plane, File file) throws ParserConfigurationException, IOException
+    {
+        try (OutputStream stream = xu.openOutput (file))
+        {
+            save (plane, stream);
+        }
+    }
+
+    /** Save the plane to a stream. The stream is not closed. */
+    public void save (GeoPlane plane, OutputStream stream) throws ParserConfigurationException, IOException
+    {
+        // Attributes of each item are collected here before they are written
+        final Element scratch = xu.getDocumentBuilder ().newDocument ().createElement ("scratch");
+        try
+        {
+            final XMLStreamWriter out = xu.getXMLStreamWriter (stream);
+            out.writeStartDocument ("UTF-8", "1.0");
+            xu.indent (out, 0);
+            out.writeStartElement ("geometry");
+            out.writeAttribute (SOLUTION, SolutionCache.toString (SolutionCache.getHash (plane)));
+            // Save namer state
+            // Save window state
+            for (final GeoItem item : plane.getRoots ())
+            {
+                item.writeElement (out, scratch, 1);
+            }
+            xu.indent (out, 0);
+            out.writeEndElement ();
+            out.writeEndDocument ();
+            out.close ();
+        }
+        catch (final XMLStreamException e)
+        {
+            throw new IOException ("Can't write geometry", e);
+        }
+    }
+
+    /** Clear the plane and load it from a file. */
+    public void load (GeoPlane plane, File file) throws ParserConfigurationException, IOException
+    {
+        try (InputStream stream = xu.openInput (file))
+        {
+            load (plane, stream);
+        }
+    }
+
+    /** Clear the plane and load it from a stream. The stream is not closed. */
+    public void load (GeoPlane plane, InputStream stream) throws ParserConfigurationException, IOException
+    {
+        plane.clear ();
+        // Elements are created by this document but never added to it
+        final Document doc = xu.getDocumentBuilder ().newDocument ();
+        try (PlaneBatch batch = plane.beginBatch ())
+        {
+            // The file lists the vertices and triangles, so lines don't need to look for them
+            batch.setFindVertices (false);
+            final XMLStreamReader in = xu.getXMLStreamReader (stream);
+            // Skip to the geometry element, then read its children
+            in.nextTag ();
+            final Long hash = SolutionCache.parseHash (in.getAttributeValue (null, SOLUTION));
+            // Inferences follow their owner, and their terms may be later in the file. Only their
+            // attributes are kept, so the elements of each item can be dropped once it is read.
+            final List<SavedInference> inferences = new ArrayList<> ();
+            String owner = null;
+            while (in.nextTag () == XMLStreamConstants.START_ELEMENT)
+            {
+                final Element element = xu.readElement (in, doc);
+                if (element.getTagName ().equals (INFERENCE))
+                {
+                    inferences.add (saveInference (owner, element));
+                }
+                else
+                {
+                    marshall (plane, element);
+                    findInferences (element, inferences);
+                    owner = xu.get (element, "name", null);
+                }
+            }
+            in.close ();
+            final SolutionCache cache = new SolutionCache (plane);
+            for (final SavedInference inference : inferences)
+            {
+                addInference (plane, cache, inference);
+            }
+            cache.restore (hash);
+        }
+        catch (final XMLStreamException e)
+        {
+            throw new IOException ("Can't read geometry", e);
+        }
+        logger.info ("Plane %s", plane);
+    }
+
+    /** Collect the inferences inside an item, each with the name of its owner. */
+    private void findInferences (Element element, List<SavedInference> result)
+    {
+        String owner = null;
+        for (final Element child : xu.getChildren (element))
+        {
+            if (child.getTagName ().equals (INFERENCE))
+            {
+                result.add (saveInference (owner, child));
+            }
+            else
+            {
+                findInferences (child, result);
+                owner = xu.get (child, "name", null);
+            }
+        }
+    }
+
+    /** The attributes of an inference element, kept until all items are read. */
+    private static final class SavedInference
+    {
+        /** Name of the item the inference belongs to, or null. */
+        private final String owner;
+
+        private final String reason;
+
+        private final String formula;
+
+        /** Term names joined by +. */
+        private final String terms;
+
+        /** Did the inference justify the status of its owner. */
+        private final boolean support;
+
+        SavedInference (String owner, String reason, String formula, String terms, boolean support)
+        {
+            this.owner = owner;
+            this.reason = reason;
+            this.formula = formula;
+            this.terms = terms;
+            this.support = support;
+        }
+    }
+
+    /** Copy the attributes of an inference element so the element itself can be dropped. */
+    private SavedInference saveInference (String owner, Element element)
+    {
+        return new SavedInference (owner, xu.get (element, "reason", null), xu.get (element, "formula", null),
+                xu.get (element, "terms", ""), xu.getBoolean (element, "support", false));
+    }
+
+    /** Restore an inference once all items are read. */
+    private void addInference (GeoPlane plane, SolutionCache cache, SavedInference saved)
+    {
+        final String ownerName = saved.owner;
+        final GeoItem owner = ownerName == null ? null : plane.get (ownerName);
+        final List<String> names = tu.split (saved.terms, "+");
+        final GeoItem[] terms = new GeoItem[names.size ()];
+        for (int i = 0; i < terms.length; i++)
+        {
+            terms[i] = plane.get (names.get (i));
+            if (terms[i] == null)
+            {
+                logger.warn ("Can't locate term %s of inference for %s", names.get (i), ownerName);
+                return;
+            }
+        }
+        if (owner == null || terms.length == 0 || terms[0] != owner)
+        {
+            logger.warn ("Inference for %s does not match its terms", ownerName);
+            return;
+        }
+        cache.add (new Inference (owner, saved.reason, saved.formula, terms), saved.support);
+    }
+
+    /** Restore one toplevel item from its element. */
+    public void marshall (GeoPlane plane, Element element)
+    {
+        final String tag = element.getTagName ();
+        if (tag.equals ("GeoLine"))
+        {
+            final Color color = new Color (xu.getInteger (element, "color", 0));
+            final Point2D.Double from = new Point2D.Double (0, 0);
+            final Point2D.Double to = new Point2D.Double (0, 0);
+            final GeoLine item = new GeoLine (plane, color, from, to);
+            item.marshall (element);
+        }
+        else if (tag.equals ("GeoVertex"))
+        {
+            final Color color = new Color (xu.getInteger (element, "color", 0));
+            final GeoLine line1 = (GeoLine)plane.get (xu.get (element, "line1", null));
+            final GeoLine line2 = (GeoLine)plane.get (xu.get (element, "line2", null));
+            final GeoVertex item = new GeoVertex (plane, color, line1, line2, new Point2D.Double (0, 0));
+            plane.addItem (item);
+            item.marshall (element);
+        }
+        else if (tag.equals ("GeoTriangle"))
+        {
+            final Color color = new Color (xu.getInteger (element, "color", 0));
+            final GeoVertex v1 = (GeoVertex)plane.get (xu.get (element, "v1", null));
+            final GeoVertex v2 = (GeoVertex)plane.get (xu.get (element, "v2", null));
+            final GeoVertex v3 = (GeoVertex)plane.get (xu.get (element, "v3", null));
+            final GeoTriangle item = new GeoTriangle (plane, color, v1, v2, v3);
+            item.marshall (element);
+        }
+        else if (tag.equals ("GeoRectangle"))
+        {
+            final Color color = new Color (xu.getInteger (element, "color", 0));
+            final GeoRectangle item = new GeoRectangle (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
+            item.marshall (element);
+        }
+        else if (tag.equals ("GeoOval"))
+        {
+            final Color color = new Color (xu.getInteger (element, "color", 0));
+            final GeoOval item = new GeoOval (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
+            item.marshall (element);
+        }
+        else
+        {
+            logger.warn ("Can't marshall %s element", tag);
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (System.identityHashCode (this));
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
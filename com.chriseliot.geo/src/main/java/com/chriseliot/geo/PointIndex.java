@@ -0,0 +1,312 @@
+
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Uniform grid over the positions of the named points in a plane. Points are filed by the cell
+ * containing their position, so snap, click and drag searches only look at the cells near the
+ * mouse. The table is keyed by packed cell coordinates with open addressing, so lookups do not box
+ * keys or allocate.
+ *
+ * NamedPoint keeps the index up to date as it moves. The cell a point was filed under is stored in
+ * the point, so a point can be moved or removed even if its position object was changed in place.
+ */
+public class PointIndex
+{
+    /** Default width and height of a cell in screen units. */
+    public static final double DEFAULT_CELL_SIZE = 32;
+
+    /** Cell of a point without a position. This cell is never stored in the table. */
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    /** Width and height of a cell in screen units. */
+    private final double cellSize;
+
+    /** Packed cell coordinates of each slot. */
+    private long[] keys = new long[64];
+
+    /** Points in the cell of each slot, or null for an empty slot. */
+    private List<NamedPoint>[] cells = newCells (64);
+
+    /** Number of slots in use. */
+    private int used = 0;
+
+    /** Number of points in the index. */
+    private int size = 0;
+
+    /** Next insertion number, used to break ties in plane order. */
+    private int serial = 0;
+
+    /** Make an empty array of cells. Java can't create a generic array without a cast. */
+    @SuppressWarnings ({"unchecked", "rawtypes"})
+    private static List<NamedPoint>[] newCells (int length)
+    {
+        return new List[length];
+    }
+
+    /** Grid over the positions of the named points in a plane. */
+    public PointIndex ()
+    {
+        this (DEFAULT_CELL_SIZE);
+    }
+
+    /** Grid over the positions of the named points in a plane. */
+    public PointIndex (double cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    /** Add a point at its current position. */
+    public void add (NamedPoint p)
+    {
+        if (!p.indexed)
+        {
+            p.cell = NO_CELL;
+            p.serial = serial++;
+            p.indexed = true;
+            size++;
+            move (p);
+        }
+    }
+
+    /** Remove a point. */
+    public void remove (NamedPoint p)
+    {
+        if (p.indexed)
+        {
+            unfile (p);
+            p.indexed = false;
+            size--;
+        }
+    }
+
+    /** File a point under the cell of its new position. */
+    public void move (NamedPoint p)
+    {
+        if (p.indexed)
+        {
+            final Point2D.Double position = p.getPosition ();
+            final long key = position == null ? NO_CELL : key (cell (position.x), cell (position.y));
+            if (key != p.cell)
+            {
+                unfile (p);
+                p.cell = key;
+                if (key != NO_CELL)
+                {
+                    getCell (key, true).add (p);
+                }
+            }
+        }
+    }
+
+    /** Remove a point from the cell it is filed under. */
+    private void unfile (NamedPoint p)
+    {
+        if (p.cell != NO_CELL)
+        {
+            final List<NamedPoint> cell = getCell (p.cell, false);
+            if (cell != null)
+            {
+                cell.remove (p);
+            }
+        }
+    }
+
+    /**
+     * Find the closest point within a distance.
+     *
+     * @param x The search position.
+     * @param y The search position.
+     * @param limit2 Square of the maximum distance. Points at exactly this distance are not found.
+     * @param filter Only points passing this test are considered. May be null.
+     *
+     * @return The closest point or null. Ties go to the point added first.
+     */
+    public NamedPoint nearest (double x, double y, double limit2, Predicate<NamedPoint> filter)
+    {
+        NamedPoint result = null;
+        double distance = limit2;
+        final double r = Math.sqrt (limit2);
+        final int x0 = cell (x - r);
+        final int x1 = cell (x + r);
+        final int y0 = cell (y - r);
+        final int y1 = cell (y + r);
+        if (((double)x1 - x0 + 1) * ((double)y1 - y0 + 1) > used)
+        {
+            // A huge radius covers more cells than exist, so look at every cell
+            for (final List<NamedPoint> cell : cells)
+            {
+                if (cell != null)
+                {
+                    for (int i = 0; i < cell.size (); i++)
+                    {
+                        final NamedPoint p = cell.get (i);
+                        final double d = p.distance2 (x, y);
+                        if ((d < distance || d == distance && result != null && p.serial < result.serial)
+                            && (filter == null || filter.test (p)))
+                        {
+                            result = p;
+                            distance = d;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+        for (int cx = x0; cx <= x1; cx++)
+        {
+            for (int cy = y0; cy <= y1; cy++)
+            {
+                final List<NamedPoint> cell = getCell (key (cx, cy), false);
+                if (cell != null)
+                {
+                    for (int i = 0; i < cell.size (); i++)
+                    {
+                        final NamedPoint p = cell.get (i);
+                        final double d = p.distance2 (x, y);
+                        if ((d < distance || d == distance && result != null && p.serial < result.serial)
+                            && (filter == null || filter.test (p)))
+                        {
+                            result = p;
+                            distance = d;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the points at exactly a position.
+     *
+     * @param result Receives the points found, in the order they were added.
+     */
+    public void at (Point2D.Double position, List<NamedPoint> result)
+    {
+        final int start = result.size ();
+        final List<NamedPoint> cell = getCell (key (cell (position.x), cell (position.y)), false);
+        if (cell != null)
+        {
+            for (int i = 0; i < cell.size (); i++)
+            {
+                final NamedPoint p = cell.get (i);
+                if (p.at (position))
+                {
+                    result.add (p);
+                }
+            }
+        }
+        if (result.size () - start > 1)
+        {
+            result.subList (start, result.size ()).sort ((a, b) -> Integer.compare (a.serial, b.serial));
+        }
+    }
+
+    /** Number of points in the index. */
+    public int size ()
+    {
+        return size;
+    }
+
+    /** Forget all points. Points are not marked as removed, so only use this with the plane. */
+    public void clear ()
+    {
+        Arrays.fill (cells, null);
+        used = 0;
+        size = 0;
+    }
+
+    private int cell (double v)
+    {
+        return (int)Math.floor (v / cellSize);
+    }
+
+    private static long key (int cx, int cy)
+    {
+        return (long)cx << 32 | cy & 0xffffffffL;
+    }
+
+    /** Find the slot for a cell with linear probing. */
+    private int slot (long key)
+    {
+        final int mask = keys.length - 1;
+        final long h = key * 0x9E3779B97F4A7C15L;
+        int i = (int)(h ^ h >>> 32) & mask;
+        while (cells[i] != null && keys[i] != key)
+        {
+            i = i + 1 & mask;
+        }
+        return i;
+    }
+
+    /** Get the points in a cell, creating the cell if asked. */
+    private List<NamedPoint> getCell (long key, boolean create)
+    {
+        int i = slot (key);
+        if (cells[i] == null && create)
+        {
+            if (used * 2 >= keys.length)
+            {
+                grow ();
+                i = slot (key);
+            }
+            keys[i] = key;
+            cells[i] = new ArrayList<> (4);
+            used++;
+        }
+        return cells[i];
+    }
+
+    /** Rebuild the table with room to spare. Cells that became empty are dropped. */
+    @SuppressWarnings ("unchecked")
+    private void grow ()
+    {
+        final long[] oldKeys = keys;
+        final List<NamedPoint>[] oldCells = cells;
+        int live = 0;
+        for (final List<NamedPoint> cell : oldCells)
+        {
+            if (cell != null && !cell.isEmpty ())
+            {
+                live++;
+            }
+        }
+        int length = 64;
+        while (length < live * 4)
+        {
+            length *= 2;
+        }
+        keys = new long[length];
+        cells = newCells (length);
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            final List<NamedPoint> cell = oldCells[i];
+            if (cell != null && !cell.isEmpty ())
+            {
+                final int j = slot (oldKeys[i]);
+                keys[j] = oldKeys[i];
+                cells[j] = cell;
+                used++;
+            }
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (size);
+        buffer.append (" ");
+        buffer.append (used);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
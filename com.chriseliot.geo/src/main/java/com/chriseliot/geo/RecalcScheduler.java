@@ -0,0 +1,168 @@
+package com.chriseliot.geo;
+
+import java.util.*;
+
+/**
+ * Collects the items that need to be recalculated after something moves and recalculates each of
+ * them once. Items are run in the order points, shapes like lines, vertices, triangles, since each
+ * kind reads the positions of the kinds before it. A triangle whose three vertices all moved is
+ * recalculated once after all three, instead of once for each.
+ *
+ * Between begin and end, scheduled items wait. The work is done when the outermost end is reached,
+ * or right away when an item is scheduled outside of begin and end. Items scheduled while the work
+ * is being done join the same pass. Items removed from the plane before their turn are skipped.
+ */
+public class RecalcScheduler
+{
+    /** Number of ranks. */
+    private static final int RANKS = 4;
+
+    /** The plane owning the items. */
+    private final GeoPlane plane;
+
+    /** Items waiting for each rank, in the order they were scheduled. */
+    private final List<ArrayDeque<GeoItem>> waiting = new ArrayList<> (RANKS);
+
+    /** Items waiting or already recalculated in the current pass. */
+    private final Set<GeoItem> seen = Collections.newSetFromMap (new IdentityHashMap<> ());
+
+    /** Depth of nested begin calls, plus one while the work is being done. */
+    private int depth = 0;
+
+    /** Number of items recalculated. */
+    private long recalcCount = 0;
+
+    /** Recalculates the items of a plane. */
+    public RecalcScheduler (GeoPlane plane)
+    {
+        this.plane = plane;
+        for (int i = 0; i < RANKS; i++)
+        {
+            waiting.add (new ArrayDeque<> ());
+        }
+    }
+
+    /** The rank of an item. Lower ranks are recalculated first. */
+    private static int rank (GeoItem item)
+    {
+        if (item instanceof NamedPoint)
+        {
+            return 0;
+        }
+        if (item instanceof GeoVertex)
+        {
+            return 2;
+        }
+        if (item instanceof GeoTriangle)
+        {
+            return 3;
+        }
+        return 1;
+    }
+
+    /** Hold scheduled items until the matching end. */
+    public void begin ()
+    {
+        depth++;
+    }
+
+    /** Recalculate the scheduled items if this ends the outermost begin. */
+    public void end ()
+    {
+        if (--depth == 0)
+        {
+            run ();
+        }
+    }
+
+    /** Schedule an item to be recalculated. Items already recalculated in this pass are ignored. */
+    public void schedule (GeoItem item)
+    {
+        if (item != null && seen.add (item))
+        {
+            waiting.get (rank (item)).add (item);
+        }
+        if (depth == 0)
+        {
+            run ();
+        }
+    }
+
+    /** Schedule several items to be recalculated. */
+    public void schedule (Collection<? extends GeoItem> items)
+    {
+        begin ();
+        try
+        {
+            for (final GeoItem item : items)
+            {
+                schedule (item);
+            }
+        }
+        finally
+        {
+            end ();
+        }
+    }
+
+    /** Recalculate the waiting items, lowest rank first. */
+    private void run ()
+    {
+        depth++;
+        try
+        {
+            int rank = 0;
+            while (rank < RANKS)
+            {
+                final GeoItem item = waiting.get (rank).poll ();
+                if (item == null)
+                {
+                    rank++;
+                }
+                else
+                {
+                    if (plane.contains (item))
+                    {
+                        item.recalculate ();
+                        recalcCount++;
+                    }
+                    // An item may have scheduled items of a lower rank
+                    rank = 0;
+                }
+            }
+        }
+        finally
+        {
+            depth--;
+            seen.clear ();
+            for (final ArrayDeque<GeoItem> items : waiting)
+            {
+                items.clear ();
+            }
+        }
+    }
+
+    /** Is a pass being collected or done. */
+    public boolean isActive ()
+    {
+        return depth > 0;
+    }
+
+    /** Number of items recalculated. */
+    public long getRecalcCount ()
+    {
+        return recalcCount;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (recalcCount);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,257 @@
+
+package com.chriseliot.geo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * One inference rule instance. A rule derives the owner (the first term) from the other terms using
+ * a formula template. Rules are declared when an item is created and registered with the plane so
+ * the rules that read an item can be found without running a solve.
+ *
+ * Rules are compiled when they are created. The status of the terms is kept as a bitmask which the
+ * rule index updates when a term changes status, so checking a rule that can't fire is a single
+ * comparison and allocates nothing. The instantiated formula is built once and cached until a term
+ * is renamed.
+ */
+public class Rule
+{
+    /** The item that declared this rule. */
+    private final GeoItem source;
+
+    /** The reason recorded when this rule derives the owner. */
+    private final String reason;
+
+    /** Java format template with one %s for each term. */
+    private final String formula;
+
+    /** Variables used in the formula. The first term is the owner derived by this rule. */
+    private final GeoItem[] terms;
+
+    /**
+     * Optional numeric condition for rules that only apply to some configurations. The guard must
+     * only read the values of the terms.
+     */
+    private final BooleanSupplier guard;
+
+    /** The formula template split at each %s, or null if the template needs String.format. */
+    private final String[] parts;
+
+    /** Bit i is set when term i is determined. */
+    private long mask = 0;
+
+    /** Value of the mask when the owner is undetermined and every other term is determined. */
+    private final long ready;
+
+    /** Cached instantiated formula, or null if it must be rebuilt. */
+    private String instantiation = null;
+
+    /**
+     * Create a rule.
+     *
+     * @param source The item that declared this rule.
+     * @param guard Optional numeric condition, may be null.
+     * @param reason The reason recorded when this rule derives the owner.
+     * @param formula Java format template with one %s for each term.
+     * @param terms Variables used in the formula. The first term is the owner.
+     */
+    public Rule (GeoItem source, BooleanSupplier guard, String reason, String formula, GeoItem[] terms)
+    {
+        this.source = source;
+        this.guard = guard;
+        this.reason = reason;
+        this.formula = formula;
+        this.terms = terms;
+        if (terms.length == 0 || terms.length > Long.SIZE)
+        {
+            throw new IllegalArgumentException ("Rule needs 1 to 64 terms: " + reason);
+        }
+        ready = (terms.length == Long.SIZE ? -1L : (1L << terms.length) - 1) & ~1L;
+        for (int i = 0; i < terms.length; i++)
+        {
+            if (terms[i].peekDetermined ())
+            {
+                mask |= 1L << i;
+            }
+        }
+        parts = split (formula, terms.length);
+    }
+
+    /**
+     * Split a template at each %s.
+     *
+     * @return The parts between the variables, or null if the template uses anything except %s.
+     */
+    private static String[] split (String formula, int count)
+    {
+        final String[] result = new String[count + 1];
+        int start = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int p = formula.indexOf ("%s", start);
+            if (p < 0)
+            {
+                return null;
+            }
+            result[i] = formula.substring (start, p);
+            start = p + 2;
+        }
+        result[count] = formula.substring (start);
+        for (final String part : result)
+        {
+            if (part.indexOf ('%') >= 0)
+            {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /** The item that declared this rule. */
+    public GeoItem getSource ()
+    {
+        return source;
+    }
+
+    /** The variable derived by this rule. */
+    public GeoItem getOwner ()
+    {
+        return terms[0];
+    }
+
+    /** The reason recorded when this rule derives the owner. */
+    public String getReason ()
+    {
+        return reason;
+    }
+
+    /** Java format template with one %s for each term. */
+    public String getFormula ()
+    {
+        return formula;
+    }
+
+    /** Variables used in the formula. The first term is the owner derived by this rule. */
+    public GeoItem[] getTerms ()
+    {
+        return terms;
+    }
+
+    /** Does this rule read the item. */
+    public boolean hasTerm (GeoItem item)
+    {
+        for (final GeoItem term : terms)
+        {
+            if (term == item)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Record a status change of a term. */
+    public void update (GeoItem term, boolean determined)
+    {
+        for (int i = 0; i < terms.length; i++)
+        {
+            if (terms[i] == term)
+            {
+                if (determined)
+                {
+                    mask |= 1L << i;
+                }
+                else
+                {
+                    mask &= ~(1L << i);
+                }
+            }
+        }
+    }
+
+    /** Is the owner undetermined while all other terms are determined. */
+    public boolean isReady ()
+    {
+        return mask == ready;
+    }
+
+    /** Does the numeric condition of this rule hold. */
+    public boolean isApplicable ()
+    {
+        return guard == null || guard.getAsBoolean ();
+    }
+
+    /**
+     * Try to derive the owner. Reads made here are covered by the rule index, so they are not
+     * recorded against the item being solved.
+     *
+     * @return true if the owner was derived.
+     */
+    public boolean fire ()
+    {
+        if (mask != ready)
+        {
+            return false;
+        }
+        final Agenda agenda = source.getPlane ().getAgenda ();
+        final GeoItem reader = agenda.suspend ();
+        try
+        {
+            if (isApplicable ())
+            {
+                terms[0].derive (this);
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            agenda.resume (reader);
+        }
+    }
+
+    /** The instantiated formula with variable names replacing the format variables. */
+    public String getInstantiation ()
+    {
+        String result = instantiation;
+        if (result == null)
+        {
+            if (parts == null)
+            {
+                result = Inference.getInstantiation (formula, terms);
+            }
+            else
+            {
+                final StringBuilder builder = new StringBuilder ();
+                for (int i = 0; i < terms.length; i++)
+                {
+                    builder.append (parts[i]);
+                    builder.append (terms[i].getName ());
+                }
+                builder.append (parts[terms.length]);
+                result = builder.toString ();
+            }
+            instantiation = result;
+        }
+        return result;
+    }
+
+    /** Forget the cached formula after a term is renamed. */
+    public void invalidate ()
+    {
+        instantiation = null;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" '");
+        buffer.append (reason);
+        buffer.append ("' {");
+        buffer.append (getInstantiation ());
+        buffer.append ("}>");
+        return buffer.toString ();
+    }
+}
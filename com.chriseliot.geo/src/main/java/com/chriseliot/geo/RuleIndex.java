@@ -0,0 +1,157 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+/**
+ * Reverse dependency index from each item to the rules that read it. Rules are added as items are
+ * created, so a status change can find the affected rules directly.
+ */
+public class RuleIndex
+{
+    private static final List<Rule> NONE = Collections.emptyList ();
+
+    /** Rules that read each item, in the order they were declared. */
+    private final Map<GeoItem, List<Rule>> consumers = new HashMap<> ();
+
+    /** Number of rules in the index. */
+    private int size = 0;
+
+    /** Add a rule under each of its terms. */
+    public void add (Rule rule)
+    {
+        final GeoItem[] terms = rule.getTerms ();
+        for (int i = 0; i < terms.length; i++)
+        {
+            if (!seen (terms, i))
+            {
+                List<Rule> rules = consumers.get (terms[i]);
+                if (rules == null)
+                {
+                    rules = new ArrayList<> (4);
+                    consumers.put (terms[i], rules);
+                }
+                rules.add (rule);
+            }
+        }
+        size++;
+    }
+
+    /** Does the term at index i also appear earlier in the terms. */
+    private boolean seen (GeoItem[] terms, int i)
+    {
+        for (int j = 0; j < i; j++)
+        {
+            if (terms[j] == terms[i])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Remove a rule from the entries of all of its terms. */
+    public void remove (Rule rule)
+    {
+        boolean found = false;
+        final GeoItem[] terms = rule.getTerms ();
+        for (int i = 0; i < terms.length; i++)
+        {
+            final List<Rule> rules = consumers.get (terms[i]);
+            if (rules != null && rules.remove (rule))
+            {
+                found = true;
+                if (rules.isEmpty ())
+                {
+                    consumers.remove (terms[i]);
+                }
+            }
+        }
+        if (found)
+        {
+            size--;
+        }
+    }
+
+    /**
+     * Remove every rule that reads an item or was declared by it. The rules are also removed from
+     * the items that declared them.
+     *
+     * @return The rules removed.
+     */
+    public List<Rule> removeAll (GeoItem item)
+    {
+        final List<Rule> result = new ArrayList<> (getRules (item));
+        for (final Rule rule : item.getRules ())
+        {
+            if (!result.contains (rule))
+            {
+                result.add (rule);
+            }
+        }
+        for (final Rule rule : result)
+        {
+            remove (rule);
+            rule.getSource ().getRules ().remove (rule);
+        }
+        return result;
+    }
+
+    /** Update the compiled status of every rule reading an item. */
+    public void update (GeoItem item, boolean determined)
+    {
+        final List<Rule> rules = consumers.get (item);
+        if (rules != null)
+        {
+            for (int i = 0; i < rules.size (); i++)
+            {
+                rules.get (i).update (item, determined);
+            }
+        }
+    }
+
+    /** Forget cached formulas of every rule reading an item after it is renamed. */
+    public void renamed (GeoItem item)
+    {
+        final List<Rule> rules = consumers.get (item);
+        if (rules != null)
+        {
+            for (final Rule rule : rules)
+            {
+                rule.invalidate ();
+            }
+        }
+    }
+
+    /** Rules that read an item. The result must not be modified. */
+    public List<Rule> getRules (GeoItem item)
+    {
+        final List<Rule> result = consumers.get (item);
+        return result == null ? NONE : result;
+    }
+
+    /** Number of rules in the index. */
+    public int size ()
+    {
+        return size;
+    }
+
+    /** Forget all rules. */
+    public void clear ()
+    {
+        consumers.clear ();
+        size = 0;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (size);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
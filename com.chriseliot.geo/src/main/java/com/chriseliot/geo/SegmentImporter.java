@@ -0,0 +1,434 @@
+package com.chriseliot.geo;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Imports lists of line segments, such as the output of survey tools. Each line of the input holds
+ * one segment as x1 y1 x2 y2, optionally followed by a color. Fields are separated by commas if
+ * the line has any, otherwise by whitespace. Blank lines and lines starting with # are skipped.
+ *
+ * A csv file may start with a header naming its columns. The columns x1, y1, x2 and y2 are used,
+ * along with color if it is there, and the rest are ignored. Without a header, the first four
+ * columns are the end points and the fifth is the color.
+ *
+ * The input is streamed into a compact array of coordinates, so a bad line stops the import before
+ * the plane is changed. Then all the lines are made in one batch. The crossings are found by one
+ * sweep over all the lines and the triangles are found once, when the batch is closed, instead of
+ * after each line.
+ */
+public class SegmentImporter
+{
+    private static final Logger logger = LogManager.getFormatterLogger (SegmentImporter.class);
+
+    /** File name suffix for comma separated segments. */
+    public static final String CSV_SUFFIX = ".csv";
+
+    /** File name suffix for whitespace separated segments. */
+    public static final String TEXT_SUFFIX = ".txt";
+
+    /** Number of segments between progress reports. */
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    /** Color of lines that don't give one. */
+    private Color color = Color.orange;
+
+    /** Told how the import is going, or null. */
+    private ImportListener listener = null;
+
+    /** Set to stop a read in progress. */
+    private volatile boolean cancelled = false;
+
+    /** End points of the segments read, four per segment. */
+    private double[] coordinates = new double[1024];
+
+    /** Color of each segment read, or null if none gave a color. */
+    private int[] colors = null;
+
+    /** Number of segments read. */
+    private int count = 0;
+
+    /** Number of segments skipped because they have no length. */
+    private int skipped = 0;
+
+    /** Column of each field, from the header or the default order. */
+    private int[] columns = null;
+
+    /** Column of the color, or -1 if there is none. */
+    private int colorColumn = -1;
+
+    /** Import segment files headless and save the plane. The last argument is the output file. */
+    public static void main (String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println ("Usage: SegmentImporter input... output");
+            System.exit (1);
+        }
+        final GeoPlane plane = new GeoPlane ();
+        final SegmentImporter importer = new SegmentImporter ();
+        importer.setListener (new ImportListener ()
+        {
+            @Override
+            public void segmentsRead (int segments, long position, long total)
+            {
+                logger.info ("Read %d segments, %d of %d characters", segments, position, total);
+            }
+
+            @Override
+            public void linesCreated (int lines, int total)
+            {
+                logger.info ("Created %d of %d lines", lines, total);
+            }
+
+            @Override
+            public void findingVertices (int lines)
+            {
+                logger.info ("Finding vertices and triangles of %d lines", lines);
+            }
+        });
+        final long start = System.currentTimeMillis ();
+        int lines = 0;
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            lines += importer.importFile (plane, new File (args[i]));
+        }
+        final File output = new File (args[args.length - 1]);
+        PlaneJournal.saveSnapshot (plane, output);
+        logger.info ("Imported %d lines with %d triangles to %s in %d ms", lines, plane.getTriangles ().size (), output,
+                System.currentTimeMillis () - start);
+    }
+
+    /** Color of lines that don't give one. */
+    public Color getColor ()
+    {
+        return color;
+    }
+
+    /** Color of lines that don't give one. */
+    public void setColor (Color color)
+    {
+        this.color = color;
+    }
+
+    /** Told how the import is going, or null. */
+    public void setListener (ImportListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /** Stop a read in progress. This may be called from another thread. */
+    public void cancel ()
+    {
+        cancelled = true;
+    }
+
+    /** Number of segments read. */
+    public int getCount ()
+    {
+        return count;
+    }
+
+    /** Number of segments skipped because they have no length. */
+    public int getSkipped ()
+    {
+        return skipped;
+    }
+
+    /**
+     * Read a segment file and add its lines to a plane.
+     *
+     * @return The number of lines added.
+     */
+    public int importFile (GeoPlane plane, File file) throws IOException
+    {
+        read (file);
+        return addTo (plane);
+    }
+
+    /** Read the segments in a file. Nothing is added to a plane until addTo is called. */
+    public void read (File file) throws IOException
+    {
+        try (Reader reader = new InputStreamReader (new FileInputStream (file), StandardCharsets.UTF_8))
+        {
+            read (reader, file.length ());
+        }
+    }
+
+    /**
+     * Read segments from a reader, replacing any read before. The reader is not closed.
+     *
+     * @param reader The segments.
+     * @param total The length of the input for progress reports, or -1 if it is not known.
+     */
+    public void read (Reader reader, long total) throws IOException
+    {
+        cancelled = false;
+        count = 0;
+        skipped = 0;
+        colors = null;
+        columns = null;
+        colorColumn = -1;
+        final BufferedReader in = new BufferedReader (reader, 1 << 16);
+        final List<String> fields = new ArrayList<> ();
+        long position = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine ()) != null)
+        {
+            lineNumber++;
+            position += line.length () + 1;
+            line = line.trim ();
+            if (line.isEmpty () || line.startsWith ("#"))
+            {
+                continue;
+            }
+            split (line, fields);
+            if (columns == null && !readHeader (fields))
+            {
+                continue;
+            }
+            addSegment (fields, lineNumber);
+            if (count % PROGRESS_INTERVAL == 0)
+            {
+                if (cancelled)
+                {
+                    throw new InterruptedIOException ("Import cancelled at line " + lineNumber);
+                }
+                if (listener != null)
+                {
+                    listener.segmentsRead (count, position, total);
+                }
+            }
+        }
+        if (listener != null)
+        {
+            listener.segmentsRead (count, position, total);
+        }
+        logger.info ("Read %d segments, skipped %d with no length", count, skipped);
+    }
+
+    /**
+     * Split a line into fields at commas, if it has any, or at whitespace. Fields of a csv line may
+     * be quoted, with a doubled quote for a quote inside.
+     */
+    void split (String line, List<String> result)
+    {
+        result.clear ();
+        if (line.indexOf (',') < 0)
+        {
+            for (final String field : line.split ("\\s+"))
+            {
+                result.add (field);
+            }
+            return;
+        }
+        final StringBuilder field = new StringBuilder ();
+        boolean quoted = false;
+        for (int i = 0; i < line.length (); i++)
+        {
+            final char c = line.charAt (i);
+            if (quoted)
+            {
+                if (c != '"')
+                {
+                    field.append (c);
+                }
+                else if (i + 1 < line.length () && line.charAt (i + 1) == '"')
+                {
+                    field.append (c);
+                    i++;
+                }
+                else
+                {
+                    quoted = false;
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                result.add (field.toString ().trim ());
+                field.setLength (0);
+            }
+            else
+            {
+                field.append (c);
+            }
+        }
+        result.add (field.toString ().trim ());
+    }
+
+    /**
+     * Decide the columns from the first line. A line whose first four fields are numbers is data,
+     * otherwise it is a header naming the columns.
+     *
+     * @return True if the line is data.
+     */
+    private boolean readHeader (List<String> fields) throws IOException
+    {
+        boolean numbers = fields.size () >= 4;
+        for (int i = 0; numbers && i < 4; i++)
+        {
+            numbers = isNumber (fields.get (i));
+        }
+        if (numbers)
+        {
+            columns = new int[] {0, 1, 2, 3};
+            colorColumn = 4;
+            return true;
+        }
+        final String[] names = {"x1", "y1", "x2", "y2"};
+        columns = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            columns[i] = indexOf (fields, names[i]);
+            if (columns[i] < 0)
+            {
+                throw new IOException ("Segment header has no " + names[i] + " column: " + fields);
+            }
+        }
+        colorColumn = indexOf (fields, "color");
+        return false;
+    }
+
+    /** Column of a field name, ignoring case, or -1. */
+    private int indexOf (List<String> fields, String name)
+    {
+        for (int i = 0; i < fields.size (); i++)
+        {
+            if (fields.get (i).equalsIgnoreCase (name))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isNumber (String field)
+    {
+        try
+        {
+            Double.parseDouble (field);
+            return true;
+        }
+        catch (final NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /** Parse one segment and add it to the arrays. */
+    private void addSegment (List<String> fields, int lineNumber) throws IOException
+    {
+        final double[] point = new double[4];
+        try
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                point[i] = Double.parseDouble (fields.get (columns[i]));
+            }
+        }
+        catch (final NumberFormatException | IndexOutOfBoundsException e)
+        {
+            throw new IOException ("Bad segment at line " + lineNumber + ": " + fields, e);
+        }
+        if (point[0] == point[2] && point[1] == point[3])
+        {
+            skipped++;
+            return;
+        }
+        if (coordinates.length < (count + 1) * 4)
+        {
+            coordinates = Arrays.copyOf (coordinates, coordinates.length * 2);
+        }
+        System.arraycopy (point, 0, coordinates, count * 4, 4);
+        if (colorColumn >= 0 && colorColumn < fields.size () && !fields.get (colorColumn).isEmpty ())
+        {
+            if (colors == null)
+            {
+                colors = new int[coordinates.length / 4];
+                Arrays.fill (colors, 0, count, color.getRGB ());
+            }
+            try
+            {
+                setColor (count, Color.decode (fields.get (colorColumn)).getRGB ());
+            }
+            catch (final NumberFormatException e)
+            {
+                throw new IOException ("Bad color at line " + lineNumber + ": " + fields.get (colorColumn), e);
+            }
+        }
+        else if (colors != null)
+        {
+            setColor (count, color.getRGB ());
+        }
+        count++;
+    }
+
+    private void setColor (int index, int rgb)
+    {
+        if (colors.length <= index)
+        {
+            colors = Arrays.copyOf (colors, coordinates.length / 4);
+        }
+        colors[index] = rgb;
+    }
+
+    /**
+     * Add the segments read to a plane as lines, all in one batch. This must be called on the
+     * thread that owns the plane.
+     *
+     * @return The number of lines added.
+     */
+    public int addTo (GeoPlane plane)
+    {
+        final Map<Integer, Color> palette = new HashMap<> ();
+        final PlaneBatch batch = plane.beginBatch ();
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                final int base = i * 4;
+                final Color lineColor = colors == null ? color : palette.computeIfAbsent (colors[i], Color::new);
+                final Point2D.Double from = new Point2D.Double (coordinates[base], coordinates[base + 1]);
+                final Point2D.Double to = new Point2D.Double (coordinates[base + 2], coordinates[base + 3]);
+                new GeoLine (plane, lineColor, from, to);
+                if (listener != null && (i + 1) % PROGRESS_INTERVAL == 0)
+                {
+                    listener.linesCreated (i + 1, count);
+                }
+            }
+            if (listener != null)
+            {
+                listener.linesCreated (count, count);
+                listener.findingVertices (count);
+            }
+        }
+        finally
+        {
+            batch.close ();
+        }
+        logger.info ("Added %d lines, plane has %d triangles", count, plane.getTriangles ().size ());
+        return count;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (count);
+        buffer.append (" segments>");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,243 @@
+
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * Find the lines that cross each other. The bulk search sweeps across the plane in x order. The
+ * lines whose x range is still open are kept in a tree ordered by y range, so a line is only
+ * compared with the open lines whose bounding boxes overlap its own. Many long lines at different
+ * heights, as in surveys, are not compared with each other at all. The exact test is the one
+ * GeoLine.findVertices uses, so lines touching at an end point count as crossing.
+ *
+ * The single line query is for a line that was just created or moved. It rejects most lines with a
+ * bounding box check before doing the exact test.
+ */
+public class SegmentSweep
+{
+    /** Offsets into the packed bounds array. */
+    private static final int MIN_X = 0;
+    private static final int MAX_X = 1;
+    private static final int MIN_Y = 2;
+    private static final int MAX_Y = 3;
+
+    private SegmentSweep ()
+    {
+    }
+
+    /**
+     * Find every pair of crossing lines.
+     *
+     * @param lines The lines to search.
+     *
+     * @return Pairs of crossing lines. The first line of each pair comes later in the list than the
+     *         second. Pairs are sorted by the position of the first line then the second, which is
+     *         the order that creating the lines one at a time would find them.
+     */
+    public static List<GeoLine[]> crossings (List<GeoLine> lines)
+    {
+        final int n = lines.size ();
+        final double[] bounds = new double[n * 4];
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+        {
+            getBounds (lines.get (i), bounds, i * 4);
+            order[i] = i;
+        }
+        final Integer[] ends = order.clone ();
+        Arrays.sort (order, (a, b) -> Double.compare (bounds[a * 4 + MIN_X], bounds[b * 4 + MIN_X]));
+        Arrays.sort (ends, (a, b) -> Double.compare (bounds[a * 4 + MAX_X], bounds[b * 4 + MAX_X]));
+        // Lines whose x range contains the sweep position
+        final ActiveLines active = new ActiveLines (bounds, n);
+        final int[] candidates = new int[n];
+        int ended = 0;
+        long[] pairs = new long[16];
+        int pairCount = 0;
+        for (final int i : order)
+        {
+            final int bi = i * 4;
+            final GeoLine line = lines.get (i);
+            // The sweep has passed the end of these lines. They started before this line did.
+            while (ended < n && bounds[ends[ended] * 4 + MAX_X] < bounds[bi + MIN_X])
+            {
+                active.remove (ends[ended++]);
+            }
+            final int found = active.find (bounds[bi + MIN_Y], bounds[bi + MAX_Y], candidates);
+            for (int k = 0; k < found; k++)
+            {
+                final int j = candidates[k];
+                if (line.intersects (lines.get (j)))
+                {
+                    if (pairCount == pairs.length)
+                    {
+                        pairs = Arrays.copyOf (pairs, pairCount * 2);
+                    }
+                    pairs[pairCount++] = (long)Math.max (i, j) << 32 | Math.min (i, j);
+                }
+            }
+            active.add (i);
+        }
+        Arrays.sort (pairs, 0, pairCount);
+        final List<GeoLine[]> result = new ArrayList<> (pairCount);
+        for (int p = 0; p < pairCount; p++)
+        {
+            final long pair = pairs[p];
+            result.add (new GeoLine[] {lines.get ((int)(pair >>> 32)), lines.get ((int)pair)});
+        }
+        return result;
+    }
+
+    /**
+     * Find the lines crossing one line.
+     *
+     * @param line The new or moved line.
+     * @param lines The lines to search. The line itself is skipped if present.
+     * @param result Receives the crossing lines in list order.
+     */
+    public static void crossings (GeoLine line, List<GeoLine> lines, List<GeoLine> result)
+    {
+        final double[] bounds = new double[8];
+        getBounds (line, bounds, 0);
+        for (int i = 0; i < lines.size (); i++)
+        {
+            final GeoLine l = lines.get (i);
+            if (l != line)
+            {
+                getBounds (l, bounds, 4);
+                if (bounds[4 + MIN_X] <= bounds[MAX_X] && bounds[MIN_X] <= bounds[4 + MAX_X]
+                    && bounds[4 + MIN_Y] <= bounds[MAX_Y] && bounds[MIN_Y] <= bounds[4 + MAX_Y] && line.intersects (l))
+                {
+                    result.add (l);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lines kept by their y range. The lines are the leaves of a fixed balanced tree, in order of
+     * their minimum y, and each node holds the largest maximum y of the active lines below it. A
+     * query only descends into nodes that can hold an active line overlapping the query range, so it
+     * costs O(log n) for each line found instead of a look at every active line.
+     */
+    static final class ActiveLines
+    {
+        /** Bounding boxes of the lines, packed as in crossings. */
+        private final double[] bounds;
+
+        /** Number of leaves, a power of two. */
+        private final int size;
+
+        /** Leaf of each line. */
+        private final int[] leaf;
+
+        /** Line at each leaf, or -1. */
+        private final int[] line;
+
+        /** Smallest minimum y of all lines below each node. */
+        private final double[] minY;
+
+        /** Largest maximum y of the active lines below each node. */
+        private final double[] maxY;
+
+        /**
+         * An empty set of lines.
+         *
+         * @param bounds Bounding boxes of the lines, four per line.
+         * @param n Number of lines.
+         */
+        ActiveLines (double[] bounds, int n)
+        {
+            this.bounds = bounds;
+            int s = 1;
+            while (s < n)
+            {
+                s <<= 1;
+            }
+            size = s;
+            final Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort (order, (a, b) -> Double.compare (bounds[a * 4 + MIN_Y], bounds[b * 4 + MIN_Y]));
+            leaf = new int[n];
+            line = new int[size];
+            Arrays.fill (line, -1);
+            minY = new double[size * 2];
+            maxY = new double[size * 2];
+            Arrays.fill (minY, Double.POSITIVE_INFINITY);
+            Arrays.fill (maxY, Double.NEGATIVE_INFINITY);
+            for (int r = 0; r < n; r++)
+            {
+                leaf[order[r]] = r;
+                line[r] = order[r];
+                minY[size + r] = bounds[order[r] * 4 + MIN_Y];
+            }
+            for (int node = size - 1; node > 0; node--)
+            {
+                minY[node] = Math.min (minY[node * 2], minY[node * 2 + 1]);
+            }
+        }
+
+        /** Make a line active. */
+        void add (int i)
+        {
+            set (i, bounds[i * 4 + MAX_Y]);
+        }
+
+        /** Make a line inactive. */
+        void remove (int i)
+        {
+            set (i, Double.NEGATIVE_INFINITY);
+        }
+
+        private void set (int i, double value)
+        {
+            int node = size + leaf[i];
+            maxY[node] = value;
+            for (node >>= 1; node > 0; node >>= 1)
+            {
+                maxY[node] = Math.max (maxY[node * 2], maxY[node * 2 + 1]);
+            }
+        }
+
+        /**
+         * Find the active lines whose y range overlaps a range.
+         *
+         * @param result Receives the lines found, in order of their minimum y.
+         *
+         * @return The number of lines found.
+         */
+        int find (double lo, double hi, int[] result)
+        {
+            return find (1, lo, hi, result, 0);
+        }
+
+        private int find (int node, double lo, double hi, int[] result, int count)
+        {
+            if (maxY[node] < lo || minY[node] > hi)
+            {
+                return count;
+            }
+            if (node >= size)
+            {
+                result[count++] = line[node - size];
+                return count;
+            }
+            count = find (node * 2, lo, hi, result, count);
+            return find (node * 2 + 1, lo, hi, result, count);
+        }
+    }
+
+    /** Store the bounding box of a line into an array at an offset. */
+    private static void getBounds (GeoLine line, double[] bounds, int offset)
+    {
+        final Point2D.Double a = line.getFrom ().getPosition ();
+        final Point2D.Double b = line.getTo ().getPosition ();
+        bounds[offset + MIN_X] = Math.min (a.x, b.x);
+        bounds[offset + MAX_X] = Math.max (a.x, b.x);
+        bounds[offset + MIN_Y] = Math.min (a.y, b.y);
+        bounds[offset + MAX_Y] = Math.max (a.y, b.y);
+    }
+}
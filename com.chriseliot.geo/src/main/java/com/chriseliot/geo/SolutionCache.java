@@ -0,0 +1,249 @@
+package com.chriseliot.geo;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Restores a solved plane from a file without solving it again. A saved file carries a hash of the
+ * topology of the plane, the position of every point and the status of every item that was not
+ * derived, along with the derived statuses and the inferences. When a file is loaded, the hash is
+ * computed again from what was read. If it matches, the saved solution belongs to these items,
+ * positions and givens, so the inferences are put back and nothing is solved. Otherwise the derived
+ * statuses can't be trusted, so they are reset and the plane is solved when the load is done.
+ *
+ * Loaded items stay on the agenda, so the first solve after a change still records what each item
+ * reads. At a fixed point that pass derives nothing.
+ *
+ * Make one of these for each load and add the inferences as they are read.
+ */
+public class SolutionCache
+{
+    private static final Logger logger = LogManager.getFormatterLogger (SolutionCache.class);
+
+    /** FNV-1a offset basis. */
+    private static final long OFFSET = 0xcbf29ce484222325L;
+
+    /** FNV-1a prime. */
+    private static final long PRIME = 0x100000001b3L;
+
+    /** Number of loads that used the saved solution. */
+    private static final AtomicLong hitCount = new AtomicLong ();
+
+    /** Number of loads that solved again. */
+    private static final AtomicLong missCount = new AtomicLong ();
+
+    /** The plane being loaded. */
+    private final GeoPlane plane;
+
+    /** Inferences read from the file. */
+    private final List<Inference> inferences = new ArrayList<> ();
+
+    /** Inferences that justified the status of their owner when saved. */
+    private final Set<Inference> supports = Collections.newSetFromMap (new IdentityHashMap<> ());
+
+    /** Restores the solution of a plane being loaded. */
+    public SolutionCache (GeoPlane plane)
+    {
+        this.plane = plane;
+    }
+
+    /**
+     * Hash of the topology, positions and given statuses of a plane. This covers the class, name
+     * and children of every item, the lines of each vertex, the vertices of each triangle, the
+     * position of every point and the status of every item that is not derived. Positions matter
+     * because coincident points are linked and some triangle rules are guarded by their angles.
+     * Every other value is computed from the positions.
+     */
+    public static long getHash (GeoPlane plane)
+    {
+        long hash = OFFSET;
+        for (final GeoItem item : plane.getRoots ())
+        {
+            if (item instanceof GeoVertex)
+            {
+                final GeoVertex vertex = (GeoVertex)item;
+                hash = mix (hash, vertex.getLine1 ().getName ());
+                hash = mix (hash, vertex.getLine2 ().getName ());
+            }
+            else if (item instanceof GeoTriangle)
+            {
+                final GeoTriangle triangle = (GeoTriangle)item;
+                hash = mix (hash, triangle.getV1 ().getName ());
+                hash = mix (hash, triangle.getV2 ().getName ());
+                hash = mix (hash, triangle.getV3 ().getName ());
+            }
+            hash = getHash (hash, item);
+        }
+        return hash;
+    }
+
+    /** Add an item and its children to a hash. */
+    private static long getHash (long hash, GeoItem item)
+    {
+        hash = mix (hash, item.getClass ().getSimpleName ());
+        hash = mix (hash, item.getName ());
+        final GeoStatus status = item.getStatus ();
+        hash = mix (hash, status == GeoStatus.derived ? -1 : status.ordinal ());
+        if (item instanceof NamedPoint)
+        {
+            final Point2D.Double position = ((NamedPoint)item).getPosition ();
+            // Zero and negative zero are the same position
+            hash = mix (hash, Double.doubleToLongBits (position.x + 0.0));
+            hash = mix (hash, Double.doubleToLongBits (position.y + 0.0));
+        }
+        final List<GeoItem> children = item.getChildren ();
+        hash = mix (hash, children.size ());
+        for (final GeoItem child : children)
+        {
+            hash = getHash (hash, child);
+        }
+        return hash;
+    }
+
+    private static long mix (long hash, int value)
+    {
+        return (hash ^ value) * PRIME;
+    }
+
+    private static long mix (long hash, long value)
+    {
+        hash = mix (hash, (int)value);
+        return mix (hash, (int)(value >>> 32));
+    }
+
+    private static long mix (long hash, String value)
+    {
+        if (value == null)
+        {
+            return mix (hash, -1);
+        }
+        for (int i = 0; i < value.length (); i++)
+        {
+            hash = mix (hash, value.charAt (i));
+        }
+        return mix (hash, value.length ());
+    }
+
+    /** Hash of a plane as it is written in xml. */
+    public static String toString (long hash)
+    {
+        return Long.toHexString (hash);
+    }
+
+    /** Read a hash written by toString. Returns null if there is none. */
+    public static Long parseHash (String hash)
+    {
+        if (hash == null || hash.isEmpty ())
+        {
+            return null;
+        }
+        try
+        {
+            return Long.parseUnsignedLong (hash, 16);
+        }
+        catch (final NumberFormatException e)
+        {
+            logger.warn ("Bad solution hash %s", hash);
+            return null;
+        }
+    }
+
+    /** Add an inference read from the file. */
+    public void add (Inference inference, boolean support)
+    {
+        inferences.add (inference);
+        if (support)
+        {
+            supports.add (inference);
+        }
+    }
+
+    /**
+     * Restore the solution once all items are read. This should be called while the load batch is
+     * still open, so a plane that must be solved again is solved when the batch is closed.
+     *
+     * @param savedHash The hash from the file, or null if the file has none.
+     *
+     * @return True if the saved solution was used.
+     */
+    public boolean restore (Long savedHash)
+    {
+        final long hash = getHash (plane);
+        if (savedHash != null && savedHash == hash)
+        {
+            for (final Inference inference : inferences)
+            {
+                final GeoItem owner = inference.getOwner ();
+                Inference recorded = find (owner, inference);
+                if (recorded == null)
+                {
+                    recorded = inference;
+                    owner.restoreInference (inference);
+                }
+                if (supports.contains (inference) && owner.getStatus () == GeoStatus.derived && owner.getSupport () == null)
+                {
+                    owner.setSupport (recorded);
+                }
+            }
+            hitCount.incrementAndGet ();
+            logger.info ("Using saved solution %s", toString (hash));
+            return true;
+        }
+        for (final GeoItem item : plane.getItems ())
+        {
+            if (item.getStatus () == GeoStatus.derived)
+            {
+                item.setStatusUnknown ();
+            }
+        }
+        plane.setDirty ();
+        plane.solve ();
+        missCount.incrementAndGet ();
+        logger.info ("Solving again, saved solution %s does not match %s", savedHash == null ? null : toString (savedHash),
+                toString (hash));
+        return false;
+    }
+
+    /**
+     * Find a recorded inference matching one from the file, or null. Coincident points may derive
+     * each other while the file is being read.
+     */
+    private Inference find (GeoItem owner, Inference inference)
+    {
+        for (final Inference old : owner.getInferences ())
+        {
+            if (old.matches (inference.getReason (), inference.getFormula (), inference.getTerms ()))
+            {
+                return old;
+            }
+        }
+        return null;
+    }
+
+    /** Number of loads that used the saved solution. */
+    public static long getHitCount ()
+    {
+        return hitCount.get ();
+    }
+
+    /** Number of loads that solved again. */
+    public static long getMissCount ()
+    {
+        return missCount.get ();
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (inferences.size ());
+        buffer.append (" inferences>");
+        return buffer.toString ();
+    }
+}
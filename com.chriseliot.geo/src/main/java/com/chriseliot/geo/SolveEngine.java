@@ -0,0 +1,12 @@
+
+package com.chriseliot.geo;
+
+/**
+ * Strategy used by GeoPlane.solve. The sweep engine runs every item until no status changes. The
+ * agenda engine only runs items affected by a change. The parallel engine works like the agenda
+ * engine but solves independent connected components on separate threads.
+ */
+public enum SolveEngine
+{
+    sweep, agenda, parallel;
+}
@@ -0,0 +1,207 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+/**
+ * Triangles of a plane keyed by their corners. A triangle sorts its vertices into clockwise order,
+ * so the key ignores the order of the corners. Triangles are also filed under each corner and each
+ * side, so the triangles touching a vertex or line are found without scanning the plane.
+ */
+public class TriangleRegistry
+{
+    private static final List<GeoTriangle> NONE = Collections.emptyList ();
+
+    /** Corners of a triangle in any order. */
+    private static final class Key
+    {
+        private final GeoVertex a;
+        private final GeoVertex b;
+        private final GeoVertex c;
+
+        Key (GeoVertex a, GeoVertex b, GeoVertex c)
+        {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        private boolean has (GeoVertex v)
+        {
+            return v == a || v == b || v == c;
+        }
+
+        @Override
+        public boolean equals (Object o)
+        {
+            if (o instanceof Key)
+            {
+                final Key k = (Key)o;
+                return has (k.a) && has (k.b) && has (k.c) && k.has (a) && k.has (b) && k.has (c);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode ()
+        {
+            // Addition does not depend on the order of the corners
+            return mix (System.identityHashCode (a)) + mix (System.identityHashCode (b))
+                   + mix (System.identityHashCode (c));
+        }
+
+        private static int mix (int h)
+        {
+            h *= 0x9E3779B9;
+            return h ^ h >>> 16;
+        }
+    }
+
+    /** Triangles by their corners. The first triangle registered with a set of corners wins. */
+    private final Map<Key, GeoTriangle> triangles = new HashMap<> ();
+
+    /** Triangles with each vertex as a corner. */
+    private final Map<GeoVertex, List<GeoTriangle>> byVertex = new HashMap<> ();
+
+    /** Triangles with each line as a side. */
+    private final Map<GeoLine, List<GeoTriangle>> byLine = new HashMap<> ();
+
+    /** Number of triangles registered. */
+    private int size = 0;
+
+    /** Register a triangle under its corners and sides. */
+    public void add (GeoTriangle t)
+    {
+        final GeoVertex v1 = t.getV1 ();
+        final GeoVertex v2 = t.getV2 ();
+        final GeoVertex v3 = t.getV3 ();
+        if (!getTriangles (v1).contains (t))
+        {
+            triangles.putIfAbsent (new Key (v1, v2, v3), t);
+            file (byVertex, v1, t);
+            file (byVertex, v2, t);
+            file (byVertex, v3, t);
+            file (byLine, v1.connector (v2), t);
+            file (byLine, v2.connector (v3), t);
+            file (byLine, v3.connector (v1), t);
+            size++;
+        }
+    }
+
+    private static <K> void file (Map<K, List<GeoTriangle>> map, K key, GeoTriangle t)
+    {
+        if (key != null)
+        {
+            List<GeoTriangle> list = map.get (key);
+            if (list == null)
+            {
+                list = new ArrayList<> (2);
+                map.put (key, list);
+            }
+            if (!list.contains (t))
+            {
+                list.add (t);
+            }
+        }
+    }
+
+    /** Remove a triangle. Another triangle with the same corners takes its place. */
+    public void remove (GeoTriangle t)
+    {
+        final GeoVertex v1 = t.getV1 ();
+        final GeoVertex v2 = t.getV2 ();
+        final GeoVertex v3 = t.getV3 ();
+        if (getTriangles (v1).contains (t))
+        {
+            unfile (byVertex, v1, t);
+            unfile (byVertex, v2, t);
+            unfile (byVertex, v3, t);
+            unfile (byLine, v1.connector (v2), t);
+            unfile (byLine, v2.connector (v3), t);
+            unfile (byLine, v3.connector (v1), t);
+            final Key key = new Key (v1, v2, v3);
+            if (triangles.get (key) == t)
+            {
+                triangles.remove (key);
+                for (final GeoTriangle other : getTriangles (v1))
+                {
+                    if (other.hasVertex (v2) && other.hasVertex (v3))
+                    {
+                        triangles.put (key, other);
+                        break;
+                    }
+                }
+            }
+            size--;
+        }
+    }
+
+    private static <K> void unfile (Map<K, List<GeoTriangle>> map, K key, GeoTriangle t)
+    {
+        if (key != null)
+        {
+            final List<GeoTriangle> list = map.get (key);
+            if (list != null)
+            {
+                list.remove (t);
+                if (list.isEmpty ())
+                {
+                    map.remove (key);
+                }
+            }
+        }
+    }
+
+    /** The triangle with three corners in any order, or null. */
+    public GeoTriangle get (GeoVertex v1, GeoVertex v2, GeoVertex v3)
+    {
+        return triangles.get (new Key (v1, v2, v3));
+    }
+
+    /** Is there a triangle with three corners in any order. */
+    public boolean contains (GeoVertex v1, GeoVertex v2, GeoVertex v3)
+    {
+        return triangles.containsKey (new Key (v1, v2, v3));
+    }
+
+    /** Triangles with a vertex as a corner. The result must not be modified. */
+    public List<GeoTriangle> getTriangles (GeoVertex v)
+    {
+        final List<GeoTriangle> result = byVertex.get (v);
+        return result == null ? NONE : result;
+    }
+
+    /** Triangles with a line as a side. The result must not be modified. */
+    public List<GeoTriangle> getTriangles (GeoLine line)
+    {
+        final List<GeoTriangle> result = byLine.get (line);
+        return result == null ? NONE : result;
+    }
+
+    /** Number of triangles registered. */
+    public int size ()
+    {
+        return size;
+    }
+
+    /** Forget all triangles. */
+    public void clear ()
+    {
+        triangles.clear ();
+        byVertex.clear ();
+        byLine.clear ();
+        size = 0;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (size);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,236 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Justification based truth maintenance over the recorded inferences. Each derived item keeps the
+ * inference that derived it as its support. When an item stops being determined, only the derived
+ * items whose support depends on it, directly or through other derived items, are retracted. Each
+ * retracted item is then restored from another recorded inference whose terms are still determined,
+ * so the work is proportional to the affected part of the derivation graph instead of the plane.
+ *
+ * Derived items without a support, like a line determined by its end points or items restored
+ * from a file, are retracted when a rule reading a retracted item can derive them or when the
+ * agenda recorded a read between them and a retracted item. The solver derives them again if they
+ * still follow. Retractions from different threads of the parallel solver are serialized.
+ */
+public class TruthMaintenance
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** Rules that read each item. */
+    private final RuleIndex ruleIndex;
+
+    /** Set while retracting, so the status changes made here do not start another retraction. */
+    private boolean retracting = false;
+
+    /** Number of derived items retracted. */
+    private long retractCount = 0;
+
+    /** Number of retracted items restored from another recorded inference. */
+    private long restoreCount = 0;
+
+    /** Truth maintenance over the recorded inferences. */
+    public TruthMaintenance (RuleIndex ruleIndex)
+    {
+        this.ruleIndex = ruleIndex;
+    }
+
+    /**
+     * Retract the consequences of an item that is no longer determined.
+     *
+     * @param item An item that just became undetermined.
+     *
+     * @return The items that were retracted and could not be restored.
+     */
+    public synchronized List<GeoItem> retract (GeoItem item)
+    {
+        if (retracting)
+        {
+            return Collections.emptyList ();
+        }
+        retracting = true;
+        final List<GeoItem> retracted = new ArrayList<> ();
+        try
+        {
+            final ArrayDeque<GeoItem> frontier = new ArrayDeque<> ();
+            frontier.add (item);
+            while (!frontier.isEmpty ())
+            {
+                final GeoItem y = frontier.poll ();
+                final Set<GeoItem> dependents = y.getDependents ();
+                if (dependents != null)
+                {
+                    for (final GeoItem d : new ArrayList<> (dependents))
+                    {
+                        if (retract (d, retracted))
+                        {
+                            frontier.add (d);
+                        }
+                    }
+                }
+                for (final Rule rule : ruleIndex.getRules (y))
+                {
+                    final GeoItem owner = rule.getOwner ();
+                    if (owner != y && owner.getSupport () == null && retract (owner, retracted))
+                    {
+                        frontier.add (owner);
+                    }
+                }
+                // Status set by solve methods, like a line determined by its end points, is not
+                // justified by an inference. The solver reads in both directions.
+                retractUnsupported (y.getReaders (), retracted, frontier);
+                retractUnsupported (y.getReads (), retracted, frontier);
+            }
+        }
+        finally
+        {
+            retracting = false;
+        }
+        if (!retracted.isEmpty ())
+        {
+            logger.debug ("Retracting %s retracted %d items", item.getName (), retracted.size ());
+            restore (retracted);
+        }
+        return retracted;
+    }
+
+    /**
+     * Retract derived items whose support no longer holds, like coordinates derived from a point
+     * that moved away, along with their consequences.
+     */
+    public synchronized void retractAll (List<GeoItem> items)
+    {
+        for (final GeoItem item : items)
+        {
+            if (item.getStatus () == GeoStatus.derived)
+            {
+                // Setting the status retracts the consequences of the item
+                item.setStatus (GeoStatus.unknown, "retracted");
+                retractCount++;
+            }
+        }
+    }
+
+    /** Retract derived items without a support. */
+    private void retractUnsupported (Set<GeoItem> items, List<GeoItem> retracted, ArrayDeque<GeoItem> frontier)
+    {
+        if (items != null)
+        {
+            for (final GeoItem item : new ArrayList<> (items))
+            {
+                if (item.getSupport () == null && retract (item, retracted))
+                {
+                    frontier.add (item);
+                }
+            }
+        }
+    }
+
+    /** Make one derived item unknown. */
+    private boolean retract (GeoItem item, List<GeoItem> retracted)
+    {
+        if (item.getStatus () == GeoStatus.derived)
+        {
+            item.setStatus (GeoStatus.unknown, "retracted");
+            retracted.add (item);
+            retractCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restore retracted items from other recorded inferences. An item is only restored from terms
+     * that are determined already, so the new supports are well founded. Restoring an item may
+     * enable inferences of other retracted items, which are then tried again.
+     *
+     * @param retracted The retracted items. Items restored are removed.
+     */
+    private void restore (List<GeoItem> retracted)
+    {
+        final Set<GeoItem> pending = Collections.newSetFromMap (new IdentityHashMap<> ());
+        pending.addAll (retracted);
+        // Retracted items waiting for each retracted term
+        final Map<GeoItem, List<GeoItem>> waiting = new IdentityHashMap<> ();
+        final ArrayDeque<GeoItem> queue = new ArrayDeque<> (retracted);
+        while (!queue.isEmpty ())
+        {
+            final GeoItem item = queue.poll ();
+            if (!pending.contains (item) || item.isDetermined ())
+            {
+                continue;
+            }
+            final Inference inference = findSupport (item);
+            if (inference != null)
+            {
+                pending.remove (item);
+                item.setStatus (GeoStatus.derived, inference.getReason ());
+                item.setSupport (inference);
+                restoreCount++;
+                final List<GeoItem> enabled = waiting.remove (item);
+                if (enabled != null)
+                {
+                    queue.addAll (enabled);
+                }
+            }
+            else
+            {
+                for (final Inference i : item.getInferences ())
+                {
+                    final GeoItem[] terms = i.getTerms ();
+                    for (int t = 1; t < terms.length; t++)
+                    {
+                        if (pending.contains (terms[t]))
+                        {
+                            waiting.computeIfAbsent (terms[t], k -> new ArrayList<> ()).add (item);
+                        }
+                    }
+                }
+            }
+        }
+        retracted.retainAll (pending);
+    }
+
+    /** Find a recorded inference that can derive an item now. */
+    private Inference findSupport (GeoItem item)
+    {
+        for (final Inference inference : item.getInferences ())
+        {
+            if (inference.isReady ())
+            {
+                return inference;
+            }
+        }
+        return null;
+    }
+
+    /** Number of derived items retracted. */
+    public synchronized long getRetractCount ()
+    {
+        return retractCount;
+    }
+
+    /** Number of retracted items restored from another recorded inference. */
+    public synchronized long getRestoreCount ()
+    {
+        return restoreCount;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (retractCount);
+        buffer.append (" ");
+        buffer.append (restoreCount);
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -0,0 +1,231 @@
+
+package com.chriseliot.geo;
+
+import static java.lang.Math.abs;
+
+import java.util.Arrays;
+
+import org.apache.logging.log4j.*;
+import org.matheclipse.core.eval.ExprEvaluator;
+import org.matheclipse.core.interfaces.IExpr;
+
+/**
+ * Numeric check of one inference. The formula and the values of the terms are captured when the
+ * check is requested, so it can be evaluated later on another thread while the items keep changing.
+ * Formulas are evaluated by the FormulaCompiler when possible and by Symja otherwise.
+ */
+public class Verification
+{
+    private static Logger logger = LogManager.getFormatterLogger (Verification.class);
+
+    /** Allowed difference between the expected and computed values. */
+    public static final double epsilon = 0.0001;
+
+    /** The reason for the inference. */
+    private final String reason;
+
+    /** Java format template of the formula. */
+    private final String formula;
+
+    /** Name of the variable derived by the inference. */
+    private final String owner;
+
+    /** Value of the owner on screen. */
+    private final double expected;
+
+    /** Names of the terms. */
+    private final String[] names;
+
+    /**
+     * Values of the terms. One value for a variable, x and y for a point and null for an item
+     * without a value.
+     */
+    private final double[][] values;
+
+    private Verification (String reason, String formula, String owner, double expected, String[] names,
+            double[][] values)
+    {
+        this.reason = reason;
+        this.formula = formula;
+        this.owner = owner;
+        this.expected = expected;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Capture an inference for checking.
+     *
+     * @return The verification, or null if the owner has no numeric value to check against.
+     */
+    public static Verification capture (String reason, String formula, GeoItem[] terms)
+    {
+        // Looking at the values is not part of the derivation, so don't record them as reads
+        final Agenda agenda = terms[0].getPlane ().getAgenda ();
+        final GeoItem reader = agenda.suspend ();
+        try
+        {
+            return captureValues (reason, formula, terms);
+        }
+        finally
+        {
+            agenda.resume (reader);
+        }
+    }
+
+    /** Copy the current values of the terms of an inference. */
+    private static Verification captureValues (String reason, String formula, GeoItem[] terms)
+    {
+        final GeoItem owner = terms[0];
+        if (owner instanceof NamedVariable)
+        {
+            final Double value = ((NamedVariable)owner).getDoubleValue ();
+            if (value != null)
+            {
+                final String[] names = new String[terms.length];
+                final double[][] values = new double[terms.length][];
+                for (int i = 0; i < terms.length; i++)
+                {
+                    final GeoItem term = terms[i];
+                    names[i] = term.getName ();
+                    if (term instanceof NamedVariable)
+                    {
+                        final Double v = ((NamedVariable)term).getDoubleValue ();
+                        if (v != null)
+                        {
+                            values[i] = new double[] {v};
+                        }
+                    }
+                    else if (term instanceof NamedPoint)
+                    {
+                        final NamedPoint p = (NamedPoint)term;
+                        final Double x = p.getX ().getDoubleValue ();
+                        final Double y = p.getY ().getDoubleValue ();
+                        if (x != null && y != null)
+                        {
+                            values[i] = new double[] {x, y};
+                        }
+                    }
+                }
+                return new Verification (reason, formula, owner.getName (), value, names, values);
+            }
+        }
+        return null;
+    }
+
+    /** The reason for the inference. */
+    public String getReason ()
+    {
+        return reason;
+    }
+
+    /** The instantiated formula. */
+    public String getExpression ()
+    {
+        return String.format (formula, (Object[])names);
+    }
+
+    /** Name of the variable derived by the inference. */
+    public String getOwner ()
+    {
+        return owner;
+    }
+
+    /** Value of the owner on screen. */
+    public double getExpected ()
+    {
+        return expected;
+    }
+
+    /**
+     * Compute the value of the right hand side of the formula from the captured term values. The
+     * compiled formula is used when there is one, otherwise Symja.
+     */
+    public double evaluate ()
+    {
+        final Formula compiled = FormulaCompiler.compile (formula);
+        if (compiled != null && isComplete ())
+        {
+            return compiled.evaluate (values);
+        }
+        return evaluateSymja ();
+    }
+
+    /** Do all terms have values. */
+    private boolean isComplete ()
+    {
+        for (final double[] value : values)
+        {
+            if (value == null)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compute the value of the right hand side of the formula using Symja. */
+    public double evaluateSymja ()
+    {
+        final ExprEvaluator eval = EvaluatorPool.acquire ();
+        try
+        {
+            final IExpr expr = eval.parse (getExpression ());
+            final IExpr rhs = expr.getAt (2);
+            if (logger.isDebugEnabled ())
+            {
+                final StringBuilder builder = new StringBuilder ();
+                builder.append (String.format ("'%s' Inference: %s; rhs: %s", reason, expr, rhs));
+                for (int i = 0; i < names.length; i++)
+                {
+                    builder.append ("; ");
+                    builder.append (names[i]);
+                    builder.append (" = ");
+                    builder.append (Arrays.toString (values[i]));
+                }
+                logger.debug (builder.toString ());
+            }
+            for (int i = 0; i < names.length; i++)
+            {
+                final double[] value = values[i];
+                if (value == null)
+                {
+                    eval.defineVariable (names[i]);
+                }
+                else if (value.length == 1)
+                {
+                    eval.defineVariable (names[i], value[0]);
+                }
+                else
+                {
+                    eval.defineVariable (names[i], eval.parse (String.format ("{%s, %s}", value[0], value[1])));
+                }
+            }
+            return eval.evalf (rhs);
+        }
+        finally
+        {
+            EvaluatorPool.release (eval);
+        }
+    }
+
+    /** Does a computed value disagree with the expected value. */
+    public boolean isMismatch (double actual)
+    {
+        return abs (actual - expected) > epsilon;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" '");
+        buffer.append (reason);
+        buffer.append ("' {");
+        buffer.append (getExpression ());
+        buffer.append ("}>");
+        return buffer.toString ();
+    }
+}
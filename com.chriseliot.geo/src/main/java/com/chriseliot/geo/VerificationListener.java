@@ -0,0 +1,15 @@
+
+package com.chriseliot.geo;
+
+/** Notified when an inference does not match the values on screen. */
+public interface VerificationListener
+{
+    /**
+     * An inference failed verification. For asynchronous verification this is called on the
+     * executor thread.
+     *
+     * @param verification The inference that was checked.
+     * @param actual The value computed from the formula.
+     */
+    void mismatch (Verification verification, double actual);
+}
@@ -0,0 +1,20 @@
+
+package com.chriseliot.geo;
+
+/**
+ * When inferences are checked numerically against the values on screen. Checking uses the symbolic
+ * evaluator and is expensive, so production use should disable it or sample.
+ */
+public enum VerificationMode
+{
+    /** Check every setFormula call, even when no inference is recorded. */
+    all,
+    /** Check only inferences that are actually recorded. */
+    recorded,
+    /** Check a fraction of the recorded inferences. */
+    sampled,
+    /** Check recorded inferences on a background executor. */
+    async,
+    /** Never check. */
+    disabled;
+}
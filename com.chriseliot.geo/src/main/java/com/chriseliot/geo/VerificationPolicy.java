@@ -0,0 +1,290 @@
+
+package com.chriseliot.geo;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Decides when inferences are checked numerically and keeps counts of the work done. Each plane
+ * has its own policy.
+ */
+public class VerificationPolicy
+{
+    private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
+
+    /** When inferences are checked. */
+    private volatile VerificationMode mode = VerificationMode.recorded;
+
+    /** Fraction of recorded inferences checked in sampled mode. */
+    private volatile double sampleRate = 0.1;
+
+    /** Executor for async mode. A daemon thread is created if none is supplied. */
+    private ExecutorService executor = null;
+
+    /** Notified when an inference does not match the values on screen. */
+    private final List<VerificationListener> listeners = new CopyOnWriteArrayList<> ();
+
+    /** Number of verification requests. */
+    private final AtomicLong requestCount = new AtomicLong ();
+
+    /** Number of requests not checked because of the mode, sampling or a missing value. */
+    private final AtomicLong skipCount = new AtomicLong ();
+
+    /** Number of verifications that ran. */
+    private final AtomicLong verifyCount = new AtomicLong ();
+
+    /** Number of verifications that found a mismatch. */
+    private final AtomicLong mismatchCount = new AtomicLong ();
+
+    /** Number of verifications that failed with an exception. */
+    private final AtomicLong errorCount = new AtomicLong ();
+
+    /** Number of recorded inferences considered for sampling. */
+    private final AtomicLong sampleCount = new AtomicLong ();
+
+    /** Number of async verifications not finished yet. */
+    private final AtomicLong pendingCount = new AtomicLong ();
+
+    /** When inferences are checked. */
+    public VerificationMode getMode ()
+    {
+        return mode;
+    }
+
+    /** When inferences are checked. */
+    public void setMode (VerificationMode mode)
+    {
+        this.mode = mode;
+    }
+
+    /** Fraction of recorded inferences checked in sampled mode. */
+    public double getSampleRate ()
+    {
+        return sampleRate;
+    }
+
+    /** Fraction of recorded inferences checked in sampled mode, between 0 and 1. */
+    public void setSampleRate (double sampleRate)
+    {
+        if (sampleRate < 0 || sampleRate > 1)
+        {
+            throw new IllegalArgumentException ("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /** Executor for async mode. The caller remains responsible for shutting it down. */
+    public synchronized void setExecutor (ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /** Executor for async mode. A daemon thread is created if none is supplied. */
+    public synchronized ExecutorService getExecutor ()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor (r -> {
+                final Thread thread = new Thread (r, "verification");
+                thread.setDaemon (true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    public void addVerificationListener (VerificationListener listener)
+    {
+        listeners.add (listener);
+    }
+
+    public void removeVerificationListener (VerificationListener listener)
+    {
+        listeners.remove (listener);
+    }
+
+    /**
+     * Check an inference if the mode calls for it.
+     *
+     * @param reason A string giving the reason for this derivation.
+     * @param formula A Java format template to create the derivation formula.
+     * @param terms Variables substituted into the template. The first is the owner.
+     * @param recorded Will the inference be recorded.
+     */
+    public void verify (String reason, String formula, GeoItem[] terms, boolean recorded)
+    {
+        requestCount.incrementAndGet ();
+        if (!isSelected (recorded))
+        {
+            skipCount.incrementAndGet ();
+            return;
+        }
+        final Verification verification = Verification.capture (reason, formula, terms);
+        if (verification == null)
+        {
+            skipCount.incrementAndGet ();
+            return;
+        }
+        if (mode == VerificationMode.async)
+        {
+            pendingCount.incrementAndGet ();
+            getExecutor ().execute (() -> {
+                try
+                {
+                    run (verification);
+                }
+                finally
+                {
+                    finished ();
+                }
+            });
+        }
+        else
+        {
+            run (verification);
+        }
+    }
+
+    /** Should this request be checked in the current mode. */
+    private boolean isSelected (boolean recorded)
+    {
+        switch (mode)
+        {
+            case all:
+                return true;
+            case recorded:
+            case async:
+                return recorded;
+            case sampled:
+                if (recorded)
+                {
+                    // Deterministic sampling: check whenever the running total crosses an integer
+                    final long n = sampleCount.getAndIncrement ();
+                    final double rate = sampleRate;
+                    return (long)((n + 1) * rate) > (long)(n * rate);
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /** Evaluate one verification and report a mismatch. */
+    private void run (Verification verification)
+    {
+        try
+        {
+            final double actual = verification.evaluate ();
+            verifyCount.incrementAndGet ();
+            if (verification.isMismatch (actual))
+            {
+                mismatchCount.incrementAndGet ();
+                logger.error ("Var %s expected %.2f != %.2f FAIL", verification.getOwner (), verification.getExpected (),
+                        actual);
+                for (final VerificationListener listener : listeners)
+                {
+                    listener.mismatch (verification, actual);
+                }
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            errorCount.incrementAndGet ();
+            logger.error ("Can't verify %s: %s", verification, e);
+        }
+    }
+
+    private synchronized void finished ()
+    {
+        pendingCount.decrementAndGet ();
+        notifyAll ();
+    }
+
+    /**
+     * Wait for async verifications to finish.
+     *
+     * @param timeout Maximum time to wait in milliseconds.
+     *
+     * @return true if nothing is pending.
+     */
+    public synchronized boolean await (long timeout) throws InterruptedException
+    {
+        final long end = System.currentTimeMillis () + timeout;
+        while (pendingCount.get () > 0)
+        {
+            final long remaining = end - System.currentTimeMillis ();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            wait (remaining);
+        }
+        return true;
+    }
+
+    /** Number of verification requests. */
+    public long getRequestCount ()
+    {
+        return requestCount.get ();
+    }
+
+    /** Number of requests not checked because of the mode, sampling or a missing value. */
+    public long getSkipCount ()
+    {
+        return skipCount.get ();
+    }
+
+    /** Number of verifications that ran. */
+    public long getVerifyCount ()
+    {
+        return verifyCount.get ();
+    }
+
+    /** Number of verifications that found a mismatch. */
+    public long getMismatchCount ()
+    {
+        return mismatchCount.get ();
+    }
+
+    /** Number of verifications that failed with an exception. */
+    public long getErrorCount ()
+    {
+        return errorCount.get ();
+    }
+
+    /** Number of async verifications not finished yet. */
+    public long getPendingCount ()
+    {
+        return pendingCount.get ();
+    }
+
+    /** Set all counters to zero. */
+    public void resetCounters ()
+    {
+        requestCount.set (0);
+        skipCount.set (0);
+        verifyCount.set (0);
+        mismatchCount.set (0);
+        errorCount.set (0);
+        sampleCount.set (0);
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (mode);
+        buffer.append (" ");
+        buffer.append (verifyCount.get ());
+        buffer.append ("/");
+        buffer.append (requestCount.get ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
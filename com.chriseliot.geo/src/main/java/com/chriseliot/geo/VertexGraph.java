@@ -0,0 +1,258 @@
+
+package com.chriseliot.geo;
+
+import java.util.*;
+
+/**
+ * Adjacency between the vertices of a plane. Each vertex joins two lines and is a neighbor of every
+ * other vertex on those lines. Vertices are filed under their lines, so the third corner of a
+ * possible triangle is found directly as the vertex where two lines cross, instead of testing every
+ * triple of vertices.
+ *
+ * The graph uses GeoVertex.getLine1 and getLine2, so it is right even for vertices that were not
+ * added to the vertex lists of their lines.
+ */
+public class VertexGraph
+{
+    /** Vertices on each line, in the order they were added. */
+    private final Map<GeoLine, List<GeoVertex>> lineVertices = new HashMap<> ();
+
+    /** Order the vertices were added, used to report triangles in plane order. */
+    private final Map<GeoVertex, Integer> order = new HashMap<> ();
+
+    /** Next vertex order number. */
+    private int serial = 0;
+
+    /** Add a vertex under both of its lines. */
+    public void add (GeoVertex v)
+    {
+        if (!order.containsKey (v))
+        {
+            order.put (v, serial++);
+            file (v.getLine1 (), v);
+            file (v.getLine2 (), v);
+        }
+    }
+
+    private void file (GeoLine line, GeoVertex v)
+    {
+        List<GeoVertex> vertices = lineVertices.get (line);
+        if (vertices == null)
+        {
+            vertices = new ArrayList<> (4);
+            lineVertices.put (line, vertices);
+        }
+        vertices.add (v);
+    }
+
+    /** Remove a vertex from both of its lines. */
+    public void remove (GeoVertex v)
+    {
+        if (order.remove (v) != null)
+        {
+            unfile (v.getLine1 (), v);
+            unfile (v.getLine2 (), v);
+        }
+    }
+
+    private void unfile (GeoLine line, GeoVertex v)
+    {
+        final List<GeoVertex> vertices = lineVertices.get (line);
+        if (vertices != null)
+        {
+            vertices.remove (v);
+            if (vertices.isEmpty ())
+            {
+                lineVertices.remove (line);
+            }
+        }
+    }
+
+    /** Does the graph contain a vertex. */
+    public boolean contains (GeoVertex v)
+    {
+        return order.containsKey (v);
+    }
+
+    /** Number of vertices in the graph. */
+    public int size ()
+    {
+        return order.size ();
+    }
+
+    /** Vertices on a line. The result must not be modified. */
+    public List<GeoVertex> getVertices (GeoLine line)
+    {
+        final List<GeoVertex> result = lineVertices.get (line);
+        return result == null ? Collections.emptyList () : result;
+    }
+
+    /** The vertex where two lines cross, or null. */
+    public GeoVertex getVertex (GeoLine a, GeoLine b)
+    {
+        final List<GeoVertex> va = getVertices (a);
+        final List<GeoVertex> vb = getVertices (b);
+        final List<GeoVertex> shorter = va.size () <= vb.size () ? va : vb;
+        final GeoLine other = shorter == va ? b : a;
+        for (int i = 0; i < shorter.size (); i++)
+        {
+            final GeoVertex v = shorter.get (i);
+            if (v.hasLine (other))
+            {
+                return v;
+            }
+        }
+        return null;
+    }
+
+    /** Add the vertices sharing a line with a vertex to a collection. */
+    public void getNeighbors (GeoVertex v, Collection<GeoVertex> result)
+    {
+        for (final GeoVertex n : getVertices (v.getLine1 ()))
+        {
+            if (n != v)
+            {
+                result.add (n);
+            }
+        }
+        for (final GeoVertex n : getVertices (v.getLine2 ()))
+        {
+            if (n != v)
+            {
+                result.add (n);
+            }
+        }
+    }
+
+    /**
+     * Find every triangle of vertices in the graph. The vertices of each triangle are in the order
+     * they were added, and the triangles are sorted the same way, which is the order a scan over
+     * every triple would find them.
+     */
+    public void getTriangles (List<GeoVertex[]> result)
+    {
+        final int start = result.size ();
+        for (final GeoVertex v : order.keySet ())
+        {
+            addTriangles (v, true, result);
+        }
+        sort (result.subList (start, result.size ()));
+    }
+
+    /** Find the triangles that have a vertex as one corner, sorted as for getTriangles. */
+    public void getTriangles (GeoVertex v, List<GeoVertex[]> result)
+    {
+        final int start = result.size ();
+        if (contains (v))
+        {
+            addTriangles (v, false, result);
+        }
+        sort (result.subList (start, result.size ()));
+    }
+
+    /** Find the triangles that have a line as one side, sorted as for getTriangles. */
+    public void getTriangles (GeoLine line, List<GeoVertex[]> result)
+    {
+        final int start = result.size ();
+        final List<GeoVertex> vertices = getVertices (line);
+        for (int i = 0; i < vertices.size (); i++)
+        {
+            final GeoVertex v1 = vertices.get (i);
+            final GeoLine b = other (v1, line);
+            for (int j = i + 1; j < vertices.size (); j++)
+            {
+                final GeoVertex v2 = vertices.get (j);
+                final GeoLine c = other (v2, line);
+                if (b != c)
+                {
+                    final GeoVertex v3 = getVertex (b, c);
+                    if (v3 != null)
+                    {
+                        result.add (sortCorners (v1, v2, v3));
+                    }
+                }
+            }
+        }
+        sort (result.subList (start, result.size ()));
+    }
+
+    /**
+     * Find the triangles with a vertex as a corner. A vertex joins lines a and b, so every triangle
+     * through it has a second corner on a and the third corner where b crosses the other line of the
+     * second corner.
+     *
+     * @param first Only report triangles where this vertex was added first, so each triangle of the
+     *            graph is found once.
+     */
+    private void addTriangles (GeoVertex v, boolean first, List<GeoVertex[]> result)
+    {
+        final GeoLine a = v.getLine1 ();
+        final GeoLine b = v.getLine2 ();
+        final int rank = order.get (v);
+        for (final GeoVertex v2 : getVertices (a))
+        {
+            if (v2 != v && (!first || order.get (v2) > rank))
+            {
+                final GeoLine c = other (v2, a);
+                if (c != b)
+                {
+                    final GeoVertex v3 = getVertex (b, c);
+                    if (v3 != null && (!first || order.get (v3) > rank))
+                    {
+                        result.add (sortCorners (v, v2, v3));
+                    }
+                }
+            }
+        }
+    }
+
+    /** The line of a vertex that is not the given line. */
+    private static GeoLine other (GeoVertex v, GeoLine line)
+    {
+        return v.getLine1 () == line ? v.getLine2 () : v.getLine1 ();
+    }
+
+    /** Put three vertices in the order they were added. */
+    private GeoVertex[] sortCorners (GeoVertex v1, GeoVertex v2, GeoVertex v3)
+    {
+        final GeoVertex[] result = new GeoVertex[] {v1, v2, v3};
+        Arrays.sort (result, (x, y) -> Integer.compare (order.get (x), order.get (y)));
+        return result;
+    }
+
+    /** Sort triangles by the order of their corners. */
+    private void sort (List<GeoVertex[]> triangles)
+    {
+        triangles.sort ((x, y) -> {
+            for (int i = 0; i < 3; i++)
+            {
+                final int c = Integer.compare (order.get (x[i]), order.get (y[i]));
+                if (c != 0)
+                {
+                    return c;
+                }
+            }
+            return 0;
+        });
+    }
+
+    /** Forget all vertices. */
+    public void clear ()
+    {
+        lineVertices.clear ();
+        order.clear ();
+        serial = 0;
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (order.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
@@ -1,17 +1,14 @@
 
 package com.chriseliot.geo.gui;
 
-import java.awt.Color;
-import java.awt.geom.Point2D;
 import java.io.*;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
-import javax.swing.JTable;
+import javax.swing.*;
 import javax.xml.parsers.*;
 import javax.xml.transform.TransformerException;
 
 import org.apache.logging.log4j.*;
-import org.w3c.dom.*;
 import org.xml.sax.SAXException;
 
 import com.chriseliot.geo.*;
@@ -22,7 +19,6 @@ public class FileSave
     private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
 
     private final FileUtils fu = new FileUtils ();
-    private final XMLUtil xu = new XMLUtil ();
 
     private final Geo geo;
 
@@ -47,28 +43,39 @@ public class FileSave
     {
         final File currentDir = new File ("data/").getAbsoluteFile ();
         logger.info ("Current dir %s", currentDir);
-        final File file = fu.getSaveFile (geo, "Save geometry to file", currentDir, ".xml");
+        final File file = fu.getSaveFile (geo, "Save geometry to file", currentDir, ".xml", PlaneBinary.SUFFIX);
         if (file != null)
         {
             logger.info ("Saving to %s", file.getAbsolutePath ());
-            saveXml (file);
+            saveFile (file);
         }
     }
 
-    public void saveXml (File file) throws ParserConfigurationException, IOException, TransformerException
+    /**
+     * Save the plane in the binary form if the file name ends with .geo, otherwise as xml. Edits
+     * made after this are autosaved to a journal next to the file.
+     */
+    public void saveFile (File file) throws ParserConfigurationException, IOException, TransformerException
     {
-        final DocumentBuilder builder = xu.getDocumentBuilder ();
-        final Document doc = builder.newDocument ();
-        final Element root = doc.createElement ("geometry");
-        doc.appendChild (root);
-        // Save namer state
-        // Save window state
-        final GeoPlane plane = geo.getPlane ();
-        for (final GeoItem item : plane.getRoots ())
+        geo.setJournal (null);
+        if (fu.hasExtension (file, PlaneBinary.SUFFIX))
         {
-            item.getElement (root);
+            new PlaneBinary ().save (geo.getPlane (), file);
         }
-        xu.writeXml (doc, file);
+        else
+        {
+            saveXml (file);
+        }
+        geo.setJournal (PlaneJournal.start (geo.getPlane (), file));
+    }
+
+    /**
+     * Save the plane as xml. Items are streamed to the file one at a time, so no document is built.
+     * The file is compressed if its name ends with .gz.
+     */
+    public void saveXml (File file) throws ParserConfigurationException, IOException, TransformerException
+    {
+        new PlaneXml ().save (geo.getPlane (), file);
     }
 
     /**
@@ -81,24 +88,120 @@ public class FileSave
     public void read () throws ParserConfigurationException, IOException, SAXException
     {
         final File currentDir = new File ("data/").getAbsoluteFile ();
-        final File file = fu.getReadFile (geo, "Select Geometry File", currentDir, "Select geometry xml", ".xml");
+        final File file = fu.getReadFile (geo, "Select Geometry File", currentDir, "Select geometry file", ".xml", PlaneBinary.SUFFIX);
         if (file != null)
         {
-            readXml (file);
+            readFile (file);
         }
     }
 
+    /**
+     * Load a plane in the binary form if the file name ends with .geo, otherwise as xml. Edits
+     * autosaved to the journal next to the file are replayed, and later edits are autosaved.
+     */
+    public void readFile (File file) throws ParserConfigurationException, IOException, SAXException
+    {
+        geo.setJournal (null);
+        geo.setJournal (PlaneJournal.open (geo.getPlane (), file));
+        updateDisplay ();
+    }
+
+    /**
+     * Load a plane from xml. The file is streamed, so memory does not grow with the file. Files
+     * whose name ends with .gz are uncompressed.
+     */
     public void readXml (File file) throws ParserConfigurationException, IOException, SAXException
     {
         final GeoPlane plane = geo.getPlane ();
-        plane.clear ();
-        final Document doc = xu.getDocument (file);
-        final Element root = doc.getDocumentElement ();
-        final List<Element> toplevel = xu.getChildren (root);
-        for (final Element element : toplevel)
+        new PlaneXml ().load (plane, file);
+        updateDisplay ();
+    }
+
+    /** Import line segments from a csv or whitespace separated file. */
+    public void importSegments ()
+    {
+        final File currentDir = new File ("data/").getAbsoluteFile ();
+        final File file = fu.getReadFile (geo, "Import Segments", currentDir, "Segment files", SegmentImporter.CSV_SUFFIX,
+                SegmentImporter.TEXT_SUFFIX);
+        if (file != null)
         {
-            marshall (plane, element);
+            importSegments (file);
         }
+    }
+
+    /**
+     * Import line segments from a file. The file is read on a worker thread while a progress
+     * monitor is shown, then the lines are added to the plane on the event thread in one batch.
+     */
+    public void importSegments (File file)
+    {
+        final ProgressMonitor monitor = new ProgressMonitor (geo, "Importing " + file.getName (), null, 0, 100);
+        final SegmentImporter importer = new SegmentImporter ();
+        final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void> ()
+        {
+            @Override
+            protected Void doInBackground () throws IOException
+            {
+                importer.setListener (new ImportListener ()
+                {
+                    @Override
+                    public void segmentsRead (int segments, long position, long total)
+                    {
+                        if (monitor.isCanceled ())
+                        {
+                            importer.cancel ();
+                        }
+                        else if (total > 0)
+                        {
+                            setProgress ((int)Math.min (99, position * 100 / total));
+                        }
+                    }
+
+                    @Override
+                    public void linesCreated (int lines, int total)
+                    {
+                    }
+
+                    @Override
+                    public void findingVertices (int lines)
+                    {
+                    }
+                });
+                importer.read (file);
+                return null;
+            }
+
+            @Override
+            protected void done ()
+            {
+                monitor.close ();
+                try
+                {
+                    get ();
+                    importer.addTo (geo.getPlane ());
+                    updateDisplay ();
+                }
+                catch (final InterruptedException | ExecutionException e)
+                {
+                    logger.error ("Can't import %s", file, e);
+                    JOptionPane.showMessageDialog (geo, "Can't import " + file.getName () + ": " + e.getCause ());
+                }
+            }
+        };
+        worker.addPropertyChangeListener (e ->
+        {
+            if ("progress".equals (e.getPropertyName ()))
+            {
+                monitor.setProgress ((Integer)e.getNewValue ());
+            }
+        });
+        worker.execute ();
+    }
+
+    /** Show the plane after it is loaded. */
+    private void updateDisplay ()
+    {
+        final GeoPlane plane = geo.getPlane ();
         final GeoSolution solution = geo.getSolution ();
         solution.update ();
         final JTable solutionTable = geo.getSolutionTable ();
@@ -109,53 +212,6 @@ public class FileSave
         logger.info ("Plane %s", plane);
     }
 
-    private void marshall (GeoPlane plane, Element element)
-    {
-        final String tag = element.getTagName ();
-        if (tag.equals ("GeoLine"))
-        {
-            final Color color = new Color (xu.getInteger (element, "color", 0));
-            final Point2D.Double from = new Point2D.Double (0, 0);
-            final Point2D.Double to = new Point2D.Double (0, 0);
-            final GeoLine item = new GeoLine (plane, color, from, to);
-            item.marshall (element);
-        }
-        else if (tag.equals ("GeoVertex"))
-        {
-            final Color color = new Color (xu.getInteger (element, "color", 0));
-            final GeoLine line1 = (GeoLine)plane.get (xu.get (element, "line1", null));
-            final GeoLine line2 = (GeoLine)plane.get (xu.get (element, "line2", null));
-            final GeoVertex item = new GeoVertex (plane, color, line1, line2, new Point2D.Double (0, 0));
-            plane.addItem (item);
-            item.marshall (element);
-        }
-        else if (tag.equals ("GeoTriangle"))
-        {
-            final Color color = new Color (xu.getInteger (element, "color", 0));
-            final GeoVertex v1 = (GeoVertex)plane.get (xu.get (element, "v1", null));
-            final GeoVertex v2 = (GeoVertex)plane.get (xu.get (element, "v2", null));
-            final GeoVertex v3 = (GeoVertex)plane.get (xu.get (element, "v3", null));
-            final GeoTriangle item = new GeoTriangle (plane, color, v1, v2, v3);
-            item.marshall (element);
-        }
-        else if (tag.equals ("GeoRectangle"))
-        {
-            final Color color = new Color (xu.getInteger (element, "color", 0));
-            final GeoRectangle item = new GeoRectangle (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
-            item.marshall (element);
-        }
-        else if (tag.equals ("GeoOval"))
-        {
-            final Color color = new Color (xu.getInteger (element, "color", 0));
-            final GeoOval item = new GeoOval (plane, color, new Point2D.Double (0, 0), new Point2D.Double (0, 0));
-            item.marshall (element);
-        }
-        else
-        {
-            logger.warn ("Can't marshall %s element", tag);
-        }
-    }
-
     @Override
     public String toString ()
     {
@@ -6,6 +6,7 @@ import static java.lang.Math.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 
 import javax.swing.*;
 import javax.swing.table.*;
@@ -48,6 +49,15 @@ public class Geo extends JPanel
     private final JSplitPane splitPane = new JSplitPane (JSplitPane.HORIZONTAL_SPLIT, solutionScroll, geoScroll);
     private final GeoMouse geoMouse = new GeoMouse (this);
 
+    /** Time between autosaves in milliseconds. */
+    private static final int AUTOSAVE_INTERVAL = 5000;
+
+    /** Records the edits made since the plane was saved, or null if it has not been saved. */
+    private PlaneJournal journal = null;
+
+    /** Appends the latest edits to the journal. */
+    private final Timer autosave = new Timer (AUTOSAVE_INTERVAL, e -> flushJournal ());
+
     /** Construct the window and initialize the frame. */
     public Geo ()
     {
@@ -141,6 +151,7 @@ public class Geo extends JPanel
     /** Clear the geometry plane. */
     public void clear ()
     {
+        setJournal (null);
         plane.clear ();
         solution.clear ();
         repaint ();
@@ -165,6 +176,71 @@ public class Geo extends JPanel
         repaint ();
     }
 
+    /** Records the edits made since the plane was saved, or null if it has not been saved. */
+    public PlaneJournal getJournal ()
+    {
+        return journal;
+    }
+
+    /** Close the current journal, if any, and autosave to a new one. */
+    public void setJournal (PlaneJournal journal)
+    {
+        if (this.journal != null)
+        {
+            try
+            {
+                this.journal.close ();
+            }
+            catch (final IOException e)
+            {
+                logger.error ("Can't close journal %s", this.journal, e);
+            }
+        }
+        this.journal = journal;
+        if (journal == null)
+        {
+            autosave.stop ();
+        }
+        else
+        {
+            autosave.start ();
+        }
+    }
+
+    /** Delete the current journal, if any, so edits the user chose not to save are not recovered. */
+    public void discardJournal ()
+    {
+        if (journal != null)
+        {
+            try
+            {
+                journal.discard ();
+            }
+            catch (final IOException e)
+            {
+                logger.error ("Can't discard journal %s", journal, e);
+            }
+            journal = null;
+            autosave.stop ();
+        }
+    }
+
+    /** Append the latest edits to the journal. */
+    private void flushJournal ()
+    {
+        if (journal != null)
+        {
+            try
+            {
+                journal.flush ();
+            }
+            catch (final IOException e)
+            {
+                logger.error ("Autosave to %s failed", journal.getFile (), e);
+            }
+        }
+    }
+
     public GeoSolution getSolution ()
     {
         return solution;
@@ -254,11 +254,14 @@ public class GeoControls extends JPanel implements ActionListener
         }
         else if (source == unknownAll)
         {
-            for (final GeoItem item : geo.getPlane ().getItems ())
+            final GeoPlane plane = geo.getPlane ();
+            for (final GeoItem item : plane.getItems ())
             {
+                // Truth maintenance retracts the consequences of each item
                 item.setStatusUnknown ();
             }
-            geo.getPlane ().resetDerived ();
+            plane.solve ();
+            plane.fireChangeListeners ();
         }
         else if (source == debug)
         {
@@ -315,6 +318,11 @@ public class GeoControls extends JPanel implements ActionListener
                     fileSave.save ();
                     dirty = false;
                 }
+                else
+                {
+                    // The user does not want these edits, so don't recover them next time
+                    geo.discardJournal ();
+                }
             }
             else
             {
@@ -345,12 +353,19 @@ public class GeoControls extends JPanel implements ActionListener
                     fileSave.save ();
                     dirty = false;
                 }
+                else
+                {
+                    // The user does not want these edits, so don't recover them next time
+                    geo.discardJournal ();
+                }
             }
             else
             {
                 logger.info ("Nothing to save");
             }
         }
+        // A journal left here holds edits the user was not asked about, so they are recovered next time
+        geo.setJournal (null);
         System.exit (0);
     }
 
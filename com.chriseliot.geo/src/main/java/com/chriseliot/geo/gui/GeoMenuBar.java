@@ -21,6 +21,7 @@ public class GeoMenuBar extends JMenuBar implements ActionListener
     // File menu items
     private final JMenuItem newItem = new JMenuItem ("New");
     private final JMenuItem openItem = new JMenuItem ("Open");
+    private final JMenuItem importItem = new JMenuItem ("Import Segments...");
     private final JMenuItem closeItem = new JMenuItem ("Close");
     private final JMenuItem saveItem = new JMenuItem ("Save");
     private final JMenuItem printItem = new JMenuItem ("Print...");
@@ -61,6 +62,7 @@ public class GeoMenuBar extends JMenuBar implements ActionListener
 
         addMenuItem (result, newItem, false);
         addMenuItem (result, openItem);
+        addMenuItem (result, importItem);
         addMenuItem (result, closeItem, false);
         addMenuItem (result, saveItem);
         addMenuItem (result, printItem);
@@ -170,6 +172,10 @@ public class GeoMenuBar extends JMenuBar implements ActionListener
         {
             controls.read ();
         }
+        else if (source == importItem)
+        {
+            new FileSave (geo).importSegments ();
+        }
         else if (source == closeItem)
         {
             logger.info ("Close item");
@@ -114,15 +114,35 @@ public class FileUtils
         return new File (parent, setExtension (filename, extension));
     }
 
-    /** Choose a file to save to. */
-    public File getSaveFile (Component parent, String title, File currentDir, String extension)
+    /**
+     * Modify a file to have one of the allowed extensions.
+     *
+     * @param file The file. If it has none of the extensions, the first one is used.
+     * @param extensions The allowed extensions.
+     *
+     * @return The file, or a new file with the first extension.
+     */
+    public File setExtension (File file, String[] extensions)
+    {
+        for (final String extension : extensions)
+        {
+            if (hasExtension (file, extension))
+            {
+                return file;
+            }
+        }
+        return setExtension (file, extensions[0]);
+    }
+
+    /** Choose a file to save to. The first extension is used unless another allowed one is given. */
+    public File getSaveFile (Component parent, String title, File currentDir, String... extensions)
     {
         final JFileChooser fileChooser = new JFileChooser (currentDir)
         {
             @Override
             public void approveSelection ()
             {
-                final File f = setExtension (getSelectedFile (), extension);
+                final File f = setExtension (getSelectedFile (), extensions);
                 if (f.exists () && getDialogType () == SAVE_DIALOG)
                 {
                     final int result = JOptionPane.showConfirmDialog (this, "The file exists, overwrite?", "Existing file",
@@ -152,16 +172,21 @@ public class FileUtils
         if (userSelection == JFileChooser.APPROVE_OPTION)
         {
             final File file = fileChooser.getSelectedFile ();
-            return setExtension (file, extension);
+            return setExtension (file, extensions);
         }
         return null;
     }
 
-    public File getReadFile (Component parent, String title, File currentDir, String extensionDescription, String extension)
+    public File getReadFile (Component parent, String title, File currentDir, String extensionDescription, String... extensions)
     {
         final JFileChooser fileChooser = new JFileChooser (currentDir);
         // Should use a file filter here.
-        final FileNameExtensionFilter filter = new FileNameExtensionFilter (extensionDescription, removeDot (extension));
+        final String[] names = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++)
+        {
+            names[i] = removeDot (extensions[i]);
+        }
+        final FileNameExtensionFilter filter = new FileNameExtensionFilter (extensionDescription, names);
         fileChooser.setFileFilter (filter);
         fileChooser.setDialogTitle (title);
         // Make available for unit testing to close
@@ -172,7 +197,7 @@ public class FileUtils
         {
             final File file = fileChooser.getSelectedFile ();
             System.out.println ("Selected file: " + file.getAbsolutePath ());
-            return setExtension (file, extension);
+            return setExtension (file, extensions);
         }
         return null;
     }
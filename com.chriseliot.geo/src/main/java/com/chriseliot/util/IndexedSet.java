@@ -0,0 +1,199 @@
+
+package com.chriseliot.util;
+
+import java.util.*;
+
+/**
+ * Set of objects compared by identity that keeps the order they were added. Each element maps to
+ * its slot, so membership and removal take constant time. A removed element leaves an empty slot
+ * that is squeezed out the next time the list view is read, so a run of removals costs one pass.
+ *
+ * The list view is live and can't be modified. Its iterators fail fast like those of ArrayList.
+ */
+public class IndexedSet<T> implements Iterable<T>
+{
+    /** Elements in order with nulls where elements were removed. */
+    private Object[] elements = new Object[16];
+
+    /** Number of slots used, including empty ones. */
+    private int end = 0;
+
+    /** Slot of each element. */
+    private final Map<T, Integer> slots = new IdentityHashMap<> ();
+
+    /** Live read only list of the elements. */
+    private final View view = new View ();
+
+    private class View extends AbstractList<T> implements RandomAccess
+    {
+        @Override
+        @SuppressWarnings ("unchecked")
+        public T get (int index)
+        {
+            if (index < 0 || index >= slots.size ())
+            {
+                throw new IndexOutOfBoundsException ("Index " + index + " size " + slots.size ());
+            }
+            compact ();
+            return (T)elements[index];
+        }
+
+        @Override
+        public int size ()
+        {
+            return slots.size ();
+        }
+
+        @Override
+        public boolean contains (Object o)
+        {
+            return slots.containsKey (o);
+        }
+
+        @Override
+        public int indexOf (Object o)
+        {
+            if (!slots.containsKey (o))
+            {
+                return -1;
+            }
+            compact ();
+            return slots.get (o);
+        }
+
+        @Override
+        public int lastIndexOf (Object o)
+        {
+            return indexOf (o);
+        }
+
+        /** Record a change so iterators in progress fail. */
+        private void changed ()
+        {
+            modCount++;
+        }
+    }
+
+    /**
+     * Add an element at the end.
+     *
+     * @return false if the element was already present.
+     */
+    public boolean add (T e)
+    {
+        Objects.requireNonNull (e);
+        if (slots.containsKey (e))
+        {
+            return false;
+        }
+        if (end == elements.length)
+        {
+            compact ();
+            if (end * 2 > elements.length)
+            {
+                elements = Arrays.copyOf (elements, elements.length * 2);
+            }
+        }
+        slots.put (e, end);
+        elements[end++] = e;
+        view.changed ();
+        return true;
+    }
+
+    /**
+     * Remove an element.
+     *
+     * @return false if the element was not present.
+     */
+    public boolean remove (Object e)
+    {
+        final Integer slot = slots.remove (e);
+        if (slot == null)
+        {
+            return false;
+        }
+        elements[slot] = null;
+        if (slot == end - 1)
+        {
+            end--;
+        }
+        view.changed ();
+        return true;
+    }
+
+    /** Is an element present. */
+    public boolean contains (Object e)
+    {
+        return slots.containsKey (e);
+    }
+
+    /** Number of elements. */
+    public int size ()
+    {
+        return slots.size ();
+    }
+
+    /** Are there no elements. */
+    public boolean isEmpty ()
+    {
+        return slots.isEmpty ();
+    }
+
+    /** Remove all elements. */
+    public void clear ()
+    {
+        Arrays.fill (elements, 0, end, null);
+        end = 0;
+        slots.clear ();
+        view.changed ();
+    }
+
+    /** Live read only list of the elements in the order they were added. */
+    public List<T> asList ()
+    {
+        return view;
+    }
+
+    @Override
+    public Iterator<T> iterator ()
+    {
+        return view.iterator ();
+    }
+
+    /** Squeeze out the slots of removed elements. */
+    @SuppressWarnings ("unchecked")
+    private void compact ()
+    {
+        if (end != slots.size ())
+        {
+            int j = 0;
+            for (int i = 0; i < end; i++)
+            {
+                final Object e = elements[i];
+                if (e != null)
+                {
+                    if (i != j)
+                    {
+                        elements[j] = e;
+                        slots.put ((T)e, j);
+                    }
+                    j++;
+                }
+            }
+            Arrays.fill (elements, j, end, null);
+            end = j;
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (slots.size ());
+        buffer.append (">");
+        return buffer.toString ();
+    }
+}
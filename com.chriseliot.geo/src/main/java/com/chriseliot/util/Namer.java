@@ -1,28 +1,88 @@
-
 package com.chriseliot.util;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Generates unique names and integer ids. Each plane has its own namer, so planes on different
+ * threads don't disturb each other. Names are a root and a counter of at least two digits, like
+ * l01. Ids count up from zero in the order they are handed out, so they can index an array. Safe
+ * to use from several threads.
+ */
 public class Namer
 {
-    private static Map<String, Integer> counters = new HashMap<> ();
+    /** Next index of each name root. */
+    private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<> ();
+
+    /** Next id. */
+    private final AtomicInteger ids = new AtomicInteger ();
+
+    /** Reset all name sequences and ids of this namer. */
+    public void clear ()
+    {
+        counters.clear ();
+        ids.set (0);
+    }
+
+    /** Copy of the name sequences, so they can be saved and restored. */
+    public Map<String, Integer> getCounters ()
+    {
+        final Map<String, Integer> result = new TreeMap<> ();
+        for (final Map.Entry<String, AtomicInteger> entry : counters.entrySet ())
+        {
+            result.put (entry.getKey (), entry.getValue ().get ());
+        }
+        return result;
+    }
 
-    /** Reset all name sequences. */
-    public static void reset ()
+    /** Restore name sequences saved by getCounters. */
+    public void setCounters (Map<String, Integer> saved)
     {
         counters.clear ();
+        for (final Map.Entry<String, Integer> entry : saved.entrySet ())
+        {
+            counters.put (entry.getKey (), new AtomicInteger (entry.getValue ()));
+        }
     }
 
     /** Generate a new name from the given root. */
     public String getname (String root)
     {
-        Integer index = counters.get (root);
-        if (index == null)
+        final int index = counters.computeIfAbsent (root, k -> new AtomicInteger ()).incrementAndGet ();
+        final StringBuilder buffer = new StringBuilder (root.length () + 4);
+        buffer.append (root);
+        if (index < 10)
         {
-            index = 0;
+            buffer.append ('0');
         }
-        index++;
-        counters.put (root, index);
-        return String.format ("%s%02d", root, index);
+        buffer.append (index);
+        return buffer.toString ();
+    }
+
+    /** Hand out the next id. */
+    public int nextId ()
+    {
+        return ids.getAndIncrement ();
+    }
+
+    /** Number of ids handed out since the namer was cleared. */
+    public int getIdCount ()
+    {
+        return ids.get ();
+    }
+
+    @Override
+    public String toString ()
+    {
+        final StringBuilder buffer = new StringBuilder ();
+        buffer.append ("#<");
+        buffer.append (getClass ().getSimpleName ());
+        buffer.append (" ");
+        buffer.append (counters.size ());
+        buffer.append (" roots ");
+        buffer.append (ids.get ());
+        buffer.append (" ids>");
+        return buffer.toString ();
     }
 }
@@ -4,8 +4,10 @@ package com.chriseliot.util;
 import java.io.*;
 import java.net.URL;
 import java.util.*;
+import java.util.zip.*;
 
 import javax.xml.parsers.*;
+import javax.xml.stream.*;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -15,11 +17,158 @@ import org.xml.sax.SAXException;
 
 public class XMLUtil
 {
+    /** Files with this suffix are compressed. */
+    public static final String GZIP_SUFFIX = ".gz";
+
+    /** Key of the user data holding the index of the children of an element by an attribute. */
+    private static final String INDEX_KEY = XMLUtil.class.getName () + ".index.";
+
+    /**
+     * Factories are expensive to find and create, so they are made once and shared. None of them
+     * are promised to be thread safe, so each is locked while it makes a reader or writer. What it
+     * makes belongs to the calling thread.
+     */
+    private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance ();
+    private static final TransformerFactory transformerFactory = TransformerFactory.newInstance ();
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance ();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance ();
+
+    static
+    {
+        documentBuilderFactory.setNamespaceAware (true);
+        inputFactory.setProperty (XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     public DocumentBuilder getDocumentBuilder () throws ParserConfigurationException
     {
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance ();
-        factory.setNamespaceAware (true);
-        return factory.newDocumentBuilder ();
+        synchronized (documentBuilderFactory)
+        {
+            return documentBuilderFactory.newDocumentBuilder ();
+        }
+    }
+
+    private Transformer getTransformer () throws TransformerConfigurationException
+    {
+        synchronized (transformerFactory)
+        {
+            return transformerFactory.newTransformer ();
+        }
+    }
+
+    /** Open a file for reading, uncompressing it if the name ends with .gz. */
+    public InputStream openInput (File file) throws IOException
+    {
+        final InputStream stream = new BufferedInputStream (new FileInputStream (file));
+        if (file.getName ().endsWith (GZIP_SUFFIX))
+        {
+            try
+            {
+                return new GZIPInputStream (stream);
+            }
+            catch (final IOException e)
+            {
+                stream.close ();
+                throw e;
+            }
+        }
+        return stream;
+    }
+
+    /** Open a file for writing, compressing it if the name ends with .gz. */
+    public OutputStream openOutput (File file) throws IOException
+    {
+        final OutputStream stream = new BufferedOutputStream (new FileOutputStream (file));
+        if (file.getName ().endsWith (GZIP_SUFFIX))
+        {
+            return new GZIPOutputStream (stream);
+        }
+        return stream;
+    }
+
+    /** Streaming reader over a stream of UTF-8 xml. */
+    public XMLStreamReader getXMLStreamReader (InputStream stream) throws XMLStreamException
+    {
+        synchronized (inputFactory)
+        {
+            return inputFactory.createXMLStreamReader (stream, "UTF-8");
+        }
+    }
+
+    /** Streaming writer of UTF-8 xml to a stream. */
+    public XMLStreamWriter getXMLStreamWriter (OutputStream stream) throws XMLStreamException
+    {
+        synchronized (outputFactory)
+        {
+            return outputFactory.createXMLStreamWriter (stream, "UTF-8");
+        }
+    }
+
+    /**
+     * Read the element the reader is positioned at into a DOM element with its attributes,
+     * children and text. The reader is left at the end tag of the element. Whitespace between
+     * elements is dropped.
+     *
+     * @param reader A reader positioned at a start tag.
+     * @param doc Document used to create the elements. They are not added to it.
+     */
+    public Element readElement (XMLStreamReader reader, Document doc) throws XMLStreamException
+    {
+        final Element result = doc.createElement (reader.getLocalName ());
+        for (int i = 0; i < reader.getAttributeCount (); i++)
+        {
+            result.setAttribute (reader.getAttributeLocalName (i), reader.getAttributeValue (i));
+        }
+        while (true)
+        {
+            final int event = reader.next ();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                result.appendChild (readElement (reader, doc));
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                return result;
+            }
+            else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && !reader.isWhiteSpace ())
+            {
+                result.appendChild (doc.createTextNode (reader.getText ()));
+            }
+        }
+    }
+
+    /** Write the attributes of an element to a streaming writer. Null values are written empty. */
+    public void writeAttributes (XMLStreamWriter writer, Element element) throws XMLStreamException
+    {
+        final NamedNodeMap attributes = element.getAttributes ();
+        for (int i = 0; i < attributes.getLength (); i++)
+        {
+            final Node attribute = attributes.item (i);
+            final String value = attribute.getNodeValue ();
+            writer.writeAttribute (attribute.getNodeName (), value == null ? "" : value);
+        }
+    }
+
+    /** Remove all attributes of an element so it can be used again. */
+    public void clearAttributes (Element element)
+    {
+        final NamedNodeMap attributes = element.getAttributes ();
+        while (attributes.getLength () > 0)
+        {
+            element.removeAttributeNode ((Attr)attributes.item (0));
+        }
+    }
+
+    /** Start a new line indented for an element at some depth. */
+    public void indent (XMLStreamWriter writer, int depth) throws XMLStreamException
+    {
+        final StringBuilder buffer = new StringBuilder (depth * 4 + 1);
+        buffer.append ('\n');
+        for (int i = 0; i < depth * 4; i++)
+        {
+            buffer.append (' ');
+        }
+        writer.writeCharacters (buffer.toString ());
     }
 
     public Document getDocument (URL url) throws ParserConfigurationException, SAXException, IOException
@@ -154,8 +303,7 @@ public class XMLUtil
 
     public String getXMLString (Element element, boolean declaration, boolean indent) throws TransformerException
     {
-        final TransformerFactory factory = TransformerFactory.newInstance ();
-        final Transformer transformer = factory.newTransformer ();
+        final Transformer transformer = getTransformer ();
 
         transformer.setOutputProperty (OutputKeys.OMIT_XML_DECLARATION, !declaration ? "yes" : "no");
         transformer.setOutputProperty (OutputKeys.INDENT, indent ? "yes" : "no");
@@ -169,8 +317,7 @@ public class XMLUtil
 
     public String getXMLString (Document doc, boolean declaration, boolean indent) throws TransformerException
     {
-        final TransformerFactory factory = TransformerFactory.newInstance ();
-        final Transformer transformer = factory.newTransformer ();
+        final Transformer transformer = getTransformer ();
 
         transformer.setOutputProperty (OutputKeys.OMIT_XML_DECLARATION, !declaration ? "yes" : "no");
         transformer.setOutputProperty (OutputKeys.INDENT, indent ? "yes" : "no");
@@ -273,16 +420,43 @@ public class XMLUtil
         return null;
     }
 
+    /**
+     * Return the first child element with an attribute value, like getNthChild with n of zero. The
+     * children are indexed by the attribute the first time, so later lookups take constant time.
+     * Only use this on elements that are not changed afterwards.
+     */
+    public Element getChild (Element root, String attribute, String value)
+    {
+        final String key = INDEX_KEY + attribute;
+        @SuppressWarnings ("unchecked")
+        Map<String, Element> index = (Map<String, Element>)root.getUserData (key);
+        if (index == null)
+        {
+            index = new HashMap<> ();
+            for (Node node = root.getFirstChild (); node != null; node = node.getNextSibling ())
+            {
+                if (node.getNodeType () == Node.ELEMENT_NODE)
+                {
+                    final Element e = (Element)node;
+                    index.putIfAbsent (e.getAttribute (attribute), e);
+                }
+            }
+            root.setUserData (key, index, null);
+        }
+        return value == null ? null : index.get (value);
+    }
+
     public void writeXml (Document doc, File file) throws IOException, TransformerException
     {
-        final TransformerFactory transformerFactory = TransformerFactory.newInstance ();
-        final Transformer transformer = transformerFactory.newTransformer ();
+        final Transformer transformer = getTransformer ();
         transformer.setOutputProperty (OutputKeys.INDENT, "yes");
         transformer.setOutputProperty ("{http://xml.apache.org/xslt}indent-amount", "4");
         final DOMSource source = new DOMSource (doc);
-        final FileWriter writer = new FileWriter (file);
-        final StreamResult result = new StreamResult (writer);
-        transformer.transform (source, result);
+        try (OutputStream stream = openOutput (file))
+        {
+            final StreamResult result = new StreamResult (stream);
+            transformer.transform (source, result);
+        }
     }
 
     @Override
@@ -0,0 +1,131 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestAgenda
+{
+    /** Build a triangle, make its corners known and collect the status of every item. */
+    private Map<String, GeoStatus> solveTriangle (SolveEngine engine)
+    {
+        final GeoPlane plane = new GeoPlane ();
+        plane.setSolveEngine (engine);
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        final GeoVertex v1 = line1.getVertex (line2);
+        final GeoVertex v2 = line2.getVertex (line3);
+        final GeoVertex v3 = line3.getVertex (line1);
+        v1.getVertex ().setGivenStatus (GeoStatus.known);
+        v2.getVertex ().setGivenStatus (GeoStatus.known);
+        v3.getVertex ().setGivenStatus (GeoStatus.known);
+        v1.getAngle ().setGivenStatus (GeoStatus.known);
+        final Map<String, GeoStatus> result = new TreeMap<> ();
+        for (final GeoItem item : plane.getItems ())
+        {
+            result.put (item.getName (), item.getStatus ());
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameResults ()
+    {
+        final Map<String, GeoStatus> sweep = solveTriangle (SolveEngine.sweep);
+        final Map<String, GeoStatus> agenda = solveTriangle (SolveEngine.agenda);
+        assertEquals (sweep, agenda);
+        assertTrue (agenda.containsValue (GeoStatus.derived));
+    }
+
+    @Test
+    public void testIncremental ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        assertEquals (SolveEngine.agenda, plane.getSolveEngine ());
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        for (int i = 0; i < 10; i++)
+        {
+            new GeoLine (plane, Color.red, new Point2D.Double (100 + i * 20, 20), new Point2D.Double (110 + i * 20, 40));
+        }
+        plane.solve ();
+        final Agenda agenda = plane.getAgenda ();
+        assertTrue (agenda.isEmpty ());
+        final long before = agenda.getSolveCount ();
+        line1.getFrom ().setGivenStatus (GeoStatus.known);
+        final long work = agenda.getSolveCount () - before;
+        assertTrue (work > 0);
+        // Only items near the changed point need to run again
+        assertTrue (work < plane.getItems ().size () / 4, "work " + work);
+        assertTrue (agenda.isEmpty ());
+        assertFalse (plane.isDirty ());
+    }
+
+    @Test
+    public void testSwitchEngine ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        plane.setSolveEngine (SolveEngine.sweep);
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        assertTrue (plane.getAgenda ().isEmpty ());
+        plane.setSolveEngine (SolveEngine.agenda);
+        assertEquals (plane.getItems ().size (), plane.getAgenda ().size ());
+        line.getFrom ().setGivenStatus (GeoStatus.known);
+        line.getTo ().setGivenStatus (GeoStatus.known);
+        assertEquals (GeoStatus.derived, line.getStatus ());
+        assertTrue (plane.getAgenda ().isEmpty ());
+        assertNotNull (plane.getAgenda ().toString ());
+    }
+
+    @Test
+    public void testRecordReads ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem a = new GeoItem (plane, "a", Color.black);
+        final GeoItem b = new GeoItem (plane, "b", Color.black);
+        final GeoItem reader = new GeoItem (plane, "reader", Color.black)
+        {
+            @Override
+            public void solve ()
+            {
+                assertTrue (plane.isRecording ());
+                a.getStatus ();
+                // A read made by another thread, such as painting, does not belong to this item
+                final Thread painter = new Thread ( () -> b.getStatus ());
+                painter.start ();
+                try
+                {
+                    painter.join ();
+                }
+                catch (final InterruptedException e)
+                {
+                    fail (e);
+                }
+            }
+        };
+        plane.solve ();
+        assertFalse (plane.isRecording ());
+        assertEquals (Collections.singleton (reader), a.getReaders ());
+        assertNull (b.getReaders ());
+        // Reads outside a solve are not recorded either
+        b.isDetermined ();
+        assertNull (b.getReaders ());
+    }
+
+    @Test
+    public void testRemove ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        assertFalse (plane.getAgenda ().isEmpty ());
+        line.remove ();
+        assertTrue (plane.getAgenda ().isEmpty ());
+        plane.solve ();
+        assertFalse (plane.isDirty ());
+    }
+}
@@ -0,0 +1,112 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestBatchSolver
+{
+    private File makeDrawing (File dir, String name, double size) throws IOException
+    {
+        final GeoPlane plane = new GeoPlane ();
+        new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (10 + size, 20));
+        new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (10, 20 + size));
+        new GeoLine (plane, Color.blue, new Point2D.Double (10 + size, 20), new Point2D.Double (10, 20 + size));
+        plane.get ("l01$dx").setGivenStatus (GeoStatus.known);
+        final File file = new File (dir, name);
+        PlaneJournal.saveSnapshot (plane, file);
+        return file;
+    }
+
+    private void delete (File dir)
+    {
+        for (final File file : dir.listFiles ())
+        {
+            file.delete ();
+        }
+        dir.delete ();
+    }
+
+    @Test
+    public void testRun () throws IOException, InterruptedException
+    {
+        final File dir = Files.createTempDirectory ("TestBatchSolver").toFile ();
+        try
+        {
+            final List<File> expected = new ArrayList<> ();
+            for (int i = 0; i < 6; i++)
+            {
+                expected.add (makeDrawing (dir, "drawing" + i + (i % 2 == 0 ? ".xml" : PlaneBinary.SUFFIX), 30 + i));
+            }
+            Files.write (new File (dir, "notes.txt").toPath (), "not a drawing".getBytes ());
+            final File bad = new File (dir, "zbad.xml");
+            Files.write (bad.toPath (), "<geometry><GeoLine".getBytes ());
+            expected.add (bad);
+            final List<File> files = BatchSolver.findFiles (Collections.singletonList (dir));
+            assertEquals (expected, files);
+
+            final BatchSolver solver = new BatchSolver ();
+            solver.setThreads (3);
+            final StringWriter out = new StringWriter ();
+            assertEquals (1, solver.run (files, out));
+            assertEquals (6, solver.getSolvedCount ());
+            assertEquals (1, solver.getFailedCount ());
+            final String[] lines = out.toString ().split ("\n");
+            assertTrue (lines[0].startsWith ("{\"file\":"));
+            assertTrue (lines[lines.length - 1].contains ("\"error\":"));
+            assertTrue (out.toString ().contains ("\"name\":\"l01$dx\",\"status\":\"known\",\"value\":30.0}"));
+
+            // Solving in parallel gives the same results as one at a time
+            final StringWriter serial = new StringWriter ();
+            solver.setThreads (1);
+            solver.run (files, serial);
+            assertEquals (serial.toString (), out.toString ());
+            assertNotNull (solver.toString ());
+        }
+        finally
+        {
+            delete (dir);
+        }
+    }
+
+    @Test
+    public void testCsv () throws IOException, InterruptedException
+    {
+        final File dir = Files.createTempDirectory ("TestBatchSolver").toFile ();
+        try
+        {
+            final File file = makeDrawing (dir, "drawing.xml", 30);
+            final File missing = new File (dir, "missing.xml");
+            final BatchSolver solver = new BatchSolver ();
+            solver.setFormat (BatchSolver.Format.csv);
+            final StringWriter out = new StringWriter ();
+            assertEquals (1, solver.run (Arrays.asList (file, file, missing), out));
+            final String[] lines = out.toString ().split ("\n");
+            assertEquals ("file,name,status,value,formula", lines[0]);
+            assertEquals (0, (lines.length - 2) % 2);
+            assertTrue (out.toString ().contains (",l01$dx,known,30.0,\n"));
+            // The missing file gets a row of its own
+            final String last = lines[lines.length - 1];
+            assertTrue (last.startsWith (BatchSolver.csv (missing.getPath ()) + ",,,,"), last);
+            assertTrue (last.length () > missing.getPath ().length () + 4);
+        }
+        finally
+        {
+            delete (dir);
+        }
+    }
+
+    @Test
+    public void testQuote ()
+    {
+        assertEquals ("\"a\\\"b\\\\c\\n\\u0001\"", BatchSolver.quote ("a\"b\\c\n\u0001"));
+        assertEquals ("plain", BatchSolver.csv ("plain"));
+        assertEquals ("\"a,\"\"b\"\"\"", BatchSolver.csv ("a,\"b\""));
+    }
+}
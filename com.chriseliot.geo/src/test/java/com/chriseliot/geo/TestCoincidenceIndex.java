@@ -0,0 +1,140 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestCoincidenceIndex
+{
+    @Test
+    public void testGroups ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final CoincidenceIndex index = plane.getCoincidenceIndex ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint a = new NamedPoint (parent, true, Color.black, "a", 10, 20, 0);
+        final NamedPoint b = new NamedPoint (parent, true, Color.black, "b", 10, 20, 0);
+        final NamedPoint c = new NamedPoint (parent, true, Color.black, "c", -0.0, 5, 0);
+        assertEquals (3, index.size ());
+        assertEquals (2, index.groupCount ());
+        assertEquals (Arrays.asList (a, b), index.getGroup (a));
+        assertEquals (Arrays.asList (a, b), index.getGroup (new Point2D.Double (10, 20)));
+        // Zero and negative zero are the same position
+        assertEquals (Arrays.asList (c), index.getGroup (new Point2D.Double (0, 5)));
+        assertTrue (index.getGroup (new Point2D.Double (1, 1)).isEmpty ());
+        assertTrue (index.getGroup ((Point2D.Double)null).isEmpty ());
+        assertTrue (a.getEquivalents ().contains (b));
+        assertTrue (b.getEquivalents ().contains (a));
+        assertFalse (a.getEquivalents ().contains (c));
+        c.setPosition (10, 20);
+        assertEquals (Arrays.asList (a, b, c), index.getGroup (b));
+        assertEquals (1, index.groupCount ());
+        assertTrue (c.getEquivalents ().containsAll (Arrays.asList (a, b)));
+        // Moving away leaves the group
+        b.setPosition (new Point2D.Double (50, 50));
+        assertEquals (Arrays.asList (a, c), index.getGroup (a));
+        assertEquals (Arrays.asList (b), index.getGroup (b));
+        b.setPosition (null);
+        assertTrue (index.getGroup (b).isEmpty ());
+        assertEquals (3, index.size ());
+        c.remove ();
+        assertEquals (Arrays.asList (a), index.getGroup (a));
+        assertFalse (a.getEquivalents ().contains (c));
+        assertEquals (2, index.size ());
+        assertNotNull (index.toString ());
+        plane.clear ();
+        assertEquals (0, index.size ());
+    }
+
+    @Test
+    public void testLinkOnce ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final RuleIndex rules = plane.getRuleIndex ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint a = new NamedPoint (parent, true, Color.black, "a", 10, 20, 0);
+        final NamedPoint b = new NamedPoint (parent, true, Color.black, "b", 30, 20, 0);
+        final int before = rules.size ();
+        b.drag (new Point2D.Double (10, 20));
+        assertEquals (before, rules.size ());
+        assertEquals (2, classes.size ());
+        // Leaving and coming back does not link the points again
+        b.drag (new Point2D.Double (30, 20));
+        b.drag (new Point2D.Double (10, 20));
+        assertEquals (2, classes.size ());
+        assertEquals (2, classes.getMembers (a.getX ()).size ());
+        a.setGivenStatus (GeoStatus.known);
+        plane.solve ();
+        assertTrue (b.getX ().isDetermined ());
+        assertTrue (b.getY ().isDetermined ());
+    }
+
+    @Test
+    public void testMoveApart ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        new GeoLine (plane, Color.blue, new Point2D.Double (200, 200), new Point2D.Double (250, 210));
+        final NamedPoint a = (NamedPoint)plane.get ("l01$A");
+        final NamedPoint b = (NamedPoint)plane.get ("l02$A");
+        b.drag (new Point2D.Double (10, 20));
+        assertTrue (classes.isEquivalent (a.getX (), b.getX ()));
+        b.drag (new Point2D.Double (200, 200));
+        assertTrue (a.getEquivalents ().isEmpty ());
+        assertTrue (b.getEquivalents ().isEmpty ());
+        assertFalse (classes.isEquivalent (a.getX (), b.getX ()));
+        assertFalse (classes.isEquivalent (a.getY (), b.getY ()));
+        a.setGivenStatus (GeoStatus.known);
+        plane.solve ();
+        // Nothing is derived across the old link
+        assertFalse (b.getX ().isDetermined ());
+        assertFalse (b.getY ().isDetermined ());
+        assertFalse (b.isDetermined ());
+
+        // Moving apart after the coordinates were derived retracts them
+        b.drag (new Point2D.Double (10, 20));
+        plane.solve ();
+        assertEquals (GeoStatus.derived, b.getX ().getStatus ());
+        b.drag (new Point2D.Double (200, 200));
+        plane.solve ();
+        assertFalse (b.getX ().isDetermined ());
+        assertFalse (b.getY ().isDetermined ());
+        for (final Inference inference : b.getX ().getInferences ())
+        {
+            assertFalse (Arrays.asList (inference.getTerms ()).contains (a.getX ()));
+        }
+    }
+
+    @Test
+    public void testBatchLinks ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final CoincidenceIndex index = plane.getCoincidenceIndex ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint a;
+        final NamedPoint b;
+        final NamedPoint c;
+        try (PlaneBatch batch = plane.beginBatch ())
+        {
+            assertTrue (batch.isOpen ());
+            assertTrue (index.isDeferLinks ());
+            // Passing through the same position inside a batch does not link
+            a = new NamedPoint (parent, true, Color.black, "a", 0, 0, 0);
+            b = new NamedPoint (parent, true, Color.black, "b", 0, 0, 0);
+            c = new NamedPoint (parent, true, Color.black, "c", 0, 0, 0);
+            b.setPosition (new Point2D.Double (10, 20));
+            c.setPosition (new Point2D.Double (10, 20));
+            assertTrue (b.getEquivalents ().isEmpty ());
+        }
+        assertFalse (index.isDeferLinks ());
+        assertTrue (a.getEquivalents ().isEmpty ());
+        assertEquals (Collections.singleton (c), b.getEquivalents ());
+    }
+}
@@ -0,0 +1,108 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestComponentSolver
+{
+    private static final int TRIANGLES = 8;
+
+    /** Create separate triangles side by side. */
+    private GeoPlane createTriangles (SolveEngine engine)
+    {
+        final GeoPlane plane = new GeoPlane ();
+        plane.setSolveEngine (engine);
+        for (int i = 0; i < TRIANGLES; i++)
+        {
+            final double x = i * 100;
+            final Point2D.Double a = new Point2D.Double (x + 10, 20);
+            final Point2D.Double b = new Point2D.Double (x + 30, 40);
+            final Point2D.Double c = new Point2D.Double (x + 50, 15);
+            new GeoLine (plane, Color.red, a, b);
+            new GeoLine (plane, Color.red, b, c);
+            new GeoLine (plane, Color.red, c, a);
+        }
+        plane.findTriangles ();
+        return plane;
+    }
+
+    /** Make every vertex known, solve once and collect the status of every item. */
+    private Map<String, GeoStatus> solve (GeoPlane plane)
+    {
+        for (final GeoVertex v : plane.getVertices ())
+        {
+            v.getVertex ().setStatus (GeoStatus.known, "given");
+        }
+        plane.solve ();
+        final Map<String, GeoStatus> result = new TreeMap<> ();
+        for (final GeoItem item : plane.getItems ())
+        {
+            result.put (item.getName (), item.getStatus ());
+        }
+        return result;
+    }
+
+    @Test
+    public void testPartition ()
+    {
+        final GeoPlane plane = createTriangles (SolveEngine.agenda);
+        final List<List<GeoItem>> components = plane.getComponentSolver ().partition ();
+        assertEquals (TRIANGLES, components.size ());
+        int total = 0;
+        for (final List<GeoItem> component : components)
+        {
+            total += component.size ();
+        }
+        assertEquals (plane.getItems ().size (), total);
+        // Components follow plane order
+        assertSame (plane.getItems ().get (0), components.get (0).get (0));
+    }
+
+    @Test
+    public void testSameResults ()
+    {
+        final Map<String, GeoStatus> expected = solve (createTriangles (SolveEngine.agenda));
+        final GeoPlane plane = createTriangles (SolveEngine.parallel);
+        final ComponentSolver solver = plane.getComponentSolver ();
+        solver.setThreshold (0);
+        final Map<String, GeoStatus> actual = solve (plane);
+        assertEquals (expected, actual);
+        assertTrue (actual.containsValue (GeoStatus.derived));
+        assertTrue (solver.getParallelCount () > 0);
+        assertEquals (TRIANGLES, solver.getComponentCount ());
+        assertTrue (plane.getAgenda ().isEmpty ());
+        assertFalse (plane.isDirty ());
+        assertTrue (plane.getAgenda ().getSolveCount () > 0);
+        assertNotNull (solver.toString ());
+    }
+
+    @Test
+    public void testRepeatable ()
+    {
+        final Map<String, GeoStatus> first = solve (createTriangles (SolveEngine.parallel));
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals (first, solve (createTriangles (SolveEngine.parallel)));
+        }
+    }
+
+    @Test
+    public void testSmallChange ()
+    {
+        final GeoPlane plane = createTriangles (SolveEngine.parallel);
+        plane.solve ();
+        final ComponentSolver solver = plane.getComponentSolver ();
+        final long before = solver.getParallelCount ();
+        final GeoVertex v = plane.getVertices ().get (0);
+        // Below the threshold this runs on the calling thread
+        v.getVertex ().setGivenStatus (GeoStatus.known);
+        assertEquals (before, solver.getParallelCount ());
+        assertTrue (plane.getAgenda ().isEmpty ());
+    }
+}
@@ -0,0 +1,149 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestEquivalenceClasses
+{
+    @Test
+    public void testUnion ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final NamedVariable c = new NamedVariable (parent, Color.black, "c", 1.0);
+        final NamedVariable d = new NamedVariable (parent, Color.black, "d", 1.0);
+        assertEquals (a, classes.find (a));
+        assertTrue (classes.getMembers (a).isEmpty ());
+        classes.union ("same", a, b);
+        classes.union ("same", c, d);
+        assertEquals (2, classes.size ());
+        assertTrue (classes.isEquivalent (a, b));
+        assertFalse (classes.isEquivalent (a, c));
+        classes.union ("same", b, d);
+        classes.union ("same", a, c);
+        assertEquals (1, classes.size ());
+        assertEquals (classes.find (a), classes.find (d));
+        assertEquals (4, classes.getMembers (c).size ());
+        classes.remove (b);
+        assertEquals (3, classes.getMembers (a).size ());
+        assertTrue (classes.isEquivalent (a, d));
+        assertNotNull (classes.toString ());
+        plane.clear ();
+        assertEquals (0, classes.size ());
+        assertFalse (classes.isEquivalent (a, d));
+    }
+
+    @Test
+    public void testPropagate ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final NamedVariable c = new NamedVariable (parent, Color.black, "c", 1.0);
+        classes.union ("same", a, b);
+        classes.union ("same", b, c);
+        plane.solve ();
+        assertFalse (b.isDetermined ());
+        a.setGivenStatus (GeoStatus.known);
+        // Every member is derived from the member that became known
+        for (final NamedVariable v : Arrays.asList (b, c))
+        {
+            assertEquals (GeoStatus.derived, v.getStatus ());
+            assertEquals (a, v.getSupport ().getTerms ()[1]);
+        }
+        assertEquals (a, classes.getSource (c));
+        assertEquals (2, classes.getPropagateCount ());
+    }
+
+    @Test
+    public void testRetract ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final NamedVariable c = new NamedVariable (parent, Color.black, "c", 1.0);
+        classes.union ("same", a, b);
+        classes.union ("same", a, c);
+        a.setGivenStatus (GeoStatus.known);
+        assertTrue (b.isDetermined ());
+        a.setGivenStatus (GeoStatus.unknown);
+        assertFalse (b.isDetermined ());
+        assertFalse (c.isDetermined ());
+        // Another member becomes the source
+        c.setGivenStatus (GeoStatus.known);
+        assertEquals (c, classes.getSource (a));
+        assertEquals (c, a.getSupport ().getTerms ()[1]);
+        assertEquals (c, b.getSupport ().getTerms ()[1]);
+    }
+
+    @Test
+    public void testUnlink ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final EquivalenceClasses classes = plane.getEquivalenceClasses ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final NamedVariable c = new NamedVariable (parent, Color.black, "c", 1.0);
+        final NamedVariable d = new NamedVariable (parent, Color.black, "d", 1.0);
+        classes.union ("same", a, b);
+        classes.union ("same", c, d);
+        classes.union ("same", b, d);
+        a.setGivenStatus (GeoStatus.known);
+        assertTrue (d.isDetermined ());
+        assertTrue (classes.unlink (parent).isEmpty ());
+        // Taking out the source leaves the rest together, but no longer justified
+        final List<GeoItem> stale = classes.unlink (a);
+        assertEquals (Arrays.asList (b, c, d), stale);
+        assertFalse (classes.isEquivalent (a, b));
+        assertTrue (classes.isEquivalent (b, c));
+        assertTrue (classes.isEquivalent (b, d));
+        assertEquals (3, classes.getMembers (d).size ());
+        assertTrue (classes.getMembers (a).isEmpty ());
+        plane.getTruthMaintenance ().retractAll (stale);
+        plane.solve ();
+        assertTrue (a.isDetermined ());
+        assertFalse (b.isDetermined ());
+        assertFalse (d.isDetermined ());
+        // The derivations from a were forgotten
+        for (final NamedVariable v : Arrays.asList (b, c, d))
+        {
+            assertTrue (v.getInferences ().isEmpty ());
+        }
+        c.setGivenStatus (GeoStatus.known);
+        assertEquals (c, b.getSupport ().getTerms ()[1]);
+        assertEquals (c, classes.getSource (d));
+        // Taking out a derived member keeps the source
+        assertEquals (Arrays.asList (b), classes.unlink (b));
+        assertEquals (c, classes.getSource (d));
+        assertTrue (d.isDetermined ());
+        assertEquals (2, classes.getMembers (c).size ());
+    }
+
+    @Test
+    public void testCoincidentPoints ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint p = new NamedPoint (parent, true, Color.black, "p", 10, 20, 0);
+        final NamedPoint q = new NamedPoint (parent, true, Color.black, "q", 10, 20, 0);
+        final NamedPoint r = new NamedPoint (parent, true, Color.black, "r", 10, 20, 0);
+        assertEquals (3, plane.getEquivalenceClasses ().getMembers (p.getX ()).size ());
+        q.getX ().setGivenStatus (GeoStatus.known);
+        assertEquals (q.getX (), p.getX ().getSupport ().getTerms ()[1]);
+        assertEquals (q.getX (), r.getX ().getSupport ().getTerms ()[1]);
+        assertFalse (r.getY ().isDetermined ());
+    }
+}
@@ -0,0 +1,65 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+import org.matheclipse.core.eval.ExprEvaluator;
+
+public class TestEvaluatorPool
+{
+    @Test
+    public void testReuse ()
+    {
+        final ExprEvaluator eval = EvaluatorPool.acquire ();
+        EvaluatorPool.release (eval);
+        final long created = EvaluatorPool.getCreateCount ();
+        for (int i = 0; i < 10; i++)
+        {
+            final ExprEvaluator again = EvaluatorPool.acquire ();
+            assertSame (eval, again);
+            EvaluatorPool.release (again);
+        }
+        assertEquals (created, EvaluatorPool.getCreateCount ());
+        assertTrue (EvaluatorPool.getAcquireCount () >= 11);
+    }
+
+    @Test
+    public void testNested ()
+    {
+        final ExprEvaluator outer = EvaluatorPool.acquire ();
+        try
+        {
+            final ExprEvaluator inner = EvaluatorPool.acquire ();
+            assertNotSame (outer, inner);
+            EvaluatorPool.release (inner);
+        }
+        finally
+        {
+            EvaluatorPool.release (outer);
+        }
+    }
+
+    @Test
+    public void testThreads () throws Exception
+    {
+        final ExprEvaluator eval = EvaluatorPool.acquire ();
+        EvaluatorPool.release (eval);
+        final ExecutorService executor = Executors.newSingleThreadExecutor ();
+        try
+        {
+            final ExprEvaluator other = executor.submit (() -> {
+                final ExprEvaluator result = EvaluatorPool.acquire ();
+                EvaluatorPool.release (result);
+                return result;
+            }).get ();
+            assertNotSame (eval, other);
+        }
+        finally
+        {
+            executor.shutdown ();
+        }
+    }
+}
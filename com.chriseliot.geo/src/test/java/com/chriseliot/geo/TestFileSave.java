@@ -14,7 +14,6 @@ import org.junit.jupiter.api.Test;
 import org.xml.sax.SAXException;
 
 import com.chriseliot.geo.gui.*;
-import com.chriseliot.util.Namer;
 
 class TestFileSave
 {
@@ -32,7 +31,6 @@ class TestFileSave
     @Test
     public void testSimple () throws ParserConfigurationException, IOException, TransformerException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -50,7 +48,6 @@ class TestFileSave
     @Test
     public void testLineRead () throws ParserConfigurationException, IOException, TransformerException, SAXException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -69,7 +66,6 @@ class TestFileSave
     @Test
     public void testVertexWrite () throws ParserConfigurationException, IOException, TransformerException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -89,7 +85,6 @@ class TestFileSave
     @Test
     public void testVertexRead () throws ParserConfigurationException, IOException, TransformerException, SAXException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -110,7 +105,6 @@ class TestFileSave
     @Test
     public void testTriangleWrite () throws ParserConfigurationException, IOException, TransformerException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -135,7 +129,6 @@ class TestFileSave
     @Test
     public void testTriangleRound () throws ParserConfigurationException, IOException, TransformerException, SAXException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -184,7 +177,6 @@ class TestFileSave
     @Test
     public void testComplexRound () throws ParserConfigurationException, IOException, TransformerException, SAXException
     {
-        Namer.reset ();
         final Geo geo = new Geo ();
         final FileSave fileSave = new FileSave (geo);
         final GeoPlane plane = geo.getPlane ();
@@ -0,0 +1,137 @@
+
+package com.chriseliot.geo;
+
+import static java.lang.Math.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+public class TestFormulaCompiler
+{
+    private double evaluate (String template, double... values)
+    {
+        final Formula formula = FormulaCompiler.compile (template);
+        assertNotNull (formula, template);
+        final double[][] args = new double[values.length + 1][];
+        args[0] = new double[] {0};
+        for (int i = 0; i < values.length; i++)
+        {
+            args[i + 1] = new double[] {values[i]};
+        }
+        return formula.evaluate (args);
+    }
+
+    @Test
+    public void testArithmetic ()
+    {
+        assertEquals (5.0, evaluate ("%s == sqrt(%s^2 + %s^2)", 3, 4), TestSupport.epsilon);
+        assertEquals (20.0, evaluate ("%s == (%s + %s) / 2", 10, 30), TestSupport.epsilon);
+        assertEquals (4.0, evaluate ("%s == (%s + %s + %s) / 3", 3, 4, 5), TestSupport.epsilon);
+        assertEquals (-7.0, evaluate ("%s == -%s", 7), TestSupport.epsilon);
+        assertEquals (-9.0, evaluate ("%s == -%s^2", 3), TestSupport.epsilon);
+        assertEquals (2.0, evaluate ("%s == 2^3^0", 0), TestSupport.epsilon);
+        assertEquals (1.0, evaluate ("%s == 10 - 6 - 3", 0), TestSupport.epsilon);
+        assertEquals (100.0, evaluate ("%s == 180 - (%s + %s)", 30, 50), TestSupport.epsilon);
+        assertEquals (190.0, evaluate ("%s == %s+180", 10), TestSupport.epsilon);
+        assertEquals (6.0, evaluate ("%s == (%s - %s) * 2", 5, 2), TestSupport.epsilon);
+        assertEquals (0.5, evaluate ("%s == .5", 0), TestSupport.epsilon);
+    }
+
+    @Test
+    public void testFunctions ()
+    {
+        assertEquals (0.5, evaluate ("%s == sin(%s * Degree)", 30), TestSupport.epsilon);
+        assertEquals (0.5, evaluate ("%s == Cos (%s * Degree)", 60), TestSupport.epsilon);
+        assertEquals (60.0, evaluate ("%s == ArcCos(%s) / Degree", 0.5), TestSupport.epsilon);
+        assertEquals (30.0, evaluate ("%s == arcsin(%s) / Degree", 0.5), TestSupport.epsilon);
+        assertEquals (45.0, evaluate ("%s == arctan(%s) / Degree", 1), TestSupport.epsilon);
+        // Symja ArcTan(x, y) is atan2(y, x)
+        assertEquals (toDegrees (atan2 (4, 3)), evaluate ("%s == arctan(%s, %s) / Degree", 3, 4), TestSupport.epsilon);
+        assertEquals (3.0, evaluate ("%s == Abs(%s)", -3), TestSupport.epsilon);
+        assertEquals (PI, evaluate ("%s == Pi", 0), TestSupport.epsilon);
+    }
+
+    @Test
+    public void testBlock ()
+    {
+        final double a = 3;
+        final double b = 4;
+        final double c = 5;
+        final double theta = toDegrees (acos ((a * a + b * b - c * c) / (2 * a * b)));
+        assertEquals (90.0, theta, TestSupport.epsilon);
+        assertEquals (theta,
+                evaluate ("%s == Block({$a=%s, $b=%s, $c=%s}, Return(ArcCos(($a^2 + $b^2 - $c^2) / (2 * $a * $b)) / Degree))", a, b,
+                        c),
+                TestSupport.epsilon);
+        assertEquals (c, evaluate ("%s == Block({$a=%s, $b=%s, $theta=%s}, Return(sqrt($a^2 + $b^2 - 2*$a*$b*cos($theta * Degree))))",
+                a, b, theta), TestSupport.epsilon);
+        assertEquals (3.0,
+                evaluate ("%s == Block({angleA=%s, sideB=%s, angleB=%s}, Return((sideB * Sin (angleA * Degree)) / Sin(angleB * Degree)))",
+                        toDegrees (asin (0.6)), 5, 90),
+                TestSupport.epsilon);
+    }
+
+    @Test
+    public void testPoint ()
+    {
+        final Formula x = FormulaCompiler.compile ("%s == %s[[1]]");
+        final Formula y = FormulaCompiler.compile ("%s == %s[[2]]");
+        final double[][] args = {{0}, {10, 20}};
+        assertEquals (10.0, x.evaluate (args), TestSupport.epsilon);
+        assertEquals (20.0, y.evaluate (args), TestSupport.epsilon);
+    }
+
+    @Test
+    public void testUnsupported ()
+    {
+        assertNull (FormulaCompiler.compile ("%s == {%s, %s}"));
+        assertNull (FormulaCompiler.compile ("%s == foo(%s)"));
+        assertNull (FormulaCompiler.compile ("%s == unknown"));
+        assertNull (FormulaCompiler.compile ("%s == (%s"));
+        assertNull (FormulaCompiler.compile ("%s == %s[[3]]"));
+        assertNull (FormulaCompiler.compile ("x == 1"));
+        assertNull (FormulaCompiler.compile ("%s == 1 1"));
+    }
+
+    @Test
+    public void testCache ()
+    {
+        FormulaCompiler.clearCache ();
+        final Formula formula = FormulaCompiler.compile ("%s == %s + %s");
+        assertSame (formula, FormulaCompiler.compile ("%s == %s + %s"));
+    }
+
+    /** Every numeric rule of a triangle compiles and agrees with the values on screen. */
+    @Test
+    public void testTriangle ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        policy.setMode (VerificationMode.all);
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        final GeoVertex v1 = line1.getVertex (line2);
+        final GeoVertex v2 = line2.getVertex (line3);
+        final GeoVertex v3 = line3.getVertex (line1);
+        v1.getVertex ().setGivenStatus (GeoStatus.known);
+        v2.getVertex ().setGivenStatus (GeoStatus.known);
+        v3.getVertex ().setGivenStatus (GeoStatus.known);
+        for (final GeoItem item : plane.getItems ())
+        {
+            for (final Rule rule : item.getRules ())
+            {
+                if (rule.getOwner () instanceof NamedVariable)
+                {
+                    assertNotNull (FormulaCompiler.compile (rule.getFormula ()), rule.getFormula ());
+                }
+            }
+        }
+        assertTrue (policy.getVerifyCount () > 0);
+        assertEquals (0, policy.getErrorCount ());
+        assertEquals (0, policy.getMismatchCount ());
+    }
+}
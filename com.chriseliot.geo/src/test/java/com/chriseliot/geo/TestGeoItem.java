@@ -33,7 +33,6 @@ public class TestGeoItem
     @Test
     public void testGetters ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoItem item = new GeoItem (plane, "t", Color.black);
         assertEquals (plane, item.getPlane ());
@@ -217,7 +216,6 @@ public class TestGeoItem
     @Test
     public void testXmlAttributes () throws ParserConfigurationException
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoItem test = new GeoItem (plane, "t", Color.black);
         assertNotNull (new GeoItem (test, "t", Color.black));
@@ -445,7 +445,6 @@ public class TestGeoLine
     @Test
     public void testSolve1 ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine test = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
         test.getFrom ().getX ().setGivenStatus (GeoStatus.known);
@@ -456,18 +455,25 @@ public class TestGeoLine
         final String formula = inference.getInstantiation ();
         final GeoItem[] terms = inference.getTerms ();
 
-        final ExprEvaluator eval = new ExprEvaluator ();
-        for (int i = 1; i < terms.length; i++)
+        final ExprEvaluator eval = EvaluatorPool.acquire ();
+        try
         {
-            final NamedVariable term = (NamedVariable)terms[i];
-            final String var = term.getName ();
-            // System.out.printf ("%s = %s = %.3f\n", var, i, term.getDoubleValue ());
-            eval.defineVariable (var, term.getDoubleValue ());
+            for (int i = 1; i < terms.length; i++)
+            {
+                final NamedVariable term = (NamedVariable)terms[i];
+                final String var = term.getName ();
+                // System.out.printf ("%s = %s = %.3f\n", var, i, term.getDoubleValue ());
+                eval.defineVariable (var, term.getDoubleValue ());
+            }
+            assertEquals ("l01$M$x == (l01$A$x + l01$B$x) / 2", formula);
+            final IExpr expr = eval.parse (formula);
+            final IExpr f = expr.getAt (2);
+            assertEquals (20.0, eval.evalf (f), TestSupport.epsilon);
+        }
+        finally
+        {
+            EvaluatorPool.release (eval);
         }
-        assertEquals ("l01$M$x == (l01$A$x + l01$B$x) / 2", formula);
-        final IExpr expr = eval.parse (formula);
-        final IExpr f = expr.getAt (2);
-        assertEquals (20.0, eval.evalf (f), TestSupport.epsilon);
     }
 
     /** Check all child values. */
@@ -15,8 +15,6 @@ import javax.swing.event.*;
 
 import org.junit.jupiter.api.Test;
 
-import com.chriseliot.util.Namer;
-
 public class TestGeoPlane
 {
     private final TestSupport ts = new TestSupport ();
@@ -399,7 +397,6 @@ public class TestGeoPlane
     @Test
     public void testPaint2 () throws IOException
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
 
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (50, 50), new Point2D.Double (350, 50));
@@ -420,7 +417,6 @@ public class TestGeoPlane
         categories.add ("standard");
         categories.add ("detail");
         plane.paintItems (g, categories);
-        // Be sure to call Namer.reset before generating images for compare.
         ts.compare (image, ts.getTestPngFile (this, "master_p1"));
         v1.getVertex ().setGivenStatus (GeoStatus.known);
         v2.getVertex ().setGivenStatus (GeoStatus.known);
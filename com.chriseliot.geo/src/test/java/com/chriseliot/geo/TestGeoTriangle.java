@@ -304,7 +304,6 @@ public class TestGeoTriangle
     @Test
     public void testGetOppositeVertex ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (30, 0));
         final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (0, 0), new Point2D.Double (30, 40));
@@ -407,7 +406,6 @@ public class TestGeoTriangle
     @Test
     public void testSolve1 ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (30, 0));
         final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (0, 0), new Point2D.Double (30, 40));
@@ -454,7 +452,6 @@ public class TestGeoTriangle
     @Test
     public void testSolve2 ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (30, 0));
         final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (0, 0), new Point2D.Double (30, 40));
@@ -494,7 +491,6 @@ public class TestGeoTriangle
     @Test
     public void testCombinations ()
     {
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (30, 0));
         final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (0, 0), new Point2D.Double (30, 40));
@@ -567,7 +563,6 @@ public class TestGeoTriangle
     {
         final File file = ts.getTestDataFile (this, "Triangle Combinations", "html");
 
-        Namer.reset ();
         final GeoPlane plane = new GeoPlane ();
         final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (30, 0));
         final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (0, 0), new Point2D.Double (30, 40));
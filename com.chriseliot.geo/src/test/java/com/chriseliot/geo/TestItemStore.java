@@ -0,0 +1,154 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestItemStore
+{
+    @Test
+    public void testViews ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final List<GeoLine> lines = plane.getLines ();
+        final List<GeoVertex> vertices = plane.getVertices ();
+        final List<GeoTriangle> triangles = plane.getTriangles ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        // The views are live
+        assertEquals (Arrays.asList (line1, line2, line3), lines);
+        assertEquals (3, vertices.size ());
+        assertEquals (1, triangles.size ());
+        final List<GeoItem> roots = plane.getRoots ();
+        assertEquals (7, roots.size ());
+        for (final GeoItem item : plane.getItems ())
+        {
+            assertEquals (item.getParent () == null, roots.contains (item));
+        }
+        assertThrows (UnsupportedOperationException.class, () -> plane.getItems ().clear ());
+        assertThrows (UnsupportedOperationException.class, () -> plane.getBindings ().clear ());
+        line3.remove ();
+        assertEquals (Arrays.asList (line1, line2), lines);
+        assertEquals (1, vertices.size ());
+        assertTrue (triangles.isEmpty ());
+        assertFalse (plane.contains (line3));
+        assertNull (plane.get (line3.getName ()));
+        plane.clear ();
+        assertTrue (plane.getItems ().isEmpty ());
+        assertTrue (lines.isEmpty ());
+    }
+
+    @Test
+    public void testIds ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        assertEquals (0, line1.getId ());
+        for (final GeoItem item : plane.getItems ())
+        {
+            assertSame (item, plane.get (item.getId ()));
+        }
+        final NamedVariable dx = line2.getDx ();
+        plane.rename (dx, "width");
+        assertSame (dx, plane.get (dx.getId ()));
+        line2.remove ();
+        assertNull (plane.get (dx.getId ()));
+        assertNull (plane.get (-1));
+        assertNull (plane.get (1000));
+        plane.clear ();
+        assertNull (plane.get (line1.getId ()));
+        assertEquals (0, new GeoLine (plane, Color.red, new Point2D.Double (1, 2), new Point2D.Double (3, 4)).getId ());
+    }
+
+    @Test
+    public void testConcurrentPlanes () throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool (4);
+        try
+        {
+            final List<Future<List<String>>> futures = new ArrayList<> ();
+            for (int i = 0; i < 8; i++)
+            {
+                futures.add (executor.submit ( () ->
+                {
+                    final GeoPlane plane = new GeoPlane ();
+                    for (int j = 0; j < 20; j++)
+                    {
+                        new GeoLine (plane, Color.red, new Point2D.Double (j, 0), new Point2D.Double (j + 5, 10));
+                    }
+                    return GeoItem.getNames (plane.getItems ());
+                }));
+            }
+            final List<String> expected = futures.get (0).get ();
+            assertTrue (expected.contains ("l20"));
+            for (final Future<List<String>> future : futures)
+            {
+                assertEquals (expected, future.get ());
+            }
+        }
+        finally
+        {
+            executor.shutdown ();
+        }
+    }
+
+    @Test
+    public void testBindings ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem a = new GeoItem (plane, "a", Color.black);
+        final GeoItem b = new GeoItem (plane, "b", Color.black);
+        final ItemStore store = plane.getItemStore ();
+        assertEquals (a.getName (), plane.getBindingKey (a));
+        assertSame (a, plane.get (a.getName ()));
+        plane.rename (a, "x");
+        assertEquals ("x", plane.getBindingKey (a));
+        assertSame (a, plane.get ("x"));
+        assertEquals (2, plane.getBindings ().size ());
+        // Binding another item under the same name takes the name away from the first
+        store.bind ("x", b);
+        assertNull (plane.getBindingKey (a));
+        assertEquals ("x", plane.getBindingKey (b));
+        assertSame (b, plane.get ("x"));
+        assertEquals (1, plane.getBindings ().size ());
+        // Adding an item again binds it under its current name
+        plane.addItem (a);
+        assertSame (a, plane.get ("x"));
+        assertNull (plane.getBindingKey (b));
+        assertEquals (2, store.size ());
+        assertEquals ("x", store.unbind (a));
+        assertNull (store.unbind (a));
+        assertTrue (store.contains (a));
+        assertNotNull (store.toString ());
+    }
+
+    @Test
+    public void testManyItems ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "p", Color.black);
+        final List<GeoItem> items = new ArrayList<> ();
+        for (int i = 0; i < 100000; i++)
+        {
+            items.add (new GeoItem (parent, "item" + i, Color.black));
+        }
+        assertEquals (100001, plane.getItems ().size ());
+        assertSame (items.get (500), plane.get ("item500"));
+        for (int i = 0; i < items.size (); i += 2)
+        {
+            plane.remove (items.get (i));
+        }
+        assertEquals (50001, plane.getItems ().size ());
+        assertSame (items.get (1), plane.getItems ().get (1));
+        assertNull (plane.get ("item500"));
+        assertEquals (Arrays.asList (parent), plane.getRoots ());
+    }
+}
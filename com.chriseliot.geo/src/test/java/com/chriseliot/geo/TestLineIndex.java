@@ -0,0 +1,88 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestLineIndex
+{
+    @Test
+    public void testCrossings ()
+    {
+        final Random random = new Random (31);
+        // The widest range makes lines too long for the grid
+        for (final int range : new int[] {20, 500, 5000})
+        {
+            final GeoPlane plane = new GeoPlane ();
+            plane.setDeferVertices (true);
+            final List<GeoLine> lines = new ArrayList<> ();
+            for (int i = 0; i < 100; i++)
+            {
+                final Point2D.Double from = new Point2D.Double (random.nextInt (range), random.nextInt (range));
+                final Point2D.Double to = new Point2D.Double (from.x + random.nextInt (200) - 100,
+                        from.y + random.nextInt (range) - range / 2);
+                lines.add (new GeoLine (plane, Color.red, from, to));
+            }
+            assertEquals (lines.size (), plane.getLineIndex ().size ());
+            for (final GeoLine line : lines)
+            {
+                final List<GeoLine> expected = new ArrayList<> ();
+                SegmentSweep.crossings (line, lines, expected);
+                final List<GeoLine> found = new ArrayList<> ();
+                plane.getLineIndex ().crossings (line, found);
+                assertEquals (expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void testMove ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final LineIndex index = plane.getLineIndex ();
+        final GeoLine a = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (100, 100));
+        final GeoLine b = new GeoLine (plane, Color.red, new Point2D.Double (500, 0), new Point2D.Double (600, 100));
+        final List<GeoLine> found = new ArrayList<> ();
+        index.crossings (a, found);
+        assertTrue (found.isEmpty ());
+        assertTrue (plane.getVertices ().isEmpty ());
+        // Dragging b across a refiles it and makes a vertex
+        b.getFrom ().drag (new Point2D.Double (0, 100));
+        b.recalculate ();
+        index.crossings (a, found);
+        assertEquals (Arrays.asList (b), found);
+        assertEquals (1, plane.getVertices ().size ());
+        b.remove ();
+        plane.remove (b);
+        found.clear ();
+        index.crossings (a, found);
+        assertTrue (found.isEmpty ());
+        assertEquals (1, index.size ());
+        assertNotNull (index.toString ());
+        plane.clear ();
+        assertEquals (0, index.size ());
+    }
+
+    @Test
+    public void testCollinear ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        // Three lines through one point make no triangle
+        new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (100, 100));
+        new GeoLine (plane, Color.red, new Point2D.Double (0, 100), new Point2D.Double (100, 0));
+        final GeoLine c = new GeoLine (plane, Color.red, new Point2D.Double (50, 0), new Point2D.Double (50, 100));
+        assertEquals (3, plane.getVertices ().size ());
+        assertTrue (plane.getTriangles ().isEmpty ());
+        assertTrue (c.collinear);
+        // Moving one line off the shared point makes a triangle without making a vertex
+        c.getFrom ().drag (new Point2D.Double (40, 0));
+        c.getTo ().drag (new Point2D.Double (40, 100));
+        c.recalculate ();
+        assertEquals (3, plane.getVertices ().size ());
+        assertEquals (1, plane.getTriangles ().size ());
+    }
+}
@@ -0,0 +1,81 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPlaneBatch
+{
+    private void addLines (GeoPlane plane, int count)
+    {
+        final Random random = new Random (17);
+        for (int i = 0; i < count; i++)
+        {
+            final Point2D.Double from = new Point2D.Double (random.nextInt (300), random.nextInt (300));
+            final Point2D.Double to = new Point2D.Double (random.nextInt (300), random.nextInt (300));
+            new GeoLine (plane, Color.red, from, to);
+        }
+    }
+
+    @Test
+    public void testSameResult ()
+    {
+        final GeoPlane eager = new GeoPlane ();
+        addLines (eager, 30);
+        final GeoPlane batched = new GeoPlane ();
+        final int[] events = new int[1];
+        batched.addChangeListener (e -> events[0]++);
+        try (PlaneBatch batch = batched.beginBatch ())
+        {
+            assertTrue (batched.isBatch ());
+            assertTrue (batch.isOpen ());
+            addLines (batched, 30);
+            assertTrue (batched.getVertices ().isEmpty ());
+            assertEquals (0, events[0]);
+        }
+        assertFalse (batched.isBatch ());
+        assertFalse (batched.isDeferVertices ());
+        assertEquals (1, events[0]);
+        assertEquals (eager.getVertices ().size (), batched.getVertices ().size ());
+        assertEquals (eager.getTriangles ().size (), batched.getTriangles ().size ());
+    }
+
+    @Test
+    public void testNested ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final PlaneBatch outer = plane.beginBatch ();
+        final PlaneBatch inner = plane.beginBatch ();
+        new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (100, 100));
+        new GeoLine (plane, Color.red, new Point2D.Double (0, 100), new Point2D.Double (100, 0));
+        inner.close ();
+        inner.close ();
+        assertFalse (inner.isOpen ());
+        assertTrue (plane.isBatch ());
+        assertTrue (plane.getVertices ().isEmpty ());
+        outer.close ();
+        assertEquals (1, plane.getVertices ().size ());
+        assertNotNull (outer.toString ());
+    }
+
+    @Test
+    public void testSolveDeferred ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        b.addRule ("test", "%s == %s", b, a);
+        try (PlaneBatch batch = plane.beginBatch ())
+        {
+            batch.setFindVertices (false);
+            a.setGivenStatus (GeoStatus.known);
+            assertFalse (b.isDetermined ());
+        }
+        assertTrue (b.isDetermined ());
+    }
+}
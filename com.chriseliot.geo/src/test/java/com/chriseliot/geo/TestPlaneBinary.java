@@ -0,0 +1,85 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.io.*;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPlaneBinary
+{
+    private final TestSupport ts = new TestSupport ();
+
+    private String toXml (GeoPlane plane) throws ParserConfigurationException, IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        new PlaneXml ().save (plane, out);
+        return out.toString ("UTF-8");
+    }
+
+    @Test
+    public void testRoundTrip () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final GeoItem x = plane.get ("l01$A$x");
+        x.setGivenStatus (GeoStatus.known);
+        final String expected = toXml (plane);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        new PlaneBinary ().save (plane, out);
+        final byte[] bytes = out.toByteArray ();
+        // Much smaller than the xml
+        assertTrue (bytes.length * 2 < expected.length ());
+        final GeoPlane copy = new GeoPlane ();
+        new PlaneBinary ().load (copy, new ByteArrayInputStream (bytes));
+        assertFalse (copy.isBatch ());
+        assertEquals (plane.getItems ().size (), copy.getItems ().size ());
+        assertEquals (1, copy.getTriangles ().size ());
+        assertEquals (expected, toXml (copy));
+        assertEquals (GeoStatus.known, copy.get ("l01$A$x").getStatus ());
+    }
+
+    @Test
+    public void testInferences () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        // Both are 20
+        final GeoItem l1 = plane.get ("l01$dx");
+        final GeoItem l2 = plane.get ("l01$dy");
+        l2.setGivenStatus (GeoStatus.known);
+        l1.setFormula ("test", "%s == %s", l1, l2);
+        final File file = File.createTempFile ("TestPlaneBinary", PlaneBinary.SUFFIX);
+        try
+        {
+            new PlaneBinary ().save (plane, file);
+            final GeoPlane copy = new GeoPlane ();
+            new PlaneBinary ().load (copy, file);
+            final GeoItem restored = copy.get (l1.getName ());
+            assertEquals (l1.getInferences ().size (), restored.getInferences ().size ());
+            final Inference inference = restored.getInferences ().get (restored.getInferences ().size () - 1);
+            assertEquals ("test", inference.getReason ());
+            assertSame (restored, inference.getTerms ()[0]);
+            assertSame (copy.get (l2.getName ()), inference.getTerms ()[1]);
+            // Items of a class that can't be read stop the load
+            new GeoItem (plane, "parent", Color.black);
+            new PlaneBinary ().save (plane, file);
+            assertThrows (IOException.class, () -> new PlaneBinary ().load (copy, file));
+        }
+        finally
+        {
+            file.delete ();
+        }
+    }
+
+    @Test
+    public void testBadFile ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final PlaneBinary binary = new PlaneBinary ();
+        assertThrows (IOException.class, () -> binary.load (plane, new ByteArrayInputStream ("<geometry/>".getBytes ())));
+        assertThrows (IOException.class, () -> binary.load (plane, new ByteArrayInputStream (new byte[] {0x47, 0x45, 0x4f})));
+        assertNotNull (binary.toString ());
+    }
+}
@@ -0,0 +1,217 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPlaneJournal
+{
+    private final TestSupport ts = new TestSupport ();
+
+    /** Make the edits a user would. */
+    private void edit (GeoPlane plane)
+    {
+        new GeoLine (plane, Color.blue, new Point2D.Double (50, 55), new Point2D.Double (80, 20));
+        new GeoRectangle (plane, Color.green, new Point2D.Double (320, 330), new Point2D.Double (300, 300));
+        plane.drag (new Point2D.Double (320, 330), new Point2D.Double (325, 340));
+        plane.get ("l01$A$x").setGivenStatus (GeoStatus.known);
+        plane.get ("O01").remove ();
+        plane.rename (plane.get ("l02$dx"), "width");
+    }
+
+    /** The names, given statuses and positions of the items, which should survive a replay. */
+    private List<String> describe (GeoPlane plane)
+    {
+        final List<String> result = new ArrayList<> ();
+        for (final GeoItem item : plane.getItems ())
+        {
+            final StringBuilder buffer = new StringBuilder ();
+            buffer.append (item.getName ());
+            if (item.getStatus () != GeoStatus.derived)
+            {
+                buffer.append (" ");
+                buffer.append (item.getStatus ());
+            }
+            if (item instanceof NamedPoint)
+            {
+                buffer.append (" ");
+                buffer.append (((NamedPoint)item).getPosition ());
+            }
+            result.add (buffer.toString ());
+        }
+        Collections.sort (result);
+        return result;
+    }
+
+    private File makeSnapshot (GeoPlane plane) throws IOException
+    {
+        final File file = File.createTempFile ("TestPlaneJournal", PlaneBinary.SUFFIX);
+        PlaneJournal.saveSnapshot (plane, file);
+        return file;
+    }
+
+    private void delete (File snapshot)
+    {
+        PlaneJournal.getJournalFile (snapshot).delete ();
+        snapshot.delete ();
+    }
+
+    @Test
+    public void testReplay () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final File snapshot = makeSnapshot (plane);
+        try
+        {
+            final long saved = snapshot.lastModified ();
+            final PlaneJournal journal = PlaneJournal.start (plane, snapshot);
+            edit (plane);
+            assertEquals (6, journal.getRecordCount ());
+            journal.flush ();
+            // Each record is small
+            assertTrue (journal.getSize () < 400);
+            journal.close ();
+            assertEquals (saved, snapshot.lastModified ());
+            final List<String> expected = describe (plane);
+            assertTrue (expected.contains ("width unknown"));
+
+            final GeoPlane copy = new GeoPlane ();
+            final PlaneJournal reopened = PlaneJournal.open (copy, snapshot);
+            assertEquals (expected, describe (copy));
+            assertEquals (plane.getTriangles ().size (), copy.getTriangles ().size ());
+            // The replayed edits were compacted into the snapshot
+            assertEquals (0, reopened.getRecordCount ());
+            reopened.close ();
+            final GeoPlane again = new GeoPlane ();
+            PlaneJournal.open (again, snapshot).close ();
+            assertEquals (expected, describe (again));
+            assertNotNull (reopened.toString ());
+        }
+        finally
+        {
+            delete (snapshot);
+        }
+    }
+
+    @Test
+    public void testTruncated () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final File snapshot = makeSnapshot (plane);
+        try
+        {
+            final PlaneJournal journal = PlaneJournal.start (plane, snapshot);
+            new GeoLine (plane, Color.blue, new Point2D.Double (50, 55), new Point2D.Double (80, 20));
+            journal.flush ();
+            final List<String> expected = describe (plane);
+            plane.drag (new Point2D.Double (220, 130), new Point2D.Double (230, 140));
+            journal.close ();
+            // Lose part of the last record, as a crash while writing would
+            final Path path = PlaneJournal.getJournalFile (snapshot).toPath ();
+            final byte[] bytes = Files.readAllBytes (path);
+            Files.write (path, Arrays.copyOf (bytes, bytes.length - 3));
+            final GeoPlane copy = new GeoPlane ();
+            PlaneJournal.open (copy, snapshot).close ();
+            assertEquals (expected, describe (copy));
+        }
+        finally
+        {
+            delete (snapshot);
+        }
+    }
+
+    @Test
+    public void testDamaged () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final List<String> expected = describe (plane);
+        final File snapshot = makeSnapshot (plane);
+        try
+        {
+            final PlaneJournal journal = PlaneJournal.start (plane, snapshot);
+            final long header = journal.getSize ();
+            edit (plane);
+            journal.close ();
+            // Damage the first edit, so none of them are applied
+            final Path path = PlaneJournal.getJournalFile (snapshot).toPath ();
+            final byte[] bytes = Files.readAllBytes (path);
+            bytes[(int)header + 10] ^= 0x55;
+            Files.write (path, bytes);
+            final GeoPlane copy = new GeoPlane ();
+            PlaneJournal.open (copy, snapshot).close ();
+            assertEquals (expected, describe (copy));
+        }
+        finally
+        {
+            delete (snapshot);
+        }
+    }
+
+    @Test
+    public void testDiscard () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final List<String> expected = describe (plane);
+        final File snapshot = makeSnapshot (plane);
+        try
+        {
+            final PlaneJournal journal = PlaneJournal.start (plane, snapshot);
+            edit (plane);
+            journal.flush ();
+            journal.discard ();
+            assertFalse (journal.getFile ().exists ());
+            // Later edits are not recorded
+            plane.drag (new Point2D.Double (220, 130), new Point2D.Double (230, 140));
+            assertFalse (journal.getFile ().exists ());
+            final GeoPlane copy = new GeoPlane ();
+            PlaneJournal.open (copy, snapshot).close ();
+            assertEquals (expected, describe (copy));
+        }
+        finally
+        {
+            delete (snapshot);
+        }
+    }
+
+    @Test
+    public void testCompact () throws IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final File snapshot = makeSnapshot (plane);
+        try
+        {
+            final PlaneJournal journal = PlaneJournal.start (plane, snapshot);
+            final Path path = PlaneJournal.getJournalFile (snapshot).toPath ();
+            edit (plane);
+            journal.flush ();
+            // Keep the journal as it was before compaction
+            final byte[] old = Files.readAllBytes (path);
+            journal.setCompactSize (0);
+            journal.flush ();
+            assertTrue (journal.getSize () < old.length);
+            assertEquals (Files.size (path), journal.getSize ());
+            assertEquals (0, journal.getRecordCount ());
+            assertFalse (new File (snapshot.getParentFile (), "~" + snapshot.getName ()).exists ());
+            journal.close ();
+            final List<String> expected = describe (plane);
+            final GeoPlane copy = new GeoPlane ();
+            PlaneJournal.open (copy, snapshot).close ();
+            assertEquals (expected, describe (copy));
+            // A journal from before the last compaction is already in the snapshot
+            Files.write (path, old);
+            final GeoPlane stale = new GeoPlane ();
+            PlaneJournal.open (stale, snapshot).close ();
+            assertEquals (expected, describe (stale));
+        }
+        finally
+        {
+            delete (snapshot);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.*;
+import org.xml.sax.SAXException;
+
+import com.chriseliot.util.*;
+
+public class TestPlaneXml
+{
+    private final XMLUtil xu = new XMLUtil ();
+
+    private final TestSupport ts = new TestSupport ();
+
+    /** Compare two elements by tag, attributes and child elements. */
+    private void assertSame (Element expected, Element actual)
+    {
+        assertEquals (expected.getTagName (), actual.getTagName ());
+        final NamedNodeMap attributes = expected.getAttributes ();
+        assertEquals (attributes.getLength (), actual.getAttributes ().getLength (), expected.getTagName ());
+        for (int i = 0; i < attributes.getLength (); i++)
+        {
+            final String name = attributes.item (i).getNodeName ();
+            assertEquals (expected.getAttribute (name), actual.getAttribute (name), name);
+        }
+        final List<Element> e = xu.getChildren (expected);
+        final List<Element> a = xu.getChildren (actual);
+        assertEquals (e.size (), a.size (), expected.getAttribute ("name"));
+        for (int i = 0; i < e.size (); i++)
+        {
+            assertSame (e.get (i), a.get (i));
+        }
+    }
+
+    @Test
+    public void testSameAsDocument () throws ParserConfigurationException, IOException, SAXException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final Document doc = xu.getDocumentBuilder ().newDocument ();
+        final Element root = doc.createElement ("geometry");
+        doc.appendChild (root);
+        root.setAttribute (PlaneXml.SOLUTION, SolutionCache.toString (SolutionCache.getHash (plane)));
+        for (final GeoItem item : plane.getRoots ())
+        {
+            item.getElement (root);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        new PlaneXml ().save (plane, out);
+        final Document streamed = xu.getDocument (new ByteArrayInputStream (out.toByteArray ()));
+        assertSame (root, streamed.getDocumentElement ());
+    }
+
+    @Test
+    public void testRoundTrip () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final PlaneXml xml = new PlaneXml ();
+        final ByteArrayOutputStream first = new ByteArrayOutputStream ();
+        xml.save (plane, first);
+        final GeoPlane copy = new GeoPlane ();
+        xml.load (copy, new ByteArrayInputStream (first.toByteArray ()));
+        assertFalse (copy.isBatch ());
+        assertEquals (plane.getItems ().size (), copy.getItems ().size ());
+        assertEquals (1, copy.getTriangles ().size ());
+        final ByteArrayOutputStream second = new ByteArrayOutputStream ();
+        xml.save (copy, second);
+        assertEquals (first.toString ("UTF-8"), second.toString ("UTF-8"));
+        assertNotNull (xml.toString ());
+    }
+
+    @Test
+    public void testGzip () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        final File file = File.createTempFile ("TestPlaneXml", ".xml" + XMLUtil.GZIP_SUFFIX);
+        try
+        {
+            new PlaneXml ().save (plane, file);
+            final byte[] bytes = Files.readAllBytes (file.toPath ());
+            // Gzip magic number
+            assertEquals ((byte)0x1f, bytes[0]);
+            assertEquals ((byte)0x8b, bytes[1]);
+            final GeoPlane copy = new GeoPlane ();
+            new PlaneXml ().load (copy, file);
+            assertEquals (plane.getItems ().size (), copy.getItems ().size ());
+        }
+        finally
+        {
+            file.delete ();
+        }
+    }
+}
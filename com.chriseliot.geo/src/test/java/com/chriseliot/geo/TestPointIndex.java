@@ -0,0 +1,113 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import javax.swing.SwingConstants;
+
+import org.junit.jupiter.api.Test;
+
+public class TestPointIndex
+{
+    /** Brute force version of PointIndex.nearest. */
+    private NamedPoint nearest (List<NamedPoint> points, double x, double y, double limit2)
+    {
+        NamedPoint result = null;
+        double distance = limit2;
+        for (final NamedPoint p : points)
+        {
+            final double d = p.distance2 (x, y);
+            if (d < distance)
+            {
+                result = p;
+                distance = d;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testNearest ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final Random random = new Random (17);
+        final List<NamedPoint> points = new ArrayList<> ();
+        for (int i = 0; i < 500; i++)
+        {
+            points.add (new NamedPoint (parent, true, Color.red, "p", random.nextInt (1000) - 200, random.nextInt (800),
+                    SwingConstants.NORTH));
+        }
+        final PointIndex index = plane.getPointIndex ();
+        assertEquals (points.size (), index.size ());
+        for (int i = 0; i < 500; i++)
+        {
+            final double x = random.nextDouble () * 1200 - 300;
+            final double y = random.nextDouble () * 900 - 50;
+            final double limit2 = random.nextInt (4) == 0 ? Double.MAX_VALUE : 30 * 30;
+            assertSame (nearest (points, x, y, limit2), index.nearest (x, y, limit2, null), x + ", " + y);
+        }
+        // Move points and check again
+        for (int i = 0; i < points.size (); i += 3)
+        {
+            points.get (i).setPosition (random.nextInt (1000), random.nextInt (800));
+        }
+        for (int i = 0; i < points.size (); i += 5)
+        {
+            points.get (i).remove ();
+        }
+        points.removeIf (p -> !plane.getItems ().contains (p));
+        assertEquals (points.size (), index.size ());
+        for (int i = 0; i < 500; i++)
+        {
+            final double x = random.nextDouble () * 1000;
+            final double y = random.nextDouble () * 800;
+            assertSame (nearest (points, x, y, 900), index.nearest (x, y, 900, null));
+        }
+        assertNotNull (index.toString ());
+    }
+
+    @Test
+    public void testAt ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint a = new NamedPoint (parent, true, Color.red, "a", 10, 20, SwingConstants.NORTH);
+        final NamedPoint b = new NamedPoint (parent, false, Color.red, "b", 10, 20, SwingConstants.NORTH);
+        final NamedPoint c = new NamedPoint (parent, true, Color.red, "c", 10.5, 20, SwingConstants.NORTH);
+        final List<NamedPoint> found = new ArrayList<> ();
+        plane.getPointIndex ().at (new Point2D.Double (10, 20), found);
+        assertEquals (Arrays.asList (a, b), found);
+        assertEquals (Arrays.asList (a), plane.getDragPoints (new Point2D.Double (10, 20)));
+        // Ties go to the first point
+        assertSame (a, plane.getClickObject (new Point2D.Double (9.5, 20), 100));
+        assertEquals (new Point2D.Double (10.5, 20), plane.getSnapPoint (new Point2D.Double (10.4, 20), 100));
+        assertNull (plane.getSnapPoint (new Point2D.Double (100, 20), 100));
+        c.setPosition (null);
+        assertNull (plane.getSnapPoint (new Point2D.Double (10.5, 40), 100));
+        c.setPosition (50, 50);
+        assertEquals (new Point2D.Double (50, 50), plane.getSnapPoint (new Point2D.Double (51, 51), 100));
+    }
+
+    @Test
+    public void testVertex ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoVertex v = line1.getVertex (line2);
+        assertSame (v, plane.getVertex (new Point2D.Double (10, 20)));
+        assertNull (plane.getVertex (new Point2D.Double (11, 20)));
+        // The vertex is preferred to the line end points at the same place
+        assertSame (v.getVertex (), plane.getClickObject (new Point2D.Double (11, 21), 100));
+        line1.remove ();
+        line2.remove ();
+        assertNull (plane.getVertex (new Point2D.Double (10, 20)));
+        plane.clear ();
+        assertEquals (0, plane.getPointIndex ().size ());
+    }
+}
@@ -0,0 +1,60 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+public class TestRecalcScheduler
+{
+    @Test
+    public void testDragOnce ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final RecalcScheduler scheduler = plane.getRecalcScheduler ();
+        final Point2D.Double a = new Point2D.Double (0, 0);
+        final Point2D.Double b = new Point2D.Double (100, 0);
+        final Point2D.Double c = new Point2D.Double (0, 100);
+        new GeoLine (plane, Color.red, a, b);
+        new GeoLine (plane, Color.red, new Point2D.Double (b.x, b.y), c);
+        new GeoLine (plane, Color.red, new Point2D.Double (c.x, c.y), new Point2D.Double (a.x, a.y));
+        assertEquals (3, plane.getVertices ().size ());
+        assertEquals (1, plane.getTriangles ().size ());
+        final GeoTriangle t = plane.getTriangles ().get (0);
+        final long before = scheduler.getRecalcCount ();
+        plane.drag (b, new Point2D.Double (200, 0));
+        // Two lines, three vertices and one triangle, each recalculated once
+        assertEquals (before + 6, scheduler.getRecalcCount ());
+        assertFalse (scheduler.isActive ());
+        assertEquals (1, plane.getTriangles ().size ());
+        final double perimeter = t.getL1 ().getDoubleValue () + t.getL2 ().getDoubleValue () + t.getL3 ().getDoubleValue ();
+        assertEquals (200 + 100 + Math.hypot (200, 100), perimeter, 1e-9);
+    }
+
+    @Test
+    public void testBeginEnd ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final RecalcScheduler scheduler = plane.getRecalcScheduler ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (0, 0), new Point2D.Double (10, 0));
+        final long before = scheduler.getRecalcCount ();
+        scheduler.begin ();
+        scheduler.schedule (line);
+        scheduler.schedule (line);
+        assertTrue (scheduler.isActive ());
+        assertEquals (before, scheduler.getRecalcCount ());
+        scheduler.end ();
+        assertEquals (before + 1, scheduler.getRecalcCount ());
+        // Outside of begin and end the work is done right away
+        scheduler.schedule (line);
+        assertEquals (before + 2, scheduler.getRecalcCount ());
+        // Removed items are skipped
+        line.remove ();
+        plane.remove (line);
+        scheduler.schedule (line);
+        assertEquals (before + 2, scheduler.getRecalcCount ());
+        assertNotNull (scheduler.toString ());
+    }
+}
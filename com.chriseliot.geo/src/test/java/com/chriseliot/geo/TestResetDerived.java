@@ -11,8 +11,6 @@ import java.util.*;
 import org.apache.logging.log4j.*;
 import org.junit.jupiter.api.*;
 
-import com.chriseliot.util.Namer;
-
 class TestResetDerived
 {
     private final Logger logger = LogManager.getFormatterLogger (this.getClass ());
@@ -37,7 +35,6 @@ class TestResetDerived
     {
         logger.info ("****************************");
         logger.info ("Setup test scenario starting");
-        Namer.reset ();
         plane = new GeoPlane ();
         line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
         line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
@@ -0,0 +1,68 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+public class TestRule
+{
+    @Test
+    public void testReady ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 3.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final NamedVariable c = new NamedVariable (parent, Color.black, "c", 2.0);
+        final Rule rule = parent.addRule ("sum", "%s == %s + %s", a, b, c);
+        assertFalse (rule.isReady ());
+        assertFalse (rule.fire ());
+        assertNull (a.getInference ());
+        b.setStatus (GeoStatus.known, "given");
+        assertFalse (rule.isReady ());
+        c.setStatus (GeoStatus.fixed, "given");
+        assertTrue (rule.isReady ());
+        c.setStatusUnknown ();
+        assertFalse (rule.isReady ());
+        c.setStatus (GeoStatus.known, "given");
+        assertTrue (rule.fire ());
+        assertEquals (GeoStatus.derived, a.getStatus ());
+        assertFalse (rule.isReady ());
+        assertFalse (rule.fire ());
+        final Inference inference = a.getInference ();
+        assertSame (rule, inference.getRule ());
+        assertSame (rule.getTerms (), inference.getTerms ());
+        assertEquals ("a == b + c", inference.getInstantiation ());
+    }
+
+    @Test
+    public void testInstantiation ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 3.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final Rule rule = parent.addRule ("test", "%s == Block({$b=%s}, Return($b))", a, b);
+        final String first = rule.getInstantiation ();
+        assertEquals ("a == Block({$b=b}, Return($b))", first);
+        assertSame (first, rule.getInstantiation ());
+        plane.rename (b, "beta");
+        assertEquals ("beta", b.getName ());
+        assertSame (b, plane.get ("beta"));
+        assertNull (plane.get ("b"));
+        assertEquals ("a == Block({$b=beta}, Return($b))", rule.getInstantiation ());
+        final Rule percent = parent.addRule ("test", "%s == %s %% 2", a, b);
+        assertEquals ("a == beta % 2", percent.getInstantiation ());
+    }
+
+    @Test
+    public void testTerms ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        assertThrows (IllegalArgumentException.class, () -> parent.addRule ("empty", "1 == 1"));
+    }
+}
@@ -0,0 +1,107 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TestRuleIndex
+{
+    @Test
+    public void testCreate ()
+    {
+        final RuleIndex index = new RuleIndex ();
+        assertEquals (0, index.size ());
+        assertNotNull (index.toString ());
+    }
+
+    @Test
+    public void testLineRules ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final RuleIndex index = plane.getRuleIndex ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        assertFalse (line.getRules ().isEmpty ());
+        final List<Rule> rules = index.getRules (line.getDx ());
+        assertFalse (rules.isEmpty ());
+        for (final Rule rule : rules)
+        {
+            assertTrue (rule.hasTerm (line.getDx ()));
+        }
+        // Lookup by name without solving
+        assertEquals (rules, index.getRules (plane.get (line.getDx ().getName ())));
+        final int size = index.size ();
+        assertTrue (size > 0);
+        line.remove ();
+        assertEquals (0, index.size ());
+        assertTrue (index.getRules (line.getDx ()).isEmpty ());
+    }
+
+    @Test
+    public void testEquivalentRules ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final RuleIndex index = plane.getRuleIndex ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedPoint p = new NamedPoint (parent, true, Color.black, "p", 10, 20, 0);
+        final NamedPoint q = new NamedPoint (parent, true, Color.black, "q", 30, 40, 0);
+        final int before = index.size ();
+        // Moving onto another point links the points through equivalence classes, not rules
+        q.setPosition (10, 20);
+        assertEquals (before, index.size ());
+        assertTrue (plane.getEquivalenceClasses ().isEquivalent (p.getX (), q.getX ()));
+        p.equivalent (q);
+        q.equivalent (p);
+        assertEquals (before, index.size ());
+        q.remove ();
+        assertEquals (before - 3, index.size ());
+        assertTrue (index.getRules (q.getX ()).isEmpty ());
+        for (final Rule rule : p.getRules ())
+        {
+            assertFalse (rule.hasTerm (q.getX ()));
+        }
+    }
+
+    @Test
+    public void testFire ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        plane.setSolveEngine (SolveEngine.sweep);
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", 1.0);
+        final Rule rule = parent.addRule ("test", "%s == %s", a, b);
+        assertSame (parent, rule.getSource ());
+        assertSame (a, rule.getOwner ());
+        assertEquals ("a == b", rule.getInstantiation ());
+        assertEquals (rule, plane.getRuleIndex ().getRules (b).get (0));
+        rule.fire ();
+        assertFalse (a.isDetermined ());
+        b.setGivenStatus (GeoStatus.known);
+        rule.fire ();
+        assertEquals (GeoStatus.derived, a.getStatus ());
+        assertEquals ("test", a.getReason ());
+        assertNotNull (rule.toString ());
+    }
+
+    @Test
+    public void testGuard ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.black, "a", 1.0);
+        final NamedVariable b = new NamedVariable (parent, Color.black, "b", -1.0);
+        final Rule rule = parent.addRule (() -> b.getDoubleValue () > 0, "test", "%s == %s", a, b);
+        assertFalse (rule.isApplicable ());
+        b.setGivenStatus (GeoStatus.known);
+        assertFalse (a.isDetermined ());
+        // A value change schedules the rule again through the index
+        b.setDoubleValue (1.0);
+        plane.solve ();
+        assertTrue (a.isDetermined ());
+    }
+}
@@ -0,0 +1,125 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSegmentImporter
+{
+    @Test
+    public void testWhitespace () throws IOException
+    {
+        final String text = "# A triangle\n10 20 30 40\n\n10 20\t50 55\n  30 40 50 55  \n7 7 7 7\n";
+        final SegmentImporter importer = new SegmentImporter ();
+        importer.read (new StringReader (text), text.length ());
+        assertEquals (3, importer.getCount ());
+        assertEquals (1, importer.getSkipped ());
+        final GeoPlane plane = new GeoPlane ();
+        assertEquals (3, importer.addTo (plane));
+        assertFalse (plane.isBatch ());
+        assertEquals (3, plane.getLines ().size ());
+        assertEquals (1, plane.getTriangles ().size ());
+        assertEquals (Color.orange, plane.getLines ().get (0).getColor ());
+        assertNotNull (importer.toString ());
+    }
+
+    @Test
+    public void testCsv () throws IOException
+    {
+        final String text = "id,X1,Y1,x2,y2,color,note\n1,10,20,30,40,#ff0000,\"a, b\"\n2,\"10\",20,50,55,,\"say \"\"hi\"\"\"\n";
+        final SegmentImporter importer = new SegmentImporter ();
+        importer.setColor (Color.blue);
+        importer.read (new StringReader (text), -1);
+        final GeoPlane plane = new GeoPlane ();
+        importer.addTo (plane);
+        final List<GeoLine> lines = plane.getLines ();
+        assertEquals (2, lines.size ());
+        assertEquals (Color.red, lines.get (0).getColor ());
+        assertEquals (Color.blue, lines.get (1).getColor ());
+        assertEquals (new Point2D.Double (50, 55), lines.get (1).getTo ().getPosition ());
+        assertEquals (1, plane.getVertices ().size ());
+    }
+
+    @Test
+    public void testSplit ()
+    {
+        final SegmentImporter importer = new SegmentImporter ();
+        final List<String> fields = new ArrayList<> ();
+        importer.split ("1, \"2,3\" ,\"x\"\"y\",", fields);
+        assertEquals (Arrays.asList ("1", "2,3", "x\"y", ""), fields);
+        importer.split ("1 \t2  3", fields);
+        assertEquals (Arrays.asList ("1", "2", "3"), fields);
+    }
+
+    @Test
+    public void testSameAsOneAtATime () throws IOException
+    {
+        // A grid of crossing lines with some diagonals
+        final StringBuilder text = new StringBuilder ();
+        final GeoPlane expected = new GeoPlane ();
+        for (int i = 1; i <= 6; i++)
+        {
+            final double[][] segments = {{0, i * 20, 100, i * 20 + 5}, {i * 20, 0, i * 20 + 3, 100}, {0, i * 10, i * 10, 0}};
+            for (final double[] s : segments)
+            {
+                text.append (String.format ("%s %s %s %s\n", s[0], s[1], s[2], s[3]));
+                new GeoLine (expected, Color.orange, new Point2D.Double (s[0], s[1]), new Point2D.Double (s[2], s[3]));
+            }
+        }
+        final SegmentImporter importer = new SegmentImporter ();
+        final List<String> events = new ArrayList<> ();
+        importer.setListener (new ImportListener ()
+        {
+            @Override
+            public void segmentsRead (int segments, long position, long total)
+            {
+                events.add ("read " + segments + " " + (position == total));
+            }
+
+            @Override
+            public void linesCreated (int lines, int total)
+            {
+                events.add ("created " + lines + " " + total);
+            }
+
+            @Override
+            public void findingVertices (int lines)
+            {
+                events.add ("vertices " + lines);
+            }
+        });
+        final File file = File.createTempFile ("TestSegmentImporter", SegmentImporter.TEXT_SUFFIX);
+        try
+        {
+            try (Writer out = new FileWriter (file))
+            {
+                out.write (text.toString ());
+            }
+            final GeoPlane plane = new GeoPlane ();
+            assertEquals (18, importer.importFile (plane, file));
+            assertEquals (Arrays.asList ("read 18 true", "created 18 18", "vertices 18"), events);
+            assertEquals (expected.getVertices ().size (), plane.getVertices ().size ());
+            assertEquals (expected.getTriangles ().size (), plane.getTriangles ().size ());
+            assertTrue (plane.getTriangles ().size () > 0);
+        }
+        finally
+        {
+            file.delete ();
+        }
+    }
+
+    @Test
+    public void testBadInput ()
+    {
+        final SegmentImporter importer = new SegmentImporter ();
+        assertThrows (IOException.class, () -> importer.read (new StringReader ("1 2 3 4\n1 2 x 4\n"), -1));
+        assertThrows (IOException.class, () -> importer.read (new StringReader ("1 2 3\n"), -1));
+        assertThrows (IOException.class, () -> importer.read (new StringReader ("a,b,c,d\n1,2,3,4\n"), -1));
+        assertThrows (IOException.class, () -> importer.read (new StringReader ("1 2 3 4 purple\n"), -1));
+    }
+}
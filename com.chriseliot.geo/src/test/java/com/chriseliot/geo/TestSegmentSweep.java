@@ -0,0 +1,150 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSegmentSweep
+{
+    /** Make random lines. Small integer coordinates give shared end points and vertical lines. */
+    private List<GeoLine> makeLines (GeoPlane plane, Random random, int count, int range)
+    {
+        final List<GeoLine> result = new ArrayList<> ();
+        for (int i = 0; i < count; i++)
+        {
+            final Point2D.Double from = new Point2D.Double (random.nextInt (range), random.nextInt (range));
+            final Point2D.Double to = new Point2D.Double (random.nextInt (range), random.nextInt (range));
+            if (i % 7 == 0)
+            {
+                to.x = from.x;
+            }
+            result.add (new GeoLine (plane, Color.red, from, to));
+        }
+        return result;
+    }
+
+    /** Brute force version of SegmentSweep.crossings. */
+    private List<String> bruteForce (List<GeoLine> lines)
+    {
+        final List<String> result = new ArrayList<> ();
+        for (int i = 0; i < lines.size (); i++)
+        {
+            for (int j = 0; j < i; j++)
+            {
+                if (lines.get (i).intersects (lines.get (j)))
+                {
+                    result.add (i + " " + j);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testCrossings ()
+    {
+        final Random random = new Random (23);
+        for (final int range : new int[] {10, 50, 1000})
+        {
+            final GeoPlane plane = new GeoPlane ();
+            plane.setDeferVertices (true);
+            final List<GeoLine> lines = makeLines (plane, random, 200, range);
+            assertTrue (plane.getVertices ().isEmpty ());
+            final List<String> found = new ArrayList<> ();
+            for (final GeoLine[] pair : SegmentSweep.crossings (lines))
+            {
+                found.add (lines.indexOf (pair[0]) + " " + lines.indexOf (pair[1]));
+            }
+            assertEquals (bruteForce (lines), found);
+            final GeoLine line = lines.get (17);
+            final List<GeoLine> crossing = new ArrayList<> ();
+            SegmentSweep.crossings (line, lines, crossing);
+            for (final GeoLine l : lines)
+            {
+                assertEquals (l != line && line.intersects (l), crossing.contains (l));
+            }
+        }
+        assertTrue (SegmentSweep.crossings (new ArrayList<> ()).isEmpty ());
+    }
+
+    @Test
+    public void testLongLines ()
+    {
+        // Long lines at different heights stay open across the whole sweep
+        final GeoPlane plane = new GeoPlane ();
+        plane.setDeferVertices (true);
+        final List<GeoLine> lines = new ArrayList<> ();
+        for (int i = 0; i < 2000; i++)
+        {
+            final Point2D.Double from = new Point2D.Double (i % 10, i * 10);
+            lines.add (new GeoLine (plane, Color.red, from, new Point2D.Double (10000 + i, i * 10 + 5)));
+        }
+        assertTrue (SegmentSweep.crossings (lines).isEmpty ());
+        lines.add (new GeoLine (plane, Color.red, new Point2D.Double (5000, 0), new Point2D.Double (5000, 95)));
+        assertEquals (10, SegmentSweep.crossings (lines).size ());
+    }
+
+    @Test
+    public void testActiveLines ()
+    {
+        // Boxes of lines with y ranges 0-10, 5-6, 20-30 and 8-25
+        final double[] bounds = {0, 1, 0, 10, 0, 1, 5, 6, 0, 1, 20, 30, 0, 1, 8, 25};
+        final SegmentSweep.ActiveLines active = new SegmentSweep.ActiveLines (bounds, 4);
+        final int[] result = new int[4];
+        assertEquals (0, active.find (0, 100, result));
+        for (int i = 0; i < 4; i++)
+        {
+            active.add (i);
+        }
+        assertEquals (2, active.find (4, 7, result));
+        assertEquals (Arrays.asList (0, 1), Arrays.asList (result[0], result[1]));
+        assertEquals (3, active.find (9, 20, result));
+        assertEquals (Arrays.asList (0, 3, 2), Arrays.asList (result[0], result[1], result[2]));
+        assertEquals (0, active.find (31, 40, result));
+        active.remove (3);
+        assertEquals (1, active.find (11, 20, result));
+        assertEquals (2, result[0]);
+        // Ranges that only touch overlap
+        assertEquals (1, active.find (30, 30, result));
+    }
+
+    /** The lines connected by each vertex, as positions in the line list. */
+    private Set<String> getVertexLines (GeoPlane plane, List<GeoLine> lines)
+    {
+        final Set<String> result = new TreeSet<> ();
+        for (final GeoVertex v : plane.getVertices ())
+        {
+            final int a = lines.indexOf (v.getLine1 ());
+            final int b = lines.indexOf (v.getLine2 ());
+            result.add (Math.max (a, b) + " " + Math.min (a, b));
+        }
+        return result;
+    }
+
+    @Test
+    public void testFindVertices ()
+    {
+        final GeoPlane incremental = new GeoPlane ();
+        final List<GeoLine> lines1 = makeLines (incremental, new Random (5), 20, 200);
+        final GeoPlane bulk = new GeoPlane ();
+        bulk.setDeferVertices (true);
+        final List<GeoLine> lines2 = makeLines (bulk, new Random (5), 20, 200);
+        assertTrue (bulk.isDeferVertices ());
+        assertTrue (bulk.getVertices ().isEmpty ());
+        bulk.setDeferVertices (false);
+        bulk.findVertices ();
+        final Set<String> expected = getVertexLines (incremental, lines1);
+        assertFalse (expected.isEmpty ());
+        assertEquals (expected, getVertexLines (bulk, lines2));
+        assertEquals (incremental.getVertices ().size (), bulk.getVertices ().size ());
+        // Running it again finds nothing new
+        bulk.findVertices ();
+        assertEquals (expected.size (), bulk.getVertices ().size ());
+        assertEquals (lines2, bulk.getLines ());
+    }
+}
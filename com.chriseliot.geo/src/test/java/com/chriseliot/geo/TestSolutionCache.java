@@ -0,0 +1,144 @@
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.geom.Point2D;
+import java.io.*;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSolutionCache
+{
+    private final TestSupport ts = new TestSupport ();
+
+    private String toXml (GeoPlane plane) throws ParserConfigurationException, IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        new PlaneXml ().save (plane, out);
+        return out.toString ("UTF-8");
+    }
+
+    /** Check that the copy has the same statuses and supports as the original. */
+    private void assertSameSolution (GeoPlane plane, GeoPlane copy)
+    {
+        int derived = 0;
+        for (final GeoItem item : plane.getItems ())
+        {
+            final GeoItem other = copy.get (item.getName ());
+            assertEquals (item.getStatus (), other.getStatus (), item.getName ());
+            // Lines are derived without an inference
+            if (item.getInference () != null)
+            {
+                derived++;
+                assertNotNull (other.getInference (), item.getName ());
+            }
+        }
+        assertTrue (derived > 0);
+    }
+
+    /** A solved triangle with two known corners. */
+    private GeoPlane makeSolved ()
+    {
+        final GeoPlane plane = ts.makeDrawing ();
+        plane.get ("l01$A").setGivenStatus (GeoStatus.known);
+        plane.get ("l01$B").setGivenStatus (GeoStatus.known);
+        assertTrue (plane.get ("l01$length").isDetermined ());
+        return plane;
+    }
+
+    /** Change the value of a variable in saved xml. */
+    private String setValue (String xml, String name, double from, double to)
+    {
+        final int at = xml.indexOf ("name=\"" + name + "\"");
+        final int start = xml.lastIndexOf ('<', at);
+        final int end = xml.indexOf ('>', at);
+        final String element = xml.substring (start, end);
+        final String value = "value=\"" + from + "\"";
+        assertTrue (element.contains (value), element);
+        return xml.substring (0, start) + element.replace (value, "value=\"" + to + "\"") + xml.substring (end);
+    }
+
+    @Test
+    public void testHash ()
+    {
+        final GeoPlane plane = makeSolved ();
+        final long hash = SolutionCache.getHash (plane);
+        assertEquals (hash, SolutionCache.getHash (plane));
+        assertEquals (hash, SolutionCache.parseHash (SolutionCache.toString (hash)));
+        assertNull (SolutionCache.parseHash (null));
+        assertNull (SolutionCache.parseHash ("not a hash"));
+        // Givens change the hash
+        plane.get ("l01$A").setGivenStatus (GeoStatus.unknown);
+        assertNotEquals (hash, SolutionCache.getHash (plane));
+        // So do positions
+        final long unknown = SolutionCache.getHash (plane);
+        ((NamedPoint)plane.get ("l01$B")).setPosition (50, 0);
+        assertNotEquals (unknown, SolutionCache.getHash (plane));
+    }
+
+    @Test
+    public void testMoved () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = makeSolved ();
+        final String xml = toXml (plane);
+        // Extend l01 past the corner it shares with l03 by editing the saved file. The lines still
+        // cross there, but l01$B no longer coincides with l03$A.
+        final String moved = setValue (setValue (xml, "l01$B$x", 30, 40), "l01$B$y", 40, 50);
+        final long misses = SolutionCache.getMissCount ();
+        final GeoPlane copy = new GeoPlane ();
+        new PlaneXml ().load (copy, new ByteArrayInputStream (moved.getBytes ("UTF-8")));
+        assertEquals (misses + 1, SolutionCache.getMissCount ());
+        assertTrue (copy.getAgenda ().getSolveCount () > 0);
+        final NamedPoint b = (NamedPoint)copy.get ("l01$B");
+        assertEquals (new Point2D.Double (40, 50), b.getPosition ());
+        assertTrue (b.getEquivalents ().isEmpty ());
+    }
+
+    @Test
+    public void testXmlHit () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = makeSolved ();
+        final String xml = toXml (plane);
+        final long hits = SolutionCache.getHitCount ();
+        final GeoPlane copy = new GeoPlane ();
+        new PlaneXml ().load (copy, new ByteArrayInputStream (xml.getBytes ("UTF-8")));
+        assertEquals (hits + 1, SolutionCache.getHitCount ());
+        // Nothing was solved
+        assertEquals (0, copy.getAgenda ().getSolveCount ());
+        assertEquals (0, copy.getAgenda ().getFireCount ());
+        assertSameSolution (plane, copy);
+        assertEquals (xml, toXml (copy));
+    }
+
+    @Test
+    public void testBinaryHit () throws IOException
+    {
+        final GeoPlane plane = makeSolved ();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        new PlaneBinary ().save (plane, out);
+        final long hits = SolutionCache.getHitCount ();
+        final GeoPlane copy = new GeoPlane ();
+        new PlaneBinary ().load (copy, new ByteArrayInputStream (out.toByteArray ()));
+        assertEquals (hits + 1, SolutionCache.getHitCount ());
+        assertEquals (0, copy.getAgenda ().getSolveCount ());
+        assertSameSolution (plane, copy);
+    }
+
+    @Test
+    public void testMiss () throws ParserConfigurationException, IOException
+    {
+        final GeoPlane plane = makeSolved ();
+        final String hash = SolutionCache.toString (SolutionCache.getHash (plane));
+        final String xml = toXml (plane).replace (hash, "0");
+        final long misses = SolutionCache.getMissCount ();
+        final GeoPlane copy = new GeoPlane ();
+        new PlaneXml ().load (copy, new ByteArrayInputStream (xml.getBytes ("UTF-8")));
+        assertEquals (misses + 1, SolutionCache.getMissCount ());
+        // Solved again to the same result
+        assertTrue (copy.getAgenda ().getSolveCount () > 0);
+        assertSameSolution (plane, copy);
+        assertNotNull (new SolutionCache (copy).toString ());
+    }
+}
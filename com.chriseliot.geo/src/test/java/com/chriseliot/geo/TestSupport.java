@@ -4,6 +4,7 @@ package com.chriseliot.geo;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.awt.Color;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
 
@@ -26,6 +27,15 @@ public class TestSupport
         assertNotNull (toString ());
     }
 
+    @Test
+    public void testMakeDrawing ()
+    {
+        final GeoPlane plane = makeDrawing ();
+        assertEquals (3, plane.getLines ().size ());
+        assertNotNull (plane.get ("R01"));
+        assertNotNull (plane.get ("O01"));
+    }
+
     @Test
     public void testGetPngFile ()
     {
@@ -49,33 +59,40 @@ public class TestSupport
             }
             final GeoItem[] terms = inference.getTerms ();
 
-            final ExprEvaluator eval = new ExprEvaluator ();
-            for (int i = 1; i < terms.length; i++)
+            final ExprEvaluator eval = EvaluatorPool.acquire ();
+            try
             {
-                final GeoItem var = terms[i];
-                assertNotNull (var);
-                var.defineVariable (eval);
+                for (int i = 1; i < terms.length; i++)
+                {
+                    final GeoItem var = terms[i];
+                    assertNotNull (var);
+                    var.defineVariable (eval);
+                    if (trace != null)
+                    {
+                        logger.info ("[%s] Define %s == %s", trace, var.getName (), eval.eval (var.getName ()));
+                    }
+                }
+                final IExpr expr = eval.parse (formula);
+                assertNotEquals ("true", expr.toString ());
+                final IExpr rhs = expr.getAt (2);
+                final double value = eval.evalf (rhs);
                 if (trace != null)
                 {
-                    logger.info ("[%s] Define %s == %s", trace, var.getName (), eval.eval (var.getName ()));
+                    logger.info ("[%s] Formula: %s", trace, formula);
+                    logger.info ("[%s] RHS '%s'", trace, rhs);
+                    logger.info ("[%s] expected %.2f = %.2f actual", trace, expected, value);
+                    // Can't do this and get full coverage.
+                    // final String grade = abs (value - expected) < epsilon ? "PASS" : "FAIL";
+                    // logger.info ("[%s] expected %.2f = %.2f actual %s", trace, expected, value,
+                    // grade);
+                    logger.info ("");
                 }
+                assertEquals (expected, value, epsilon);
             }
-            final IExpr expr = eval.parse (formula);
-            assertNotEquals ("true", expr.toString ());
-            final IExpr rhs = expr.getAt (2);
-            final double value = eval.evalf (rhs);
-            if (trace != null)
+            finally
             {
-                logger.info ("[%s] Formula: %s", trace, formula);
-                logger.info ("[%s] RHS '%s'", trace, rhs);
-                logger.info ("[%s] expected %.2f = %.2f actual", trace, expected, value);
-                // Can't do this and get full coverage.
-                // final String grade = abs (value - expected) < epsilon ? "PASS" : "FAIL";
-                // logger.info ("[%s] expected %.2f = %.2f actual %s", trace, expected, value,
-                // grade);
-                logger.info ("");
+                EvaluatorPool.release (eval);
             }
-            assertEquals (expected, value, epsilon);
         }
     }
 
@@ -101,6 +118,22 @@ public class TestSupport
         checkExpression (test, 5);
     }
 
+    /**
+     * Create a small drawing with one of each kind of shape. The lines l01, l02 and l03 make one
+     * triangle, and the rectangle R01 and oval O01 stand apart from it.
+     */
+    public GeoPlane makeDrawing ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        new GeoRectangle (plane, Color.green, new Point2D.Double (100, 100), new Point2D.Double (120, 130));
+        new GeoOval (plane, Color.green, new Point2D.Double (200, 100), new Point2D.Double (220, 130));
+        assertEquals (1, plane.getTriangles ().size ());
+        return plane;
+    }
+
     /**
      * Create a file for test data.
      *
@@ -0,0 +1,72 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+public class TestTriangleRegistry
+{
+    @Test
+    public void testLookup ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        final GeoVertex v1 = line1.getVertex (line2);
+        final GeoVertex v2 = line2.getVertex (line3);
+        final GeoVertex v3 = line3.getVertex (line1);
+        final TriangleRegistry registry = plane.getTriangleRegistry ();
+        assertEquals (1, registry.size ());
+        final GeoTriangle t = plane.getTriangle (v1, v2, v3);
+        assertNotNull (t);
+        // Any order of the corners finds the triangle
+        assertSame (t, plane.getTriangle (v3, v1, v2));
+        assertSame (t, registry.get (v2, v3, v1));
+        assertTrue (plane.hasTriangle (v2, v1, v3));
+        assertFalse (plane.hasTriangle (v1, v1, v2));
+        assertTrue (registry.getTriangles (v1).contains (t));
+        assertTrue (registry.getTriangles (line3).contains (t));
+        assertNotNull (registry.toString ());
+        // Moving a line so it misses the others removes a vertex and the triangle
+        line3.getFrom ().setPosition (300, 400);
+        line3.getTo ().setPosition (500, 550);
+        line3.recalculate ();
+        assertFalse (plane.hasTriangle (v1, v2, v3));
+        assertNull (plane.getTriangle (v1, v2, v3));
+        assertTrue (registry.getTriangles (v1).isEmpty ());
+        assertTrue (registry.getTriangles (line1).isEmpty ());
+        assertEquals (0, registry.size ());
+        plane.clear ();
+    }
+
+    @Test
+    public void testDuplicate ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        final GeoVertex v1 = line1.getVertex (line2);
+        final GeoVertex v2 = line2.getVertex (line3);
+        final GeoVertex v3 = line3.getVertex (line1);
+        final GeoTriangle t = plane.getTriangle (v1, v2, v3);
+        final GeoTriangle copy = new GeoTriangle (plane, Color.red, v1, v2, v3);
+        final TriangleRegistry registry = plane.getTriangleRegistry ();
+        assertEquals (2, registry.size ());
+        // The first one wins until it is removed
+        assertSame (t, plane.getTriangle (v1, v2, v3));
+        plane.remove (t);
+        assertSame (copy, plane.getTriangle (v1, v2, v3));
+        assertEquals (1, registry.getTriangles (line2).size ());
+        plane.remove (copy);
+        assertNull (plane.getTriangle (v1, v2, v3));
+        assertEquals (0, registry.size ());
+        plane.clear ();
+        assertEquals (0, registry.size ());
+    }
+}
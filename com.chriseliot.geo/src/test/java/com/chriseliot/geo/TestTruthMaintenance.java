@@ -0,0 +1,103 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+public class TestTruthMaintenance
+{
+    @Test
+    public void testRetractTriangle ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line1 = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoLine line2 = new GeoLine (plane, Color.blue, new Point2D.Double (10, 20), new Point2D.Double (50, 55));
+        final GeoLine line3 = new GeoLine (plane, Color.blue, new Point2D.Double (30, 40), new Point2D.Double (50, 55));
+        final NamedPoint p1 = line1.getVertex (line2).getVertex ();
+        final NamedPoint p2 = line2.getVertex (line3).getVertex ();
+        final NamedPoint p3 = line3.getVertex (line1).getVertex ();
+        p1.setGivenStatus (GeoStatus.known);
+        p2.setGivenStatus (GeoStatus.known);
+        p3.setGivenStatus (GeoStatus.known);
+        assertEquals (GeoStatus.derived, line1.getLength ().getStatus ());
+        assertEquals (GeoStatus.derived, line2.getLength ().getStatus ());
+        assertEquals (GeoStatus.derived, line3.getLength ().getStatus ());
+        assertNotNull (line3.getLength ().getSupport ());
+
+        final TruthMaintenance tms = plane.getTruthMaintenance ();
+        p1.setGivenStatus (GeoStatus.unknown);
+        assertTrue (tms.getRetractCount () > 0);
+        // Lines through p1 lose their length, the other line keeps it
+        assertFalse (line1.getLength ().isDetermined ());
+        assertFalse (line2.getLength ().isDetermined ());
+        assertEquals (GeoStatus.derived, line3.getLength ().getStatus ());
+        assertTrue (tms.getRetractCount () < plane.getItems ().size ());
+
+        p1.setGivenStatus (GeoStatus.known);
+        assertEquals (GeoStatus.derived, line1.getLength ().getStatus ());
+        assertNotNull (tms.toString ());
+    }
+
+    @Test
+    public void testRestore ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.red, "a", 5.0);
+        final NamedVariable b = new NamedVariable (parent, Color.red, "b", 5.0);
+        final NamedVariable x = new NamedVariable (parent, Color.red, "x", 5.0);
+        final NamedVariable y = new NamedVariable (parent, Color.red, "y", 5.0);
+        final TruthMaintenance tms = plane.getTruthMaintenance ();
+
+        a.setGivenStatus (GeoStatus.known);
+        x.setFormula ("from a", "%s == %s", x, a);
+        assertEquals (GeoStatus.derived, x.getStatus ());
+        assertSame (a, x.getSupport ().getTerms ()[1]);
+
+        // No other way to derive x
+        a.setGivenStatus (GeoStatus.unknown);
+        assertEquals (GeoStatus.unknown, x.getStatus ());
+        assertNull (x.getSupport ());
+
+        b.setGivenStatus (GeoStatus.known);
+        x.setFormula ("from b", "%s == %s", x, b);
+        y.setFormula ("from x", "%s == %s", y, x);
+        a.setGivenStatus (GeoStatus.known);
+        assertEquals (GeoStatus.derived, y.getStatus ());
+        assertSame (b, x.getSupport ().getTerms ()[1]);
+
+        // x and y survive by switching x to its inference from a
+        final long restored = tms.getRestoreCount ();
+        b.setGivenStatus (GeoStatus.unknown);
+        assertEquals (GeoStatus.derived, x.getStatus ());
+        assertEquals (GeoStatus.derived, y.getStatus ());
+        assertSame (a, x.getSupport ().getTerms ()[1]);
+        assertSame (x.getSupport (), x.getInference ());
+        assertEquals (restored + 2, tms.getRestoreCount ());
+        assertEquals (2, x.getInferences ().size ());
+    }
+
+    @Test
+    public void testKnownKeepsDependents ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoItem parent = new GeoItem (plane, "parent", Color.black);
+        final NamedVariable a = new NamedVariable (parent, Color.red, "a", 5.0);
+        final NamedVariable x = new NamedVariable (parent, Color.red, "x", 5.0);
+        final NamedVariable y = new NamedVariable (parent, Color.red, "y", 5.0);
+        a.setGivenStatus (GeoStatus.known);
+        x.setFormula ("from a", "%s == %s", x, a);
+        y.setFormula ("from x", "%s == %s", y, x);
+
+        // Giving x directly drops its support but y still follows from it
+        x.setGivenStatus (GeoStatus.known);
+        assertNull (x.getSupport ());
+        a.setGivenStatus (GeoStatus.unknown);
+        assertEquals (GeoStatus.known, x.getStatus ());
+        assertEquals (GeoStatus.derived, y.getStatus ());
+    }
+}
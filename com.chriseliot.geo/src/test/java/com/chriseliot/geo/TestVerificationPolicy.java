@@ -0,0 +1,116 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+
+import org.junit.jupiter.api.Test;
+
+public class TestVerificationPolicy
+{
+    /** Create a line and make both ends known so its length and angle are derived. */
+    private void solveLine (GeoPlane plane)
+    {
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        line.getFrom ().setGivenStatus (GeoStatus.known);
+        line.getTo ().setGivenStatus (GeoStatus.known);
+        assertEquals (GeoStatus.derived, line.getLength ().getStatus ());
+    }
+
+    @Test
+    public void testDefaults ()
+    {
+        final VerificationPolicy policy = new GeoPlane ().getVerificationPolicy ();
+        assertEquals (VerificationMode.recorded, policy.getMode ());
+        assertEquals (0, policy.getRequestCount ());
+        assertNotNull (policy.toString ());
+        assertThrows (IllegalArgumentException.class, () -> policy.setSampleRate (2));
+    }
+
+    @Test
+    public void testDisabled ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        policy.setMode (VerificationMode.disabled);
+        solveLine (plane);
+        assertTrue (policy.getRequestCount () > 0);
+        assertEquals (policy.getRequestCount (), policy.getSkipCount ());
+        assertEquals (0, policy.getVerifyCount ());
+    }
+
+    @Test
+    public void testRecorded ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        solveLine (plane);
+        assertTrue (policy.getVerifyCount () > 0);
+        assertEquals (policy.getRequestCount (), policy.getVerifyCount () + policy.getSkipCount ());
+        policy.resetCounters ();
+        assertEquals (0, policy.getVerifyCount ());
+    }
+
+    @Test
+    public void testSampled ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoItem[] terms = {line.getLength (), line.getDx (), line.getDy ()};
+        policy.setMode (VerificationMode.sampled);
+        policy.setSampleRate (0.5);
+        for (int i = 0; i < 10; i++)
+        {
+            policy.verify ("test", "%s == sqrt(%s^2 + %s^2)", terms, true);
+        }
+        assertEquals (10, policy.getRequestCount ());
+        assertEquals (5, policy.getVerifyCount () + policy.getErrorCount ());
+        assertEquals (5, policy.getSkipCount ());
+    }
+
+    @Test
+    public void testAll ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        final GeoItem[] terms = {line.getLength (), line.getDx (), line.getDy ()};
+        policy.verify ("test", "%s == sqrt(%s^2 + %s^2)", terms, false);
+        assertEquals (1, policy.getSkipCount ());
+        policy.setMode (VerificationMode.all);
+        policy.verify ("test", "%s == sqrt(%s^2 + %s^2)", terms, false);
+        assertEquals (1, policy.getVerifyCount () + policy.getErrorCount ());
+    }
+
+    @Test
+    public void testAsync () throws InterruptedException
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final VerificationPolicy policy = plane.getVerificationPolicy ();
+        policy.setMode (VerificationMode.async);
+        solveLine (plane);
+        assertTrue (policy.await (10000));
+        assertEquals (0, policy.getPendingCount ());
+        assertTrue (policy.getVerifyCount () + policy.getErrorCount () > 0);
+        assertEquals (policy.getRequestCount (), policy.getVerifyCount () + policy.getErrorCount () + policy.getSkipCount ());
+    }
+
+    @Test
+    public void testCapture ()
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final GeoLine line = new GeoLine (plane, Color.red, new Point2D.Double (10, 20), new Point2D.Double (30, 40));
+        assertNull (Verification.capture ("test", "%s == %s", new GeoItem[] {line, line.getLength ()}));
+        final Verification verification = Verification.capture ("test", "%s == sqrt(%s^2 + %s^2)",
+                new GeoItem[] {line.getLength (), line.getDx (), line.getDy ()});
+        assertNotNull (verification);
+        assertEquals (line.getLength ().getName (), verification.getOwner ());
+        assertEquals (line.getLength ().getDoubleValue (), verification.getExpected (), Verification.epsilon);
+        assertFalse (verification.isMismatch (verification.getExpected ()));
+        assertTrue (verification.isMismatch (verification.getExpected () + 1));
+        assertNotNull (verification.toString ());
+    }
+}
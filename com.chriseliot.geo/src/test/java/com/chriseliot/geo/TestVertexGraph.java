@@ -0,0 +1,170 @@
+
+package com.chriseliot.geo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestVertexGraph
+{
+    /** Make a plane of random lines with all their vertices but no triangles yet. */
+    private GeoPlane makePlane (long seed, int count)
+    {
+        final GeoPlane plane = new GeoPlane ();
+        final Random random = new Random (seed);
+        plane.setDeferVertices (true);
+        for (int i = 0; i < count; i++)
+        {
+            new GeoLine (plane, Color.red, new Point2D.Double (random.nextInt (400), random.nextInt (400)),
+                    new Point2D.Double (random.nextInt (400), random.nextInt (400)));
+        }
+        plane.setDeferVertices (false);
+        for (final GeoLine[] pair : SegmentSweep.crossings (plane.getLines ()))
+        {
+            pair[0].findVertices (pair[1]);
+        }
+        return plane;
+    }
+
+    /** Connected by three different lines, ignoring the area test. */
+    private boolean connected (GeoVertex v1, GeoVertex v2, GeoVertex v3)
+    {
+        final GeoLine l1 = v1.connector (v2);
+        final GeoLine l2 = v2.connector (v3);
+        final GeoLine l3 = v3.connector (v1);
+        return l1 != null && l2 != null && l3 != null && l1 != l2 && l2 != l3 && l1 != l3;
+    }
+
+    /** Brute force version of VertexGraph.getTriangles. */
+    private List<String> bruteForce (List<GeoVertex> vertices)
+    {
+        final List<String> result = new ArrayList<> ();
+        for (int i = 0; i < vertices.size (); i++)
+        {
+            for (int j = i + 1; j < vertices.size (); j++)
+            {
+                for (int k = j + 1; k < vertices.size (); k++)
+                {
+                    if (connected (vertices.get (i), vertices.get (j), vertices.get (k)))
+                    {
+                        result.add (i + " " + j + " " + k);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<String> names (List<GeoVertex> vertices, List<GeoVertex[]> triangles)
+    {
+        final List<String> result = new ArrayList<> ();
+        for (final GeoVertex[] t : triangles)
+        {
+            result.add (vertices.indexOf (t[0]) + " " + vertices.indexOf (t[1]) + " " + vertices.indexOf (t[2]));
+        }
+        return result;
+    }
+
+    @Test
+    public void testTriangles ()
+    {
+        final GeoPlane plane = makePlane (31, 30);
+        final VertexGraph graph = plane.getVertexGraph ();
+        final List<GeoVertex> vertices = plane.getVertices ();
+        assertEquals (vertices.size (), graph.size ());
+        final List<String> expected = bruteForce (vertices);
+        assertFalse (expected.isEmpty ());
+        final List<GeoVertex[]> triangles = new ArrayList<> ();
+        graph.getTriangles (triangles);
+        assertEquals (expected, names (vertices, triangles));
+        // Triangles through one vertex
+        final GeoVertex v = vertices.get (vertices.size () / 2);
+        final int index = vertices.indexOf (v);
+        final List<GeoVertex[]> through = new ArrayList<> ();
+        graph.getTriangles (v, through);
+        final List<String> expectedThrough = new ArrayList<> ();
+        for (final String t : expected)
+        {
+            if (Arrays.asList (t.split (" ")).contains (String.valueOf (index)))
+            {
+                expectedThrough.add (t);
+            }
+        }
+        assertEquals (expectedThrough, names (vertices, through));
+        // Triangles along one line
+        final GeoLine line = v.getLine1 ();
+        final List<GeoVertex[]> along = new ArrayList<> ();
+        graph.getTriangles (line, along);
+        final List<String> expectedAlong = new ArrayList<> ();
+        for (final GeoVertex[] t : triangles)
+        {
+            if (t[0].connector (t[1]) == line || t[1].connector (t[2]) == line || t[2].connector (t[0]) == line)
+            {
+                expectedAlong.add (vertices.indexOf (t[0]) + " " + vertices.indexOf (t[1]) + " " + vertices.indexOf (t[2]));
+            }
+        }
+        assertEquals (expectedAlong, names (vertices, along));
+        // Neighbors share a line
+        final Set<GeoVertex> neighbors = new HashSet<> ();
+        graph.getNeighbors (v, neighbors);
+        for (final GeoVertex n : vertices)
+        {
+            assertEquals (n != v && n.connects (v), neighbors.contains (n));
+        }
+        assertNotNull (graph.toString ());
+    }
+
+    private int triangleCount (GeoPlane plane)
+    {
+        int result = 0;
+        for (final GeoItem item : plane.getItems ())
+        {
+            if (item instanceof GeoTriangle)
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testFindTriangles ()
+    {
+        final GeoPlane plane = makePlane (8, 12);
+        assertTrue (triangleCount (plane) == 0);
+        plane.findTriangles ();
+        final List<GeoVertex> vertices = plane.getVertices ();
+        int count = 0;
+        for (int i = 0; i < vertices.size (); i++)
+        {
+            for (int j = i + 1; j < vertices.size (); j++)
+            {
+                for (int k = j + 1; k < vertices.size (); k++)
+                {
+                    final GeoVertex v1 = vertices.get (i);
+                    final GeoVertex v2 = vertices.get (j);
+                    final GeoVertex v3 = vertices.get (k);
+                    assertEquals (plane.isTriangle (v1, v2, v3), plane.hasTriangle (v1, v2, v3));
+                    if (plane.isTriangle (v1, v2, v3))
+                    {
+                        count++;
+                    }
+                }
+            }
+        }
+        assertTrue (count > 0);
+        assertEquals (count, triangleCount (plane));
+        // Removing a line removes its vertices from the graph
+        final GeoLine line = plane.getLines ().get (0);
+        line.remove ();
+        plane.remove (line);
+        assertTrue (plane.getVertexGraph ().getVertices (line).isEmpty ());
+        assertEquals (plane.getVertices ().size (), plane.getVertexGraph ().size ());
+        plane.clear ();
+        assertEquals (0, plane.getVertexGraph ().size ());
+    }
+}
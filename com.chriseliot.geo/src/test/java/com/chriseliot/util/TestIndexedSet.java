@@ -0,0 +1,87 @@
+
+package com.chriseliot.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestIndexedSet
+{
+    @Test
+    public void testOrder ()
+    {
+        final IndexedSet<String> set = new IndexedSet<> ();
+        final String a = new String ("a");
+        final String b = new String ("b");
+        final String c = new String ("c");
+        assertTrue (set.isEmpty ());
+        assertTrue (set.add (a));
+        assertTrue (set.add (b));
+        assertTrue (set.add (c));
+        assertFalse (set.add (b));
+        // Identity, not equality
+        assertFalse (set.contains (new String ("a")));
+        assertTrue (set.add (new String ("a")));
+        assertEquals (4, set.size ());
+        assertEquals (Arrays.asList ("a", "b", "c", "a"), set.asList ());
+        assertTrue (set.remove (b));
+        assertFalse (set.remove (b));
+        assertFalse (set.contains (b));
+        assertEquals (Arrays.asList ("a", "c", "a"), set.asList ());
+        assertEquals (1, set.asList ().indexOf (c));
+        assertEquals (-1, set.asList ().indexOf (b));
+        set.add (b);
+        assertEquals (3, set.asList ().indexOf (b));
+        assertThrows (UnsupportedOperationException.class, () -> set.asList ().add ("x"));
+        assertThrows (IndexOutOfBoundsException.class, () -> set.asList ().get (4));
+        assertThrows (NullPointerException.class, () -> set.add (null));
+        assertNotNull (set.toString ());
+        set.clear ();
+        assertTrue (set.asList ().isEmpty ());
+    }
+
+    @Test
+    public void testFailFast ()
+    {
+        final IndexedSet<Integer> set = new IndexedSet<> ();
+        set.add (1);
+        set.add (2);
+        set.add (3);
+        assertThrows (ConcurrentModificationException.class, () -> {
+            for (final Integer i : set)
+            {
+                set.remove (i);
+            }
+        });
+    }
+
+    @Test
+    public void testRandom ()
+    {
+        final IndexedSet<Object> set = new IndexedSet<> ();
+        final List<Object> expected = new ArrayList<> ();
+        final Random random = new Random (3);
+        for (int i = 0; i < 100000; i++)
+        {
+            if (expected.isEmpty () || random.nextInt (3) > 0)
+            {
+                final Object o = new Object ();
+                set.add (o);
+                expected.add (o);
+            }
+            else
+            {
+                final Object o = expected.remove (random.nextInt (expected.size ()));
+                set.remove (o);
+            }
+            if (i % 10000 == 0)
+            {
+                assertEquals (expected, set.asList ());
+            }
+        }
+        assertEquals (expected, set.asList ());
+        assertEquals (expected.size (), set.size ());
+    }
+}
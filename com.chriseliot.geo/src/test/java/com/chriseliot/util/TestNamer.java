@@ -0,0 +1,87 @@
+
+package com.chriseliot.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TestNamer
+{
+    @Test
+    public void testSequence ()
+    {
+        final Namer namer = new Namer ();
+        assertEquals ("x01", namer.getname ("x"));
+        assertEquals ("x02", namer.getname ("x"));
+        assertEquals ("y01", namer.getname ("y"));
+    }
+
+    @Test
+    public void testFormat ()
+    {
+        final Namer namer = new Namer ();
+        for (int i = 1; i < 9; i++)
+        {
+            namer.getname ("x");
+        }
+        assertEquals ("x09", namer.getname ("x"));
+        assertEquals ("x10", namer.getname ("x"));
+        final Map<String, Integer> counters = namer.getCounters ();
+        assertEquals (Collections.singletonMap ("x", 10), counters);
+        counters.put ("x", 99);
+        namer.setCounters (counters);
+        assertEquals ("x100", namer.getname ("x"));
+        // Each namer counts its own names
+        assertEquals ("x01", new Namer ().getname ("x"));
+    }
+
+    @Test
+    public void testIds ()
+    {
+        final Namer namer = new Namer ();
+        assertEquals (0, namer.nextId ());
+        assertEquals (1, namer.nextId ());
+        assertEquals (2, namer.getIdCount ());
+        namer.getname ("x");
+        namer.clear ();
+        assertEquals (0, namer.getIdCount ());
+        assertEquals ("x01", namer.getname ("x"));
+        assertEquals (0, namer.nextId ());
+        assertNotNull (namer.toString ());
+    }
+
+    @Test
+    public void testThreads () throws Exception
+    {
+        final Namer namer = new Namer ();
+        final ExecutorService executor = Executors.newFixedThreadPool (4);
+        try
+        {
+            final List<Future<List<String>>> futures = new ArrayList<> ();
+            for (int i = 0; i < 4; i++)
+            {
+                futures.add (executor.submit (() -> {
+                    final List<String> result = new ArrayList<> ();
+                    for (int j = 0; j < 1000; j++)
+                    {
+                        result.add (namer.getname ("thread"));
+                    }
+                    return result;
+                }));
+            }
+            final Set<String> names = new HashSet<> ();
+            for (final Future<List<String>> future : futures)
+            {
+                names.addAll (future.get ());
+            }
+            assertEquals (4000, names.size ());
+        }
+        finally
+        {
+            executor.shutdown ();
+        }
+    }
+}
@@ -5,8 +5,11 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.*;
 import javax.xml.transform.TransformerException;
 
 import org.junit.jupiter.api.Test;
@@ -26,6 +29,44 @@ class TestXMLUtil
         assertNotNull (xu.toString ());
     }
 
+    @Test
+    void testStreamsOnThreads () throws Exception
+    {
+        final XMLUtil xu = new XMLUtil ();
+        final ExecutorService executor = Executors.newFixedThreadPool (4);
+        try
+        {
+            final List<Future<String>> results = new ArrayList<> ();
+            for (int i = 0; i < 32; i++)
+            {
+                final String value = "item" + i;
+                results.add (executor.submit ( () ->
+                {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+                    final XMLStreamWriter writer = xu.getXMLStreamWriter (out);
+                    writer.writeStartDocument ("UTF-8", "1.0");
+                    writer.writeEmptyElement ("item");
+                    writer.writeAttribute ("name", value);
+                    writer.writeEndDocument ();
+                    writer.close ();
+                    final XMLStreamReader reader = xu.getXMLStreamReader (new ByteArrayInputStream (out.toByteArray ()));
+                    reader.nextTag ();
+                    final Element element = xu.readElement (reader, xu.getDocumentBuilder ().newDocument ());
+                    reader.close ();
+                    return element.getAttribute ("name");
+                }));
+            }
+            for (int i = 0; i < results.size (); i++)
+            {
+                assertEquals ("item" + i, results.get (i).get ());
+            }
+        }
+        finally
+        {
+            executor.shutdown ();
+        }
+    }
+
     @Test
     void testGetDocumentBuilder () throws ParserConfigurationException
     {